@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+#
+# Offline bulk conversion of HL7 and FHIR archives with the application jar.
+#
+# Runs BulkConverterCli: a minimal context with only the converters, so
+# MongoDB, RabbitMQ and Redis are not needed. Uses all cores unless -p is
+# given.
+#   .hl7/.er7/.txt  -> name.ndjson (one FHIR Bundle per line)
+#   .ndjson/.json   -> name.hl7    (ER7)
+# Failed messages go to name.errors.ndjson; summary.json holds the statistics.
+#
+# Usage:
+#   mvn package -DskipTests
+#   scripts/bulk-convert.sh [-o DIR] [-p N] [--property=value ...] INPUT...
+#
+set -euo pipefail
+
+JAR="$(ls "$(dirname "$0")"/../target/hl7-fhir-transformer-*.jar | grep -v '\.original$' | head -n 1)"
+
+exec java --add-modules jdk.incubator.vector ${JAVA_OPTS:-} -cp "$JAR" \
+    -Dloader.main=com.al.fhirhl7transformer.cli.BulkConverterCli \
+    org.springframework.boot.loader.launch.PropertiesLauncher "$@"
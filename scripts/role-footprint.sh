@@ -0,0 +1,74 @@
+#!/usr/bin/env bash
+#
+# Startup time and memory footprint per runtime role (all, api, worker).
+#
+# Each role is started from the same jar, one after the other. Once Spring
+# logs "Started ..." the script samples the process and stops it:
+#   startup   - time reported by Spring Boot
+#   rss       - resident set size from /proc
+#   heap      - used heap after a full GC (jcmd GC.run + GC.heap_info)
+#   metaspace - committed metaspace
+#   classes   - number of loaded classes
+#
+# MongoDB, RabbitMQ and Redis do not need to be reachable; connection errors
+# are logged but do not stop the context. JIT warm-up is disabled so all
+# roles are sampled at the same point.
+#
+# Usage:
+#   mvn package -DskipTests
+#   scripts/role-footprint.sh [roles...]
+#
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+ROLES=("$@")
+if [[ ${#ROLES[@]} -eq 0 ]]; then
+    ROLES=(all api worker)
+fi
+
+JAR="$(ls target/hl7-fhir-transformer-*.jar | grep -v '\.original$' | head -n 1)"
+JCMD="${JAVA_HOME:+$JAVA_HOME/bin/}jcmd"
+LOG_DIR="target/role-footprint"
+mkdir -p "$LOG_DIR"
+
+sample() {
+    local role="$1"
+    local log="$LOG_DIR/$role.log"
+
+    APP_ROLE="$role" java -Dserver.port=0 -Dapp.warmup.enabled=false -Dspring.main.banner-mode=off \
+        -jar "$JAR" > "$log" 2>&1 &
+    local pid=$!
+
+    local startup=""
+    for ((i = 0; i < 300; i++)); do
+        startup=$(grep -oE 'Started [A-Za-z0-9]+ in [0-9.]+ seconds' "$log" | grep -oE '[0-9.]+ seconds' | cut -d' ' -f1 || true)
+        [[ -n "$startup" ]] && break
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "Role $role exited during startup, see $log" >&2
+            return 1
+        fi
+        sleep 1
+    done
+
+    "$JCMD" "$pid" GC.run > /dev/null
+    local rss heap metaspace classes
+    rss=$(awk '/VmRSS/ { printf "%d", $2 / 1024 }' "/proc/$pid/status")
+    heap=$("$JCMD" "$pid" GC.heap_info | grep -oE 'used [0-9]+K' | head -n 1 | awk '{ printf "%d", $2 / 1024 }')
+    metaspace=$("$JCMD" "$pid" GC.heap_info | grep -oE 'Metaspace +used [0-9]+K, committed [0-9]+K' \
+        | grep -oE 'committed [0-9]+K' | awk '{ printf "%d", $2 / 1024 }')
+    classes=$("$JCMD" "$pid" PerfCounter.print | awk -F= '/java.cls.loadedClasses/ { print $2 }')
+
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+
+    printf '%-8s %9s %8s %8s %10s %8s\n' "$role" "$startup" "$rss" "$heap" "$metaspace" "$classes"
+}
+
+echo "Java: $(java -version 2>&1 | head -n 1)"
+echo "CPUs: $(nproc)"
+echo
+printf '%-8s %9s %8s %8s %10s %8s\n' "role" "startup s" "rss MB" "heap MB" "metaspace" "classes"
+for role in "${ROLES[@]}"; do
+    sample "$role"
+done
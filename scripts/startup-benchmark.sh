@@ -0,0 +1,67 @@
+#!/usr/bin/env bash
+#
+# Startup-time benchmark: standard boot vs. Spring AOT + AppCDS boot.
+#
+# Both variants start the same build and exit as soon as the readiness
+# health group is UP (-Dapp.startup.exit-when-ready=true), so the FHIR
+# validator and the JIT warm-up are included. SpringDoc is disabled for both,
+# since AOT builds are produced without it, so the bean sets match. No
+# broker, database or cache has to be reachable.
+#
+# Usage:
+#   mvn -Pcds package -DskipTests
+#   scripts/startup-benchmark.sh [runs] [java options...]
+#
+# Extra options go to both variants, e.g. -Dapp.warmup.enabled=false to
+# leave out the JIT warm-up, which usually dominates the time to readiness.
+#
+set -euo pipefail
+
+RUNS="${1:-5}"
+shift || true
+cd "$(dirname "$0")/.."
+
+JAR="$(ls target/hl7-fhir-transformer-*.jar | grep -v '\.original$' | head -n 1)"
+CDS_JAR="target/cds/$(basename "$JAR")"
+ARCHIVE="target/cds/application.jsa"
+
+if [[ ! -f "$CDS_JAR" || ! -f "$ARCHIVE" ]]; then
+    echo "CDS archive not found. Build it first with: mvn -Pcds package -DskipTests" >&2
+    exit 1
+fi
+
+COMMON_OPTS=(-Dapp.startup.exit-when-ready=true -Dserver.port=0 -Dspringdoc.api-docs.enabled=false
+    -Dspringdoc.swagger-ui.enabled=false -Dlogging.level.root=WARN -Dspring.main.banner-mode=off "$@")
+
+# Runs the given command RUNS times; per-run times go to stderr, the mean (ms) to stdout
+measure() {
+    local label="$1"
+    shift
+    local total=0
+    for ((i = 1; i <= RUNS; i++)); do
+        local start end
+        start=$(date +%s%N)
+        "$@" > /dev/null 2>&1
+        end=$(date +%s%N)
+        local elapsed=$(((end - start) / 1000000))
+        total=$((total + elapsed))
+        printf '  %-12s run %d: %6d ms\n' "$label" "$i" "$elapsed" >&2
+    done
+    echo $((total / RUNS))
+}
+
+echo "Java: $(java -version 2>&1 | head -n 1)"
+echo "CPUs: $(nproc)  Runs per variant: $RUNS"
+echo
+
+standard=$(measure standard java "${COMMON_OPTS[@]}" -jar "$JAR")
+cds=$(measure cds+aot java -XX:SharedArchiveFile="$ARCHIVE" -Xlog:cds=off -Dspring.aot.enabled=true \
+    "${COMMON_OPTS[@]}" -jar "$CDS_JAR")
+
+echo
+printf '%-12s %8s\n' "variant" "mean ms"
+printf '%-12s %8d\n' "standard" "$standard"
+printf '%-12s %8d\n' "cds+aot" "$cds"
+if ((cds > 0)); then
+    awk -v s="$standard" -v c="$cds" 'BEGIN { printf "speedup      %7.2fx\n", s / c }'
+fi
@@ -0,0 +1,98 @@
+package com.al.fhirhl7transformer.util;
+
+import jdk.incubator.vector.ByteVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of splitting a mapped HL7 archive into messages, scalar loop vs
+ * Vector API. Each invocation scans the whole buffer, so GB/s is
+ * {@code bytes / (ms/op)} - the size is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BoundaryScanBenchmark {
+
+    private static final String MESSAGE = "MSH|^~\\&|LAB|HOSP|EHR|HOSP|20240101120000||ORU^R01|%d|P|2.5\r"
+            + "PID|1||%d^^^HOSP^MR||DOE^JOHN^A||19800101|M|||1 MAIN ST^^SPRINGFIELD^IL^62701\r"
+            + "PV1|1|O|LAB^^^HOSP||||1234^SMITH^JANE\r"
+            + "OBR|1|ORD%d|FIL%d|CBC^COMPLETE BLOOD COUNT|||20240101110000\r"
+            + "OBX|1|NM|WBC^WHITE BLOOD COUNT||7.5|10*3/uL|4.0-11.0|N|||F\r"
+            + "OBX|2|NM|HGB^HEMOGLOBIN||14.2|g/dL|13.5-17.5|N|||F\r"
+            + "OBX|3|TX|NOTE^COMMENT||Sample within normal limits. Batch and file headers follow the message.|||||F\r";
+
+    @Param({ "268435456" })
+    private int sizeBytes;
+
+    private Path file;
+    private FileChannel channel;
+    private ByteBuffer mapped;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("boundary-scan", ".hl7");
+        StringBuilder content = new StringBuilder(sizeBytes + MESSAGE.length());
+        for (int i = 0; content.length() < sizeBytes; i++) {
+            content.append(String.format(MESSAGE, i, i, i, i));
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.US_ASCII));
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        System.out.printf("%nScanning %d bytes, vector species %s%n", channel.size(),
+                ByteVector.SPECIES_PREFERRED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int scalar() {
+        int count = 0;
+        int limit = mapped.limit();
+        int position = Hl7BoundaryScanner.scalarNextBoundary(mapped, 0, limit, true);
+        while (position >= 0) {
+            count++;
+            position = Hl7BoundaryScanner.scalarNextBoundary(mapped, position + 1, limit, false);
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int vector() {
+        int count = 0;
+        int limit = mapped.limit();
+        int position = Hl7BoundaryScanner.vectorNextBoundary(mapped, 0, limit, true);
+        while (position >= 0) {
+            count++;
+            position = Hl7BoundaryScanner.vectorNextBoundary(mapped, position + 1, limit, false);
+        }
+        return count;
+    }
+}
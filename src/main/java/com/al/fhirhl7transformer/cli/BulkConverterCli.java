@@ -0,0 +1,159 @@
+package com.al.fhirhl7transformer.cli;
+
+import com.al.fhirhl7transformer.cli.BulkFileConverter.Summary;
+import com.al.fhirhl7transformer.config.ConversionSchedulerConfiguration;
+import com.al.fhirhl7transformer.config.MappingConfiguration;
+import com.al.fhirhl7transformer.config.ParsingConfiguration;
+import com.al.fhirhl7transformer.config.PerformanceConfig;
+import com.al.fhirhl7transformer.service.ConversionScheduler;
+import com.al.fhirhl7transformer.service.FhirToHl7Service;
+import com.al.fhirhl7transformer.service.FhirValidationService;
+import com.al.fhirhl7transformer.service.Hl7ToFhirService;
+import com.al.fhirhl7transformer.service.converter.Hl7ConverterRegistry;
+import com.al.fhirhl7transformer.service.mapper.FhirToHl7Converter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline bulk converter for HL7 and FHIR archives.
+ *
+ * <p>
+ * Starts a minimal Spring context holding only the converter beans and the
+ * {@link ConversionScheduler} - no web server, MongoDB, Redis or RabbitMQ -
+ * and converts the given files and directories with
+ * {@link BulkFileConverter}. Deliberately not a {@code @Configuration}, so
+ * the server application's component scan does not pick it up.
+ *
+ * <pre>
+ * java --add-modules jdk.incubator.vector -cp app.jar \
+ *      -Dloader.main=com.al.fhirhl7transformer.cli.BulkConverterCli \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher \
+ *      -o converted/ archive/ extra.ndjson
+ * </pre>
+ *
+ * Options: {@code -o/--output DIR} (default {@code converted}),
+ * {@code -p/--parallelism N} (default: all cores). Other {@code --key=value}
+ * arguments are passed to Spring as properties, e.g.
+ * {@code --app.parsing.validation-enabled=false}.
+ *
+ * <p>
+ * Exit status: 0 when every message converted, 1 when some failed, 2 on
+ * invalid arguments or I/O errors. A {@code summary.json} with per-file
+ * statistics is written to the output directory.
+ */
+@EnableConfigurationProperties
+@Import({ PerformanceConfig.class, ParsingConfiguration.class, MappingConfiguration.class,
+        ConversionSchedulerConfiguration.class, ConversionScheduler.class, FhirValidationService.class,
+        Hl7ToFhirService.class, FhirToHl7Service.class })
+@ComponentScan(basePackageClasses = { Hl7ConverterRegistry.class, FhirToHl7Converter.class })
+public class BulkConverterCli {
+
+    static final String SUMMARY_FILE = "summary.json";
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    static int run(String[] args, PrintStream out) {
+        List<Path> inputs = new ArrayList<>();
+        List<String> properties = new ArrayList<>();
+        Path outputDir = Paths.get("converted");
+        // Validate every message instead of skipping validation while the validator warms up
+        properties.add("--app.validation.background-init=false");
+        properties.add("--spring.profiles.include=cli");
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-o") || arg.equals("--output")) {
+                    outputDir = Paths.get(value(args, ++i, arg));
+                } else if (arg.equals("-p") || arg.equals("--parallelism")) {
+                    properties.add("--app.conversion.parallelism=" + Integer.parseInt(value(args, ++i, arg)));
+                } else if (arg.equals("-h") || arg.equals("--help")) {
+                    usage(out);
+                    return 0;
+                } else if (arg.startsWith("--") && arg.contains("=")) {
+                    properties.add(arg);
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    inputs.add(Paths.get(arg));
+                }
+            }
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("No input files or directories given");
+            }
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            usage(out);
+            return 2;
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BulkConverterCli.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                // Per-message converter logging would dominate the run time
+                .properties("logging.level.com.al.fhirhl7transformer.service=WARN")
+                .run(properties.toArray(String[]::new))) {
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+            BulkFileConverter converter = new BulkFileConverter(context.getBean(Hl7ToFhirService.class),
+                    context.getBean(FhirToHl7Service.class), context.getBean(ConversionScheduler.class),
+                    objectMapper, context.getBean(ConversionSchedulerConfiguration.class).getQueueCapacity());
+
+            Summary summary = converter.convert(inputs, outputDir);
+            objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValue(outputDir.resolve(SUMMARY_FILE).toFile(), summary);
+            out.printf("Converted %d messages in %d files (%.1f MB) in %.1fs: %d succeeded, %d failed%n",
+                    summary.getMessages(), summary.getFiles(), summary.getBytes() / 1_000_000.0,
+                    summary.getElapsedMs() / 1000.0, summary.getSuccessCount(), summary.getFailureCount());
+            out.printf("Throughput: %.1f messages/s, %.1f MB/s with %d workers%n", summary.getMessagesPerSecond(),
+                    summary.getMegabytesPerSecond(),
+                    context.getBean(ConversionSchedulerConfiguration.class).effectiveParallelism());
+            return summary.getFailureCount() == 0 ? 0 : 1;
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return 2;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("Interrupted");
+            return 2;
+        } catch (Exception e) {
+            out.println("Bulk conversion failed: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static void usage(PrintStream out) {
+        out.println("Usage: BulkConverterCli [-o DIR] [-p N] [--property=value ...] INPUT...");
+        out.println("  INPUT             file or directory; .hl7/.er7/.txt -> FHIR NDJSON, .ndjson/.json -> ER7");
+        out.println("  -o, --output DIR  output directory (default: converted)");
+        out.println("  -p, --parallelism N  conversion threads (default: all cores)");
+    }
+}
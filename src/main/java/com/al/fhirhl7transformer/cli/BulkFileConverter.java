@@ -0,0 +1,350 @@
+package com.al.fhirhl7transformer.cli;
+
+import com.al.fhirhl7transformer.dto.BatchConversionResponse.ConversionError;
+import com.al.fhirhl7transformer.service.ConversionScheduler;
+import com.al.fhirhl7transformer.service.ConversionScheduler.Lane;
+import com.al.fhirhl7transformer.service.FhirToHl7Service;
+import com.al.fhirhl7transformer.service.Hl7ToFhirService;
+import com.al.fhirhl7transformer.util.MappedHl7Reader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Converts HL7 and FHIR files on local disk, using every worker of the
+ * {@link ConversionScheduler}.
+ *
+ * <p>
+ * The direction is chosen by file extension:
+ * <ul>
+ * <li>{@code .hl7}, {@code .er7}, {@code .txt} - flat HL7 archives, split
+ * with {@link MappedHl7Reader}, converted to {@code name.ndjson} with one
+ * FHIR Bundle per line</li>
+ * <li>{@code .ndjson} (one Bundle per line) and {@code .json} (one Bundle) -
+ * converted to {@code name.hl7}, one ER7 message per line</li>
+ * </ul>
+ * Messages that fail are written to {@code name.errors.ndjson} instead, one
+ * {@link ConversionError} per line with its index in the input file.
+ *
+ * <p>
+ * All files feed one pipeline: messages are queued on the BATCH lane as they
+ * are read, up to the lane capacity, and written back in input order, so
+ * cores stay busy across file boundaries even for many small files. Outputs
+ * are written under a {@code .part} name and renamed when the file is done.
+ *
+ * <p>
+ * Not thread-safe; one instance converts one set of inputs.
+ */
+@Slf4j
+public class BulkFileConverter {
+
+    static final String PART_SUFFIX = ".part";
+    static final String ERRORS_SUFFIX = ".errors.ndjson";
+
+    private static final List<String> HL7_EXTENSIONS = List.of("hl7", "er7", "txt");
+    private static final List<String> FHIR_EXTENSIONS = List.of("ndjson", "json");
+    private static final int MAP_WINDOW_BYTES = 256 * 1024 * 1024;
+
+    private final Hl7ToFhirService hl7ToFhirService;
+    private final FhirToHl7Service fhirToHl7Service;
+    private final ConversionScheduler conversionScheduler;
+    private final ObjectMapper objectMapper;
+    private final int maxInFlight;
+    private final Deque<Pending> inFlight = new ArrayDeque<>();
+
+    public BulkFileConverter(Hl7ToFhirService hl7ToFhirService, FhirToHl7Service fhirToHl7Service,
+            ConversionScheduler conversionScheduler, ObjectMapper objectMapper, int maxInFlight) {
+        this.hl7ToFhirService = hl7ToFhirService;
+        this.fhirToHl7Service = fhirToHl7Service;
+        this.conversionScheduler = conversionScheduler;
+        this.objectMapper = objectMapper;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Convert files and directories (recursively) into {@code outputDir},
+     * keeping paths relative to each input directory.
+     *
+     * @throws IllegalArgumentException if an input does not exist, a file
+     *                                  given directly has an unknown extension,
+     *                                  or {@code outputDir} is inside an input
+     *                                  directory
+     */
+    public Summary convert(List<Path> inputs, Path outputDir) throws IOException, InterruptedException {
+        List<InputFile> files = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                if (outputDir.toAbsolutePath().normalize().startsWith(input.toAbsolutePath().normalize())) {
+                    throw new IllegalArgumentException("Output directory must not be inside input " + input);
+                }
+                try (Stream<Path> walk = Files.walk(input)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(file -> directionOf(file) != null)
+                            .sorted()
+                            .forEach(file -> files.add(new InputFile(file, input.relativize(file))));
+                }
+            } else if (Files.isRegularFile(input)) {
+                if (directionOf(input) == null) {
+                    throw new IllegalArgumentException("Unsupported input file type: " + input);
+                }
+                files.add(new InputFile(input, input.getFileName()));
+            } else {
+                throw new IllegalArgumentException("Input not found: " + input);
+            }
+        }
+
+        Files.createDirectories(outputDir);
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        for (InputFile file : files) {
+            Path source = file.source();
+            Direction direction = directionOf(source);
+            Path target = outputDir.resolve(file.relativePath() + direction.outputSuffix);
+            FileOutput output = new FileOutput(source, target, direction, summary);
+            if (direction == Direction.V2_TO_FHIR) {
+                readHl7(source, output);
+            } else {
+                readFhir(source, output);
+            }
+            // Marks the end of the file in the pipeline
+            inFlight.add(new Pending(output, -1, null, null));
+        }
+        while (!inFlight.isEmpty()) {
+            writeHead();
+        }
+        summary.setElapsedMs((System.nanoTime() - start) / 1_000_000);
+        return summary;
+    }
+
+    private void readHl7(Path source, FileOutput output) throws IOException, InterruptedException {
+        try (MappedHl7Reader reader = new MappedHl7Reader(source, 0, MAP_WINDOW_BYTES)) {
+            String message;
+            int index = 0;
+            while ((message = reader.nextMessage()) != null) {
+                String hl7Message = message;
+                enqueue(output, index++, hl7Message, () -> {
+                    String bundle = hl7ToFhirService.convertHl7ToFhir(hl7Message, false);
+                    // Re-serialize without pretty printing: one Bundle per line
+                    return objectMapper.writeValueAsBytes(objectMapper.readTree(bundle));
+                });
+            }
+        }
+    }
+
+    private void readFhir(Path source, FileOutput output) throws IOException, InterruptedException {
+        if (source.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".ndjson")) {
+            try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+                String line;
+                int index = 0;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        enqueueFhir(output, index++, line);
+                    }
+                }
+            }
+        } else {
+            enqueueFhir(output, 0, Files.readString(source, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void enqueueFhir(FileOutput output, int index, String fhirJson) throws IOException, InterruptedException {
+        enqueue(output, index, fhirJson, () -> {
+            String hl7Message = fhirToHl7Service.convertFhirToHl7(fhirJson);
+            // Segments end with CR; messages are separated by a line feed
+            String er7 = hl7Message.replace("\r\n", "\r").replace('\n', '\r');
+            return (er7.endsWith("\r") ? er7 + "\n" : er7 + "\r\n").getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    private void enqueue(FileOutput output, int index, String input, Callable<byte[]> conversion)
+            throws IOException, InterruptedException {
+        while (inFlight.size() >= maxInFlight) {
+            writeHead();
+        }
+        CompletableFuture<byte[]> future;
+        try {
+            future = conversionScheduler.submit(Lane.BATCH, conversion);
+        } catch (RejectedExecutionException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        inFlight.add(new Pending(output, index, input, future));
+    }
+
+    private void writeHead() throws IOException, InterruptedException {
+        Pending head = inFlight.removeFirst();
+        if (head.future() == null) {
+            head.output().finish();
+            return;
+        }
+        try {
+            head.output().writeSuccess(head.future().get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            String error = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            head.output().writeFailure(new ConversionError(head.index(), error, truncate(head.input())));
+        }
+    }
+
+    static Direction directionOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String extension = dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        if (HL7_EXTENSIONS.contains(extension)) {
+            return Direction.V2_TO_FHIR;
+        }
+        if (FHIR_EXTENSIONS.contains(extension)) {
+            return Direction.FHIR_TO_V2;
+        }
+        return null;
+    }
+
+    private static String truncate(String str) {
+        return str.length() <= 200 ? str : str.substring(0, 200) + "...";
+    }
+
+    enum Direction {
+        V2_TO_FHIR(".ndjson"),
+        FHIR_TO_V2(".hl7");
+
+        private final String outputSuffix;
+
+        Direction(String outputSuffix) {
+            this.outputSuffix = outputSuffix;
+        }
+    }
+
+    private record InputFile(Path source, Path relativePath) {
+    }
+
+    /**
+     * A queued conversion, or the end-of-file marker when {@code future} is
+     * null.
+     */
+    private record Pending(FileOutput output, int index, String input, CompletableFuture<byte[]> future) {
+    }
+
+    /**
+     * Output files and counters of one input file.
+     */
+    private final class FileOutput {
+        private final Path target;
+        private final Path errorsTarget;
+        private final Summary summary;
+        private final FileSummary fileSummary = new FileSummary();
+        private final OutputStream out;
+        private OutputStream errors;
+
+        FileOutput(Path source, Path target, Direction direction, Summary summary) throws IOException {
+            this.target = target;
+            this.errorsTarget = target.resolveSibling(source.getFileName() + ERRORS_SUFFIX);
+            this.summary = summary;
+            fileSummary.setInput(source.toString());
+            fileSummary.setOutput(target.toString());
+            fileSummary.setDirection(direction.name());
+            fileSummary.setBytes(Files.size(source));
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            this.out = new BufferedOutputStream(Files.newOutputStream(part(target)), 1 << 16);
+        }
+
+        void writeSuccess(byte[] converted) throws IOException {
+            out.write(converted);
+            if (converted.length == 0 || converted[converted.length - 1] != '\n') {
+                out.write('\n');
+            }
+            fileSummary.setSuccessCount(fileSummary.getSuccessCount() + 1);
+        }
+
+        void writeFailure(ConversionError error) throws IOException {
+            if (errors == null) {
+                errors = new BufferedOutputStream(Files.newOutputStream(part(errorsTarget)));
+            }
+            errors.write(objectMapper.writeValueAsBytes(error));
+            errors.write('\n');
+            fileSummary.setFailureCount(fileSummary.getFailureCount() + 1);
+        }
+
+        void finish() throws IOException {
+            out.close();
+            Files.move(part(target), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (errors != null) {
+                errors.close();
+                Files.move(part(errorsTarget), errorsTarget, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                fileSummary.setErrors(errorsTarget.toString());
+            }
+            fileSummary.setMessages(fileSummary.getSuccessCount() + fileSummary.getFailureCount());
+            summary.add(fileSummary);
+            log.info("Converted {}: {} messages, {} failures", fileSummary.getInput(), fileSummary.getMessages(),
+                    fileSummary.getFailureCount());
+        }
+
+        private Path part(Path path) {
+            return path.resolveSibling(path.getFileName() + PART_SUFFIX);
+        }
+    }
+
+    /**
+     * Statistics of one input file.
+     */
+    @Data
+    public static class FileSummary {
+        private String input;
+        private String output;
+        private String errors;
+        private String direction;
+        private long bytes;
+        private long messages;
+        private long successCount;
+        private long failureCount;
+    }
+
+    /**
+     * Statistics of a whole run.
+     */
+    @Data
+    public static class Summary {
+        private long files;
+        private long bytes;
+        private long messages;
+        private long successCount;
+        private long failureCount;
+        private long elapsedMs;
+        private List<FileSummary> details = new ArrayList<>();
+
+        void add(FileSummary file) {
+            details.add(file);
+            files++;
+            bytes += file.getBytes();
+            messages += file.getMessages();
+            successCount += file.getSuccessCount();
+            failureCount += file.getFailureCount();
+        }
+
+        public double getMessagesPerSecond() {
+            return elapsedMs == 0 ? 0 : messages * 1000.0 / elapsedMs;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedMs == 0 ? 0 : bytes / 1_000_000.0 * 1000.0 / elapsedMs;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for adjusting listener consumers and prefetch to queue
+ * depth and conversion load at runtime.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rabbitmq.adaptive")
+public class AdaptiveConcurrencyConfiguration {
+
+    /**
+     * Let the workers resize their listener containers. When off, the static
+     * {@code spring.rabbitmq.listener.simple.*} and lane settings apply.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How often queue depth and load are sampled.
+     */
+    private long intervalMs = 5000;
+
+    /**
+     * Minimum time between two changes to the same container.
+     */
+    private long cooldownMs = 15000;
+
+    private int minConsumers = 2;
+    private int maxConsumers = 20;
+
+    /**
+     * Consumers added per decision at most.
+     */
+    private int maxStep = 2;
+
+    /**
+     * Scale up when the backlog would take longer than this to drain at the
+     * current rate.
+     */
+    private long targetDrainSeconds = 30;
+
+    /**
+     * Only scale up while consumers are at least this busy (0-1); below it
+     * the bottleneck is elsewhere.
+     */
+    private double scaleUpUtilization = 0.75;
+
+    /**
+     * Scale down when consumers are less busy than this (0-1) and there is
+     * no backlog.
+     */
+    private double scaleDownUtilization = 0.3;
+
+    /**
+     * Conversion p99 above which consumers are removed instead of added, as
+     * more consumers only add CPU contention. 0 = no limit.
+     */
+    private long maxP99Ms = 0;
+
+    private int minPrefetch = 10;
+    private int maxPrefetch = 250;
+
+    /**
+     * Prefetch is sized to hold about this much work per consumer.
+     */
+    private long prefetchBufferMs = 1000;
+}
@@ -0,0 +1,38 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for asynchronous bulk conversion jobs.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.bulk")
+public class BulkJobConfiguration {
+
+    /**
+     * Directory holding one sub-directory of input and result chunks per job.
+     * Must survive restarts for jobs to resume.
+     */
+    private String storageDir = "data/bulk-jobs";
+
+    /**
+     * Number of messages per chunk. A chunk is the unit of progress: after a
+     * restart, processing resumes at the first unfinished chunk.
+     */
+    private int chunkSize = 10000;
+
+    /**
+     * Number of jobs processed at the same time. Messages of all jobs share
+     * the BATCH lane of the conversion scheduler.
+     */
+    private int maxConcurrentJobs = 1;
+
+    /**
+     * Identifies this instance's storage. Only jobs accepted by the same node
+     * are resumed after a restart.
+     */
+    private String nodeId = "local";
+}
@@ -0,0 +1,37 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the shared CPU-bound conversion scheduler.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.conversion")
+public class ConversionSchedulerConfiguration {
+
+    /**
+     * Number of conversion worker threads. 0 = number of available processors.
+     */
+    private int parallelism = 0;
+
+    /**
+     * Maximum number of queued conversions per lane (sync and batch).
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * How long a caller waits for space in a full lane queue before the
+     * conversion is rejected.
+     */
+    private long queueTimeoutMs = 30000;
+
+    /**
+     * Resolved number of worker threads.
+     */
+    public int effectiveParallelism() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
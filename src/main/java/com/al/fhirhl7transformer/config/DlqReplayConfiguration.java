@@ -0,0 +1,39 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for replaying dead-lettered messages through the admin API.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.dlq.replay")
+public class DlqReplayConfiguration {
+
+    /**
+     * Messages per second republished when a request does not give a rate.
+     */
+    private int defaultRatePerSecond = 100;
+
+    /**
+     * Upper bound for the requested rate, to protect live traffic.
+     */
+    private int maxRatePerSecond = 1000;
+
+    /**
+     * Messages republished per publisher-confirm round trip.
+     */
+    private int batchSize = 100;
+
+    /**
+     * How long to wait for the broker to confirm a replayed batch.
+     */
+    private long confirmTimeoutMs = 10000;
+
+    /**
+     * Number of finished replays kept for status queries.
+     */
+    private int historySize = 50;
+}
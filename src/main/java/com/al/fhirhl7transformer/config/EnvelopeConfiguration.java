@@ -0,0 +1,33 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the encoding of queue payloads.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rabbitmq.envelope")
+public class EnvelopeConfiguration {
+
+    /**
+     * Payloads of at least this many bytes are deflate-compressed before
+     * publishing. 0 = never compress.
+     */
+    private int compressionThresholdBytes = 16384;
+
+    /**
+     * Also compress messages published to the output queues. Off by default
+     * because external consumers must then honor the content-encoding
+     * property.
+     */
+    private boolean compressOutputs = false;
+
+    /**
+     * Serialize FHIR bundles produced by the listeners without
+     * pretty-printing. The synchronous API responses are not affected.
+     */
+    private boolean compactJson = true;
+}
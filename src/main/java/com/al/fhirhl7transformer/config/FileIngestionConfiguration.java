@@ -0,0 +1,52 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the directory ingestion connector.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.ingest")
+public class FileIngestionConfiguration {
+
+    /**
+     * Whether to watch the input directory.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory polled for HL7 files. Results, manifests and checkpoints are
+     * written next to each input file.
+     */
+    private String inputDir = "data/ingest";
+
+    /**
+     * Glob selecting input files within the directory.
+     */
+    private String filePattern = "*.{hl7,txt}";
+
+    /**
+     * Delay between directory scans in milliseconds.
+     */
+    private long pollIntervalMs = 10000;
+
+    /**
+     * Files modified more recently than this are assumed to still be written
+     * and are picked up on a later scan.
+     */
+    private long minFileAgeMs = 5000;
+
+    /**
+     * Number of messages converted between checkpoints. Should not exceed the
+     * conversion scheduler's queue capacity.
+     */
+    private int checkpointInterval = 500;
+
+    /**
+     * Size of the memory-mapped window in bytes. A single message must fit.
+     */
+    private int mapWindowBytes = 256 * 1024 * 1024;
+}
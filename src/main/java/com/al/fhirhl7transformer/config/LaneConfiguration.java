@@ -0,0 +1,116 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Configuration for HL7 ingress lanes: separate queues on the HL7 exchange,
+ * selected by MSH-9 message type and tenant tier, each consumed by its own
+ * listener container.
+ *
+ * <p>
+ * Messages that match no lane, retries and DLQ replays use the default lane,
+ * which is the existing {@code app.rabbitmq.queue}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rabbitmq.lanes")
+public class LaneConfiguration {
+
+    public static final String DEFAULT_LANE = "default";
+
+    /**
+     * Route async HL7 messages into lanes and consume each lane separately.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Tier of tenants not listed in {@link #tenantTiers}.
+     */
+    private String defaultTier = "standard";
+
+    /**
+     * Tenant ID to tier, e.g. {@code backfill-tenant=bulk}.
+     */
+    private Map<String, String> tenantTiers = new HashMap<>();
+
+    /**
+     * Listener settings for the default lane.
+     */
+    private Lane defaultLane = new Lane();
+
+    /**
+     * Lanes in match order; the first matching lane wins.
+     */
+    private List<Lane> lanes = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Lane {
+
+        private String name;
+
+        /**
+         * MSH-9 types ({@code ADT}) or type and trigger ({@code ORU^R01}).
+         * Empty = any type.
+         */
+        private List<String> messageTypes = new ArrayList<>();
+
+        /**
+         * Tenant tiers. Empty = any tier.
+         */
+        private List<String> tiers = new ArrayList<>();
+
+        /**
+         * Listener concurrency, e.g. {@code 4} or {@code 2-8}. Unset = the
+         * {@code spring.rabbitmq.listener.simple} settings.
+         */
+        private String concurrency;
+
+        /**
+         * Unacked deliveries per consumer. Unset =
+         * {@code spring.rabbitmq.listener.simple.prefetch}.
+         */
+        private Integer prefetch;
+
+        /**
+         * Whether a message of this type ({@code TYPE^TRIGGER}, may be
+         * {@code null}) from a tenant of this tier belongs in the lane.
+         */
+        public boolean matches(String messageType, String tier) {
+            if (!tiers.isEmpty() && tiers.stream().noneMatch(t -> t.equalsIgnoreCase(tier))) {
+                return false;
+            }
+            if (messageTypes.isEmpty()) {
+                return true;
+            }
+            if (messageType == null) {
+                return false;
+            }
+            String type = messageType.toUpperCase(Locale.ROOT);
+            return messageTypes.stream()
+                    .map(t -> t.trim().toUpperCase(Locale.ROOT))
+                    .anyMatch(t -> type.equals(t) || type.startsWith(t + "^"));
+        }
+    }
+
+    public String tierOf(String tenantId) {
+        return tenantId != null ? tenantTiers.getOrDefault(tenantId, defaultTier) : defaultTier;
+    }
+
+    public static String queueName(Lane lane) {
+        return "hl7-messages-" + lane.getName() + "-queue";
+    }
+
+    public static String routingKey(Lane lane) {
+        return "hl7.lane." + lane.getName();
+    }
+}
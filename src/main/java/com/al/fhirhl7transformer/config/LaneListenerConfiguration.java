@@ -0,0 +1,133 @@
+package com.al.fhirhl7transformer.config;
+
+import com.al.fhirhl7transformer.config.LaneConfiguration.Lane;
+import com.al.fhirhl7transformer.listener.Hl7MessageListener;
+import com.al.fhirhl7transformer.listener.LaneMetricsAdvice;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.aop.Advice;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.amqp.autoconfigure.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registers one listener container per HL7 ingress lane when
+ * {@code app.rabbitmq.lanes.enabled=true}, including the default lane on
+ * {@code app.rabbitmq.queue} (whose annotated listeners then stay stopped),
+ * and one per partition queue when
+ * {@code app.rabbitmq.partitions.enabled=true}.
+ *
+ * <p>
+ * Each container calls {@link Hl7MessageListener} through a typed message
+ * listener - {@code receiveBatch} when batch listeners are enabled, otherwise
+ * {@code onDelivery}, which reads the headers the annotated
+ * {@code receiveMessage} gets injected - with the lane's own concurrency and
+ * prefetch, and is timed by a {@link LaneMetricsAdvice}. Partition containers
+ * always use a single consumer and {@code onDelivery}, since converting a
+ * batch in parallel would break the per-patient order.
+ */
+@Configuration
+@Profile("!api")
+public class LaneListenerConfiguration implements RabbitListenerConfigurer {
+
+    private final LaneConfiguration laneConfig;
+    private final PartitionConfiguration partitionConfig;
+    private final ListenerBatchConfiguration batchConfig;
+    private final Hl7MessageListener hl7MessageListener;
+    private final SimpleRabbitListenerContainerFactoryConfigurer configurer;
+    private final ConnectionFactory connectionFactory;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.rabbitmq.queue}")
+    private String defaultQueue;
+
+    public LaneListenerConfiguration(LaneConfiguration laneConfig, PartitionConfiguration partitionConfig,
+            ListenerBatchConfiguration batchConfig, Hl7MessageListener hl7MessageListener,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MeterRegistry meterRegistry) {
+        this.laneConfig = laneConfig;
+        this.partitionConfig = partitionConfig;
+        this.batchConfig = batchConfig;
+        this.hl7MessageListener = hl7MessageListener;
+        this.configurer = configurer;
+        this.connectionFactory = connectionFactory;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        if (!laneConfig.isEnabled() && !partitionConfig.isEnabled()) {
+            return;
+        }
+        if (laneConfig.isEnabled()) {
+            boolean batch = batchConfig.isEnabled();
+            registerLane(registrar, LaneConfiguration.DEFAULT_LANE, defaultQueue,
+                    laneConfig.getDefaultLane(), batch);
+            for (Lane lane : laneConfig.getLanes()) {
+                registerLane(registrar, lane.getName(), LaneConfiguration.queueName(lane),
+                        lane, batch);
+            }
+        }
+        if (partitionConfig.isEnabled()) {
+            Lane partitionLane = new Lane();
+            partitionLane.setConcurrency("1");
+            partitionLane.setPrefetch(partitionConfig.getPrefetch());
+            for (int partition = 0; partition < partitionConfig.consumedCount(); partition++) {
+                registerLane(registrar, PartitionConfiguration.laneName(partition),
+                        PartitionConfiguration.queueName(partition), partitionLane, false);
+            }
+        }
+    }
+
+    private void registerLane(RabbitListenerEndpointRegistrar registrar, String name, String queue, Lane lane,
+            boolean batch) {
+        SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+        endpoint.setId("hl7-lane-" + name);
+        endpoint.setQueueNames(queue);
+        endpoint.setMessageListener(batch ? batchListener() : hl7MessageListener::onDelivery);
+        endpoint.setBatchListener(batch);
+        if (lane.getConcurrency() != null) {
+            endpoint.setConcurrency(lane.getConcurrency());
+        }
+
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        if (batch) {
+            RabbitMQConfig.configureBatching(factory, batchConfig);
+        }
+        if (lane.getPrefetch() != null) {
+            factory.setPrefetchCount(lane.getPrefetch());
+        }
+        List<Advice> adviceChain = new ArrayList<>();
+        if (factory.getAdviceChain() != null) {
+            adviceChain.addAll(Arrays.asList(factory.getAdviceChain()));
+        }
+        adviceChain.add(new LaneMetricsAdvice(name, meterRegistry));
+        factory.setAdviceChain(adviceChain.toArray(new Advice[0]));
+
+        registrar.registerEndpoint(endpoint, factory);
+    }
+
+    private MessageListener batchListener() {
+        return (ChannelAwareBatchMessageListener) (deliveries, channel) -> {
+            try {
+                hl7MessageListener.receiveBatch(deliveries, channel);
+            } catch (IOException e) {
+                throw new AmqpIOException(e);
+            }
+        };
+    }
+}
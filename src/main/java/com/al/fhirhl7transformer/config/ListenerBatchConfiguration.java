@@ -0,0 +1,49 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for batch consumption of the HL7 and FHIR input queues.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rabbitmq.batch")
+public class ListenerBatchConfiguration {
+
+    /**
+     * Consume the input queues in batches instead of one delivery at a time.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of deliveries handed to the listener at once.
+     */
+    private int size = 50;
+
+    /**
+     * How long a consumer waits for more deliveries before handing over a
+     * partial batch.
+     */
+    private long receiveTimeoutMs = 100;
+
+    /**
+     * Threads converting the messages of a batch in parallel. 0 = number of
+     * available processors.
+     */
+    private int parallelism = 0;
+
+    /**
+     * How long to wait for the broker to confirm a batch of published
+     * messages before the deliveries are requeued.
+     */
+    private long confirmTimeoutMs = 10000;
+
+    /**
+     * Resolved number of conversion threads.
+     */
+    public int effectiveParallelism() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -12,6 +12,7 @@ import io.swagger.v3.oas.models.tags.Tag;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 import java.util.List;
 
@@ -21,6 +22,7 @@ import java.util.List;
  * Access OpenAPI JSON at: /v3/api-docs
  */
 @Configuration
+@Profile("!worker")
 public class OpenApiConfig {
 
         @Value("${spring.application.name:HL7FHIRTransformer}")
@@ -58,6 +58,14 @@ public class ParsingConfiguration {
      */
     private boolean includeSegmentTextInErrors = false;
 
+    /**
+     * Whether to parse every supported version into the v2.5 structure
+     * classes instead of each message's own version. Only one structure
+     * library is then loaded and converters see the same group layout for
+     * all versions. MSH-12 is preserved as received.
+     */
+    private boolean canonicalModelEnabled = false;
+
     public enum StrictnessLevel {
         /**
          * Fail immediately on any error
@@ -0,0 +1,104 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for per-patient partitioning of async HL7 messages.
+ *
+ * <p>
+ * Messages are spread over {@link #count} partition queues by a consistent
+ * hash of tenant and patient identifier (PID-3). Each partition queue has a
+ * single active consumer, so messages for one patient are converted in the
+ * order they were accepted while different patients are converted in
+ * parallel. Transient failures are retried in place on the partition.
+ * Messages without a PID-3 and DLQ replays use {@code app.rabbitmq.queue} as
+ * before.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rabbitmq.partitions")
+public class PartitionConfiguration {
+
+    private static final String QUEUE_PREFIX = "hl7-messages-partition-";
+    private static final String QUEUE_SUFFIX = "-queue";
+
+    /**
+     * Route async HL7 messages with a patient identifier into partition
+     * queues. Takes precedence over ingress lanes.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of partition queues.
+     */
+    private int count = 8;
+
+    /**
+     * Partition count before a resize that is still in progress; 0 when no
+     * resize is in progress. While set, workers consume the partitions of
+     * both counts and the API keeps routing a patient to its old partition
+     * until that partition has drained.
+     */
+    private int previousCount = 0;
+
+    /**
+     * Prefetch of each partition consumer.
+     */
+    private int prefetch = 50;
+
+    /**
+     * RabbitMQ management API, used during a resize to see whether an old
+     * partition still has ready or unacknowledged messages. Credentials and
+     * virtual host are those of {@code spring.rabbitmq}.
+     */
+    private String managementUrl = "http://localhost:15672";
+
+    /**
+     * Statistics interval of the management API
+     * ({@code collect_statistics_interval}). After routing a message to an
+     * old partition, the API keeps the partition's moved patients there for
+     * at least this long, since the statistics may not show the message yet.
+     */
+    private long statsIntervalMs = 5000;
+
+    /**
+     * Delay before the first in-place retry of a transiently failed partition
+     * delivery; tripled for each further attempt. Partition deliveries are
+     * retried on their own consumer instead of through the retry queues, so
+     * the patient's later messages wait for them.
+     */
+    private long retryDelayMs = 5000;
+
+    /**
+     * Number of partition queues that are declared and consumed.
+     */
+    public int consumedCount() {
+        return Math.max(count, previousCount);
+    }
+
+    public boolean isResizing() {
+        return previousCount > 0 && previousCount != count;
+    }
+
+    public static String queueName(int partition) {
+        return QUEUE_PREFIX + partition + QUEUE_SUFFIX;
+    }
+
+    public static boolean isPartitionQueue(String queue) {
+        return queue != null && queue.startsWith(QUEUE_PREFIX) && queue.endsWith(QUEUE_SUFFIX);
+    }
+
+    public static String routingKey(int partition) {
+        return "hl7.partition." + partition;
+    }
+
+    /**
+     * Name under which a partition appears in lane metrics and the
+     * {@code x-lane} header.
+     */
+    public static String laneName(int partition) {
+        return "partition-" + partition;
+    }
+}
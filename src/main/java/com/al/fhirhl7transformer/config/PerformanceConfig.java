@@ -2,10 +2,19 @@ package com.al.fhirhl7transformer.config;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.Version;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Type;
+import ca.uhn.hl7v2.parser.CanonicalModelClassFactory;
 import ca.uhn.hl7v2.parser.CustomModelClassFactory;
+import ca.uhn.hl7v2.parser.DefaultModelClassFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -17,6 +26,14 @@ import java.util.Map;
 @Configuration
 public class PerformanceConfig {
 
+    /**
+     * Version whose structure classes are used when the canonical model is
+     * enabled. Custom segments (e.g., ZPI) are only provided for this version.
+     */
+    public static final String CANONICAL_HL7_VERSION = "2.5";
+
+    private static final String CUSTOM_MODEL_PACKAGE = "com.al.fhirhl7transformer.model.hl7.v25";
+
     /**
      * Singleton FHIR R4 context - thread-safe and reusable
      * Creating FhirContext is expensive (~1-2 seconds), so we create it once
@@ -30,20 +47,38 @@ public class PerformanceConfig {
         return ctx;
     }
 
+    /**
+     * Shared Jackson mapper. Defined here rather than in WebConfig because
+     * worker nodes (no web layer) also need it for webhook payloads.
+     */
+    @Bean
+    public com.fasterxml.jackson.databind.ObjectMapper objectMapper() {
+        return new com.fasterxml.jackson.databind.ObjectMapper();
+    }
+
     /**
      * Singleton HL7 v2 context - thread-safe and reusable
      * Creating HapiContext is expensive, so we create it once
      */
     @Bean
-    public HapiContext hapiContext() {
+    public HapiContext hapiContext(ParsingConfiguration parsingConfiguration) {
         DefaultHapiContext ctx = new DefaultHapiContext();
 
         // Configure custom model classes (e.g., ZPI segment)
         Map<String, String[]> customPackages = new HashMap<>();
-        customPackages.put("2.5", new String[] {
-                "com.al.fhirhl7transformer.model.hl7.v25" });
+        customPackages.put(CANONICAL_HL7_VERSION, new String[] { CUSTOM_MODEL_PACKAGE });
 
-        CustomModelClassFactory cmcf = new CustomModelClassFactory(customPackages);
+        CustomModelClassFactory cmcf;
+        if (parsingConfiguration.isCanonicalModelEnabled()) {
+            // Parse supported versions into the v2.5 classes. Custom classes are
+            // looked up by the message's own version, so register them for all of them.
+            for (String version : parsingConfiguration.getSupportedVersions()) {
+                customPackages.put(version, new String[] { CUSTOM_MODEL_PACKAGE });
+            }
+            cmcf = new CustomModelClassFactory(new CanonicalModelFactory(), customPackages);
+        } else {
+            cmcf = new CustomModelClassFactory(customPackages);
+        }
         ctx.setModelClassFactory(cmcf);
 
         // Disable validation for better performance with real-world messages
@@ -51,11 +86,65 @@ public class PerformanceConfig {
         return ctx;
     }
 
+    /**
+     * Whether messages of this version are parsed into the canonical classes:
+     * {@value #CANONICAL_HL7_VERSION} and older, and newer versions whose
+     * structure library is not on the classpath (they would otherwise parse
+     * as generic messages). A newer version with its own structures keeps
+     * them, so none of its fields are dropped.
+     */
+    static boolean parsesAsCanonical(String version) {
+        Version parsed = Version.versionOf(version);
+        return parsed == null || !parsed.isGreaterThan(Version.versionOf(CANONICAL_HL7_VERSION))
+                || !parsed.available();
+    }
+
+    /**
+     * {@link CanonicalModelClassFactory} for the versions selected by
+     * {@link #parsesAsCanonical}; other versions use their own structures.
+     */
+    private static final class CanonicalModelFactory extends CanonicalModelClassFactory {
+
+        private final DefaultModelClassFactory ownVersion = new DefaultModelClassFactory();
+
+        private CanonicalModelFactory() {
+            super(CANONICAL_HL7_VERSION);
+        }
+
+        @Override
+        public Class<? extends Message> getMessageClass(String name, String version, boolean isExplicit)
+                throws HL7Exception {
+            return parsesAsCanonical(version) ? super.getMessageClass(name, version, isExplicit)
+                    : ownVersion.getMessageClass(name, version, isExplicit);
+        }
+
+        @Override
+        public Class<? extends Group> getGroupClass(String name, String version) throws HL7Exception {
+            return parsesAsCanonical(version) ? super.getGroupClass(name, version)
+                    : ownVersion.getGroupClass(name, version);
+        }
+
+        @Override
+        public Class<? extends Segment> getSegmentClass(String name, String version) throws HL7Exception {
+            return parsesAsCanonical(version) ? super.getSegmentClass(name, version)
+                    : ownVersion.getSegmentClass(name, version);
+        }
+
+        @Override
+        public Class<? extends Type> getTypeClass(String name, String version) throws HL7Exception {
+            return parsesAsCanonical(version) ? super.getTypeClass(name, version)
+                    : ownVersion.getTypeClass(name, version);
+        }
+    }
+
     /**
      * Singleton ValidationSupportChain - expensive to create, so we create it once.
      * This chain provides terminology validation support for FHIR validation.
+     * Lazy so that it is built by FhirValidationService's background
+     * initializer rather than during context startup.
      */
     @Bean
+    @Lazy
     public org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain validationSupportChain(
             FhirContext fhirContext) {
         return new org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain(
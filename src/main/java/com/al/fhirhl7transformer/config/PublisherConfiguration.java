@@ -0,0 +1,31 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for confirmed publishing from the async conversion endpoints.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rabbitmq.publisher")
+public class PublisherConfiguration {
+
+    /**
+     * Maximum number of published messages awaiting a broker confirm.
+     */
+    private int maxUnconfirmed = 1000;
+
+    /**
+     * How long a request waits for a free unconfirmed slot before it is
+     * rejected.
+     */
+    private long waitTimeoutMs = 5000;
+
+    /**
+     * How long to wait for the broker to confirm a message before the publish
+     * is treated as failed.
+     */
+    private long confirmTimeoutMs = 10000;
+}
@@ -1,15 +1,29 @@
 package com.al.fhirhl7transformer.config;
 
+import com.al.fhirhl7transformer.util.DecompressingMessageConverter;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Exchange;
 import org.springframework.amqp.core.ExchangeBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.amqp.autoconfigure.RabbitTemplateCustomizer;
+import org.springframework.boot.amqp.autoconfigure.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -34,6 +48,53 @@ public class RabbitMQConfig {
     @Value("${app.rabbitmq.routingkey}")
     private String routingKey;
 
+    /**
+     * Converter for the template and all listener containers; inflates
+     * payloads compressed by {@link #envelopeCompression}.
+     */
+    @Bean
+    MessageConverter messageConverter() {
+        return new DecompressingMessageConverter();
+    }
+
+    /**
+     * Deflates large payloads on publish. The output queues are left
+     * uncompressed unless {@code app.rabbitmq.envelope.compress-outputs} is
+     * set, since they are read by external consumers.
+     */
+    @Bean
+    RabbitTemplateCustomizer envelopeCompression(EnvelopeConfiguration envelopeConfig) {
+        Set<String> uncompressedQueues = envelopeConfig.isCompressOutputs()
+                ? Set.of()
+                : Set.of(outputQueueName, v2OutputQueueName);
+        return template -> template.addBeforePublishPostProcessors(
+                MessageEnvelope.compressor(envelopeConfig.getCompressionThresholdBytes(), uncompressedQueues));
+    }
+
+    /**
+     * Container factory for the batch listeners: the usual listener settings
+     * plus consumer-side batching and manual acknowledgement, so deliveries
+     * are only acked once their outputs are confirmed and audited.
+     */
+    @Bean
+    SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            ListenerBatchConfiguration batchConfig) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        configureBatching(factory, batchConfig);
+        return factory;
+    }
+
+    static void configureBatching(SimpleRabbitListenerContainerFactory factory,
+            ListenerBatchConfiguration batchConfig) {
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchConfig.getSize());
+        factory.setBatchReceiveTimeout(batchConfig.getReceiveTimeoutMs());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+    }
+
     @Bean
     Queue queue() {
         return QueueBuilder.durable(queueName)
@@ -133,6 +194,68 @@ public class RabbitMQConfig {
                 .noargs();
     }
 
+    /**
+     * One queue per configured ingress lane, bound to the HL7 exchange with
+     * {@code hl7.lane.<name>} and dead-lettered like the main queue.
+     */
+    @Bean
+    Declarables laneQueues(LaneConfiguration laneConfig) {
+        List<Declarable> declarables = new ArrayList<>();
+        if (laneConfig.isEnabled()) {
+            for (LaneConfiguration.Lane lane : laneConfig.getLanes()) {
+                Queue laneQueue = QueueBuilder.durable(LaneConfiguration.queueName(lane))
+                        .withArgument("x-dead-letter-exchange", dlxName)
+                        .withArgument("x-dead-letter-routing-key", dlRoutingKey)
+                        .build();
+                declarables.add(laneQueue);
+                declarables.add(BindingBuilder.bind(laneQueue)
+                        .to(exchange())
+                        .with(LaneConfiguration.routingKey(lane))
+                        .noargs());
+            }
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Partition queues on the HL7 exchange. Each has a single active consumer
+     * across all workers, which keeps the per-patient order.
+     */
+    @Bean
+    Declarables partitionQueues(PartitionConfiguration partitionConfig) {
+        List<Declarable> declarables = new ArrayList<>();
+        if (partitionConfig.isEnabled()) {
+            for (int partition = 0; partition < partitionConfig.consumedCount(); partition++) {
+                Queue partitionQueue = QueueBuilder.durable(PartitionConfiguration.queueName(partition))
+                        .singleActiveConsumer()
+                        .withArgument("x-dead-letter-exchange", dlxName)
+                        .withArgument("x-dead-letter-routing-key", dlRoutingKey)
+                        .build();
+                declarables.add(partitionQueue);
+                declarables.add(BindingBuilder.bind(partitionQueue)
+                        .to(exchange())
+                        .with(PartitionConfiguration.routingKey(partition))
+                        .noargs());
+            }
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Request queues for sync conversions dispatched to the workers. Requests
+     * are short-lived, so the queues are not durable and have no dead-letter
+     * exchange; replies use direct reply-to.
+     */
+    @Bean
+    Declarables syncRequestQueues(SyncDispatchConfiguration syncConfig) {
+        List<Declarable> declarables = new ArrayList<>();
+        if (syncConfig.isEnabled()) {
+            declarables.add(QueueBuilder.nonDurable(syncConfig.getHl7Queue()).build());
+            declarables.add(QueueBuilder.nonDurable(syncConfig.getFhirQueue()).build());
+        }
+        return new Declarables(declarables);
+    }
+
     // --- FHIR to HL7 Flow ---
 
     @Value("${app.rabbitmq.fhir.queue}")
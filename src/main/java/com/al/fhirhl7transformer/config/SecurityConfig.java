@@ -3,6 +3,7 @@ package com.al.fhirhl7transformer.config;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -14,6 +15,7 @@ import lombok.extern.slf4j.Slf4j;
 @Configuration
 @EnableWebSecurity
 @Slf4j
+@Profile("!worker")
 public class SecurityConfig {
 
     @Autowired
@@ -35,7 +37,9 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/api/tenants", "/api/tenants/**").hasRole("ADMIN")
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .requestMatchers("/api/convert/**").hasAnyRole("ADMIN", "TENANT")
+                        .requestMatchers("/api/bulk/**").hasAnyRole("ADMIN", "TENANT")
                         .anyRequest().authenticated())
                 .httpBasic(withDefaults());
         return http.build();
@@ -0,0 +1,53 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for running the sync conversion endpoints on the workers.
+ *
+ * <p>
+ * When enabled, {@code /v2-to-fhir-sync} and {@code /fhir-to-v2-sync} send
+ * the message to a request queue and wait for the worker's answer on direct
+ * reply-to, instead of converting on the API node. If no worker consumes the
+ * request queue, the API node converts locally as before.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rabbitmq.sync-dispatch")
+public class SyncDispatchConfiguration {
+
+    /**
+     * Dispatch sync conversions to the workers. Must be set on both API and
+     * worker nodes.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Request queue for HL7 v2 to FHIR conversions.
+     */
+    private String hl7Queue = "hl7-sync-requests-queue";
+
+    /**
+     * Request queue for FHIR to HL7 v2 conversions.
+     */
+    private String fhirQueue = "fhir-sync-requests-queue";
+
+    /**
+     * How long the API waits for a worker's reply. Requests that are not
+     * picked up within this time expire in the queue.
+     */
+    private long timeoutMs = 10000;
+
+    /**
+     * Consumers per request queue on each worker.
+     */
+    private String concurrency = "2-8";
+
+    /**
+     * How long the API caches the number of workers consuming a request
+     * queue.
+     */
+    private long workerCheckMs = 2000;
+}
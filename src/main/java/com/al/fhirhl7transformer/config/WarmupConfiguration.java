@@ -0,0 +1,50 @@
+package com.al.fhirhl7transformer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the startup JIT warm-up phase.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.warmup")
+public class WarmupConfiguration {
+
+    /**
+     * Whether to run the warm-up corpus at startup.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Classpath pattern of the HL7 messages used as warm-up corpus.
+     */
+    private String corpus = "classpath:warmup/*.hl7";
+
+    /**
+     * Minimum number of passes over the corpus before latency is checked.
+     */
+    private int minRounds = 5;
+
+    /**
+     * Maximum number of passes over the corpus.
+     */
+    private int maxRounds = 200;
+
+    /**
+     * Hard limit for the whole warm-up phase in milliseconds.
+     */
+    private long maxDurationMs = 60000;
+
+    /**
+     * Relative change in mean per-message latency between two consecutive
+     * rounds below which a round counts as stable (0.1 = 10%).
+     */
+    private double stabilityThreshold = 0.1;
+
+    /**
+     * Number of consecutive stable rounds required to finish warm-up.
+     */
+    private int stableRounds = 3;
+}
@@ -0,0 +1,142 @@
+package com.al.fhirhl7transformer.controller;
+
+import com.al.fhirhl7transformer.dto.BulkJobResponse;
+import com.al.fhirhl7transformer.model.BulkJob;
+import com.al.fhirhl7transformer.service.BulkJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.Optional;
+
+/**
+ * Asynchronous bulk conversion jobs: submit, poll status, download results.
+ */
+@RestController
+@RequestMapping(BulkJobController.BASE_PATH)
+@Tag(name = "Bulk Jobs", description = "Asynchronous bulk HL7 v2 to FHIR conversion")
+@Slf4j
+@Profile("!worker")
+public class BulkJobController {
+
+    static final String BASE_PATH = "/api/bulk/jobs";
+
+    // Tomcat's sendfile request attributes, see its DefaultServlet
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final BulkJobService bulkJobService;
+
+    public BulkJobController(BulkJobService bulkJobService) {
+        this.bulkJobService = bulkJobService;
+    }
+
+    /**
+     * Submit a bulk HL7 to FHIR job.
+     *
+     * @param request   NDJSON body, one JSON string holding an HL7 message per
+     *                  line
+     * @param principal Authenticated user
+     * @return 202 with the job status and its location
+     */
+    @Operation(summary = "Submit bulk HL7 v2 to FHIR job", description = "Stores the NDJSON body (one JSON string per line) in chunks on disk and converts it in the background. Poll the returned location for progress and result links.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Job accepted"),
+            @ApiResponse(responseCode = "401", description = "Authentication required")
+    })
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkJobResponse> submitJob(HttpServletRequest request, Principal principal)
+            throws IOException {
+        BulkJob job = bulkJobService.submit(getTenantId(principal), request.getInputStream());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header("Content-Location", BASE_PATH + "/" + job.getJobId())
+                .body(BulkJobResponse.from(job, BASE_PATH));
+    }
+
+    /**
+     * Poll job status. Result chunks are listed under {@code output} as soon
+     * as each one is finished.
+     */
+    @Operation(summary = "Get bulk job status")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Job status"),
+            @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    @GetMapping(value = "/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkJobResponse> getJob(@PathVariable String jobId, Principal principal) {
+        return bulkJobService.getJob(jobId, getTenantId(principal))
+                .map(job -> ResponseEntity.ok(BulkJobResponse.from(job, BASE_PATH)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Download one result chunk as NDJSON.
+     *
+     * <p>
+     * On Tomcat the file is handed to the connector's sendfile support, so
+     * the bytes go from the page cache to the socket without passing through
+     * the JVM heap. Elsewhere the file channel is transferred directly to the
+     * response.
+     */
+    @Operation(summary = "Download bulk job result chunk (NDJSON)")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Result chunk"),
+            @ApiResponse(responseCode = "400", description = "Chunk not finished yet"),
+            @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    @GetMapping(value = "/{jobId}/output/{chunk}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void downloadChunk(@PathVariable String jobId, @PathVariable int chunk, HttpServletRequest request,
+            HttpServletResponse response, Principal principal) throws IOException {
+        Optional<BulkJob> job = bulkJobService.getJob(jobId, getTenantId(principal));
+        if (job.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        Path file = bulkJobService.getOutputChunk(job.get(), chunk);
+        long length = Files.size(file);
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setContentLengthLong(length);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < length) {
+                position += channel.transferTo(position, length - position, target);
+            }
+        }
+    }
+
+    private String getTenantId(Principal principal) {
+        return principal != null ? principal.getName() : "UNKNOWN";
+    }
+}
@@ -5,8 +5,10 @@ import com.al.fhirhl7transformer.dto.EnrichedMessage;
 import com.al.fhirhl7transformer.model.enums.MessageType;
 import com.al.fhirhl7transformer.model.enums.TransactionStatus;
 import com.al.fhirhl7transformer.service.AuditService;
+import com.al.fhirhl7transformer.service.ConfirmedPublisher;
 import com.al.fhirhl7transformer.service.IdempotencyService;
 import com.al.fhirhl7transformer.model.TransactionRecord;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.bind.annotation.RequestHeader;
 import ca.uhn.fhir.parser.DataFormatException;
@@ -18,20 +20,31 @@ import lombok.extern.slf4j.Slf4j;
 import com.al.fhirhl7transformer.service.FhirToHl7Service;
 import com.al.fhirhl7transformer.service.Hl7ToFhirService;
 import com.al.fhirhl7transformer.service.MessageEnrichmentService;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
@@ -39,6 +52,15 @@ import com.al.fhirhl7transformer.dto.BatchConversionResponse;
 import com.al.fhirhl7transformer.dto.BatchHl7Request;
 import com.al.fhirhl7transformer.service.BatchConversionService;
 import com.al.fhirhl7transformer.service.AckMessageService;
+import com.al.fhirhl7transformer.service.ConversionScheduler;
+import com.al.fhirhl7transformer.service.ConversionScheduler.Lane;
+import com.al.fhirhl7transformer.service.LaneRouter;
+import com.al.fhirhl7transformer.service.PartitionRouter;
+import com.al.fhirhl7transformer.service.SyncDispatcher;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import com.al.fhirhl7transformer.config.LaneConfiguration;
+import com.al.fhirhl7transformer.config.PartitionConfiguration;
+import com.al.fhirhl7transformer.listener.LaneMetricsAdvice;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -52,17 +74,22 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 @RequestMapping("/api/convert")
 @Slf4j
 @Tag(name = "Conversion", description = "HL7 v2.x ↔ FHIR R4 bidirectional conversion endpoints")
+@Profile("!worker")
 public class ConverterController {
 
     private final Hl7ToFhirService hl7ToFhirService;
     private final FhirToHl7Service fhirToHl7Service;
     private final BatchConversionService batchConversionService;
-    private final RabbitTemplate rabbitTemplate;
+    private final ConfirmedPublisher confirmedPublisher;
     private final MessageEnrichmentService messageEnrichmentService;
     private final AuditService auditService;
     private final IdempotencyService idempotencyService;
     private final ObjectMapper objectMapper;
     private final AckMessageService ackMessageService;
+    private final ConversionScheduler conversionScheduler;
+    private final LaneRouter laneRouter;
+    private final PartitionRouter partitionRouter;
+    private final SyncDispatcher syncDispatcher;
 
     @Value("${app.rabbitmq.exchange}")
     private String exchange;
@@ -76,35 +103,47 @@ public class ConverterController {
     @Value("${app.rabbitmq.fhir.routingkey}")
     private String fhirRoutingKey;
 
+    @Value("${app.batch.timeout-ms:0}")
+    private long batchTimeoutMs;
+
     @Autowired
     public ConverterController(Hl7ToFhirService hl7ToFhirService,
             FhirToHl7Service fhirToHl7Service,
             BatchConversionService batchConversionService,
-            RabbitTemplate rabbitTemplate,
+            ConfirmedPublisher confirmedPublisher,
             MessageEnrichmentService messageEnrichmentService,
             AuditService auditService,
             IdempotencyService idempotencyService,
             ObjectMapper objectMapper,
-            AckMessageService ackMessageService) {
+            AckMessageService ackMessageService,
+            ConversionScheduler conversionScheduler,
+            LaneRouter laneRouter,
+            PartitionRouter partitionRouter,
+            SyncDispatcher syncDispatcher) {
         this.hl7ToFhirService = hl7ToFhirService;
         this.fhirToHl7Service = fhirToHl7Service;
         this.batchConversionService = batchConversionService;
-        this.rabbitTemplate = rabbitTemplate;
+        this.confirmedPublisher = confirmedPublisher;
         this.messageEnrichmentService = messageEnrichmentService;
         this.auditService = auditService;
         this.idempotencyService = idempotencyService;
         this.objectMapper = objectMapper;
         this.ackMessageService = ackMessageService;
+        this.conversionScheduler = conversionScheduler;
+        this.laneRouter = laneRouter;
+        this.partitionRouter = partitionRouter;
+        this.syncDispatcher = syncDispatcher;
     }
 
-    @Operation(summary = "Convert HL7 v2 to FHIR (Async)", description = "Queues an HL7 v2.x message for asynchronous conversion to FHIR R4. Returns transaction ID for status tracking.")
+    @Operation(summary = "Convert HL7 v2 to FHIR (Async)", description = "Queues an HL7 v2.x message for asynchronous conversion to FHIR R4. Responds once the broker has confirmed the message. Returns transaction ID for status tracking.")
     @ApiResponses({
             @ApiResponse(responseCode = "202", description = "Message accepted for processing"),
             @ApiResponse(responseCode = "400", description = "Invalid HL7 message format"),
-            @ApiResponse(responseCode = "401", description = "Authentication required")
+            @ApiResponse(responseCode = "401", description = "Authentication required"),
+            @ApiResponse(responseCode = "503", description = "Broker did not confirm the message or too many messages are awaiting confirms")
     })
     @PostMapping(value = "/v2-to-fhir", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> convertToFhir(
+    public CompletableFuture<ResponseEntity<String>> convertToFhir(
             @Parameter(description = "HL7 v2.x message in pipe-delimited format") @RequestBody String hl7Message,
             @Parameter(description = "Unique key for idempotent requests") @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             HttpServletResponse response,
@@ -122,7 +161,8 @@ public class ConverterController {
                 duplicateResponse.put("status", "Already processed");
                 duplicateResponse.put("transactionId", record.getTransactionId());
                 duplicateResponse.put("originalStatus", record.getStatus());
-                return ResponseEntity.ok(objectMapper.writeValueAsString(duplicateResponse));
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.ok(objectMapper.writeValueAsString(duplicateResponse)));
             }
         }
 
@@ -135,19 +175,39 @@ public class ConverterController {
         auditService.logTransaction(tenantId, transactionId,
                 MessageType.V2_TO_FHIR_ASYNC, TransactionStatus.ACCEPTED, idempotencyKey);
 
-        rabbitTemplate.convertAndSend(exchange, routingKey, processedMessage, message -> {
-            message.getMessageProperties().setHeader("tenantId", tenantId);
-            return message;
-        });
-
-        return createAcceptedResponse(transactionId);
+        // Patient partitions take precedence over lanes so one patient's messages share a queue
+        String hl7MessageType = LaneRouter.messageType(processedMessage);
+        OptionalInt partition = partitionRouter.select(processedMessage, tenantId);
+        LaneConfiguration.Lane ingressLane = partition.isEmpty()
+                ? laneRouter.selectByType(hl7MessageType, tenantId)
+                : null;
+        String laneName;
+        String ingressRoutingKey;
+        if (partition.isPresent()) {
+            laneName = PartitionConfiguration.laneName(partition.getAsInt());
+            ingressRoutingKey = PartitionConfiguration.routingKey(partition.getAsInt());
+        } else if (ingressLane != null) {
+            laneName = ingressLane.getName();
+            ingressRoutingKey = LaneConfiguration.routingKey(ingressLane);
+        } else {
+            laneName = LaneConfiguration.DEFAULT_LANE;
+            ingressRoutingKey = routingKey;
+        }
+        MessagePostProcessor envelope = MessageEnvelope.headers(tenantId, transactionId, hl7MessageType);
+        CompletableFuture<Void> confirmed = confirmedPublisher.publish(exchange, ingressRoutingKey, processedMessage,
+                message -> {
+                    message.getMessageProperties().setHeader(LaneMetricsAdvice.LANE_HEADER, laneName);
+                    return envelope.postProcessMessage(message);
+                });
+        return acceptedWhenConfirmed(confirmed, transactionId);
     }
 
-    @Operation(summary = "Convert HL7 v2 to FHIR (Sync)", description = "Synchronously converts an HL7 v2.x message to FHIR R4 Bundle. Returns the converted FHIR JSON directly.")
+    @Operation(summary = "Convert HL7 v2 to FHIR (Sync)", description = "Synchronously converts an HL7 v2.x message to FHIR R4 Bundle. Returns the converted FHIR JSON directly. With sync dispatch enabled, the conversion runs on a worker node.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful conversion"),
             @ApiResponse(responseCode = "400", description = "Invalid HL7 message or validation error"),
-            @ApiResponse(responseCode = "401", description = "Authentication required")
+            @ApiResponse(responseCode = "401", description = "Authentication required"),
+            @ApiResponse(responseCode = "503", description = "Conversion queue full or no worker reply within the dispatch timeout")
     })
     @PostMapping(value = "/v2-to-fhir-sync", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> convertToFhirSync(
@@ -161,13 +221,17 @@ public class ConverterController {
             response.setHeader("transformerId", transactionId);
             String processedMessage = enriched.getContent();
 
-            String fhirJson = hl7ToFhirService.convertHl7ToFhir(processedMessage);
+            String tenantId = getTenantId(principal);
+
+            String fhirJson = syncDispatcher.convert(SyncDispatcher.Flow.V2_TO_FHIR, processedMessage, tenantId,
+                    transactionId,
+                    () -> conversionScheduler.call(Lane.SYNC, () -> hl7ToFhirService.convertHl7ToFhir(processedMessage)));
 
             // Generate ACK message for successful conversion
             String ackMessage = ackMessageService.generateAckAccept(processedMessage);
             response.setHeader("X-HL7-ACK", java.util.Base64.getEncoder().encodeToString(ackMessage.getBytes()));
 
-            auditService.logTransaction(getTenantId(principal), transactionId,
+            auditService.logTransaction(tenantId, transactionId,
                     MessageType.V2_TO_FHIR_SYNC, TransactionStatus.COMPLETED);
 
             return ResponseEntity.ok(fhirJson);
@@ -192,14 +256,15 @@ public class ConverterController {
         }
     }
 
-    @Operation(summary = "Convert FHIR to HL7 v2 (Async)", description = "Queues a FHIR R4 Bundle for asynchronous conversion to HL7 v2.x. Returns transaction ID for status tracking.")
+    @Operation(summary = "Convert FHIR to HL7 v2 (Async)", description = "Queues a FHIR R4 Bundle for asynchronous conversion to HL7 v2.x. Responds once the broker has confirmed the message. Returns transaction ID for status tracking.")
     @ApiResponses({
             @ApiResponse(responseCode = "202", description = "Bundle accepted for processing"),
             @ApiResponse(responseCode = "400", description = "Invalid FHIR Bundle format"),
-            @ApiResponse(responseCode = "401", description = "Authentication required")
+            @ApiResponse(responseCode = "401", description = "Authentication required"),
+            @ApiResponse(responseCode = "503", description = "Broker did not confirm the message or too many messages are awaiting confirms")
     })
     @PostMapping(value = "/fhir-to-v2", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> convertToHl7(
+    public CompletableFuture<ResponseEntity<String>> convertToHl7(
             @Parameter(description = "FHIR R4 Bundle in JSON format") @RequestBody String fhirJson,
             @Parameter(description = "Unique key for idempotent requests") @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             HttpServletResponse response,
@@ -217,7 +282,8 @@ public class ConverterController {
                 duplicateResponse.put("status", "Already processed");
                 duplicateResponse.put("transactionId", record.getTransactionId());
                 duplicateResponse.put("originalStatus", record.getStatus());
-                return ResponseEntity.ok(objectMapper.writeValueAsString(duplicateResponse));
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.ok(objectMapper.writeValueAsString(duplicateResponse)));
             }
         }
 
@@ -230,16 +296,17 @@ public class ConverterController {
         auditService.logTransaction(tenantId, transactionId,
                 MessageType.FHIR_TO_V2_ASYNC, TransactionStatus.QUEUED, idempotencyKey);
 
-        rabbitTemplate.convertAndSend(fhirExchange, fhirRoutingKey, processedJson);
-
-        return createAcceptedResponse(transactionId);
+        CompletableFuture<Void> confirmed = confirmedPublisher.publish(fhirExchange, fhirRoutingKey, processedJson,
+                MessageEnvelope.headers(tenantId, transactionId, null));
+        return acceptedWhenConfirmed(confirmed, transactionId);
     }
 
-    @Operation(summary = "Convert FHIR to HL7 v2 (Sync)", description = "Synchronously converts a FHIR R4 Bundle to HL7 v2.x message. Returns the converted HL7 message directly.")
+    @Operation(summary = "Convert FHIR to HL7 v2 (Sync)", description = "Synchronously converts a FHIR R4 Bundle to HL7 v2.x message. Returns the converted HL7 message directly. With sync dispatch enabled, the conversion runs on a worker node.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Successful conversion"),
             @ApiResponse(responseCode = "400", description = "Invalid FHIR Bundle or validation error"),
-            @ApiResponse(responseCode = "401", description = "Authentication required")
+            @ApiResponse(responseCode = "401", description = "Authentication required"),
+            @ApiResponse(responseCode = "503", description = "Conversion queue full or no worker reply within the dispatch timeout")
     })
     @PostMapping(value = "/fhir-to-v2-sync", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
     public ResponseEntity<String> convertToHl7Sync(
@@ -251,9 +318,13 @@ public class ConverterController {
         response.setHeader("transformerId", transactionId);
         String processedJson = enriched.getContent();
 
-        String hl7Message = fhirToHl7Service.convertFhirToHl7(processedJson);
+        String tenantId = getTenantId(principal);
 
-        auditService.logTransaction(getTenantId(principal), transactionId,
+        String hl7Message = syncDispatcher.convert(SyncDispatcher.Flow.FHIR_TO_V2, processedJson, tenantId,
+                transactionId,
+                () -> conversionScheduler.call(Lane.SYNC, () -> fhirToHl7Service.convertFhirToHl7(processedJson)));
+
+        auditService.logTransaction(tenantId, transactionId,
                 MessageType.FHIR_TO_V2_SYNC, TransactionStatus.COMPLETED);
 
         return ResponseEntity.ok(hl7Message);
@@ -263,12 +334,14 @@ public class ConverterController {
      * Batch convert multiple HL7 messages to FHIR in parallel.
      * 
      * @param request   Batch request containing list of HL7 messages
+     * @param failFast  Cancel the remaining conversions after the first failure
      * @param principal Authenticated user
      * @return BatchConversionResponse with results and errors
      */
     @PostMapping(value = "/v2-to-fhir-batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<BatchConversionResponse> convertHl7ToFhirBatch(
             @RequestBody @jakarta.validation.Valid BatchHl7Request request,
+            @RequestParam(defaultValue = "false") boolean failFast,
             Principal principal) {
 
         String tenantId = getTenantId(principal);
@@ -277,7 +350,7 @@ public class ConverterController {
         auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
                 MessageType.V2_TO_FHIR_SYNC, TransactionStatus.ACCEPTED);
 
-        BatchConversionResponse response = batchConversionService.convertHl7ToFhirBatch(request.getMessages());
+        BatchConversionResponse response = batchConversionService.convertHl7ToFhirBatch(request.getMessages(), failFast);
 
         // Log batch operation completion
         auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
@@ -287,16 +360,208 @@ public class ConverterController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Batch convert HL7 messages to FHIR, streaming results as Server-Sent
+     * Events.
+     * 
+     * <p>
+     * Each result ({@code result} event) or failure ({@code error} event) is
+     * sent the moment its conversion finishes, with the input index as event
+     * ID, followed by a {@code summary} event. Time to first result is the
+     * latency of one message rather than of the whole batch.
+     * 
+     * <p>
+     * The stream is closed after {@code app.batch.timeout-ms} (no limit if
+     * {@code 0}), like the deadline of the list batch. On timeout the emitter
+     * is completed normally, without a summary, and no further messages are
+     * converted.
+     * 
+     * @param request   Batch request containing list of HL7 messages
+     * @param principal Authenticated user
+     * @return event stream
+     */
+    @Operation(summary = "Batch convert HL7 v2 to FHIR (Server-Sent Events)", description = "Converts up to 100 HL7 v2.x messages in parallel and sends each outcome as a 'result' or 'error' event as soon as it completes (event ID = input index), followed by a 'summary' event.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Outcomes streamed as Server-Sent Events"),
+            @ApiResponse(responseCode = "400", description = "Invalid batch request"),
+            @ApiResponse(responseCode = "401", description = "Authentication required")
+    })
+    @PostMapping(value = "/v2-to-fhir-batch-events", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter convertHl7ToFhirBatchEvents(
+            @RequestBody @jakarta.validation.Valid BatchHl7Request request,
+            Principal principal) {
+
+        String tenantId = getTenantId(principal);
+
+        auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
+                MessageType.V2_TO_FHIR_SYNC, TransactionStatus.ACCEPTED);
+
+        SseEmitter emitter = new SseEmitter(batchTimeoutMs > 0 ? batchTimeoutMs : 0L);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        emitter.onTimeout(() -> {
+            log.warn("Batch event stream timed out after {} ms", batchTimeoutMs);
+            timedOut.set(true);
+            emitter.complete();
+        });
+        batchConversionService.streamHl7ToFhirBatch(request.getMessages(), outcome -> {
+            if (timedOut.get()) {
+                // Fails the stream so no further messages are converted
+                throw new IOException("Batch event stream timed out");
+            }
+            SseEmitter.SseEventBuilder event = SseEmitter.event();
+            if (outcome instanceof BatchConversionResponse.ConversionResult result) {
+                event.name("result").id(String.valueOf(result.getIndex()));
+            } else if (outcome instanceof BatchConversionResponse.ConversionError error) {
+                event.name("error").id(String.valueOf(error.getIndex()));
+            } else {
+                event.name("summary");
+            }
+            emitter.send(event.data(outcome, MediaType.APPLICATION_JSON));
+        }).whenComplete((summary, e) -> {
+            if (timedOut.get()) {
+                return;
+            }
+            if (e != null) {
+                log.warn("Batch event stream aborted: {}", e.getMessage());
+                emitter.completeWithError(e);
+                return;
+            }
+            auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
+                    MessageType.V2_TO_FHIR_SYNC,
+                    summary.getFailureCount() == 0 ? TransactionStatus.COMPLETED : TransactionStatus.FAILED);
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    /**
+     * Stream-convert newline-delimited HL7 messages to FHIR.
+     * 
+     * <p>
+     * Reads the request body line by line (each line a JSON string holding one
+     * HL7 message) and writes one NDJSON line per result as soon as it is
+     * converted, so memory stays constant regardless of the number of messages.
+     * 
+     * @param request   NDJSON request
+     * @param response  NDJSON response
+     * @param principal Authenticated user
+     */
+    @Operation(summary = "Stream HL7 v2 to FHIR (NDJSON)", description = "Converts an unbounded stream of HL7 v2.x messages (one JSON string per line) with bounded concurrency. Results are streamed back as NDJSON lines in completion order, tagged with the input index, followed by a summary line.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Results streamed as NDJSON"),
+            @ApiResponse(responseCode = "401", description = "Authentication required")
+    })
+    @PostMapping(value = "/v2-to-fhir-stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void convertHl7ToFhirStream(HttpServletRequest request, HttpServletResponse response,
+            Principal principal) throws java.io.IOException {
+
+        String tenantId = getTenantId(principal);
+
+        auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
+                MessageType.V2_TO_FHIR_SYNC, TransactionStatus.ACCEPTED);
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(java.nio.charset.StandardCharsets.UTF_8.name());
+
+        BatchConversionResponse summary = batchConversionService.streamHl7ToFhir(request.getInputStream(),
+                response.getOutputStream());
+
+        auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
+                MessageType.V2_TO_FHIR_SYNC,
+                summary.getFailureCount() == 0 ? TransactionStatus.COMPLETED : TransactionStatus.FAILED);
+    }
+
+    /**
+     * Convert an HL7 batch file (FHS/BHS ... BTS/FTS) to FHIR.
+     * 
+     * <p>
+     * The file is split into messages while it is being read, so its size is
+     * not limited by heap. Per-message outcomes are streamed as NDJSON lines;
+     * the summary line carries the BTS/FTS count check and the batch ACK.
+     * 
+     * @param request   HL7 batch file
+     * @param response  NDJSON response
+     * @param principal Authenticated user
+     */
+    @Operation(summary = "Convert HL7 v2 batch file to FHIR (NDJSON)", description = "Accepts an HL7 batch file wrapped in FHS/BHS headers and BTS/FTS trailers, splits it in a single streaming pass and converts the messages in parallel. Per-message outcomes are streamed as NDJSON lines; the summary line reports BTS-1/FTS-1 count mismatches and carries a batch acknowledgment.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Outcomes streamed as NDJSON"),
+            @ApiResponse(responseCode = "401", description = "Authentication required")
+    })
+    @PostMapping(value = "/v2-to-fhir-batch-file", consumes = { MediaType.TEXT_PLAIN_VALUE,
+            MediaType.APPLICATION_OCTET_STREAM_VALUE }, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void convertHl7BatchFileToFhir(HttpServletRequest request, HttpServletResponse response,
+            Principal principal) throws java.io.IOException {
+
+        String tenantId = getTenantId(principal);
+
+        auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
+                MessageType.V2_TO_FHIR_SYNC, TransactionStatus.ACCEPTED);
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(java.nio.charset.StandardCharsets.UTF_8.name());
+
+        BatchConversionResponse summary = batchConversionService.streamHl7BatchToFhir(request.getInputStream(),
+                response.getOutputStream());
+
+        auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
+                MessageType.V2_TO_FHIR_SYNC,
+                summary.getFailureCount() == 0 ? TransactionStatus.COMPLETED : TransactionStatus.FAILED);
+    }
+
+    /**
+     * Stream-convert FHIR Bundles (NDJSON) to an HL7 v2 batch file.
+     * 
+     * <p>
+     * Reads one Bundle per line (FHIR Bulk Data NDJSON, no string escaping)
+     * and writes the ER7 messages in input order inside an FHS/BHS ... BTS/FTS
+     * envelope while later lines are still being converted.
+     * 
+     * @param request   NDJSON request
+     * @param response  HL7 batch file
+     * @param principal Authenticated user
+     */
+    @Operation(summary = "Stream FHIR to HL7 v2 batch file (NDJSON in)", description = "Converts an unbounded stream of FHIR Bundles, one per line as in FHIR Bulk Data NDJSON, with bounded concurrency. ER7 messages are streamed back in input order inside a single FHS/BHS ... BTS/FTS envelope. Bundles that fail are left out; BTS-2 and FTS-2 list the indexes of failed lines.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "HL7 batch file streamed as ER7"),
+            @ApiResponse(responseCode = "401", description = "Authentication required")
+    })
+    @PostMapping(value = "/fhir-to-v2-stream", consumes = { MediaType.APPLICATION_NDJSON_VALUE,
+            "application/fhir+ndjson" }, produces = MediaType.TEXT_PLAIN_VALUE)
+    public void convertFhirToHl7Stream(HttpServletRequest request, HttpServletResponse response,
+            Principal principal) throws java.io.IOException {
+
+        String tenantId = getTenantId(principal);
+
+        auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
+                MessageType.FHIR_TO_V2_SYNC, TransactionStatus.ACCEPTED);
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(java.nio.charset.StandardCharsets.UTF_8.name());
+
+        BatchConversionResponse summary = batchConversionService.streamFhirToHl7Batch(request.getInputStream(),
+                response.getOutputStream());
+
+        auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
+                MessageType.FHIR_TO_V2_SYNC,
+                summary.getFailureCount() == 0 ? TransactionStatus.COMPLETED : TransactionStatus.FAILED);
+    }
+
     /**
      * Batch convert multiple FHIR bundles to HL7 in parallel.
      * 
      * @param fhirBundles List of FHIR Bundle JSON strings
+     * @param failFast    Cancel the remaining conversions after the first failure
      * @param principal   Authenticated user
      * @return BatchConversionResponse with results and errors
      */
     @PostMapping(value = "/fhir-to-v2-batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<BatchConversionResponse> convertFhirToHl7Batch(
             @RequestBody java.util.List<String> fhirBundles,
+            @RequestParam(defaultValue = "false") boolean failFast,
             Principal principal) {
 
         String tenantId = getTenantId(principal);
@@ -305,7 +570,7 @@ public class ConverterController {
         auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
                 MessageType.FHIR_TO_V2_SYNC, TransactionStatus.ACCEPTED);
 
-        BatchConversionResponse response = batchConversionService.convertFhirToHl7Batch(fhirBundles);
+        BatchConversionResponse response = batchConversionService.convertFhirToHl7Batch(fhirBundles, failFast);
 
         // Log batch operation completion
         auditService.logTransaction(tenantId, "BATCH-" + System.currentTimeMillis(),
@@ -338,6 +603,10 @@ public class ConverterController {
         errorResponse.put("message", e.getMessage());
         errorResponse.put("type", e.getClass().getSimpleName());
 
+        if (e instanceof RejectedExecutionException || e instanceof AmqpException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+        }
+
         if (e instanceof HL7Exception || e instanceof EncodingNotSupportedException || e instanceof DataFormatException
                 || e instanceof JsonParseException || e instanceof IllegalArgumentException) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
@@ -350,6 +619,35 @@ public class ConverterController {
         return principal != null ? principal.getName() : "UNKNOWN";
     }
 
+    /**
+     * Answer 202 once the broker confirms the queued message. If the broker
+     * rejects it, the transaction is marked FAILED. If the confirm times out,
+     * the message may still have been queued and processed, so the status is
+     * left for the worker to update. Either way the error propagates to
+     * {@link #handleException}.
+     */
+    private CompletableFuture<ResponseEntity<String>> acceptedWhenConfirmed(CompletableFuture<Void> confirmed,
+            String transactionId) throws Exception {
+        ResponseEntity<String> accepted = createAcceptedResponse(transactionId);
+        return confirmed.handle((ignored, error) -> {
+            if (error == null) {
+                return accepted;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (cause instanceof AmqpTimeoutException) {
+                log.warn("No broker confirm for transaction {}, leaving its status unchanged: {}", transactionId,
+                        cause.getMessage());
+            } else {
+                log.error("Message for transaction {} was not confirmed by the broker: {}", transactionId,
+                        cause.getMessage());
+                auditService.updateTransactionFailure(transactionId, "FAILED", cause.getMessage(), 0);
+            }
+            throw cause instanceof RuntimeException runtime ? runtime : new AmqpException(cause);
+        });
+    }
+
     private ResponseEntity<String> createAcceptedResponse(String transactionId) throws Exception {
         Map<String, String> response = new HashMap<>();
         response.put("status", "Accepted");
@@ -0,0 +1,112 @@
+package com.al.fhirhl7transformer.controller;
+
+import com.al.fhirhl7transformer.dto.DlqReplayJob;
+import com.al.fhirhl7transformer.dto.DlqReplayRequest;
+import com.al.fhirhl7transformer.dto.ErrorResponse;
+import com.al.fhirhl7transformer.service.DlqReplayService;
+import com.al.fhirhl7transformer.service.DlqReplayService.Source;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Admin operations on the dead-letter queues: inspect depths and replay
+ * messages onto the main exchanges.
+ */
+@RestController
+@RequestMapping(DlqAdminController.BASE_PATH)
+@Tag(name = "DLQ Admin", description = "Dead-letter queue inspection and replay")
+@Slf4j
+@Profile("!worker")
+public class DlqAdminController {
+
+    static final String BASE_PATH = "/api/admin/dlq";
+
+    private final DlqReplayService dlqReplayService;
+
+    public DlqAdminController(DlqReplayService dlqReplayService) {
+        this.dlqReplayService = dlqReplayService;
+    }
+
+    @Operation(summary = "Get DLQ depths", description = "Number of ready messages in each dead-letter queue.")
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<Source, Long>> getDepths() {
+        return ResponseEntity.ok(dlqReplayService.getDepths());
+    }
+
+    /**
+     * Start a replay of the {@code hl7} or {@code fhir} DLQ.
+     *
+     * @param source    {@code hl7} or {@code fhir}
+     * @param request   filters, rate and dry-run flag; may be empty
+     * @param principal Authenticated admin
+     * @return 202 with the replay status and its location
+     */
+    @Operation(summary = "Replay a DLQ", description = "Drains the DLQ in batches and republishes matching messages to the main exchange at a limited rate. With dryRun=true only counts matching messages. Poll the returned location for progress.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Replay started"),
+            @ApiResponse(responseCode = "400", description = "Unknown source or invalid filters"),
+            @ApiResponse(responseCode = "409", description = "A replay of this DLQ is already running")
+    })
+    @PostMapping(value = "/{source}/replay", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DlqReplayJob> startReplay(@PathVariable String source,
+            @RequestBody(required = false) DlqReplayRequest request, Principal principal) {
+        DlqReplayJob job = dlqReplayService.start(Source.valueOf(source.toUpperCase(Locale.ROOT)),
+                request != null ? request : new DlqReplayRequest(),
+                principal != null ? principal.getName() : "UNKNOWN");
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header("Content-Location", BASE_PATH + "/replays/" + job.getReplayId())
+                .body(job);
+    }
+
+    @Operation(summary = "Get replay progress")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Replay status and counters"),
+            @ApiResponse(responseCode = "404", description = "Replay not found")
+    })
+    @GetMapping(value = "/replays/{replayId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DlqReplayJob> getReplay(@PathVariable String replayId) {
+        return dlqReplayService.getJob(replayId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Cancel a replay", description = "Stops the replay after the messages already published are confirmed; unprocessed messages stay in the DLQ.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Cancellation requested"),
+            @ApiResponse(responseCode = "404", description = "Replay not found")
+    })
+    @DeleteMapping(value = "/replays/{replayId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DlqReplayJob> cancelReplay(@PathVariable String replayId) {
+        return dlqReplayService.cancel(replayId)
+                .map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(job))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ErrorResponse> handleReplayRunning(IllegalStateException e, HttpServletRequest request) {
+        log.warn("DLQ replay rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(LocalDateTime.now(),
+                HttpStatus.CONFLICT.value(), "Replay Already Running", e.getMessage(), request.getRequestURI()));
+    }
+}
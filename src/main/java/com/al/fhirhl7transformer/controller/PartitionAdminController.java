@@ -0,0 +1,34 @@
+package com.al.fhirhl7transformer.controller;
+
+import com.al.fhirhl7transformer.service.PartitionRouter;
+import com.al.fhirhl7transformer.service.PartitionRouter.Status;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Admin view of the patient partitions, used to follow a partition resize.
+ */
+@RestController
+@RequestMapping("/api/admin/partitions")
+@Tag(name = "Partition Admin", description = "Patient partition status")
+@Profile("!worker")
+public class PartitionAdminController {
+
+    private final PartitionRouter partitionRouter;
+
+    public PartitionAdminController(PartitionRouter partitionRouter) {
+        this.partitionRouter = partitionRouter;
+    }
+
+    @Operation(summary = "Get partition status", description = "Partition count, the count before a resize in progress, and the number of ready and unacknowledged messages in each partition queue (-1 while the broker has no statistics for it).")
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Status> getStatus() {
+        return ResponseEntity.ok(partitionRouter.status());
+    }
+}
@@ -3,6 +3,7 @@ package com.al.fhirhl7transformer.controller;
 import com.al.fhirhl7transformer.model.SubscriptionEntity;
 import com.al.fhirhl7transformer.service.SubscriptionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -11,6 +12,7 @@ import java.util.List;
 @RestController
 @RequestMapping("/api/subscriptions")
 @RequiredArgsConstructor
+@Profile("!worker")
 public class SubscriptionController {
 
     private final SubscriptionService subscriptionService;
@@ -16,6 +16,7 @@ import com.al.fhirhl7transformer.service.TenantService;
 import com.al.fhirhl7transformer.service.TransactionService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -28,6 +29,7 @@ import java.util.List;
 @RestController
 @RequestMapping("/api/tenants")
 @Slf4j
+@Profile("!worker")
 public class TenantController {
 
     private final TenantService tenantService;
@@ -0,0 +1,56 @@
+package com.al.fhirhl7transformer.dto;
+
+import com.al.fhirhl7transformer.model.BulkJob;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Status of a bulk conversion job, with download links for finished result
+ * chunks.
+ */
+@Data
+@NoArgsConstructor
+public class BulkJobResponse {
+
+    private String jobId;
+    private String status;
+    private long totalMessages;
+    private long processedMessages;
+    private long successCount;
+    private long failureCount;
+    private int chunkCount;
+    private int completedChunks;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    private String errorMessage;
+
+    /**
+     * Download URLs of finished result chunks, in input order.
+     */
+    private List<String> output = new ArrayList<>();
+
+    public static BulkJobResponse from(BulkJob job, String baseUrl) {
+        BulkJobResponse response = new BulkJobResponse();
+        response.setJobId(job.getJobId());
+        response.setStatus(job.getStatus());
+        response.setTotalMessages(job.getTotalMessages());
+        response.setProcessedMessages(job.getProcessedMessages());
+        response.setSuccessCount(job.getSuccessCount());
+        response.setFailureCount(job.getFailureCount());
+        response.setChunkCount(job.getChunkCount());
+        response.setCompletedChunks(job.getCompletedChunks());
+        response.setCreatedAt(job.getCreatedAt());
+        response.setStartedAt(job.getStartedAt());
+        response.setCompletedAt(job.getCompletedAt());
+        response.setErrorMessage(job.getErrorMessage());
+        for (int chunk = 0; chunk < job.getCompletedChunks(); chunk++) {
+            response.getOutput().add(baseUrl + "/" + job.getJobId() + "/output/" + chunk);
+        }
+        return response;
+    }
+}
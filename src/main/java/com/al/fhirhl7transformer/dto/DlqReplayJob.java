@@ -0,0 +1,41 @@
+package com.al.fhirhl7transformer.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a DLQ replay. Counters are updated by the replay thread while
+ * the job runs.
+ */
+@Data
+@NoArgsConstructor
+public class DlqReplayJob {
+
+    private String replayId;
+    private String source;
+    private String queue;
+    private String status; // RUNNING, COMPLETED, CANCELLED, FAILED
+    private String requestedBy;
+    private DlqReplayRequest request;
+    private int ratePerSecond;
+
+    /**
+     * Messages in the DLQ when the replay started; at most this many are
+     * scanned.
+     */
+    private volatile long queueDepth;
+    private volatile long scanned;
+    private volatile long matched;
+    private volatile long replayed;
+    private volatile long skipped;
+
+    private LocalDateTime startedAt;
+    private volatile LocalDateTime completedAt;
+    private volatile String errorMessage;
+
+    @JsonIgnore
+    private volatile boolean cancelRequested;
+}
@@ -0,0 +1,51 @@
+package com.al.fhirhl7transformer.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Filters and limits for a DLQ replay. All filters are optional and combined
+ * with AND.
+ */
+@Data
+@NoArgsConstructor
+public class DlqReplayRequest {
+
+    /**
+     * Only replay messages with this {@code tenantId} header.
+     */
+    private String tenantId;
+
+    /**
+     * Only replay messages whose {@code x-first-failure-reason} header (the
+     * exception's simple class name) matches, ignoring case.
+     */
+    private String failureReason;
+
+    /**
+     * Only replay messages dead-lettered at or after this time.
+     */
+    private Instant deadLetteredFrom;
+
+    /**
+     * Only replay messages dead-lettered at or before this time.
+     */
+    private Instant deadLetteredTo;
+
+    /**
+     * Stop after this many matching messages. 0 = no limit.
+     */
+    private long maxMessages;
+
+    /**
+     * Messages per second to republish. 0 = configured default.
+     */
+    private int ratePerSecond;
+
+    /**
+     * Count matching messages without republishing anything.
+     */
+    private boolean dryRun;
+}
@@ -0,0 +1,12 @@
+package com.al.fhirhl7transformer.exception;
+
+/**
+ * Exception thrown when a message parsed fine but could not be mapped to the
+ * target format. Retrying the same input gives the same result.
+ */
+public class ConversionFailedException extends Exception {
+
+    public ConversionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package com.al.fhirhl7transformer.exception;
+
+/**
+ * Exception thrown when a message is rejected before conversion, e.g. an
+ * empty body, a FHIR resource that is not a Bundle or an unsupported HL7
+ * version in strict mode. Retrying the same input gives the same result.
+ *
+ * <p>
+ * Extends {@link IllegalArgumentException} so callers that answer input
+ * errors with 400 keep treating it as one.
+ */
+public class InvalidMessageException extends IllegalArgumentException {
+
+    public InvalidMessageException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package com.al.fhirhl7transformer.health;
+
+import com.al.fhirhl7transformer.service.FhirValidationService;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports DOWN until the FHIR validator has finished its background warm-up.
+ * Included in the readiness group so traffic is only routed to warm instances.
+ */
+@Component("fhirValidator")
+public class FhirValidatorHealthIndicator implements HealthIndicator {
+
+    private final FhirValidationService fhirValidationService;
+
+    public FhirValidatorHealthIndicator(FhirValidationService fhirValidationService) {
+        this.fhirValidationService = fhirValidationService;
+    }
+
+    @Override
+    public Health health() {
+        if (fhirValidationService.isReady()) {
+            return Health.up().withDetail("state", "READY").build();
+        }
+        if (fhirValidationService.isFailed()) {
+            return Health.down().withDetail("state", "FAILED").build();
+        }
+        return Health.down().withDetail("state", "INITIALIZING").build();
+    }
+}
@@ -0,0 +1,75 @@
+package com.al.fhirhl7transformer.health;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.health.actuate.endpoint.HealthDescriptor;
+import org.springframework.boot.health.actuate.endpoint.HealthEndpoint;
+import org.springframework.boot.health.contributor.Status;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Stops the application once the {@code readiness} health group reports UP
+ * when {@code app.startup.exit-when-ready=true}.
+ *
+ * <p>
+ * Used by the AppCDS training run and the startup benchmark, so both cover
+ * the whole startup including the validator and JIT warm-up instead of
+ * stopping at the context refresh. The readiness group is read from the
+ * health endpoint bean, which also exists in the worker role without a web
+ * server. The flag is read at runtime rather than as a bean condition,
+ * because AOT fixes conditions at build time.
+ */
+@Component
+@Slf4j
+public class ReadinessExit {
+
+    private static final long POLL_MS = 200;
+
+    private final boolean enabled;
+    private final ObjectProvider<HealthEndpoint> healthEndpoint;
+
+    public ReadinessExit(@Value("${app.startup.exit-when-ready:false}") boolean enabled,
+            ObjectProvider<HealthEndpoint> healthEndpoint) {
+        this.enabled = enabled;
+        this.healthEndpoint = healthEndpoint;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Thread waiter = new Thread(() -> exitWhenReady(event.getApplicationContext()), "readiness-exit");
+        waiter.setDaemon(true);
+        waiter.start();
+    }
+
+    private void exitWhenReady(ConfigurableApplicationContext context) {
+        HealthEndpoint endpoint = healthEndpoint.getIfAvailable();
+        if (endpoint == null) {
+            log.warn("Health endpoint not available, exiting without waiting for readiness");
+        }
+        try {
+            while (endpoint != null && !isUp(endpoint.healthForPath("readiness"))) {
+                Thread.sleep(POLL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        log.info("Ready after {} ms, exiting (app.startup.exit-when-ready)",
+                ManagementFactory.getRuntimeMXBean().getUptime());
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private static boolean isUp(HealthDescriptor health) {
+        return health != null && Status.UP.equals(health.getStatus());
+    }
+}
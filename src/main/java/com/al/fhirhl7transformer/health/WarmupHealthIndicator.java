@@ -0,0 +1,31 @@
+package com.al.fhirhl7transformer.health;
+
+import com.al.fhirhl7transformer.service.WarmupService;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports DOWN while the startup JIT warm-up is still running.
+ * Any finished outcome (including a timeout) reports UP so a slow warm-up
+ * never keeps an instance out of rotation indefinitely.
+ */
+@Component("warmup")
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private final WarmupService warmupService;
+
+    public WarmupHealthIndicator(WarmupService warmupService) {
+        this.warmupService = warmupService;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmupService.isFinished() ? Health.up() : Health.down();
+        return builder
+                .withDetail("state", warmupService.getState().name())
+                .withDetail("rounds", warmupService.getRoundsCompleted())
+                .withDetail("durationMs", warmupService.getDurationMs())
+                .build();
+    }
+}
@@ -2,6 +2,7 @@ package com.al.fhirhl7transformer.interceptor;
 
 import org.slf4j.MDC;
 import org.jspecify.annotations.Nullable;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
@@ -10,6 +11,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.util.UUID;
 
 @Component
+@Profile("!worker")
 public class MdcInterceptor implements HandlerInterceptor {
 
     private static final String MDC_KEY = "transformerId";
@@ -0,0 +1,309 @@
+package com.al.fhirhl7transformer.listener;
+
+import com.al.fhirhl7transformer.config.AdaptiveConcurrencyConfiguration;
+import com.al.fhirhl7transformer.config.LaneConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes the running HL7 and FHIR listener containers from queue depth,
+ * consumer utilization and conversion latency.
+ *
+ * <p>
+ * Every {@code app.rabbitmq.adaptive.interval-ms} each container is sampled:
+ * ready messages in its queue, consumer utilization (conversion time spent
+ * in the interval divided by consumers times the interval) and the conversion
+ * p99, both from the container's own {@code fhir.queue.processing} timers
+ * (see {@link QueueLatencyMetrics}), so conversions of other containers or of
+ * the API do not count. Consumers are added
+ * while the backlog would take longer than {@code target-drain-seconds} to
+ * drain and the consumers are busy, removed while they are mostly idle with
+ * no backlog or when p99 exceeds {@code max-p99-ms}. Prefetch is sized so
+ * each consumer holds about {@code prefetch-buffer-ms} of work; a new
+ * prefetch applies to consumers started after the change.
+ *
+ * <p>
+ * Once enabled, the controller owns the consumer count: the container's own
+ * min/max scaling is pinned to the chosen value. Every change is logged.
+ * Metrics, tagged by {@code queue}: gauges
+ * {@code fhir.listener.adaptive.consumers}, {@code .prefetch},
+ * {@code .depth} and {@code .utilization}, and the counter
+ * {@code fhir.listener.adaptive.decisions} tagged by {@code action}
+ * ({@code scale-up}, {@code scale-down}, {@code prefetch}).
+ *
+ * <p>
+ * Patient partition containers are not managed: each has one consumer by
+ * design, and single active consumer would leave any added consumer idle.
+ */
+@Component
+@Slf4j
+@Profile("!api")
+public class AdaptiveConcurrencyController {
+
+    /**
+     * Load of one container over the last interval.
+     */
+    record Sample(long depth, double utilization, double meanMs, double p99Ms) {
+    }
+
+    /**
+     * New consumer count and prefetch, and why.
+     */
+    record Decision(int consumers, int prefetch, String reason) {
+    }
+
+    /**
+     * What the controller knows about one container between ticks.
+     */
+    static final class State {
+        volatile int consumers;
+        volatile int prefetch = -1;
+        volatile long depth;
+        volatile double utilization;
+        long lastChangeMs;
+        long lastCount;
+        double lastTotalMs;
+        long lastSampleNanos;
+    }
+
+    private final AdaptiveConcurrencyConfiguration config;
+    private final RabbitListenerEndpointRegistry registry;
+    private final RabbitTemplate rabbitTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> queues = new HashSet<>();
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sampler;
+
+    public AdaptiveConcurrencyController(AdaptiveConcurrencyConfiguration config,
+            RabbitListenerEndpointRegistry registry, RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry,
+            LaneConfiguration laneConfig,
+            @Value("${app.rabbitmq.queue}") String hl7Queue,
+            @Value("${app.rabbitmq.fhir.queue}") String fhirQueue) {
+        this.config = config;
+        this.registry = registry;
+        this.rabbitTemplate = rabbitTemplate;
+        this.meterRegistry = meterRegistry;
+        queues.add(hl7Queue);
+        queues.add(fhirQueue);
+        if (laneConfig.isEnabled()) {
+            laneConfig.getLanes().forEach(lane -> queues.add(LaneConfiguration.queueName(lane)));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "adaptive-concurrency");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleWithFixedDelay(this::tick, config.getIntervalMs(), config.getIntervalMs(),
+                TimeUnit.MILLISECONDS);
+        log.info("Adaptive listener concurrency enabled: {}-{} consumers, prefetch {}-{}",
+                config.getMinConsumers(), config.getMaxConsumers(), config.getMinPrefetch(), config.getMaxPrefetch());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+    }
+
+    void tick() {
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            if (!(container instanceof SimpleMessageListenerContainer smlc) || !smlc.isRunning()
+                    || smlc.getQueueNames().length != 1) {
+                continue;
+            }
+            String queue = smlc.getQueueNames()[0];
+            if (!queues.contains(queue)) {
+                continue;
+            }
+            try {
+                adjust(smlc, queue);
+            } catch (Exception e) {
+                log.warn("Adaptive concurrency skipped {} this interval: {}", queue, e.getMessage());
+            }
+        }
+    }
+
+    private void adjust(SimpleMessageListenerContainer container, String queue) {
+        State state = states.computeIfAbsent(queue, q -> register(q, container));
+        long depth = rabbitTemplate.execute(channel -> channel.queueDeclarePassive(queue).getMessageCount());
+        Sample sample = sample(state, queue, depth);
+        state.depth = depth;
+        state.utilization = sample.utilization();
+
+        long now = System.currentTimeMillis();
+        if (now - state.lastChangeMs < config.getCooldownMs()) {
+            return;
+        }
+        int minPrefetch = container.isConsumerBatchEnabled()
+                ? Math.max(config.getMinPrefetch(), intField(container, "batchSize", 1))
+                : config.getMinPrefetch();
+        Decision decision = decide(state.consumers, state.prefetch, minPrefetch, sample);
+        if (decision.consumers() == state.consumers && decision.prefetch() == state.prefetch) {
+            return;
+        }
+
+        if (decision.prefetch() != state.prefetch) {
+            container.setPrefetchCount(decision.prefetch());
+            meterRegistry.counter("fhir.listener.adaptive.decisions", "queue", queue, "action", "prefetch")
+                    .increment();
+        }
+        if (decision.consumers() != state.consumers) {
+            setConsumers(container, state.consumers, decision.consumers());
+            meterRegistry.counter("fhir.listener.adaptive.decisions", "queue", queue, "action",
+                    decision.consumers() > state.consumers ? "scale-up" : "scale-down").increment();
+        }
+        log.info("Adaptive concurrency {}: consumers {} -> {}, prefetch {} -> {} ({}; depth={}, utilization={}, "
+                + "mean={}ms, p99={}ms)", queue, state.consumers, decision.consumers(), state.prefetch,
+                decision.prefetch(), decision.reason(), depth, String.format("%.2f", sample.utilization()),
+                Math.round(sample.meanMs()), Math.round(sample.p99Ms()));
+        state.consumers = decision.consumers();
+        state.prefetch = decision.prefetch();
+        state.lastChangeMs = now;
+    }
+
+    /**
+     * Pure scaling rule, see the class comment.
+     *
+     * @param prefetch current prefetch, or -1 if not set by the controller yet
+     */
+    Decision decide(int consumers, int prefetch, int minPrefetch, Sample sample) {
+        int target = consumers;
+        String reason = "steady";
+        boolean latencyExceeded = config.getMaxP99Ms() > 0 && sample.p99Ms() > config.getMaxP99Ms();
+        double drainSeconds = consumers > 0 ? sample.depth() * sample.meanMs() / 1000.0 / consumers : 0;
+
+        if (latencyExceeded) {
+            if (consumers > config.getMinConsumers()) {
+                target = consumers - 1;
+                reason = "p99 above " + config.getMaxP99Ms() + "ms";
+            }
+        } else if (sample.depth() > 0 && drainSeconds > config.getTargetDrainSeconds()
+                && sample.utilization() >= config.getScaleUpUtilization()) {
+            int wanted = (int) Math.ceil(sample.depth() * sample.meanMs() / 1000.0 / config.getTargetDrainSeconds());
+            target = Math.min(config.getMaxConsumers(),
+                    consumers + Math.max(1, Math.min(config.getMaxStep(), wanted - consumers)));
+            reason = String.format("backlog drains in %.0fs", drainSeconds);
+        } else if (sample.depth() <= consumers && sample.utilization() < config.getScaleDownUtilization()) {
+            target = Math.max(config.getMinConsumers(), consumers - 1);
+            reason = "idle";
+        }
+        target = Math.max(config.getMinConsumers(), Math.min(config.getMaxConsumers(), target));
+
+        int newPrefetch = prefetch;
+        if (sample.meanMs() > 0) {
+            int wanted = (int) Math.round(config.getPrefetchBufferMs() / sample.meanMs());
+            wanted = Math.max(minPrefetch, Math.min(config.getMaxPrefetch(), wanted));
+            if (prefetch < 0 || Math.abs(wanted - prefetch) > prefetch / 4) {
+                newPrefetch = wanted;
+            }
+        }
+        return new Decision(target, newPrefetch, reason);
+    }
+
+    private State register(String queue, SimpleMessageListenerContainer container) {
+        State state = new State();
+        int configured = intField(container, "concurrentConsumers", 1);
+        state.consumers = Math.max(config.getMinConsumers(), Math.min(config.getMaxConsumers(),
+                Math.max(configured, container.getActiveConsumerCount())));
+        // Pin the container's own scaling; the controller decides from here on
+        setConsumers(container, configured, state.consumers);
+        state.lastSampleNanos = System.nanoTime();
+        meterRegistry.gauge("fhir.listener.adaptive.consumers", Tags.of("queue", queue), state, s -> s.consumers);
+        meterRegistry.gauge("fhir.listener.adaptive.prefetch", Tags.of("queue", queue), state, s -> s.prefetch);
+        meterRegistry.gauge("fhir.listener.adaptive.depth", Tags.of("queue", queue), state, s -> s.depth);
+        meterRegistry.gauge("fhir.listener.adaptive.utilization", Tags.of("queue", queue), state,
+                s -> s.utilization);
+        log.info("Adaptive concurrency managing {} starting at {} consumers", queue, state.consumers);
+        return state;
+    }
+
+    Sample sample(State state, String queue, long depth) {
+        long nowNanos = System.nanoTime();
+        double intervalMs = (nowNanos - state.lastSampleNanos) / 1_000_000.0;
+        state.lastSampleNanos = nowNanos;
+
+        // One timer per tenant tier
+        Collection<Timer> timers = meterRegistry.find("fhir.queue.processing").tag("queue", queue).timers();
+        if (timers.isEmpty()) {
+            return new Sample(depth, 0, 0, 0);
+        }
+        long count = 0;
+        double totalMs = 0;
+        double p99Ms = 0;
+        for (Timer timer : timers) {
+            count += timer.count();
+            totalMs += timer.totalTime(TimeUnit.MILLISECONDS);
+            p99Ms = Math.max(p99Ms, p99(timer));
+        }
+        long conversions = count - state.lastCount;
+        double busyMs = totalMs - state.lastTotalMs;
+        state.lastCount = count;
+        state.lastTotalMs = totalMs;
+
+        double utilization = intervalMs > 0 && state.consumers > 0
+                ? Math.min(1.0, busyMs / (intervalMs * state.consumers))
+                : 0;
+        double meanMs = conversions > 0 ? busyMs / conversions : count > 0 ? totalMs / count : 0;
+        return new Sample(depth, utilization, meanMs, p99Ms);
+    }
+
+    /**
+     * Published p99 if the timer has one, otherwise its decaying maximum.
+     */
+    private static double p99(Timer timer) {
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.99) {
+                return percentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return timer.max(TimeUnit.MILLISECONDS);
+    }
+
+    // The container has no getters for these
+    private static int intField(SimpleMessageListenerContainer container, String field, int defaultValue) {
+        Object value = new DirectFieldAccessor(container).getPropertyValue(field);
+        return value instanceof Integer i ? i : defaultValue;
+    }
+
+    private static void setConsumers(SimpleMessageListenerContainer container, int current, int target) {
+        // The container asserts concurrent <= max, so order the two updates
+        if (target >= current) {
+            container.setMaxConcurrentConsumers(target);
+            container.setConcurrentConsumers(target);
+        } else {
+            container.setConcurrentConsumers(target);
+            container.setMaxConcurrentConsumers(target);
+        }
+    }
+}
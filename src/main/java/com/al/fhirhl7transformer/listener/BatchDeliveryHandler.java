@@ -0,0 +1,228 @@
+package com.al.fhirhl7transformer.listener;
+
+import com.al.fhirhl7transformer.config.ListenerBatchConfiguration;
+import com.al.fhirhl7transformer.config.TenantContext;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import com.rabbitmq.client.Channel;
+import jakarta.annotation.PreDestroy;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shared plumbing for the batch listeners in {@link Hl7MessageListener} and
+ * {@link FhirMessageListener}.
+ *
+ * <p>
+ * A batch is handled in three steps: the deliveries are converted in
+ * parallel on a dedicated pool (the {@code ConversionScheduler} is not
+ * available in the worker role), all resulting messages are published on one
+ * channel followed by a single wait for publisher confirms, and finally the
+ * deliveries are settled with one cumulative ack. If publishing or the
+ * caller's bulk audit write fails, the whole batch is requeued instead.
+ */
+@Component
+@Profile("!api")
+public class BatchDeliveryHandler {
+
+    static final String TENANT_HEADER = MessageEnvelope.TENANT_HEADER;
+    static final String RETRY_COUNT_HEADER = "x-retry-count";
+
+    /**
+     * A conversion step that may throw, e.g. {@code convertHl7ToFhir}.
+     */
+    @FunctionalInterface
+    public interface Conversion {
+        String convert(String input) throws Exception;
+    }
+
+    /**
+     * Outcome of converting one delivery: either {@code output} or
+     * {@code error} is set. {@code conversionNanos} is the time the
+     * conversion ran on the pool.
+     */
+    public record Converted(Message delivery, String input, String output, Exception error,
+            long conversionNanos) {
+
+        public boolean succeeded() {
+            return error == null;
+        }
+
+        public String tenantId() {
+            return delivery.getMessageProperties().getHeader(TENANT_HEADER);
+        }
+
+        /**
+         * Transaction id stamped by the publisher, or {@code null} for
+         * messages published without one.
+         */
+        public String transactionId() {
+            return MessageEnvelope.header(delivery, MessageEnvelope.TRANSACTION_ID_HEADER);
+        }
+
+        public long deliveryTag() {
+            return delivery.getMessageProperties().getDeliveryTag();
+        }
+
+        public String failureClass() {
+            return delivery.getMessageProperties().getHeader(FailureClassifier.FAILURE_CLASS_HEADER);
+        }
+
+        public int retryCount() {
+            Object value = delivery.getMessageProperties().getHeader(RETRY_COUNT_HEADER);
+            return value instanceof Number number ? number.intValue() : 0;
+        }
+    }
+
+    /**
+     * A message to publish as part of a batch.
+     */
+    public record Outbound(String exchange, String routingKey, String body, Map<String, Object> headers) {
+
+        /**
+         * An output message carrying the tenant and transaction id headers,
+         * where known.
+         */
+        public static Outbound toQueue(String queue, String body, String tenantId, String transactionId) {
+            Map<String, Object> headers = new HashMap<>();
+            if (tenantId != null) {
+                headers.put(TENANT_HEADER, tenantId);
+            }
+            if (transactionId != null) {
+                headers.put(MessageEnvelope.TRANSACTION_ID_HEADER, transactionId);
+            }
+            return new Outbound("", queue, body, headers);
+        }
+    }
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ListenerBatchConfiguration config;
+    private final ExecutorService executor;
+
+    public BatchDeliveryHandler(RabbitTemplate rabbitTemplate, ListenerBatchConfiguration config) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.config = config;
+        this.executor = config.isEnabled()
+                ? Executors.newFixedThreadPool(config.effectiveParallelism(),
+                        Thread.ofPlatform().name("listener-batch-", 0).daemon().factory())
+                : null;
+    }
+
+    /**
+     * Convert every delivery in parallel, each with its own tenant. Results
+     * are returned in delivery order; conversion failures are captured, not
+     * thrown.
+     */
+    public List<Converted> convertAll(List<Message> deliveries, Conversion conversion) {
+        List<Future<String>> futures = new ArrayList<>(deliveries.size());
+        List<String> inputs = new ArrayList<>(deliveries.size());
+        long[] conversionNanos = new long[deliveries.size()];
+        for (Message delivery : deliveries) {
+            int index = inputs.size();
+            String input = MessageEnvelope.bodyAsString(delivery);
+            String tenantId = delivery.getMessageProperties().getHeader(TENANT_HEADER);
+            inputs.add(input);
+            futures.add(executor.submit(() -> {
+                if (tenantId != null) {
+                    TenantContext.setTenantId(tenantId);
+                }
+                long start = System.nanoTime();
+                try {
+                    return conversion.convert(input);
+                } finally {
+                    conversionNanos[index] = System.nanoTime() - start;
+                    TenantContext.clear();
+                }
+            }));
+        }
+
+        List<Converted> results = new ArrayList<>(deliveries.size());
+        for (int i = 0; i < deliveries.size(); i++) {
+            try {
+                String output = futures.get(i).get();
+                results.add(new Converted(deliveries.get(i), inputs.get(i), output, null, conversionNanos[i]));
+            } catch (ExecutionException e) {
+                Exception error = e.getCause() instanceof Exception cause ? cause : e;
+                results.add(new Converted(deliveries.get(i), inputs.get(i), null, error, conversionNanos[i]));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new Converted(deliveries.get(i), inputs.get(i), null, e, 0));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Publish all messages on one channel and wait once for the broker to
+     * confirm them.
+     *
+     * @throws org.springframework.amqp.AmqpException if any message is nacked
+     *                                                or the confirms time out
+     */
+    public void publishConfirmed(List<Outbound> outbound) {
+        if (outbound.isEmpty()) {
+            return;
+        }
+        rabbitTemplate.invoke(operations -> {
+            for (Outbound message : outbound) {
+                operations.convertAndSend(message.exchange(), message.routingKey(), message.body(), amqpMessage -> {
+                    message.headers().forEach(amqpMessage.getMessageProperties()::setHeader);
+                    return amqpMessage;
+                });
+            }
+            operations.waitForConfirmsOrDie(config.getConfirmTimeoutMs());
+            return null;
+        });
+    }
+
+    /**
+     * Settle a handled batch: reject (dead-letter) the deliveries with the
+     * given tags, then ack the rest with one cumulative ack.
+     */
+    public void acknowledge(Channel channel, List<Message> deliveries, Set<Long> rejectedTags) throws IOException {
+        long lastAccepted = -1;
+        for (Message delivery : deliveries) {
+            long tag = delivery.getMessageProperties().getDeliveryTag();
+            if (rejectedTags.contains(tag)) {
+                channel.basicReject(tag, false);
+            } else {
+                lastAccepted = Math.max(lastAccepted, tag);
+            }
+        }
+        if (lastAccepted >= 0) {
+            channel.basicAck(lastAccepted, true);
+        }
+    }
+
+    /**
+     * Return the whole batch to the queue for redelivery.
+     */
+    public void requeue(Channel channel, List<Message> deliveries) throws IOException {
+        long lastTag = deliveries.stream()
+                .mapToLong(delivery -> delivery.getMessageProperties().getDeliveryTag())
+                .max()
+                .orElse(-1);
+        if (lastTag >= 0) {
+            channel.basicNack(lastTag, true, true);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
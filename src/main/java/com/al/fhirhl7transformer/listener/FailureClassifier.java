@@ -0,0 +1,142 @@
+package com.al.fhirhl7transformer.listener;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.hl7v2.HL7Exception;
+import com.al.fhirhl7transformer.exception.ConversionFailedException;
+import com.al.fhirhl7transformer.exception.FhirValidationException;
+import com.al.fhirhl7transformer.exception.InvalidMessageException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides whether a failed delivery goes to the retry queues or straight to
+ * the DLQ.
+ *
+ * <p>
+ * Failures caused by the message itself - HL7 parse errors, unsupported
+ * versions, invalid FHIR JSON, validation and mapping failures - are
+ * {@link FailureClass#PERMANENT}: re-running the conversion gives the same
+ * result, so they are dead-lettered on the first attempt. Everything else
+ * (broker, database, timeouts, rejected work, and generic runtime exceptions
+ * such as a bare {@link IllegalArgumentException} from a bug or a library) is
+ * {@link FailureClass#TRANSIENT} and retried up to {@link #MAX_RETRIES}
+ * times. Further permanent types can be added with
+ * {@code app.rabbitmq.retry.permanent-exceptions}.
+ *
+ * <p>
+ * Metrics:
+ * <ul>
+ * <li>{@code fhir.listener.failures} - failed attempts by flow, failure
+ * class and action ({@code retry}, {@code dead-letter})</li>
+ * <li>{@code fhir.listener.attempts} - conversion attempts per message until
+ * it was converted or dead-lettered, by flow, class of the first failure
+ * ({@code none} if the first attempt succeeded) and outcome; the mean is the
+ * retry amplification</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+@Profile("!api")
+public class FailureClassifier {
+
+    static final int MAX_RETRIES = 3;
+    static final String FAILURE_CLASS_HEADER = "x-failure-class";
+
+    public enum FailureClass {
+        TRANSIENT,
+        PERMANENT
+    }
+
+    /**
+     * What to do with a failed delivery.
+     */
+    public record Decision(FailureClass failureClass, boolean retry) {
+    }
+
+    private static final List<Class<? extends Throwable>> PERMANENT_TYPES = List.of(
+            HL7Exception.class,
+            DataFormatException.class,
+            JsonProcessingException.class,
+            FhirValidationException.class,
+            ConversionFailedException.class,
+            InvalidMessageException.class);
+
+    private final List<Class<?>> permanentTypes = new ArrayList<>(PERMANENT_TYPES);
+    private final MeterRegistry meterRegistry;
+
+    public FailureClassifier(MeterRegistry meterRegistry,
+            @Value("${app.rabbitmq.retry.permanent-exceptions:}") List<String> extraPermanentTypes) {
+        this.meterRegistry = meterRegistry;
+        for (String className : extraPermanentTypes) {
+            if (className.isBlank()) {
+                continue;
+            }
+            try {
+                permanentTypes.add(ClassUtils.forName(className.trim(), getClass().getClassLoader()));
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.warn("Ignoring unknown permanent exception type {}", className);
+            }
+        }
+    }
+
+    /**
+     * Classify an error by its type and the types of its causes.
+     */
+    public FailureClass classify(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            for (Class<?> type : permanentTypes) {
+                if (type.isInstance(current)) {
+                    return FailureClass.PERMANENT;
+                }
+            }
+        }
+        return FailureClass.TRANSIENT;
+    }
+
+    /**
+     * Classify a failed attempt and record it.
+     *
+     * @param flow       {@code v2-to-fhir} or {@code fhir-to-v2}
+     * @param retryCount retries already made for this message
+     */
+    public Decision onFailure(String flow, Throwable error, int retryCount) {
+        FailureClass failureClass = classify(error);
+        boolean retry = failureClass == FailureClass.TRANSIENT && retryCount < MAX_RETRIES;
+        meterRegistry.counter("fhir.listener.failures", "flow", flow, "class", tag(failureClass),
+                "action", retry ? "retry" : "dead-letter").increment();
+        if (!retry) {
+            recordAttempts(flow, tag(failureClass), "dead-lettered", retryCount);
+        }
+        return new Decision(failureClass, retry);
+    }
+
+    /**
+     * Record a successful conversion.
+     *
+     * @param firstFailureClass value of the {@value #FAILURE_CLASS_HEADER}
+     *                          header, or {@code null} on the first attempt
+     */
+    public void onSuccess(String flow, String firstFailureClass, int retryCount) {
+        String failureClass = firstFailureClass == null ? "none"
+                : tag(FailureClass.PERMANENT.name().equalsIgnoreCase(firstFailureClass) ? FailureClass.PERMANENT
+                        : FailureClass.TRANSIENT);
+        recordAttempts(flow, failureClass, "converted", retryCount);
+    }
+
+    private void recordAttempts(String flow, String failureClass, String outcome, int retryCount) {
+        meterRegistry.summary("fhir.listener.attempts", "flow", flow, "class", failureClass, "outcome", outcome)
+                .record(retryCount + 1);
+    }
+
+    private static String tag(FailureClass failureClass) {
+        return failureClass.name().toLowerCase();
+    }
+}
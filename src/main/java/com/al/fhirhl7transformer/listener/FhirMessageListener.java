@@ -1,55 +1,99 @@
 package com.al.fhirhl7transformer.listener;
 
+import com.al.fhirhl7transformer.listener.BatchDeliveryHandler.Converted;
+import com.al.fhirhl7transformer.listener.BatchDeliveryHandler.Outbound;
+import com.al.fhirhl7transformer.listener.FailureClassifier.Decision;
+import com.al.fhirhl7transformer.listener.FailureClassifier.FailureClass;
+import com.al.fhirhl7transformer.service.AuditService.TransactionUpdate;
 import com.al.fhirhl7transformer.service.FhirToHl7Service;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import com.rabbitmq.client.Channel;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Component
 @Slf4j
+@Profile("!api")
 public class FhirMessageListener {
 
+    private static final String FLOW = "fhir-to-v2";
+
     private final FhirToHl7Service fhirToHl7Service;
     private final RabbitTemplate rabbitTemplate;
     // private final TransactionRepository transactionRepository; // Removed
     private final com.al.fhirhl7transformer.service.AuditService auditService; // Added
+    private final BatchDeliveryHandler batchDeliveryHandler;
+    private final FailureClassifier failureClassifier;
+    private final QueueLatencyMetrics queueLatency;
 
     @Value("${app.rabbitmq.v2.output-queue}")
     private String v2OutputQueue;
 
     @Autowired
     public FhirMessageListener(FhirToHl7Service fhirToHl7Service, RabbitTemplate rabbitTemplate,
-            com.al.fhirhl7transformer.service.AuditService auditService) {
+            com.al.fhirhl7transformer.service.AuditService auditService,
+            BatchDeliveryHandler batchDeliveryHandler,
+            FailureClassifier failureClassifier,
+            QueueLatencyMetrics queueLatency) {
         this.fhirToHl7Service = fhirToHl7Service;
         this.rabbitTemplate = rabbitTemplate;
         this.auditService = auditService;
+        this.batchDeliveryHandler = batchDeliveryHandler;
+        this.failureClassifier = failureClassifier;
+        this.queueLatency = queueLatency;
     }
 
-    @RabbitListener(queues = "${app.rabbitmq.fhir.queue}")
+    @RabbitListener(queues = "${app.rabbitmq.fhir.queue}", autoStartup = "#{!${app.rabbitmq.batch.enabled:false}}")
     public void receiveMessage(
             String fhirJson,
-            @org.springframework.messaging.handler.annotation.Header(value = "x-retry-count", required = false, defaultValue = "0") Integer retryCount) {
+            @org.springframework.messaging.handler.annotation.Header(value = "x-retry-count", required = false, defaultValue = "0") Integer retryCount,
+            @org.springframework.messaging.handler.annotation.Header(value = FailureClassifier.FAILURE_CLASS_HEADER, required = false) String failureClass,
+            @org.springframework.messaging.handler.annotation.Header(value = MessageEnvelope.TRANSACTION_ID_HEADER, required = false) String transactionIdHeader,
+            @org.springframework.messaging.handler.annotation.Header(value = MessageEnvelope.TENANT_HEADER, required = false) String tenantId,
+            @org.springframework.messaging.handler.annotation.Header(value = AmqpHeaders.CONSUMER_QUEUE, required = false) String queue,
+            @org.springframework.messaging.handler.annotation.Header(value = MessageEnvelope.ENQUEUED_AT_HEADER, required = false) Long enqueuedAt) {
+        QueueLatencyMetrics.Delivery latency = queueLatency.start(queue, null, tenantId, enqueuedAt);
         try {
             log.info("Processing FHIR message (retry attempt: {})", retryCount);
             String hl7Message = fhirToHl7Service.convertFhirToHl7(fhirJson);
+            latency.converted();
+            String transactionId = transactionIdOf(transactionIdHeader, hl7Message);
 
             // Publish to Output Queue
-            rabbitTemplate.convertAndSend(v2OutputQueue, hl7Message);
+            rabbitTemplate.convertAndSend("", v2OutputQueue, hl7Message,
+                    MessageEnvelope.headers(null, transactionId, null));
+            latency.published();
             log.info("Successfully converted and published to {}", v2OutputQueue);
+            failureClassifier.onSuccess(FLOW, failureClass, retryCount);
 
             // Update Transaction Status to PROCESSED
-            String transactionId = extractTransactionId(hl7Message);
             if (transactionId != null) {
-                auditService.updateTransactionStatus(transactionId, "PROCESSED");
+                auditService.updateTransactionSuccess(transactionId, "PROCESSED", latency.startedAt(),
+                        latency.processingMs());
             }
 
         } catch (Exception e) {
-            log.error("Error processing FHIR Message (attempt {}): {}", retryCount, e.getMessage(), e);
+            Decision decision = failureClassifier.onFailure(FLOW, e, retryCount);
+            log.error("Error processing FHIR Message (attempt {}, {}): {}", retryCount, decision.failureClass(),
+                    e.getMessage(), e);
 
-            if (retryCount < 3) {
+            if (decision.retry()) {
                 // Route to appropriate retry queue
                 int nextRetry = retryCount + 1;
                 String retryRoutingKey = "fhir.retry." + nextRetry;
@@ -60,18 +104,114 @@ public class FhirMessageListener {
                         fhirJson,
                         message -> {
                             message.getMessageProperties().setHeader("x-retry-count", nextRetry);
+                            if (transactionIdHeader != null) {
+                                message.getMessageProperties().setHeader(MessageEnvelope.TRANSACTION_ID_HEADER,
+                                        transactionIdHeader);
+                            }
                             message.getMessageProperties().setHeader("x-first-failure-reason",
                                     e.getClass().getSimpleName());
+                            message.getMessageProperties().setHeader(FailureClassifier.FAILURE_CLASS_HEADER,
+                                    decision.failureClass().name());
                             return message;
                         });
 
                 log.info("Message routed to retry queue '{}' (attempt {} of 3)", retryRoutingKey, nextRetry);
+            } else if (decision.failureClass() == FailureClass.PERMANENT) {
+                // Permanent failure: reject so the queue dead-letters it without retrying
+                log.error("Permanent failure for FHIR message, dead-lettering without retry");
+                throw new AmqpRejectAndDontRequeueException("Permanent failure, not retried", e);
             } else {
                 // Max retries exhausted
                 log.error("Max retries exhausted for FHIR message");
-                throw new RuntimeException("Max retries exceeded after 3 attempts", e);
+                throw new AmqpRejectAndDontRequeueException("Max retries exceeded after 3 attempts", e);
+            }
+        }
+    }
+
+    /**
+     * Batch variant of {@link #receiveMessage}, active when
+     * {@code app.rabbitmq.batch.enabled=true}. See
+     * {@link Hl7MessageListener#receiveBatch}.
+     */
+    @RabbitListener(queues = "${app.rabbitmq.fhir.queue}", containerFactory = "batchListenerContainerFactory",
+            autoStartup = "${app.rabbitmq.batch.enabled:false}")
+    public void receiveBatch(List<Message> deliveries, Channel channel) throws IOException {
+        List<QueueLatencyMetrics.Delivery> latencies = deliveries.stream().map(queueLatency::start).toList();
+        List<Converted> results = batchDeliveryHandler.convertAll(deliveries, fhirToHl7Service::convertFhirToHl7);
+
+        List<Outbound> outbound = new ArrayList<>();
+        List<QueueLatencyMetrics.Delivery> published = new ArrayList<>();
+        List<TransactionUpdate> updates = new ArrayList<>();
+        Set<Long> rejectedTags = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            Converted result = results.get(i);
+            if (result.succeeded()) {
+                QueueLatencyMetrics.Delivery latency = latencies.get(i);
+                latency.converted(result.conversionNanos());
+                published.add(latency);
+                failureClassifier.onSuccess(FLOW, result.failureClass(), result.retryCount());
+                String transactionId = transactionIdOf(result.transactionId(), result.output());
+                outbound.add(Outbound.toQueue(v2OutputQueue, result.output(), null, transactionId));
+                if (transactionId != null) {
+                    updates.add(TransactionUpdate.success(transactionId, "PROCESSED", latency.startedAt(),
+                            latency.processingMs()));
+                }
+                continue;
+            }
+
+            Exception e = result.error();
+            int retryCount = result.retryCount();
+            Decision decision = failureClassifier.onFailure(FLOW, e, retryCount);
+            log.error("Error processing FHIR Message (attempt {}, {}): {}", retryCount, decision.failureClass(),
+                    e.getMessage());
+            if (decision.retry()) {
+                int nextRetry = retryCount + 1;
+                Map<String, Object> headers = new HashMap<>();
+                headers.put("x-retry-count", nextRetry);
+                headers.put("x-first-failure-reason", e.getClass().getSimpleName());
+                headers.put(FailureClassifier.FAILURE_CLASS_HEADER, decision.failureClass().name());
+                if (result.transactionId() != null) {
+                    headers.put(MessageEnvelope.TRANSACTION_ID_HEADER, result.transactionId());
+                }
+                outbound.add(new Outbound("fhir-messages-exchange", "fhir.retry." + nextRetry, result.input(),
+                        headers));
+            } else {
+                // Permanent failure or max retries exhausted: reject so the queue dead-letters it
+                log.error("{} for FHIR message", decision.failureClass() == FailureClass.PERMANENT
+                        ? "Permanent failure, not retried" : "Max retries exhausted");
+                rejectedTags.add(result.deliveryTag());
             }
         }
+
+        try {
+            long publishStart = System.nanoTime();
+            batchDeliveryHandler.publishConfirmed(outbound);
+            long publishNanos = System.nanoTime() - publishStart;
+            published.forEach(latency -> latency.published(publishNanos));
+        } catch (Exception e) {
+            log.error("Failed to publish FHIR batch of {}, requeueing: {}", deliveries.size(),
+                    e.getMessage(), e);
+            batchDeliveryHandler.requeue(channel, deliveries);
+            return;
+        }
+        try {
+            auditService.applyUpdates(updates);
+        } catch (Exception e) {
+            // The outputs are confirmed; requeueing would publish every one of them again
+            log.error("Failed to audit FHIR batch of {}, {} transaction updates not stored: {}",
+                    deliveries.size(), updates.size(), e.getMessage(), e);
+        }
+        batchDeliveryHandler.acknowledge(channel, deliveries, rejectedTags);
+        log.info("Processed FHIR batch of {}: {} published to {}, {} dead-lettered", deliveries.size(),
+                results.stream().filter(Converted::succeeded).count(), v2OutputQueue, rejectedTags.size());
+    }
+
+    /**
+     * The transaction id from the message header, falling back to MSH-10 of
+     * the converted message for messages published without one.
+     */
+    private String transactionIdOf(String header, String hl7Message) {
+        return header != null ? header : extractTransactionId(hl7Message);
     }
 
     /**
@@ -1,22 +1,49 @@
 package com.al.fhirhl7transformer.listener;
 
+import com.al.fhirhl7transformer.config.PartitionConfiguration;
+import com.al.fhirhl7transformer.listener.BatchDeliveryHandler.Converted;
+import com.al.fhirhl7transformer.listener.BatchDeliveryHandler.Outbound;
+import com.al.fhirhl7transformer.listener.FailureClassifier.Decision;
+import com.al.fhirhl7transformer.listener.FailureClassifier.FailureClass;
+import com.al.fhirhl7transformer.service.AuditService.TransactionUpdate;
 import com.al.fhirhl7transformer.service.Hl7ToFhirService;
 import com.al.fhirhl7transformer.service.WebhookService;
 import com.al.fhirhl7transformer.service.AuditService;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import com.rabbitmq.client.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Component
+@Profile("!api")
 public class Hl7MessageListener {
 
     private static final Logger log = LoggerFactory.getLogger(Hl7MessageListener.class);
+    private static final String FLOW = "v2-to-fhir";
     private final Hl7ToFhirService hl7ToFhirService;
     private final org.springframework.amqp.rabbit.core.RabbitTemplate rabbitTemplate;
     private final AuditService auditService;
     private final WebhookService webhookService;
+    private final BatchDeliveryHandler batchDeliveryHandler;
+    private final FailureClassifier failureClassifier;
+    private final QueueLatencyMetrics queueLatency;
 
     @Value("${app.rabbitmq.output-queue}")
     private String outputQueue;
@@ -24,21 +51,42 @@ public class Hl7MessageListener {
     @Value("${app.webhook.url:#{null}}")
     private String defaultWebhookUrl;
 
+    @Value("${app.rabbitmq.envelope.compact-json:true}")
+    private boolean compactJson;
+
+    @Value("${app.rabbitmq.partitions.retry-delay-ms:5000}")
+    private long partitionRetryDelayMs;
+
     public Hl7MessageListener(Hl7ToFhirService hl7ToFhirService,
             org.springframework.amqp.rabbit.core.RabbitTemplate rabbitTemplate,
             AuditService auditService,
-            WebhookService webhookService) {
+            WebhookService webhookService,
+            BatchDeliveryHandler batchDeliveryHandler,
+            FailureClassifier failureClassifier,
+            QueueLatencyMetrics queueLatency) {
         this.hl7ToFhirService = hl7ToFhirService;
         this.rabbitTemplate = rabbitTemplate;
         this.auditService = auditService;
         this.webhookService = webhookService;
+        this.batchDeliveryHandler = batchDeliveryHandler;
+        this.failureClassifier = failureClassifier;
+        this.queueLatency = queueLatency;
     }
 
-    @RabbitListener(queues = "${app.rabbitmq.queue}")
+    // With lanes enabled, LaneListenerConfiguration consumes this queue as the default lane
+    @RabbitListener(queues = "${app.rabbitmq.queue}",
+            autoStartup = "#{!${app.rabbitmq.batch.enabled:false} and !${app.rabbitmq.lanes.enabled:false}}")
     public void receiveMessage(
             String hl7Message,
-            @org.springframework.messaging.handler.annotation.Header(value = "tenantId", required = false) String tenantId,
-            @org.springframework.messaging.handler.annotation.Header(value = "x-retry-count", required = false, defaultValue = "0") Integer retryCount) {
+            @org.springframework.messaging.handler.annotation.Header(value = MessageEnvelope.TENANT_HEADER, required = false) String tenantId,
+            @org.springframework.messaging.handler.annotation.Header(value = "x-retry-count", required = false, defaultValue = "0") Integer retryCount,
+            @org.springframework.messaging.handler.annotation.Header(value = FailureClassifier.FAILURE_CLASS_HEADER, required = false) String failureClass,
+            @org.springframework.messaging.handler.annotation.Header(value = MessageEnvelope.TRANSACTION_ID_HEADER, required = false) String transactionIdHeader,
+            @org.springframework.messaging.handler.annotation.Header(value = AmqpHeaders.CONSUMER_QUEUE, required = false) String queue,
+            @org.springframework.messaging.handler.annotation.Header(value = MessageEnvelope.ENQUEUED_AT_HEADER, required = false) Long enqueuedAt,
+            @org.springframework.messaging.handler.annotation.Header(value = LaneMetricsAdvice.LANE_HEADER, required = false) String lane) {
+        String transactionId = transactionIdOf(transactionIdHeader, hl7Message);
+        QueueLatencyMetrics.Delivery latency = queueLatency.start(queue, lane, tenantId, enqueuedAt);
         try {
             if (tenantId != null) {
                 com.al.fhirhl7transformer.config.TenantContext.setTenantId(tenantId);
@@ -46,16 +94,20 @@ public class Hl7MessageListener {
             log.info("Processing HL7 message with TenantID: {} (retry attempt: {})", tenantId, retryCount);
 
             // Convert
-            String fhirBundle = hl7ToFhirService.convertHl7ToFhir(hl7Message);
+            String fhirBundle = hl7ToFhirService.convertHl7ToFhir(hl7Message, true, !compactJson);
+            latency.converted();
 
             // Publish to Output Queue
-            rabbitTemplate.convertAndSend(outputQueue, fhirBundle);
+            rabbitTemplate.convertAndSend("", outputQueue, fhirBundle,
+                    MessageEnvelope.headers(tenantId, transactionId, null));
+            latency.published();
             log.info("Successfully converted and published to {}", outputQueue);
+            failureClassifier.onSuccess(FLOW, failureClass, retryCount);
 
             // Update Status and Notify
-            String transactionId = extractTransactionId(hl7Message);
             if (transactionId != null) {
-                auditService.updateTransactionSuccess(transactionId, "COMPLETED");
+                auditService.updateTransactionSuccess(transactionId, "COMPLETED", latency.startedAt(),
+                        latency.processingMs());
                 if (defaultWebhookUrl != null) {
                     // Pass 0 for resourceCount as we don't parse the bundle here for perf reasons
                     webhookService.notifyCompletion(defaultWebhookUrl, transactionId, "V2_TO_FHIR", 0);
@@ -63,11 +115,11 @@ public class Hl7MessageListener {
             }
 
         } catch (Exception e) {
-            log.error("Error processing HL7 Message (attempt {}): {}", retryCount, e.getMessage(), e);
-
-            String transactionId = extractTransactionId(hl7Message);
+            Decision decision = failureClassifier.onFailure(FLOW, e, retryCount);
+            log.error("Error processing HL7 Message (attempt {}, {}): {}", retryCount, decision.failureClass(),
+                    e.getMessage(), e);
 
-            if (retryCount < 3) {
+            if (decision.retry()) {
                 // Route to appropriate retry queue
                 int nextRetry = retryCount + 1;
                 String retryRoutingKey = "hl7.retry." + nextRetry;
@@ -77,21 +129,34 @@ public class Hl7MessageListener {
                     auditService.updateTransactionFailure(transactionId, "RETRYING", e.getMessage(), nextRetry);
                 }
 
+                if (PartitionConfiguration.isPartitionQueue(queue)) {
+                    // The retry queues lead back to the main queue, where the patient's next message could
+                    // overtake this one: retry in place and keep the partition's only consumer busy instead
+                    holdPartition(queue, nextRetry);
+                    receiveMessage(hl7Message, tenantId, nextRetry, decision.failureClass().name(), transactionId,
+                            queue, null, lane);
+                    return;
+                }
+
                 rabbitTemplate.convertAndSend(
                         "hl7-messages-exchange",
                         retryRoutingKey,
                         hl7Message,
                         message -> {
                             message.getMessageProperties().setHeader("x-retry-count", nextRetry);
-                            message.getMessageProperties().setHeader("tenantId", tenantId);
+                            message.getMessageProperties().setHeader(MessageEnvelope.TENANT_HEADER, tenantId);
+                            message.getMessageProperties().setHeader(MessageEnvelope.TRANSACTION_ID_HEADER,
+                                    transactionId);
                             message.getMessageProperties().setHeader("x-first-failure-reason",
                                     e.getClass().getSimpleName());
+                            message.getMessageProperties().setHeader(FailureClassifier.FAILURE_CLASS_HEADER,
+                                    decision.failureClass().name());
                             return message;
                         });
 
                 log.info("Message routed to retry queue '{}' (attempt {} of 3)", retryRoutingKey, nextRetry);
             } else {
-                // Max retries exhausted
+                // Permanent failure or max retries exhausted: reject so the queue dead-letters it
                 if (transactionId != null) {
                     auditService.updateTransactionFailure(transactionId, "FAILED", e.getMessage(), retryCount);
                     if (defaultWebhookUrl != null) {
@@ -99,8 +164,12 @@ public class Hl7MessageListener {
                                 retryCount);
                     }
                 }
+                if (decision.failureClass() == FailureClass.PERMANENT) {
+                    log.error("Permanent failure for transaction {}, dead-lettering without retry", transactionId);
+                    throw new AmqpRejectAndDontRequeueException("Permanent failure, not retried", e);
+                }
                 log.error("Max retries exhausted for transaction: {}", transactionId);
-                throw new RuntimeException("Max retries exceeded after 3 attempts", e);
+                throw new AmqpRejectAndDontRequeueException("Max retries exceeded after 3 attempts", e);
             }
 
         } finally {
@@ -108,6 +177,152 @@ public class Hl7MessageListener {
         }
     }
 
+    /**
+     * Lane-neutral entry point for the containers registered by
+     * {@code LaneListenerConfiguration}. Reads the payload and the headers
+     * that {@link #receiveMessage} gets injected on the annotated path from
+     * the raw delivery and handles it the same way.
+     */
+    public void onDelivery(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Object retryCount = properties.getHeader("x-retry-count");
+        Object enqueuedAt = properties.getHeader(MessageEnvelope.ENQUEUED_AT_HEADER);
+        receiveMessage(MessageEnvelope.bodyAsString(message),
+                MessageEnvelope.header(message, MessageEnvelope.TENANT_HEADER),
+                retryCount instanceof Number number ? number.intValue() : 0,
+                MessageEnvelope.header(message, FailureClassifier.FAILURE_CLASS_HEADER),
+                MessageEnvelope.header(message, MessageEnvelope.TRANSACTION_ID_HEADER),
+                properties.getConsumerQueue(),
+                enqueuedAt instanceof Number number ? number.longValue() : null,
+                MessageEnvelope.header(message, LaneMetricsAdvice.LANE_HEADER));
+    }
+
+    /**
+     * Batch variant of {@link #receiveMessage}, active when
+     * {@code app.rabbitmq.batch.enabled=true}. Converts the batch in parallel,
+     * publishes bundles and retries with one confirm round trip, writes all
+     * audit updates in one bulk operation and only then acknowledges. If
+     * publishing fails the whole batch is requeued. A failed audit write is
+     * logged and the batch is still acknowledged, since its outputs are
+     * already confirmed and would otherwise be published twice.
+     */
+    @RabbitListener(queues = "${app.rabbitmq.queue}", containerFactory = "batchListenerContainerFactory",
+            autoStartup = "#{${app.rabbitmq.batch.enabled:false} and !${app.rabbitmq.lanes.enabled:false}}")
+    public void receiveBatch(List<Message> deliveries, Channel channel) throws IOException {
+        List<QueueLatencyMetrics.Delivery> latencies = deliveries.stream().map(queueLatency::start).toList();
+        List<Converted> results = batchDeliveryHandler.convertAll(deliveries,
+                input -> hl7ToFhirService.convertHl7ToFhir(input, true, !compactJson));
+
+        List<Outbound> outbound = new ArrayList<>();
+        List<QueueLatencyMetrics.Delivery> published = new ArrayList<>();
+        List<TransactionUpdate> updates = new ArrayList<>();
+        Set<Long> rejectedTags = new HashSet<>();
+        List<Runnable> notifications = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            Converted result = results.get(i);
+            String transactionId = transactionIdOf(result.transactionId(), result.input());
+            int retryCount = result.retryCount();
+            if (result.succeeded()) {
+                QueueLatencyMetrics.Delivery latency = latencies.get(i);
+                latency.converted(result.conversionNanos());
+                published.add(latency);
+                failureClassifier.onSuccess(FLOW, result.failureClass(), retryCount);
+                outbound.add(Outbound.toQueue(outputQueue, result.output(), result.tenantId(), transactionId));
+                if (transactionId != null) {
+                    updates.add(TransactionUpdate.success(transactionId, "COMPLETED", latency.startedAt(),
+                            latency.processingMs()));
+                    if (defaultWebhookUrl != null) {
+                        notifications.add(() -> webhookService.notifyCompletion(defaultWebhookUrl, transactionId,
+                                "V2_TO_FHIR", 0));
+                    }
+                }
+                continue;
+            }
+
+            Exception e = result.error();
+            Decision decision = failureClassifier.onFailure(FLOW, e, retryCount);
+            log.error("Error processing HL7 Message {} (attempt {}, {}): {}", transactionId, retryCount,
+                    decision.failureClass(), e.getMessage());
+            if (decision.retry()) {
+                int nextRetry = retryCount + 1;
+                Map<String, Object> headers = new HashMap<>();
+                headers.put("x-retry-count", nextRetry);
+                if (result.tenantId() != null) {
+                    headers.put(MessageEnvelope.TENANT_HEADER, result.tenantId());
+                }
+                if (transactionId != null) {
+                    headers.put(MessageEnvelope.TRANSACTION_ID_HEADER, transactionId);
+                }
+                headers.put("x-first-failure-reason", e.getClass().getSimpleName());
+                headers.put(FailureClassifier.FAILURE_CLASS_HEADER, decision.failureClass().name());
+                outbound.add(new Outbound("hl7-messages-exchange", "hl7.retry." + nextRetry, result.input(),
+                        headers));
+                if (transactionId != null) {
+                    updates.add(TransactionUpdate.failure(transactionId, "RETRYING", e.getMessage(), nextRetry));
+                }
+            } else {
+                // Permanent failure or max retries exhausted: reject so the queue dead-letters it
+                rejectedTags.add(result.deliveryTag());
+                if (transactionId != null) {
+                    updates.add(TransactionUpdate.failure(transactionId, "FAILED", e.getMessage(), retryCount));
+                    if (defaultWebhookUrl != null) {
+                        notifications.add(() -> webhookService.notifyFailure(defaultWebhookUrl, transactionId,
+                                "V2_TO_FHIR", e.getMessage(), retryCount));
+                    }
+                }
+                log.error("{} for transaction: {}", decision.failureClass() == FailureClass.PERMANENT
+                        ? "Permanent failure, not retried" : "Max retries exhausted", transactionId);
+            }
+        }
+
+        try {
+            long publishStart = System.nanoTime();
+            batchDeliveryHandler.publishConfirmed(outbound);
+            long publishNanos = System.nanoTime() - publishStart;
+            published.forEach(latency -> latency.published(publishNanos));
+        } catch (Exception e) {
+            log.error("Failed to publish HL7 batch of {}, requeueing: {}", deliveries.size(),
+                    e.getMessage(), e);
+            batchDeliveryHandler.requeue(channel, deliveries);
+            return;
+        }
+        try {
+            auditService.applyUpdates(updates);
+        } catch (Exception e) {
+            // The outputs are confirmed; requeueing would publish every one of them again
+            log.error("Failed to audit HL7 batch of {}, {} transaction updates not stored: {}",
+                    deliveries.size(), updates.size(), e.getMessage(), e);
+        }
+        batchDeliveryHandler.acknowledge(channel, deliveries, rejectedTags);
+        notifications.forEach(Runnable::run);
+        log.info("Processed HL7 batch of {}: {} published to {}, {} dead-lettered", deliveries.size(),
+                results.stream().filter(Converted::succeeded).count(), outputQueue, rejectedTags.size());
+    }
+
+    /**
+     * Wait before retry {@code attempt} of a partition delivery, backing off
+     * like the retry queues. If the container stops meanwhile, the delivery
+     * goes back to the head of its partition queue.
+     */
+    private void holdPartition(String queue, int attempt) {
+        long delayMs = partitionRetryDelayMs * (long) Math.pow(3, attempt - 1);
+        log.info("Holding partition {} for {} ms before retry attempt {}", queue, delayMs, attempt);
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImmediateRequeueAmqpException("Interrupted while holding partition " + queue, e);
+        }
+    }
+
+    /**
+     * The transaction id from the message header, falling back to MSH-10 for
+     * messages published without one.
+     */
+    private String transactionIdOf(String header, String hl7Message) {
+        return header != null ? header : extractTransactionId(hl7Message);
+    }
+
     /**
      * Extract transaction ID from HL7 message (MSH-10 field)
      */
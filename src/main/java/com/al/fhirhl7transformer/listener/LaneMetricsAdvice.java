@@ -0,0 +1,43 @@
+package com.al.fhirhl7transformer.listener;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Listener container advice that times the listener invocations of one HL7
+ * ingress lane.
+ *
+ * <p>
+ * Metric {@code fhir.lane.processing}: listener invocation time per delivery
+ * or batch, tagged by {@code lane} and {@code outcome} ({@code ok},
+ * {@code rejected}). The queue wait of lane deliveries is recorded once, by
+ * {@link QueueLatencyMetrics} as {@code fhir.queue.wait} tagged with the
+ * {@value #LANE_HEADER} header.
+ */
+public class LaneMetricsAdvice implements MethodInterceptor {
+
+    public static final String LANE_HEADER = "x-lane";
+
+    private final String lane;
+    private final MeterRegistry meterRegistry;
+
+    public LaneMetricsAdvice(String lane, MeterRegistry meterRegistry) {
+        this.lane = lane;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "rejected";
+        try {
+            Object result = invocation.proceed();
+            outcome = "ok";
+            return result;
+        } finally {
+            sample.stop(meterRegistry.timer("fhir.lane.processing", "lane", lane, "outcome", outcome));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.al.fhirhl7transformer.listener;
+
+import com.al.fhirhl7transformer.config.LaneConfiguration;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the latency of an async conversion into the time the message waited
+ * in its queue, the conversion and the publishing of the output.
+ *
+ * <p>
+ * Metrics, tagged by input {@code queue} and the tenant's {@code tier} (see
+ * {@link LaneConfiguration#tierOf}):
+ * <ul>
+ * <li>{@code fhir.queue.wait} - time from the API publishing a message
+ * ({@value MessageEnvelope#ENQUEUED_AT_HEADER} header) until a listener
+ * received it, additionally tagged by the HL7 ingress {@code lane}
+ * ({@value LaneMetricsAdvice#LANE_HEADER} header, {@code none} for FHIR
+ * input); not recorded for retries, which are republished without the
+ * header</li>
+ * <li>{@code fhir.queue.processing} - conversion time</li>
+ * <li>{@code fhir.queue.publish} - time to publish the output, including the
+ * confirm wait for batches</li>
+ * </ul>
+ * The wait is measured across hosts, so it is only as accurate as the clock
+ * synchronization between API and worker nodes.
+ */
+@Component
+@Profile("!api")
+public class QueueLatencyMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final LaneConfiguration laneConfig;
+
+    public QueueLatencyMetrics(MeterRegistry meterRegistry, LaneConfiguration laneConfig) {
+        this.meterRegistry = meterRegistry;
+        this.laneConfig = laneConfig;
+    }
+
+    /**
+     * Record the queue wait of a delivery and start timing its processing.
+     */
+    public Delivery start(String queue, String lane, String tenantId, Long enqueuedAt) {
+        Delivery delivery = new Delivery(queue != null ? queue : "unknown", laneConfig.tierOf(tenantId));
+        if (enqueuedAt != null) {
+            meterRegistry.timer("fhir.queue.wait", "queue", delivery.queue, "tier", delivery.tier,
+                    "lane", lane != null ? lane : "none")
+                    .record(Math.max(0, System.currentTimeMillis() - enqueuedAt), TimeUnit.MILLISECONDS);
+        }
+        return delivery;
+    }
+
+    /**
+     * {@link #start(String, String, String, Long)} with queue, lane, tenant
+     * and enqueue time taken from the delivery's properties.
+     */
+    public Delivery start(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        Object enqueuedAt = properties.getHeader(MessageEnvelope.ENQUEUED_AT_HEADER);
+        return start(properties.getConsumerQueue(), MessageEnvelope.header(message, LaneMetricsAdvice.LANE_HEADER),
+                MessageEnvelope.header(message, MessageEnvelope.TENANT_HEADER),
+                enqueuedAt instanceof Number number ? number.longValue() : null);
+    }
+
+    private Timer timer(String name, Delivery delivery) {
+        return meterRegistry.timer(name, "queue", delivery.queue, "tier", delivery.tier);
+    }
+
+    /**
+     * Timing of one delivery. Call {@link #converted} once the conversion
+     * finished and {@link #published} once the output was sent.
+     */
+    public final class Delivery {
+
+        private final String queue;
+        private final String tier;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private long convertedNanos;
+
+        private Delivery(String queue, String tier) {
+            this.queue = queue;
+            this.tier = tier;
+        }
+
+        public void converted() {
+            converted(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Record a conversion that took {@code nanos}, e.g. when it ran on
+         * another thread than the one that received the delivery.
+         */
+        public void converted(long nanos) {
+            convertedNanos = startNanos + nanos;
+            timer("fhir.queue.processing", this).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void published() {
+            published(System.nanoTime() - convertedNanos);
+        }
+
+        public void published(long nanos) {
+            timer("fhir.queue.publish", this).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * When the listener started handling the delivery.
+         */
+        public LocalDateTime startedAt() {
+            return startedAt;
+        }
+
+        /**
+         * Conversion time in milliseconds.
+         */
+        public long processingMs() {
+            return TimeUnit.NANOSECONDS.toMillis(convertedNanos - startNanos);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.al.fhirhl7transformer.listener;
+
+import com.al.fhirhl7transformer.config.TenantContext;
+import com.al.fhirhl7transformer.service.FhirToHl7Service;
+import com.al.fhirhl7transformer.service.Hl7ToFhirService;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import com.al.fhirhl7transformer.util.SyncReply;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Worker side of the sync conversion dispatch: converts requests from the
+ * sync request queues and replies to the waiting API node.
+ *
+ * <p>
+ * Failures are answered with a {@link SyncReply#failure} reply instead of
+ * being thrown, so requests are never retried or dead-lettered; the caller
+ * gets the error straight away. Nothing is audited here, the API node does
+ * that as for local sync conversions.
+ */
+@Component
+@Slf4j
+@Profile("!api")
+public class SyncConversionListener {
+
+    private final Hl7ToFhirService hl7ToFhirService;
+    private final FhirToHl7Service fhirToHl7Service;
+
+    public SyncConversionListener(Hl7ToFhirService hl7ToFhirService, FhirToHl7Service fhirToHl7Service) {
+        this.hl7ToFhirService = hl7ToFhirService;
+        this.fhirToHl7Service = fhirToHl7Service;
+    }
+
+    @RabbitListener(queues = "${app.rabbitmq.sync-dispatch.hl7-queue:hl7-sync-requests-queue}",
+            autoStartup = "${app.rabbitmq.sync-dispatch.enabled:false}",
+            concurrency = "${app.rabbitmq.sync-dispatch.concurrency:2-8}")
+    public Message convertHl7ToFhir(Message request) {
+        return reply(request, MessageProperties.CONTENT_TYPE_JSON,
+                () -> hl7ToFhirService.convertHl7ToFhir(MessageEnvelope.bodyAsString(request)));
+    }
+
+    @RabbitListener(queues = "${app.rabbitmq.sync-dispatch.fhir-queue:fhir-sync-requests-queue}",
+            autoStartup = "${app.rabbitmq.sync-dispatch.enabled:false}",
+            concurrency = "${app.rabbitmq.sync-dispatch.concurrency:2-8}")
+    public Message convertFhirToHl7(Message request) {
+        return reply(request, MessageProperties.CONTENT_TYPE_TEXT_PLAIN,
+                () -> fhirToHl7Service.convertFhirToHl7(MessageEnvelope.bodyAsString(request)));
+    }
+
+    private Message reply(Message request, String contentType, Callable<String> conversion) {
+        String tenantId = MessageEnvelope.header(request, MessageEnvelope.TENANT_HEADER);
+        String transactionId = MessageEnvelope.header(request, MessageEnvelope.TRANSACTION_ID_HEADER);
+        try {
+            if (tenantId != null) {
+                TenantContext.setTenantId(tenantId);
+            }
+            return SyncReply.success(conversion.call(), contentType);
+        } catch (Exception e) {
+            log.warn("Sync conversion {} failed: {}", transactionId, e.getMessage());
+            return SyncReply.failure(e);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+}
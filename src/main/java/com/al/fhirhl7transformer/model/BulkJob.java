@@ -0,0 +1,48 @@
+package com.al.fhirhl7transformer.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of an asynchronous bulk conversion job. Input and result chunks live
+ * on the local disk of the node that accepted the job; this record tracks how
+ * far processing got so the job can resume after a restart.
+ */
+@Data
+@Document(collection = "bulk_jobs")
+@CompoundIndex(def = "{'tenantId': 1, 'createdAt': -1}", name = "tenant_created_idx")
+public class BulkJob {
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private String jobId;
+
+    private String tenantId;
+    private String status; // BulkJobStatus
+
+    // Node whose local storage holds the chunk files
+    @Indexed
+    private String nodeId;
+
+    // Chunking
+    private int chunkSize;
+    private int chunkCount;
+    private int completedChunks;
+
+    // Progress
+    private long totalMessages;
+    private long processedMessages;
+    private long successCount;
+    private long failureCount;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    private String errorMessage;
+}
@@ -0,0 +1,8 @@
+package com.al.fhirhl7transformer.model.enums;
+
+public enum BulkJobStatus {
+    ACCEPTED,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
@@ -4,5 +4,6 @@ public enum MessageType {
     V2_TO_FHIR_ASYNC,
     V2_TO_FHIR_SYNC,
     FHIR_TO_V2_ASYNC,
-    FHIR_TO_V2_SYNC
+    FHIR_TO_V2_SYNC,
+    V2_TO_FHIR_BULK
 }
@@ -0,0 +1,17 @@
+package com.al.fhirhl7transformer.repository;
+
+import com.al.fhirhl7transformer.model.BulkJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BulkJobRepository extends MongoRepository<BulkJob, String> {
+
+    Optional<BulkJob> findByJobId(String jobId);
+
+    List<BulkJob> findByNodeIdAndStatusIn(String nodeId, Collection<String> statuses);
+}
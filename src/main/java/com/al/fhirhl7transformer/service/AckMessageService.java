@@ -9,12 +9,15 @@ import ca.uhn.hl7v2.model.v25.segment.MSA;
 import ca.uhn.hl7v2.model.v25.segment.MSH;
 import ca.uhn.hl7v2.parser.Parser;
 import ca.uhn.hl7v2.util.Terser;
+import com.al.fhirhl7transformer.util.Hl7BatchReader;
+import com.al.fhirhl7transformer.util.Hl7BatchWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -197,6 +200,72 @@ public class AckMessageService {
         return hl7Context.getPipeParser().encode(ack);
     }
 
+    /**
+     * Generate a batch acknowledgment for an HL7 batch file.
+     *
+     * <p>
+     * The reply envelope swaps sender and receiver from the original FHS and
+     * references the original file/batch control IDs in FHS-12/BHS-12. The
+     * given ACK messages are wrapped in a single batch; BTS-1 holds their
+     * count and BTS-2 the optional comment (e.g., count mismatches).
+     *
+     * @param fileHeader  Original FHS segment (may be null)
+     * @param batchHeader Original BHS segment (may be null)
+     * @param acks        ACK messages to include
+     * @param comment     Optional batch comment
+     * @return The batch acknowledgment in ER7 format
+     */
+    public String generateBatchAck(String fileHeader, String batchHeader, List<String> acks, String comment)
+            throws HL7Exception {
+        String timestamp = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        String controlId = "ACK-" + UUID.randomUUID().toString().substring(0, 8);
+        String batchComment = comment != null ? Hl7BatchWriter.escapeText(truncateMessage(comment, 200)) : "";
+
+        StringBuilder batchAck = new StringBuilder();
+        batchAck.append(envelopeHeader("FHS", fileHeader, timestamp, controlId)).append('\r');
+        batchAck.append(envelopeHeader("BHS", batchHeader, timestamp, controlId)).append('\r');
+        for (String ack : acks) {
+            batchAck.append(ack.replace("\r\n", "\r").replace('\n', '\r'));
+            if (!ack.endsWith("\r")) {
+                batchAck.append('\r');
+            }
+        }
+        batchAck.append("BTS|").append(acks.size()).append('|').append(batchComment).append('\r');
+        batchAck.append("FTS|1|").append(batchComment);
+
+        log.info("Generated batch ACK with {} message ACKs", acks.size());
+        return batchAck.toString();
+    }
+
+    /**
+     * Build a reply FHS/BHS with sending and receiving sides swapped.
+     */
+    private String envelopeHeader(String segmentId, String originalHeader, String timestamp, String controlId) {
+        // Split index of header segments is the HL7 field number minus one (field 1 is the separator)
+        String origSendingApp = Hl7BatchReader.field(originalHeader, 2);
+        String origSendingFacility = Hl7BatchReader.field(originalHeader, 3);
+        String origReceivingApp = Hl7BatchReader.field(originalHeader, 4);
+        String origReceivingFacility = Hl7BatchReader.field(originalHeader, 5);
+        String origControlId = Hl7BatchReader.field(originalHeader, 10);
+
+        return String.join("|", segmentId, "^~\\&",
+                isBlank(origReceivingApp) ? "FHIR-TRANSFORMER" : origReceivingApp,
+                isBlank(origReceivingFacility) ? "TRANSFORM-FACILITY" : origReceivingFacility,
+                nullToEmpty(origSendingApp),
+                nullToEmpty(origSendingFacility),
+                timestamp, "", "", "",
+                controlId,
+                nullToEmpty(origControlId));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
     /**
      * Truncate a message to fit within HL7 field limits.
      */
@@ -6,10 +6,16 @@ import com.al.fhirhl7transformer.model.enums.TransactionStatus;
 import com.al.fhirhl7transformer.repository.TransactionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Service
 public class AuditService {
@@ -17,9 +23,11 @@ public class AuditService {
     private static final Logger log = LoggerFactory.getLogger(AuditService.class);
 
     private final TransactionRepository transactionRepository;
+    private final MongoTemplate mongoTemplate;
 
-    public AuditService(TransactionRepository transactionRepository) {
+    public AuditService(TransactionRepository transactionRepository, MongoTemplate mongoTemplate) {
         this.transactionRepository = transactionRepository;
+        this.mongoTemplate = mongoTemplate;
     }
 
     @Async
@@ -83,4 +91,77 @@ public class AuditService {
             log.error("Failed to update success details for transaction ID {}: {}", transactionId, e.getMessage(), e);
         }
     }
+
+    /**
+     * {@link #updateTransactionSuccess(String, String)} that also stores when
+     * a listener started processing the message and how long the conversion
+     * took.
+     */
+    @Async
+    public void updateTransactionSuccess(String transactionId, String status, LocalDateTime processingStartedAt,
+            long processingDurationMs) {
+        try {
+            transactionRepository.findByTransactionId(transactionId).ifPresent(record -> {
+                record.setStatus(status);
+                record.setProcessingStartedAt(processingStartedAt);
+                record.setProcessingDurationMs(processingDurationMs);
+                record.setProcessingCompletedAt(LocalDateTime.now());
+                transactionRepository.save(record);
+            });
+        } catch (Exception e) {
+            log.error("Failed to update success details for transaction ID {}: {}", transactionId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Apply status updates for many transactions in one unordered bulk write.
+     * Runs on the caller's thread and propagates failures, so batch listeners
+     * can log updates that were not stored.
+     */
+    public void applyUpdates(List<TransactionUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TransactionRecord.class);
+        for (TransactionUpdate update : updates) {
+            bulk.updateOne(Query.query(Criteria.where("transactionId").is(update.transactionId())), update.update());
+        }
+        bulk.execute();
+    }
+
+    /**
+     * A pending status change for one transaction; the factories mirror
+     * {@link #updateTransactionSuccess}, {@link #updateTransactionFailure}
+     * and {@link #updateTransactionStatus}.
+     */
+    public record TransactionUpdate(String transactionId, Update update) {
+
+        public static TransactionUpdate status(String transactionId, String status) {
+            return new TransactionUpdate(transactionId, new Update().set("status", status));
+        }
+
+        public static TransactionUpdate success(String transactionId, String status) {
+            return new TransactionUpdate(transactionId, new Update()
+                    .set("status", status)
+                    .set("processingCompletedAt", LocalDateTime.now()));
+        }
+
+        public static TransactionUpdate success(String transactionId, String status,
+                LocalDateTime processingStartedAt, long processingDurationMs) {
+            TransactionUpdate update = success(transactionId, status);
+            update.update()
+                    .set("processingStartedAt", processingStartedAt)
+                    .set("processingDurationMs", processingDurationMs);
+            return update;
+        }
+
+        public static TransactionUpdate failure(String transactionId, String status, String errorMessage,
+                int retryCount) {
+            return new TransactionUpdate(transactionId, new Update()
+                    .set("status", status)
+                    .set("lastErrorMessage", errorMessage)
+                    .set("retryCount", retryCount)
+                    .set("lastRetryAt", LocalDateTime.now()));
+        }
+    }
 }
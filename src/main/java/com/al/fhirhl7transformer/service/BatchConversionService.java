@@ -1,24 +1,58 @@
 package com.al.fhirhl7transformer.service;
 
+import com.al.fhirhl7transformer.config.TenantContext;
 import com.al.fhirhl7transformer.dto.BatchConversionResponse;
 import com.al.fhirhl7transformer.dto.BatchConversionResponse.ConversionError;
 import com.al.fhirhl7transformer.dto.BatchConversionResponse.ConversionResult;
+import com.al.fhirhl7transformer.service.ConversionScheduler.Lane;
+import com.al.fhirhl7transformer.util.Hl7BatchReader;
+import com.al.fhirhl7transformer.util.Hl7BatchWriter;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.hl7v2.HL7Exception;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 
 /**
  * Service for batch conversion operations with parallel processing.
  * 
  * <p>
- * Processes multiple messages in parallel using a thread pool for optimal
- * performance.
+ * Processes multiple messages in parallel on the shared
+ * {@link ConversionScheduler} (BATCH lane), which bounds CPU use and shares
+ * workers fairly with sync requests. List batches run in a {@link BatchScope}
+ * with an optional deadline and fail-fast cancellation.
  * Handles both HL7 to FHIR and FHIR to HL7 batch conversions.
  * 
  * @author FHIR Transformer Team
@@ -27,21 +61,39 @@ import java.util.concurrent.Executors;
  */
 @Service
 @Slf4j
+@Profile("!worker")
 public class BatchConversionService {
 
     private final Hl7ToFhirService hl7ToFhirService;
     private final FhirToHl7Service fhirToHl7Service;
+    private final ObjectMapper objectMapper;
+    private final AckMessageService ackMessageService;
+    private final ConversionScheduler conversionScheduler;
     private final ExecutorService executorService;
+    private final int streamConcurrency;
+    private final long batchTimeoutMs;
 
     @Autowired
     public BatchConversionService(Hl7ToFhirService hl7ToFhirService,
-            FhirToHl7Service fhirToHl7Service) {
+            FhirToHl7Service fhirToHl7Service,
+            ObjectMapper objectMapper,
+            AckMessageService ackMessageService,
+            ConversionScheduler conversionScheduler,
+            @Value("${app.batch.stream-concurrency:0}") int streamConcurrency,
+            @Value("${app.batch.timeout-ms:0}") long batchTimeoutMs) {
         this.hl7ToFhirService = hl7ToFhirService;
         this.fhirToHl7Service = fhirToHl7Service;
-        // Java 21 Virtual Threads: lightweight, scalable threading for I/O-bound tasks
-        // Each conversion task runs on a virtual thread with minimal overhead
+        this.objectMapper = objectMapper;
+        this.ackMessageService = ackMessageService;
+        this.conversionScheduler = conversionScheduler;
+        this.batchTimeoutMs = batchTimeoutMs;
+        // 0 = one in-flight conversion per core; conversion is CPU-bound
+        this.streamConcurrency = streamConcurrency > 0 ? streamConcurrency
+                : Runtime.getRuntime().availableProcessors();
+        // Conversions run on the shared CPU-bound ConversionScheduler (BATCH lane);
+        // virtual threads only handle the blocking response writes of streaming calls
         this.executorService = Executors.newVirtualThreadPerTaskExecutor();
-        log.info("BatchConversionService initialized with Java 21 virtual threads");
+        log.info("BatchConversionService initialized on the shared conversion scheduler");
     }
 
     /**
@@ -51,164 +103,535 @@ public class BatchConversionService {
      * @return BatchConversionResponse with results and errors
      */
     public BatchConversionResponse convertHl7ToFhirBatch(List<String> hl7Messages) {
-        long startTime = System.currentTimeMillis();
+        return convertHl7ToFhirBatch(hl7Messages, false);
+    }
+
+    /**
+     * Convert multiple HL7 messages to FHIR in parallel.
+     * 
+     * @param hl7Messages List of HL7 v2.5 messages
+     * @param failFast    cancel the remaining conversions after the first failure
+     * @return BatchConversionResponse with results and errors
+     */
+    public BatchConversionResponse convertHl7ToFhirBatch(List<String> hl7Messages, boolean failFast) {
         log.info("Starting batch HL7 to FHIR conversion: {} messages", hl7Messages.size());
+        // Message ID is extracted from the FHIR result if possible
+        BatchConversionResponse response = convertBatch(hl7Messages, failFast,
+                hl7ToFhirService::convertHl7ToFhir, this::extractMessageId);
+        log.info("Batch HL7 to FHIR conversion completed: {} success, {} failures, {}ms total",
+                response.getSuccessCount(), response.getFailureCount(), response.getProcessingTimeMs());
+        return response;
+    }
 
+    /**
+     * Convert multiple FHIR bundles to HL7 in parallel.
+     * 
+     * @param fhirBundles List of FHIR Bundle JSON strings
+     * @return BatchConversionResponse with results and errors
+     */
+    public BatchConversionResponse convertFhirToHl7Batch(List<String> fhirBundles) {
+        return convertFhirToHl7Batch(fhirBundles, false);
+    }
+
+    /**
+     * Convert multiple FHIR bundles to HL7 in parallel.
+     * 
+     * @param fhirBundles List of FHIR Bundle JSON strings
+     * @param failFast    cancel the remaining conversions after the first failure
+     * @return BatchConversionResponse with results and errors
+     */
+    public BatchConversionResponse convertFhirToHl7Batch(List<String> fhirBundles, boolean failFast) {
+        log.info("Starting batch FHIR to HL7 conversion: {} bundles", fhirBundles.size());
+        // Message ID is MSH-10 of the HL7 result
+        BatchConversionResponse response = convertBatch(fhirBundles, failFast,
+                fhirToHl7Service::convertFhirToHl7, this::extractHl7MessageId);
+        log.info("Batch FHIR to HL7 conversion completed: {} success, {} failures, {}ms total",
+                response.getSuccessCount(), response.getFailureCount(), response.getProcessingTimeMs());
+        return response;
+    }
+
+    /**
+     * Converts one batch input.
+     */
+    @FunctionalInterface
+    private interface BatchConverter {
+        String convert(String input) throws Exception;
+    }
+
+    /**
+     * Core of the list batch endpoints. All conversions run in one
+     * {@link BatchScope}: the batch waits at most {@code app.batch.timeout-ms},
+     * and with {@code failFast} the first failure cancels everything still
+     * queued. Cancelled messages are reported as errors with the reason.
+     */
+    private BatchConversionResponse convertBatch(List<String> inputs, boolean failFast, BatchConverter converter,
+            UnaryOperator<String> messageIdExtractor) {
+        long startTime = System.currentTimeMillis();
         BatchConversionResponse response = new BatchConversionResponse();
-        response.setTotalMessages(hl7Messages.size());
+        response.setTotalMessages(inputs.size());
         response.setResults(new ArrayList<>());
         response.setErrors(new ArrayList<>());
 
-        // Create futures for parallel processing
-        List<CompletableFuture<ConversionResult>> futures = new ArrayList<>();
+        try (BatchScope<ConversionResult> scope = new BatchScope<>(conversionScheduler, failFast, batchTimeoutMs)) {
+            for (int i = 0; i < inputs.size(); i++) {
+                final int index = i;
+                final String input = inputs.get(i);
+                scope.fork(() -> {
+                    long msgStartTime = System.currentTimeMillis();
+                    String output = converter.convert(input);
+                    return new ConversionResult(index, output, System.currentTimeMillis() - msgStartTime,
+                            messageIdExtractor.apply(output));
+                });
+            }
 
-        for (int i = 0; i < hl7Messages.size(); i++) {
-            final int index = i;
-            final String hl7Message = hl7Messages.get(i);
+            try {
+                scope.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (scope.isDeadlineExceeded()) {
+                log.warn("Batch deadline of {}ms exceeded, remaining conversions cancelled", batchTimeoutMs);
+            }
 
-            CompletableFuture<ConversionResult> future = CompletableFuture.supplyAsync(() -> {
-                long msgStartTime = System.currentTimeMillis();
+            // Collect results and errors
+            for (int i = 0; i < inputs.size(); i++) {
                 try {
-                    String fhirJson = hl7ToFhirService.convertHl7ToFhir(hl7Message);
-                    long msgEndTime = System.currentTimeMillis();
-
-                    // Extract message ID from result if possible
-                    String messageId = extractMessageId(fhirJson);
-
-                    return new ConversionResult(
-                            index,
-                            fhirJson,
-                            msgEndTime - msgStartTime,
-                            messageId);
+                    response.getResults().add(scope.result(i));
+                    response.setSuccessCount(response.getSuccessCount() + 1);
                 } catch (Exception e) {
-                    log.error("Failed to convert message at index {}", index, e);
-                    // Return null to indicate failure
-                    return null;
+                    if (!(e instanceof CancellationException)) {
+                        log.error("Failed to convert message at index {}", i, e);
+                    }
+                    response.getErrors().add(new ConversionError(i, e.getMessage(), truncate(inputs.get(i), 200)));
+                    response.setFailureCount(response.getFailureCount() + 1);
                 }
-            }, executorService);
+            }
+        }
+
+        response.setProcessingTimeMs(System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    /**
+     * Stream-convert newline-delimited HL7 messages to FHIR.
+     *
+     * <p>
+     * Each input line is a JSON string holding one HL7 message. At most
+     * {@code app.batch.stream-concurrency} messages are in flight; the reader
+     * blocks until a slot frees up, so a slow consumer throttles the upload
+     * instead of growing memory. Every result is written as one NDJSON line as
+     * soon as it completes (in completion order, tagged with its input index),
+     * followed by a final summary line.
+     *
+     * @param input  NDJSON request body
+     * @param output NDJSON response body
+     * @return summary counts (results and errors are not retained)
+     */
+    public BatchConversionResponse streamHl7ToFhir(InputStream input, OutputStream output) throws IOException {
+        log.info("Starting streaming HL7 to FHIR conversion with concurrency {}", streamConcurrency);
+
+        BatchConversionResponse summary = streamConversions(lineSource(input), this::convertStreamLine,
+                outcome -> writeLine(output, outcome));
+
+        writeLine(output, summaryLine(summary));
+
+        log.info("Streaming HL7 to FHIR conversion completed: {} success, {} failures, {}ms total",
+                summary.getSuccessCount(), summary.getFailureCount(), summary.getProcessingTimeMs());
+        return summary;
+    }
+
+    /**
+     * Convert one chunk of a bulk job.
+     *
+     * <p>
+     * Input lines are read as for {@link #streamHl7ToFhir}; outcome indexes
+     * are offset by {@code firstIndex} so they refer to the position in the
+     * whole job. No summary line is written and lines are not flushed
+     * individually, since the output is a file rather than a client.
+     *
+     * @param input      NDJSON chunk
+     * @param output     NDJSON result file
+     * @param firstIndex job-wide index of the first message in the chunk
+     * @return summary counts for the chunk
+     */
+    public BatchConversionResponse convertHl7ToFhirChunk(InputStream input, OutputStream output, int firstIndex)
+            throws IOException {
+        return streamConversions(lineSource(input),
+                (index, line) -> convertStreamLine(firstIndex + index, line),
+                outcome -> {
+                    output.write(objectMapper.writeValueAsBytes(outcome));
+                    output.write('\n');
+                });
+    }
 
-            futures.add(future);
+    /**
+     * Stream-convert an HL7 batch file (FHS/BHS ... BTS/FTS envelope) to FHIR.
+     *
+     * <p>
+     * The file is split into messages in a single pass by
+     * {@link Hl7BatchReader} and converted with the same bounded concurrency as
+     * {@link #streamHl7ToFhir}. One NDJSON line is written per message (MSH-10
+     * as {@code messageId}); the final summary line adds the BTS/FTS count
+     * check results and a batch acknowledgment. The batch ACK follows the
+     * exceptions-only convention: it carries an ACK for every failed message
+     * and BTS-1 holds the number of ACKs included.
+     *
+     * @param input  HL7 batch file
+     * @param output NDJSON response body
+     * @return summary counts
+     */
+    public BatchConversionResponse streamHl7BatchToFhir(InputStream input, OutputStream output) throws IOException {
+        log.info("Starting HL7 batch file conversion with concurrency {}", streamConcurrency);
+        Hl7BatchReader batchReader = new Hl7BatchReader(input);
+        Map<Integer, String> negativeAcks = new ConcurrentSkipListMap<>();
+
+        BatchConversionResponse summary = streamConversions(batchReader::nextMessage,
+                (index, hl7Message) -> convertBatchMessage(index, hl7Message, negativeAcks),
+                outcome -> writeLine(output, outcome));
+
+        List<String> countErrors = batchReader.getCountErrors();
+        String comment = countErrors.isEmpty() ? null : String.join("; ", countErrors);
+        String batchAck;
+        try {
+            batchAck = ackMessageService.generateBatchAck(batchReader.getFileHeader(), batchReader.getBatchHeader(),
+                    new ArrayList<>(negativeAcks.values()), comment);
+        } catch (HL7Exception e) {
+            throw new IOException("Failed to generate batch acknowledgment", e);
         }
 
-        // Wait for all conversions to complete
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        Map<String, Object> summaryLine = summaryLine(summary);
+        summaryLine.put("batchCount", batchReader.getBatchCount());
+        summaryLine.put("countErrors", countErrors);
+        summaryLine.put("batchAck", batchAck);
+        writeLine(output, summaryLine);
 
-        // Collect results and errors
-        for (int i = 0; i < futures.size(); i++) {
-            try {
-                ConversionResult result = futures.get(i).get();
-                if (result != null) {
-                    response.getResults().add(result);
-                    response.setSuccessCount(response.getSuccessCount() + 1);
-                } else {
-                    // Conversion failed
-                    String truncatedInput = truncate(hl7Messages.get(i), 200);
-                    response.getErrors().add(new ConversionError(
-                            i,
-                            "Conversion failed - see logs for details",
-                            truncatedInput));
-                    response.setFailureCount(response.getFailureCount() + 1);
-                }
-            } catch (Exception e) {
-                String truncatedInput = truncate(hl7Messages.get(i), 200);
-                response.getErrors().add(new ConversionError(
-                        i,
-                        e.getMessage(),
-                        truncatedInput));
-                response.setFailureCount(response.getFailureCount() + 1);
+        log.info("HL7 batch file conversion completed: {} batches, {} success, {} failures, {} count errors, {}ms",
+                batchReader.getBatchCount(), summary.getSuccessCount(), summary.getFailureCount(),
+                countErrors.size(), summary.getProcessingTimeMs());
+        return summary;
+    }
+
+    /**
+     * Stream-convert FHIR Bundles in NDJSON (FHIR Bulk Data style, one Bundle
+     * per line) to an HL7 v2 batch file.
+     *
+     * <p>
+     * Lines are converted in parallel with at most
+     * {@code app.batch.stream-concurrency} in flight, but written in input
+     * order, because the order of messages in a batch is significant to
+     * receivers. The ER7 messages are wrapped in one FHS/BHS ... BTS/FTS
+     * envelope. Bundles that fail to convert are left out of the batch;
+     * BTS-1 counts only the messages written, and BTS-2/FTS-2 list the
+     * indexes of the failed lines.
+     *
+     * @param input  NDJSON request body
+     * @param output HL7 batch file response body
+     * @return summary counts
+     */
+    public BatchConversionResponse streamFhirToHl7Batch(InputStream input, OutputStream output) throws IOException {
+        log.info("Starting streaming FHIR to HL7 batch conversion with concurrency {}", streamConcurrency);
+        Hl7BatchWriter batchWriter = new Hl7BatchWriter(output, "FHIR-TRANSFORMER", "TRANSFORM-FACILITY",
+                "BATCH-" + UUID.randomUUID().toString().substring(0, 8));
+        List<ConversionError> errors = new ArrayList<>();
+
+        batchWriter.writeHeader();
+        BatchConversionResponse summary = streamConversions(lineSource(input), this::convertFhirLine, true,
+                outcome -> {
+                    if (outcome instanceof ConversionResult result) {
+                        batchWriter.writeMessage(result.getOutput());
+                    } else {
+                        ConversionError error = (ConversionError) outcome;
+                        log.debug("Bundle {} left out of the batch: {}", error.getIndex(), error.getError());
+                        errors.add(error);
+                    }
+                });
+
+        String comment = null;
+        if (!errors.isEmpty()) {
+            StringBuilder failed = new StringBuilder();
+            for (ConversionError error : errors) {
+                failed.append(failed.length() == 0 ? "" : ", ").append(error.getIndex());
             }
+            comment = errors.size() + " of " + summary.getTotalMessages() + " bundles failed: " + failed;
         }
+        batchWriter.writeTrailer(comment);
+        output.flush();
 
-        long endTime = System.currentTimeMillis();
-        response.setProcessingTimeMs(endTime - startTime);
+        log.info("Streaming FHIR to HL7 batch conversion completed: {} success, {} failures, {}ms total",
+                summary.getSuccessCount(), summary.getFailureCount(), summary.getProcessingTimeMs());
+        return summary;
+    }
 
-        log.info("Batch HL7 to FHIR conversion completed: {} success, {} failures, {}ms total",
-                response.getSuccessCount(), response.getFailureCount(), response.getProcessingTimeMs());
+    /**
+     * Receives streamed outcomes: {@link ConversionResult} or
+     * {@link ConversionError} per message, then a summary map. Calls are
+     * serialized, so implementations need not be thread-safe.
+     */
+    @FunctionalInterface
+    public interface OutcomeSink {
+        void accept(Object outcome) throws IOException;
+    }
 
-        return response;
+    /**
+     * Convert a list batch, handing each outcome to the sink the moment its
+     * conversion finishes (completion order, tagged with the input index),
+     * followed by a summary map.
+     *
+     * <p>
+     * Runs on a virtual thread with the caller's tenant and MDC, so the caller
+     * (e.g. an SSE endpoint) can return immediately. The future fails if the
+     * sink throws, e.g. because the client went away.
+     *
+     * @param hl7Messages List of HL7 v2.5 messages
+     * @param sink        receiver of the outcomes and the summary
+     * @return summary counts (results and errors are not retained)
+     */
+    public CompletableFuture<BatchConversionResponse> streamHl7ToFhirBatch(List<String> hl7Messages,
+            OutcomeSink sink) {
+        Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+        String tenantId = TenantContext.getTenantId();
+        return CompletableFuture.supplyAsync(() -> {
+            if (mdcContext != null) {
+                MDC.setContextMap(mdcContext);
+            }
+            TenantContext.setTenantId(tenantId);
+            try {
+                log.info("Starting incremental HL7 to FHIR batch conversion: {} messages", hl7Messages.size());
+                Iterator<String> messages = hl7Messages.iterator();
+                BatchConversionResponse summary = streamConversions(() -> messages.hasNext() ? messages.next() : null,
+                        (index, hl7Message) -> convertBatchMessage(index, hl7Message, null), sink);
+                synchronized (sink) {
+                    sink.accept(summaryLine(summary));
+                }
+                log.info("Incremental HL7 to FHIR batch conversion completed: {} success, {} failures, {}ms total",
+                        summary.getSuccessCount(), summary.getFailureCount(), summary.getProcessingTimeMs());
+                return summary;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                MDC.clear();
+                TenantContext.clear();
+            }
+        }, executorService);
     }
 
     /**
-     * Convert multiple FHIR bundles to HL7 in parallel.
-     * 
-     * @param fhirBundles List of FHIR Bundle JSON strings
-     * @return BatchConversionResponse with results and errors
+     * Source of raw messages for {@link #streamConversions}; returns
+     * {@code null} when exhausted.
      */
-    public BatchConversionResponse convertFhirToHl7Batch(List<String> fhirBundles) {
-        long startTime = System.currentTimeMillis();
-        log.info("Starting batch FHIR to HL7 conversion: {} bundles", fhirBundles.size());
+    @FunctionalInterface
+    private interface MessageSource {
+        String next() throws IOException;
+    }
 
-        BatchConversionResponse response = new BatchConversionResponse();
-        response.setTotalMessages(fhirBundles.size());
-        response.setResults(new ArrayList<>());
-        response.setErrors(new ArrayList<>());
+    /**
+     * Non-blank lines of an NDJSON body.
+     */
+    private MessageSource lineSource(InputStream input) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        return () -> {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    return line;
+                }
+            }
+            return null;
+        };
+    }
 
-        // Create futures for parallel processing
-        List<CompletableFuture<ConversionResult>> futures = new ArrayList<>();
+    /**
+     * {@link #streamConversions(MessageSource, BiFunction, boolean, OutcomeSink)}
+     * in completion order.
+     */
+    private BatchConversionResponse streamConversions(MessageSource source,
+            BiFunction<Integer, String, Object> converter, OutcomeSink sink) throws IOException {
+        return streamConversions(source, converter, false, sink);
+    }
 
-        for (int i = 0; i < fhirBundles.size(); i++) {
-            final int index = i;
-            final String fhirBundle = fhirBundles.get(i);
+    /**
+     * Core of the streaming endpoints: pulls messages from the source with at
+     * most {@code streamConcurrency} conversions in flight and hands each
+     * outcome ({@link ConversionResult} or {@link ConversionError}) to the sink
+     * as soon as it completes, or with {@code inOrder} as soon as all earlier
+     * messages have been handed over. A buffered outcome keeps its slot, so
+     * at most {@code streamConcurrency} messages are held either way. If the
+     * source fails or the caller is interrupted, queued conversions are
+     * skipped and running ones awaited before the failure is rethrown, so no
+     * conversion outlives the call.
+     */
+    private BatchConversionResponse streamConversions(MessageSource source,
+            BiFunction<Integer, String, Object> converter, boolean inOrder, OutcomeSink sink) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Semaphore slots = new Semaphore(streamConcurrency);
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicInteger failureCount = new AtomicInteger();
+        AtomicReference<IOException> writeFailure = new AtomicReference<>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        // Outcomes waiting for earlier ones (inOrder only), guarded by the sink
+        Map<Integer, Object> pending = new HashMap<>();
+        AtomicInteger nextIndex = new AtomicInteger();
+        boolean drained = false;
+        int total = 0;
 
-            CompletableFuture<ConversionResult> future = CompletableFuture.supplyAsync(() -> {
-                long msgStartTime = System.currentTimeMillis();
+        try {
+            String message;
+            while (writeFailure.get() == null && (message = source.next()) != null) {
+                final int index = total++;
+                final String rawMessage = message;
+                slots.acquire();
+                CompletableFuture<Object> conversion;
                 try {
-                    String hl7Message = fhirToHl7Service.convertFhirToHl7(fhirBundle);
-                    long msgEndTime = System.currentTimeMillis();
-
-                    // Extract message ID from HL7 (MSH-10)
-                    String messageId = extractHl7MessageId(hl7Message);
-
-                    return new ConversionResult(
-                            index,
-                            hl7Message,
-                            msgEndTime - msgStartTime,
-                            messageId);
-                } catch (Exception e) {
-                    log.error("Failed to convert bundle at index {}", index, e);
-                    // Return null to indicate failure, error details will be collected later
-                    return null;
+                    conversion = conversionScheduler.submit(Lane.BATCH,
+                            () -> aborted.get() ? null : converter.apply(index, rawMessage));
+                } catch (RejectedExecutionException e) {
+                    conversion = CompletableFuture.completedFuture(
+                            new ConversionError(index, e.getMessage(), truncate(rawMessage, 200)));
+                }
+                // Write from a virtual thread so conversion workers never block on the client
+                conversion.whenCompleteAsync((outcome, error) -> {
+                    // Slots given back by this completion: its own, or in order those of the outcomes written
+                    int settled = 1;
+                    try {
+                        if (aborted.get()) {
+                            return;
+                        }
+                        Object line = error != null
+                                ? new ConversionError(index, error.getMessage(), truncate(rawMessage, 200))
+                                : outcome;
+                        if (line instanceof ConversionResult) {
+                            successCount.incrementAndGet();
+                        } else {
+                            failureCount.incrementAndGet();
+                        }
+                        synchronized (sink) {
+                            if (!inOrder) {
+                                sink.accept(line);
+                            } else {
+                                settled = 0;
+                                pending.put(index, line);
+                                Object next;
+                                while (writeFailure.get() == null
+                                        && (next = pending.remove(nextIndex.get())) != null) {
+                                    nextIndex.incrementAndGet();
+                                    settled++;
+                                    sink.accept(next);
+                                }
+                            }
+                        }
+                    } catch (IOException e) {
+                        writeFailure.compareAndSet(null, e);
+                    } finally {
+                        if (inOrder && (aborted.get() || writeFailure.get() != null)) {
+                            // Nothing more is written: give back the slots of buffered outcomes too
+                            synchronized (sink) {
+                                settled += pending.size();
+                                pending.clear();
+                            }
+                        }
+                        slots.release(settled);
+                    }
+                }, executorService);
+            }
+            // Wait for the in-flight conversions to drain
+            slots.acquire(streamConcurrency);
+            drained = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Streaming conversion interrupted");
+        } finally {
+            if (!drained) {
+                // Source failed: queued conversions are skipped, running ones give back their slots when done
+                aborted.set(true);
+                try {
+                    slots.acquire(streamConcurrency);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-            }, executorService);
+            }
+        }
 
-            futures.add(future);
+        if (writeFailure.get() != null) {
+            throw writeFailure.get();
         }
 
-        // Wait for all conversions to complete
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        BatchConversionResponse summary = new BatchConversionResponse();
+        summary.setTotalMessages(total);
+        summary.setSuccessCount(successCount.get());
+        summary.setFailureCount(failureCount.get());
+        summary.setProcessingTimeMs(System.currentTimeMillis() - startTime);
+        return summary;
+    }
 
-        // Collect results and errors
-        for (int i = 0; i < futures.size(); i++) {
+    private Map<String, Object> summaryLine(BatchConversionResponse summary) {
+        Map<String, Object> summaryLine = new LinkedHashMap<>();
+        summaryLine.put("totalMessages", summary.getTotalMessages());
+        summaryLine.put("successCount", summary.getSuccessCount());
+        summaryLine.put("failureCount", summary.getFailureCount());
+        summaryLine.put("processingTimeMs", summary.getProcessingTimeMs());
+        return summaryLine;
+    }
+
+    /**
+     * Convert one message of a batch. When {@code negativeAcks} is given, a
+     * NAK is recorded for every failed message.
+     */
+    private Object convertBatchMessage(int index, String hl7Message, Map<Integer, String> negativeAcks) {
+        long msgStartTime = System.currentTimeMillis();
+        try {
+            String fhirJson = hl7ToFhirService.convertHl7ToFhir(hl7Message);
+            return new ConversionResult(index, fhirJson, System.currentTimeMillis() - msgStartTime,
+                    extractHl7MessageId(hl7Message));
+        } catch (Exception e) {
+            log.debug("Failed to convert batch message at index {}: {}", index, e.getMessage());
+            if (negativeAcks == null) {
+                return new ConversionError(index, e.getMessage(), truncate(hl7Message, 200));
+            }
             try {
-                ConversionResult result = futures.get(i).get();
-                if (result != null) {
-                    response.getResults().add(result);
-                    response.setSuccessCount(response.getSuccessCount() + 1);
-                } else {
-                    String truncatedInput = truncate(fhirBundles.get(i), 200);
-                    response.getErrors().add(new ConversionError(
-                            i,
-                            "Conversion failed - see logs for details",
-                            truncatedInput));
-                    response.setFailureCount(response.getFailureCount() + 1);
-                }
-            } catch (Exception e) {
-                String truncatedInput = truncate(fhirBundles.get(i), 200);
-                response.getErrors().add(new ConversionError(
-                        i,
-                        e.getMessage(),
-                        truncatedInput));
-                response.setFailureCount(response.getFailureCount() + 1);
+                // Reject structurally invalid messages, report other failures as application errors
+                negativeAcks.put(index, e instanceof HL7Exception || e instanceof DataFormatException
+                        ? ackMessageService.generateAckReject(hl7Message, e.getMessage())
+                        : ackMessageService.generateAckError(hl7Message, e.getMessage()));
+            } catch (Exception ackEx) {
+                log.error("Failed to generate NAK for batch message {}: {}", index, ackEx.getMessage());
             }
+            return new ConversionError(index, e.getMessage(), truncate(hl7Message, 200));
         }
+    }
 
-        long endTime = System.currentTimeMillis();
-        response.setProcessingTimeMs(endTime - startTime);
+    private Object convertStreamLine(int index, String line) {
+        long msgStartTime = System.currentTimeMillis();
+        String hl7Message = null;
+        try {
+            hl7Message = objectMapper.readValue(line, String.class);
+            String fhirJson = hl7ToFhirService.convertHl7ToFhir(hl7Message);
+            return new ConversionResult(index, fhirJson, System.currentTimeMillis() - msgStartTime,
+                    extractMessageId(fhirJson));
+        } catch (Exception e) {
+            log.debug("Failed to convert streamed message at index {}: {}", index, e.getMessage());
+            return new ConversionError(index, e.getMessage(), truncate(hl7Message != null ? hl7Message : line, 200));
+        }
+    }
 
-        log.info("Batch FHIR to HL7 conversion completed: {} success, {} failures, {}ms total",
-                response.getSuccessCount(), response.getFailureCount(), response.getProcessingTimeMs());
+    private Object convertFhirLine(int index, String fhirJson) {
+        long msgStartTime = System.currentTimeMillis();
+        try {
+            String hl7Message = fhirToHl7Service.convertFhirToHl7(fhirJson);
+            return new ConversionResult(index, hl7Message, System.currentTimeMillis() - msgStartTime,
+                    extractHl7MessageId(hl7Message));
+        } catch (Exception e) {
+            log.debug("Failed to convert streamed bundle at index {}: {}", index, e.getMessage());
+            return new ConversionError(index, e.getMessage(), truncate(fhirJson, 200));
+        }
+    }
 
-        return response;
+    private void writeLine(OutputStream output, Object value) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(value);
+        synchronized (output) {
+            output.write(json);
+            output.write('\n');
+            output.flush();
+        }
     }
 
     /**
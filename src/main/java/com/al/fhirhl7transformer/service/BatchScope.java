@@ -0,0 +1,190 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.service.ConversionScheduler.Lane;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Structured scope for the conversions of one batch.
+ *
+ * <p>
+ * Subtasks are forked onto the {@link ConversionScheduler} BATCH lane. The
+ * deadline starts when the scope is opened and covers forking too: a fork
+ * waits for room on a full lane only until the deadline. {@link #join} waits
+ * until every subtask is done, the deadline passes, or (in fail-fast mode)
+ * the first subtask fails. Whatever has not finished by then is cancelled:
+ * queued conversions never start, and {@link #close} waits for conversions
+ * already running to finish on their worker and drops their result. No
+ * subtask outlives the scope, so none holds BATCH lane capacity or the
+ * caller's context after the batch has answered.
+ *
+ * <p>
+ * Tenant and correlation context stay in {@link
+ * com.al.fhirhl7transformer.config.TenantContext} and the MDC, both
+ * ThreadLocals, rather than scoped values: {@code ScopedValue} and
+ * {@code StructuredTaskScope} are preview APIs in Java 21, and the MDC is
+ * ThreadLocal-based anyway. The scheduler copies both onto the worker for
+ * each subtask and clears them when it is done.
+ *
+ * <p>
+ * Not thread-safe; fork and join from the owning thread only.
+ *
+ * @param <T> subtask result type
+ */
+final class BatchScope<T> implements AutoCloseable {
+
+    private final ConversionScheduler scheduler;
+    private final boolean failFast;
+    private final long deadlineNanos;
+    private final List<CompletableFuture<T>> subtasks = new ArrayList<>();
+    private final CompletableFuture<Integer> firstFailure = new CompletableFuture<>();
+    private volatile boolean deadlineExceeded;
+    private volatile boolean closed;
+    private int running;
+
+    /**
+     * @param timeoutMs deadline for the whole scope from now, {@code 0} for
+     *                  none
+     */
+    BatchScope(ConversionScheduler scheduler, boolean failFast, long timeoutMs) {
+        this.scheduler = scheduler;
+        this.failFast = failFast;
+        this.deadlineNanos = timeoutMs > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs) : 0;
+    }
+
+    /**
+     * Queue a subtask. A full lane fails only this subtask; once the deadline
+     * has passed, the subtask is cancelled instead of queued.
+     *
+     * @return index of the subtask within the scope
+     */
+    int fork(Callable<T> task) {
+        int index = subtasks.size();
+        CompletableFuture<T> future;
+        try {
+            future = deadlineNanos == 0
+                    ? scheduler.submit(Lane.BATCH, () -> run(task))
+                    : scheduler.submit(Lane.BATCH, () -> run(task), remainingMs());
+        } catch (RejectedExecutionException e) {
+            if (deadlineNanos != 0 && remainingMs() == 0) {
+                deadlineExceeded = true;
+                future = new CompletableFuture<>();
+                future.cancel(false);
+            } else {
+                future = CompletableFuture.failedFuture(e);
+            }
+        }
+        subtasks.add(future);
+        future.whenComplete((result, error) -> {
+            if (error != null && !(error instanceof CancellationException)) {
+                firstFailure.complete(index);
+            }
+        });
+        return index;
+    }
+
+    /**
+     * Wait for the subtasks until the deadline, then cancel any that are
+     * still pending.
+     */
+    void join() throws InterruptedException {
+        CompletableFuture<Void> all = CompletableFuture.allOf(subtasks.toArray(new CompletableFuture[0]));
+        CompletableFuture<?> done = failFast ? CompletableFuture.anyOf(all, firstFailure) : all;
+        try {
+            if (deadlineNanos != 0) {
+                done.get(remainingMs(), TimeUnit.MILLISECONDS);
+            } else {
+                done.get();
+            }
+        } catch (TimeoutException e) {
+            deadlineExceeded = true;
+        } catch (ExecutionException e) {
+            // Individual failures are reported per subtask
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Result of a subtask.
+     *
+     * @throws Exception the subtask's failure, or {@link CancellationException}
+     *                   explaining why it was cancelled
+     */
+    T result(int index) throws Exception {
+        CompletableFuture<T> future = subtasks.get(index);
+        if (future.isCancelled()) {
+            throw new CancellationException(deadlineExceeded
+                    ? "Batch deadline exceeded before this message was converted"
+                    : "Cancelled after message " + firstFailure.getNow(-1) + " failed");
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Run a subtask on its worker unless the scope was closed first, counting
+     * it as running so {@link #close} can wait for it.
+     */
+    private T run(Callable<T> task) throws Exception {
+        synchronized (this) {
+            if (closed) {
+                throw new CancellationException("Batch scope closed");
+            }
+            running++;
+        }
+        try {
+            return task.call();
+        } finally {
+            synchronized (this) {
+                running--;
+                notifyAll();
+            }
+        }
+    }
+
+    private long remainingMs() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    /**
+     * Cancel all unfinished subtasks and wait for those already running to
+     * finish. If interrupted, stops waiting and keeps the interrupt flag.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        subtasks.forEach(future -> future.cancel(false));
+        synchronized (this) {
+            try {
+                while (running > 0) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.BulkJobConfiguration;
+import com.al.fhirhl7transformer.config.TenantContext;
+import com.al.fhirhl7transformer.dto.BatchConversionResponse;
+import com.al.fhirhl7transformer.model.BulkJob;
+import com.al.fhirhl7transformer.model.enums.BulkJobStatus;
+import com.al.fhirhl7transformer.model.enums.MessageType;
+import com.al.fhirhl7transformer.model.enums.TransactionStatus;
+import com.al.fhirhl7transformer.repository.BulkJobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous bulk HL7 to FHIR conversion jobs.
+ *
+ * <p>
+ * A submitted NDJSON body (one JSON string holding an HL7 message per line,
+ * as for the streaming endpoint) is split into chunk files of
+ * {@code app.bulk.chunk-size} messages while it is uploaded. Chunks are then
+ * converted one after another through
+ * {@link BatchConversionService#convertHl7ToFhirChunk}, each into its own
+ * NDJSON result file. A result file is written under a temporary name and
+ * renamed once complete, and only then is the chunk counted as done in Mongo
+ * and its input file deleted, so after a restart processing resumes at the
+ * first unfinished chunk.
+ *
+ * <p>
+ * Each job is also recorded as a {@code V2_TO_FHIR_BULK} transaction so it
+ * shows up in the tenant's audit log.
+ */
+@Service
+@Slf4j
+@Profile("!worker")
+public class BulkJobService {
+
+    private static final List<String> UNFINISHED = List.of(BulkJobStatus.ACCEPTED.name(),
+            BulkJobStatus.PROCESSING.name());
+
+    private final BulkJobRepository bulkJobRepository;
+    private final BatchConversionService batchConversionService;
+    private final AuditService auditService;
+    private final BulkJobConfiguration config;
+    private final Path storageDir;
+    private final ExecutorService jobExecutor;
+
+    public BulkJobService(BulkJobRepository bulkJobRepository, BatchConversionService batchConversionService,
+            AuditService auditService, BulkJobConfiguration config) {
+        this.bulkJobRepository = bulkJobRepository;
+        this.batchConversionService = batchConversionService;
+        this.auditService = auditService;
+        this.config = config;
+        this.storageDir = Paths.get(config.getStorageDir()).toAbsolutePath();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.jobExecutor = Executors.newFixedThreadPool(Math.max(1, config.getMaxConcurrentJobs()), runnable -> {
+            Thread thread = new Thread(runnable, "bulk-job-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Store the input as chunk files and queue the job.
+     *
+     * @param tenantId owner of the job
+     * @param input    NDJSON body, one JSON string per line
+     * @return the accepted job
+     */
+    public BulkJob submit(String tenantId, InputStream input) throws IOException {
+        String jobId = UUID.randomUUID().toString();
+        Path jobDir = storageDir.resolve(jobId);
+        Files.createDirectories(jobDir);
+
+        BulkJob job = new BulkJob();
+        job.setJobId(jobId);
+        job.setTenantId(tenantId);
+        job.setNodeId(config.getNodeId());
+        job.setChunkSize(config.getChunkSize());
+        job.setStatus(BulkJobStatus.ACCEPTED.name());
+        job.setCreatedAt(LocalDateTime.now());
+
+        try {
+            writeInputChunks(job, jobDir, input);
+        } catch (IOException | RuntimeException e) {
+            FileSystemUtils.deleteRecursively(jobDir);
+            throw e;
+        }
+        bulkJobRepository.save(job);
+        auditService.logTransaction(tenantId, jobId, MessageType.V2_TO_FHIR_BULK, TransactionStatus.ACCEPTED);
+        log.info("Accepted bulk job {} with {} messages in {} chunks", jobId, job.getTotalMessages(),
+                job.getChunkCount());
+
+        jobExecutor.execute(() -> process(jobId));
+        return job;
+    }
+
+    /**
+     * Job by ID, if it belongs to the tenant.
+     */
+    public Optional<BulkJob> getJob(String jobId, String tenantId) {
+        return bulkJobRepository.findByJobId(jobId).filter(job -> job.getTenantId().equals(tenantId));
+    }
+
+    /**
+     * Result file of a finished chunk.
+     *
+     * @throws IllegalArgumentException if the chunk has not been converted yet
+     */
+    public Path getOutputChunk(BulkJob job, int chunk) {
+        if (chunk < 0 || chunk >= job.getCompletedChunks()) {
+            throw new IllegalArgumentException("Chunk " + chunk + " of job " + job.getJobId() + " is not available");
+        }
+        return storageDir.resolve(job.getJobId()).resolve(outputName(chunk));
+    }
+
+    /**
+     * Re-queue jobs that were accepted or running on this node when it
+     * stopped. Runs off the startup thread so an unavailable database does not
+     * block startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeJobs() {
+        jobExecutor.execute(() -> {
+            try {
+                for (BulkJob job : bulkJobRepository.findByNodeIdAndStatusIn(config.getNodeId(), UNFINISHED)) {
+                    log.info("Resuming bulk job {} at chunk {}/{}", job.getJobId(), job.getCompletedChunks(),
+                            job.getChunkCount());
+                    jobExecutor.execute(() -> process(job.getJobId()));
+                }
+            } catch (Exception e) {
+                log.warn("Could not resume bulk jobs: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupted jobs stay PROCESSING and resume on the next start
+        jobExecutor.shutdownNow();
+    }
+
+    void process(String jobId) {
+        BulkJob job = bulkJobRepository.findByJobId(jobId).orElse(null);
+        if (job == null || !UNFINISHED.contains(job.getStatus())) {
+            return;
+        }
+        MDC.put("transformerId", jobId);
+        TenantContext.setTenantId(job.getTenantId());
+        try {
+            Path jobDir = storageDir.resolve(jobId);
+            if (!Files.isDirectory(jobDir)) {
+                throw new IOException("Storage for job " + jobId + " is missing");
+            }
+            job.setStatus(BulkJobStatus.PROCESSING.name());
+            if (job.getStartedAt() == null) {
+                job.setStartedAt(LocalDateTime.now());
+            }
+            bulkJobRepository.save(job);
+
+            for (int chunk = job.getCompletedChunks(); chunk < job.getChunkCount(); chunk++) {
+                BatchConversionResponse result = convertChunk(job, jobDir, chunk);
+                job.setCompletedChunks(chunk + 1);
+                job.setProcessedMessages(job.getProcessedMessages() + result.getTotalMessages());
+                job.setSuccessCount(job.getSuccessCount() + result.getSuccessCount());
+                job.setFailureCount(job.getFailureCount() + result.getFailureCount());
+                bulkJobRepository.save(job);
+                Files.deleteIfExists(jobDir.resolve(inputName(chunk)));
+            }
+
+            job.setStatus(BulkJobStatus.COMPLETED.name());
+            job.setCompletedAt(LocalDateTime.now());
+            bulkJobRepository.save(job);
+            auditService.updateTransactionSuccess(jobId, TransactionStatus.COMPLETED.name());
+            log.info("Bulk job {} completed: {} success, {} failures", jobId, job.getSuccessCount(),
+                    job.getFailureCount());
+        } catch (Exception e) {
+            if (interrupted(e)) {
+                log.info("Bulk job {} interrupted at chunk {}, will resume on restart", jobId,
+                        job.getCompletedChunks());
+                return;
+            }
+            log.error("Bulk job {} failed: {}", jobId, e.getMessage(), e);
+            job.setStatus(BulkJobStatus.FAILED.name());
+            job.setErrorMessage(e.getMessage());
+            job.setCompletedAt(LocalDateTime.now());
+            bulkJobRepository.save(job);
+            auditService.updateTransactionFailure(jobId, TransactionStatus.FAILED.name(), e.getMessage(), 0);
+        } finally {
+            MDC.clear();
+            TenantContext.clear();
+        }
+    }
+
+    private BatchConversionResponse convertChunk(BulkJob job, Path jobDir, int chunk) throws IOException {
+        Path input = jobDir.resolve(inputName(chunk));
+        Path output = jobDir.resolve(outputName(chunk));
+        Path partial = jobDir.resolve(outputName(chunk) + ".part");
+
+        BatchConversionResponse result;
+        try (InputStream in = Files.newInputStream(input);
+                OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial))) {
+            result = batchConversionService.convertHl7ToFhirChunk(in, out, chunk * job.getChunkSize());
+        }
+        Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return result;
+    }
+
+    /**
+     * Whether the job failed because {@link #shutdown} interrupted it. File
+     * channels report that as {@link ClosedByInterruptException}, other
+     * streams as {@link InterruptedIOException}.
+     */
+    private static boolean interrupted(Exception e) {
+        return e instanceof InterruptedIOException || e instanceof ClosedByInterruptException
+                || Thread.currentThread().isInterrupted();
+    }
+
+    private void writeInputChunks(BulkJob job, Path jobDir, InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        BufferedWriter writer = null;
+        int chunkCount = 0;
+        int inChunk = 0;
+        long total = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (writer == null || inChunk == job.getChunkSize()) {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                    writer = Files.newBufferedWriter(jobDir.resolve(inputName(chunkCount++)), StandardCharsets.UTF_8);
+                    inChunk = 0;
+                }
+                writer.write(line);
+                writer.write('\n');
+                inChunk++;
+                total++;
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        job.setChunkCount(chunkCount);
+        job.setTotalMessages(total);
+    }
+
+    private static String inputName(int chunk) {
+        return String.format("input-%05d.ndjson", chunk);
+    }
+
+    private static String outputName(int chunk) {
+        return String.format("output-%05d.ndjson", chunk);
+    }
+}
@@ -0,0 +1,145 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.PublisherConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes messages with correlated publisher confirms for the async
+ * conversion endpoints.
+ *
+ * <p>
+ * {@link #publish} hands the message to the broker over the connection
+ * factory's cached channels and returns a future that completes when the
+ * broker confirms it, so the caller can answer 202 only once the message is
+ * safely queued. The number of unconfirmed messages is bounded by
+ * {@code app.rabbitmq.publisher.max-unconfirmed}; when it is reached, callers
+ * block for up to {@code wait-timeout-ms} and are then rejected with
+ * {@link RejectedExecutionException}. Nacks and closed channels fail the
+ * future with an {@link AmqpException}. A missing confirm fails it with an
+ * {@link AmqpTimeoutException}; the broker may still have queued such a
+ * message, so callers must not treat it as lost. Its slot stays taken until
+ * the late ack or nack arrives or its channel closes, so messages the broker
+ * has not confirmed are never more than {@code max-unconfirmed}.
+ *
+ * <p>
+ * Metrics:
+ * <ul>
+ * <li>{@code fhir.publisher.confirm} - time from publish to confirm, by
+ * outcome ({@code ack}, {@code nack}, {@code timeout})</li>
+ * <li>{@code fhir.publisher.unconfirmed} - messages awaiting a confirm,
+ * including ones whose caller already timed out</li>
+ * <li>{@code fhir.publisher.rejected} - publishes rejected because too many
+ * messages were unconfirmed</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+@Profile("!worker")
+public class ConfirmedPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Semaphore unconfirmedSlots;
+    private final int maxUnconfirmed;
+    private final long waitTimeoutMs;
+    private final long confirmTimeoutMs;
+    private final Timer ackTimer;
+    private final Timer nackTimer;
+    private final Timer timeoutTimer;
+    private final Counter rejectedCounter;
+
+    public ConfirmedPublisher(RabbitTemplate rabbitTemplate, PublisherConfiguration config,
+            MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.maxUnconfirmed = config.getMaxUnconfirmed();
+        this.unconfirmedSlots = new Semaphore(maxUnconfirmed);
+        this.waitTimeoutMs = config.getWaitTimeoutMs();
+        this.confirmTimeoutMs = config.getConfirmTimeoutMs();
+        this.ackTimer = meterRegistry.timer("fhir.publisher.confirm", "outcome", "ack");
+        this.nackTimer = meterRegistry.timer("fhir.publisher.confirm", "outcome", "nack");
+        this.timeoutTimer = meterRegistry.timer("fhir.publisher.confirm", "outcome", "timeout");
+        this.rejectedCounter = meterRegistry.counter("fhir.publisher.rejected");
+        meterRegistry.gauge("fhir.publisher.unconfirmed", this, ConfirmedPublisher::getUnconfirmed);
+    }
+
+    /**
+     * Publish a message and return a future that completes once the broker
+     * has confirmed it.
+     *
+     * @throws RejectedExecutionException if no unconfirmed slot frees up
+     *                                    within the wait timeout
+     */
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Object payload,
+            MessagePostProcessor postProcessor) {
+        acquireSlot();
+        long publishedAt = System.nanoTime();
+        CorrelationData correlation = new CorrelationData(UUID.randomUUID().toString());
+        try {
+            rabbitTemplate.convertAndSend(exchange, routingKey, payload, postProcessor, correlation);
+        } catch (RuntimeException e) {
+            unconfirmedSlots.release();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // The template completes the confirm future on ack, nack or channel close; only then is the slot free
+        CompletableFuture<CorrelationData.Confirm> confirmed = correlation.getFuture();
+        confirmed.whenComplete((confirm, error) -> unconfirmedSlots.release());
+
+        // Time out a copy so the timeout fails only the caller's future
+        return confirmed.copy()
+                .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((confirm, error) -> {
+                    long elapsed = System.nanoTime() - publishedAt;
+                    if (error instanceof TimeoutException) {
+                        timeoutTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                        throw new AmqpTimeoutException(
+                                "Broker did not confirm message within " + confirmTimeoutMs + " ms");
+                    }
+                    if (error != null) {
+                        nackTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                        throw new AmqpException("Publish failed: " + error.getMessage(), error);
+                    }
+                    if (!confirm.ack()) {
+                        nackTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                        throw new AmqpException("Broker rejected message: " + confirm.reason());
+                    }
+                    ackTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                    return null;
+                });
+    }
+
+    public int getUnconfirmed() {
+        return maxUnconfirmed - unconfirmedSlots.availablePermits();
+    }
+
+    private void acquireSlot() {
+        boolean acquired;
+        try {
+            acquired = unconfirmedSlots.tryAcquire(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for publisher confirms", e);
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            log.warn("{} messages awaiting broker confirms, rejecting publish", maxUnconfirmed);
+            throw new RejectedExecutionException("Too many messages awaiting broker confirms, try again later");
+        }
+    }
+}
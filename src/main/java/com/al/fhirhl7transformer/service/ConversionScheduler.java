@@ -0,0 +1,242 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.ConversionSchedulerConfiguration;
+import com.al.fhirhl7transformer.config.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared scheduler for CPU-bound conversions.
+ *
+ * <p>
+ * A fixed number of platform worker threads (one per core by default) pull
+ * from two bounded lanes: {@link Lane#SYNC} for single-message REST calls and
+ * {@link Lane#BATCH} for batch and streaming conversions. Workers alternate
+ * between the lanes, so a large batch cannot starve sync requests and sync
+ * traffic cannot starve a running batch. When a lane is full, callers block
+ * for up to {@code app.conversion.queue-timeout-ms} and are then rejected
+ * with {@link RejectedExecutionException}.
+ *
+ * <p>
+ * The caller's MDC and tenant are carried over to the worker thread.
+ *
+ * <p>
+ * Metrics:
+ * <ul>
+ * <li>{@code fhir.scheduler.queue.depth} - queued conversions per lane</li>
+ * <li>{@code fhir.scheduler.active} - conversions currently running</li>
+ * <li>{@code fhir.scheduler.wait} - time from submission to start, per lane</li>
+ * <li>{@code fhir.scheduler.rejected} - submissions rejected because a lane
+ * stayed full</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+@Profile("!worker")
+public class ConversionScheduler {
+
+    public enum Lane {
+        SYNC,
+        BATCH
+    }
+
+    private final Map<Lane, BlockingQueue<ScheduledTask<?>>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, Timer> waitTimers = new EnumMap<>(Lane.class);
+    private final Map<Lane, Counter> rejectedCounters = new EnumMap<>(Lane.class);
+    private final Lane[] lanes = Lane.values();
+    private final Semaphore queued = new Semaphore(0);
+    private final AtomicInteger nextLane = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final List<Thread> workers = new ArrayList<>();
+    private final long queueTimeoutMs;
+    private volatile boolean running = true;
+
+    public ConversionScheduler(ConversionSchedulerConfiguration config, MeterRegistry meterRegistry) {
+        this.queueTimeoutMs = config.getQueueTimeoutMs();
+        for (Lane lane : lanes) {
+            BlockingQueue<ScheduledTask<?>> queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+            queues.put(lane, queue);
+            String tag = lane.name().toLowerCase();
+            meterRegistry.gauge("fhir.scheduler.queue.depth", List.of(Tag.of("lane", tag)), queue, BlockingQueue::size);
+            waitTimers.put(lane, meterRegistry.timer("fhir.scheduler.wait", "lane", tag));
+            rejectedCounters.put(lane, meterRegistry.counter("fhir.scheduler.rejected", "lane", tag));
+        }
+        meterRegistry.gauge("fhir.scheduler.active", activeTasks);
+
+        int parallelism = config.effectiveParallelism();
+        for (int i = 0; i < parallelism; i++) {
+            Thread worker = new Thread(this::runWorker, "conversion-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("ConversionScheduler started with {} workers and lane capacity {}", parallelism,
+                config.getQueueCapacity());
+    }
+
+    /**
+     * Queue a conversion on the given lane.
+     *
+     * @throws RejectedExecutionException if the lane stays full for the
+     *                                    configured queue timeout
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, Callable<T> task) {
+        return submit(lane, task, queueTimeoutMs);
+    }
+
+    /**
+     * Queue a conversion, waiting at most {@code maxWaitMs} (capped at the
+     * configured queue timeout) for room on a full lane.
+     *
+     * @throws RejectedExecutionException if the lane stays full that long
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, Callable<T> task, long maxWaitMs) {
+        ScheduledTask<T> scheduled = new ScheduledTask<>(lane, task);
+        long waitMs = Math.max(0, Math.min(maxWaitMs, queueTimeoutMs));
+        boolean accepted;
+        try {
+            accepted = running && queues.get(lane).offer(scheduled, waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for conversion queue", e);
+        }
+        if (!accepted) {
+            rejectedCounters.get(lane).increment();
+            throw new RejectedExecutionException("Conversion queue " + lane + " is full, try again later");
+        }
+        queued.release();
+        return scheduled.future;
+    }
+
+    /**
+     * Run a conversion on the given lane and wait for its result. Exceptions
+     * thrown by the task are rethrown unchanged.
+     */
+    public <T> T call(Lane lane, Callable<T> task) throws Exception {
+        try {
+            return submit(lane, task).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    public int getActiveTasks() {
+        return activeTasks.get();
+    }
+
+    public int getQueueDepth(Lane lane) {
+        return queues.get(lane).size();
+    }
+
+    private void runWorker() {
+        while (running) {
+            try {
+                queued.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            ScheduledTask<?> task = pollNextLane();
+            if (task != null) {
+                activeTasks.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    activeTasks.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Round-robin over the lanes, skipping empty ones. Every permit on
+     * {@code queued} corresponds to one queued task, so this only returns null
+     * during shutdown.
+     */
+    private ScheduledTask<?> pollNextLane() {
+        for (int i = 0; i < lanes.length; i++) {
+            Lane lane = lanes[Math.floorMod(nextLane.getAndIncrement(), lanes.length)];
+            ScheduledTask<?> task = queues.get(lane).poll();
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        for (BlockingQueue<ScheduledTask<?>> queue : queues.values()) {
+            ScheduledTask<?> task;
+            while ((task = queue.poll()) != null) {
+                task.future.completeExceptionally(new RejectedExecutionException("ConversionScheduler shut down"));
+            }
+        }
+    }
+
+    /**
+     * A queued conversion together with the submitting thread's context.
+     */
+    private final class ScheduledTask<T> {
+        private final Lane lane;
+        private final Callable<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+        private final String tenantId = TenantContext.getTenantId();
+        private final long submittedAt = System.nanoTime();
+
+        private ScheduledTask(Lane lane, Callable<T> task) {
+            this.lane = lane;
+            this.task = task;
+        }
+
+        private void run() {
+            if (future.isDone()) {
+                // Cancelled while queued
+                return;
+            }
+            waitTimers.get(lane).record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            if (mdcContext != null) {
+                MDC.setContextMap(mdcContext);
+            }
+            if (tenantId != null) {
+                TenantContext.setTenantId(tenantId);
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                MDC.clear();
+                TenantContext.clear();
+            }
+        }
+    }
+}
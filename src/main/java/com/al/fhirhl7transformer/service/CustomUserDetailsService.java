@@ -4,6 +4,7 @@ import com.al.fhirhl7transformer.model.Tenant;
 import com.al.fhirhl7transformer.repository.TenantRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -14,6 +15,7 @@ import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
+@Profile("!worker")
 public class CustomUserDetailsService implements UserDetailsService {
 
         private final TenantRepository tenantRepository;
@@ -0,0 +1,329 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.DlqReplayConfiguration;
+import com.al.fhirhl7transformer.dto.DlqReplayJob;
+import com.al.fhirhl7transformer.dto.DlqReplayRequest;
+import com.al.fhirhl7transformer.util.TokenBucket;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains a dead-letter queue back onto its main exchange.
+ *
+ * <p>
+ * A replay reads at most the number of messages that were in the DLQ when it
+ * started, one {@code basic.get} at a time. Messages that match the filters
+ * are republished to the main exchange at the requested rate (token bucket)
+ * with their retry and dead-letter headers removed, in batches that share
+ * one publisher-confirm round trip; each message is acknowledged on the DLQ
+ * only after its batch was confirmed. Messages that do not match, and every
+ * message in a dry run, stay unacknowledged until the replay ends and are
+ * then requeued in one {@code basic.nack}, so the DLQ keeps them in order
+ * and the replay never reads the same message twice.
+ *
+ * <p>
+ * Only one replay per DLQ runs at a time. Metrics:
+ * {@code fhir.dlq.replayed} and {@code fhir.dlq.skipped}, tagged by source.
+ */
+@Service
+@Slf4j
+@Profile("!worker")
+public class DlqReplayService {
+
+    static final String REPLAY_ID_HEADER = "x-replay-id";
+    private static final String RETRY_COUNT_HEADER = "x-retry-count";
+    private static final String FIRST_FAILURE_REASON_HEADER = "x-first-failure-reason";
+
+    // Headers RabbitMQ or the listeners add on the way to the DLQ
+    private static final List<String> DEAD_LETTER_HEADERS = List.of(
+            "x-death", "x-first-death-exchange", "x-first-death-queue", "x-first-death-reason",
+            "x-last-death-exchange", "x-last-death-queue", "x-last-death-reason",
+            "x-failure-class");
+
+    /**
+     * A DLQ and the exchange its messages originally came from.
+     */
+    public enum Source {
+        HL7,
+        FHIR
+    }
+
+    private record Route(String queue, String exchange, String routingKey) {
+    }
+
+    private final RabbitTemplate rabbitTemplate;
+    private final DlqReplayConfiguration config;
+    private final MeterRegistry meterRegistry;
+    private final Map<Source, Route> routes;
+    private final Map<String, DlqReplayJob> jobs = new LinkedHashMap<>();
+    private final ExecutorService replayExecutor;
+
+    public DlqReplayService(RabbitTemplate rabbitTemplate, DlqReplayConfiguration config,
+            MeterRegistry meterRegistry,
+            @Value("${app.rabbitmq.dlq}") String hl7Dlq,
+            @Value("${app.rabbitmq.exchange}") String hl7Exchange,
+            @Value("${app.rabbitmq.routingkey}") String hl7RoutingKey,
+            @Value("${app.rabbitmq.fhir.dlq}") String fhirDlq,
+            @Value("${app.rabbitmq.fhir.exchange}") String fhirExchange,
+            @Value("${app.rabbitmq.fhir.routingkey}") String fhirRoutingKey) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.routes = Map.of(
+                Source.HL7, new Route(hl7Dlq, hl7Exchange, hl7RoutingKey),
+                Source.FHIR, new Route(fhirDlq, fhirExchange, fhirRoutingKey));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.replayExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "dlq-replay-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Current number of ready messages in each DLQ.
+     */
+    public Map<Source, Long> getDepths() {
+        Map<Source, Long> depths = new LinkedHashMap<>();
+        for (Source source : Source.values()) {
+            String queue = routes.get(source).queue();
+            depths.put(source, rabbitTemplate.execute(channel -> channel.queueDeclarePassive(queue).getMessageCount())
+                    .longValue());
+        }
+        return depths;
+    }
+
+    /**
+     * Start a replay in the background.
+     *
+     * @throws IllegalArgumentException if the request is invalid
+     * @throws IllegalStateException    if a replay of this DLQ is already
+     *                                  running
+     */
+    public DlqReplayJob start(Source source, DlqReplayRequest request, String requestedBy) {
+        if (request.getDeadLetteredFrom() != null && request.getDeadLetteredTo() != null
+                && request.getDeadLetteredFrom().isAfter(request.getDeadLetteredTo())) {
+            throw new IllegalArgumentException("deadLetteredFrom must not be after deadLetteredTo");
+        }
+        if (request.getRatePerSecond() < 0 || request.getMaxMessages() < 0) {
+            throw new IllegalArgumentException("ratePerSecond and maxMessages must not be negative");
+        }
+        int rate = request.getRatePerSecond() == 0 ? config.getDefaultRatePerSecond()
+                : Math.min(request.getRatePerSecond(), config.getMaxRatePerSecond());
+
+        DlqReplayJob job = new DlqReplayJob();
+        job.setReplayId(UUID.randomUUID().toString());
+        job.setSource(source.name());
+        job.setQueue(routes.get(source).queue());
+        job.setStatus("RUNNING");
+        job.setRequestedBy(requestedBy);
+        job.setRequest(request);
+        job.setRatePerSecond(rate);
+        job.setStartedAt(LocalDateTime.now());
+
+        synchronized (jobs) {
+            boolean running = jobs.values().stream()
+                    .anyMatch(j -> j.getSource().equals(source.name()) && "RUNNING".equals(j.getStatus()));
+            if (running) {
+                throw new IllegalStateException("A replay of the " + source + " DLQ is already running");
+            }
+            jobs.put(job.getReplayId(), job);
+            evictFinishedJobs();
+        }
+        log.info("Starting {}DLQ replay {} of {} for {} at {} msg/s", request.isDryRun() ? "dry-run " : "",
+                job.getReplayId(), job.getQueue(), requestedBy, rate);
+        replayExecutor.execute(() -> run(job, routes.get(source), request));
+        return job;
+    }
+
+    public Optional<DlqReplayJob> getJob(String replayId) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(replayId));
+        }
+    }
+
+    /**
+     * Ask a running replay to stop after the current batch. Messages already
+     * republished stay republished; everything else is requeued to the DLQ.
+     */
+    public Optional<DlqReplayJob> cancel(String replayId) {
+        Optional<DlqReplayJob> job = getJob(replayId);
+        job.ifPresent(j -> j.setCancelRequested(true));
+        return job;
+    }
+
+    private void run(DlqReplayJob job, Route route, DlqReplayRequest request) {
+        try {
+            rabbitTemplate.execute(channel -> {
+                replay(channel, job, route, request);
+                return null;
+            });
+            job.setStatus(job.isCancelRequested() ? "CANCELLED" : "COMPLETED");
+        } catch (Exception e) {
+            log.error("DLQ replay {} failed: {}", job.getReplayId(), e.getMessage(), e);
+            job.setErrorMessage(e.getMessage());
+            job.setStatus("FAILED");
+        } finally {
+            job.setCompletedAt(LocalDateTime.now());
+            log.info("DLQ replay {} {}: scanned={}, matched={}, replayed={}, skipped={}", job.getReplayId(),
+                    job.getStatus(), job.getScanned(), job.getMatched(), job.getReplayed(), job.getSkipped());
+        }
+    }
+
+    private void replay(Channel channel, DlqReplayJob job, Route route, DlqReplayRequest request)
+            throws IOException, InterruptedException, TimeoutException {
+        long depth = channel.queueDeclarePassive(route.queue()).getMessageCount();
+        job.setQueueDepth(depth);
+        long limit = request.getMaxMessages() > 0 ? request.getMaxMessages() : Long.MAX_VALUE;
+        TokenBucket bucket = new TokenBucket(job.getRatePerSecond(), Math.max(1, config.getBatchSize()));
+        List<Long> pendingAcks = new ArrayList<>();
+        long highestHeldTag = 0;
+
+        try {
+            while (job.getScanned() < depth && job.getMatched() < limit && !job.isCancelRequested()) {
+                GetResponse response = channel.basicGet(route.queue(), false);
+                if (response == null) {
+                    break;
+                }
+                job.setScanned(job.getScanned() + 1);
+                long tag = response.getEnvelope().getDeliveryTag();
+                if (!matches(response.getProps(), request)) {
+                    highestHeldTag = tag;
+                    job.setSkipped(job.getSkipped() + 1);
+                    meterRegistry.counter("fhir.dlq.skipped", "source", job.getSource()).increment();
+                    continue;
+                }
+                job.setMatched(job.getMatched() + 1);
+                if (request.isDryRun()) {
+                    highestHeldTag = tag;
+                    continue;
+                }
+                bucket.acquire(1);
+                channel.basicPublish(route.exchange(), route.routingKey(),
+                        replayProperties(response.getProps(), job.getReplayId()), response.getBody());
+                pendingAcks.add(tag);
+                if (pendingAcks.size() >= config.getBatchSize()) {
+                    confirmAndAck(channel, pendingAcks, job);
+                }
+            }
+            confirmAndAck(channel, pendingAcks, job);
+        } finally {
+            if (highestHeldTag > 0 && channel.isOpen()) {
+                // Requeue skipped and dry-run messages; acked ones are unaffected
+                channel.basicNack(highestHeldTag, true, true);
+            }
+        }
+    }
+
+    private void confirmAndAck(Channel channel, List<Long> pendingAcks, DlqReplayJob job)
+            throws IOException, InterruptedException, TimeoutException {
+        if (pendingAcks.isEmpty()) {
+            return;
+        }
+        // Throws if any copy was nacked or not confirmed in time; the originals
+        // are then requeued when the channel closes, so nothing is lost
+        channel.waitForConfirmsOrDie(config.getConfirmTimeoutMs());
+        for (long tag : pendingAcks) {
+            channel.basicAck(tag, false);
+        }
+        job.setReplayed(job.getReplayed() + pendingAcks.size());
+        meterRegistry.counter("fhir.dlq.replayed", "source", job.getSource()).increment(pendingAcks.size());
+        pendingAcks.clear();
+    }
+
+    boolean matches(AMQP.BasicProperties props, DlqReplayRequest request) {
+        Map<String, Object> headers = props.getHeaders() != null ? props.getHeaders() : Map.of();
+        if (request.getTenantId() != null
+                && !request.getTenantId().equals(String.valueOf(headers.get("tenantId")))) {
+            return false;
+        }
+        if (request.getFailureReason() != null
+                && !request.getFailureReason().equalsIgnoreCase(failureReason(headers))) {
+            return false;
+        }
+        if (request.getDeadLetteredFrom() != null || request.getDeadLetteredTo() != null) {
+            Instant deadLetteredAt = deadLetteredAt(headers);
+            if (deadLetteredAt == null
+                    || (request.getDeadLetteredFrom() != null && deadLetteredAt.isBefore(request.getDeadLetteredFrom()))
+                    || (request.getDeadLetteredTo() != null && deadLetteredAt.isAfter(request.getDeadLetteredTo()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The exception that first failed the message, or, for permanent failures
+     * dead-lettered on the first attempt, the broker's dead-letter reason
+     * ({@code rejected}, {@code expired}).
+     */
+    private static String failureReason(Map<String, Object> headers) {
+        Object reason = headers.get(FIRST_FAILURE_REASON_HEADER);
+        if (reason == null) {
+            reason = headers.get("x-first-death-reason");
+        }
+        return reason != null ? reason.toString() : null;
+    }
+
+    /**
+     * Time of the most recent dead-lettering, from the first {@code x-death}
+     * entry.
+     */
+    private static Instant deadLetteredAt(Map<String, Object> headers) {
+        if (headers.get("x-death") instanceof List<?> deaths && !deaths.isEmpty()
+                && deaths.get(0) instanceof Map<?, ?> death && death.get("time") instanceof Date time) {
+            return time.toInstant();
+        }
+        return null;
+    }
+
+    private static AMQP.BasicProperties replayProperties(AMQP.BasicProperties props, String replayId) {
+        Map<String, Object> headers = props.getHeaders() != null ? new HashMap<>(props.getHeaders())
+                : new HashMap<>();
+        DEAD_LETTER_HEADERS.forEach(headers::remove);
+        headers.put(RETRY_COUNT_HEADER, 0);
+        headers.put(REPLAY_ID_HEADER, replayId);
+        return props.builder().headers(headers).build();
+    }
+
+    private void evictFinishedJobs() {
+        var iterator = jobs.values().iterator();
+        while (jobs.size() > config.getHistorySize() && iterator.hasNext()) {
+            if (!"RUNNING".equals(iterator.next().getStatus())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (jobs) {
+            jobs.values().forEach(job -> job.setCancelRequested(true));
+        }
+        replayExecutor.shutdown();
+    }
+}
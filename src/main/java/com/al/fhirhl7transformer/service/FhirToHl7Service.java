@@ -13,6 +13,8 @@ import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.parser.Parser;
 import ca.uhn.hl7v2.util.Terser;
 import com.al.fhirhl7transformer.dto.ConversionError;
+import com.al.fhirhl7transformer.exception.ConversionFailedException;
+import com.al.fhirhl7transformer.exception.InvalidMessageException;
 import org.hl7.fhir.r4.model.*;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -75,12 +77,12 @@ public class FhirToHl7Service {
         try {
             // Pre-validate that input is a FHIR Bundle
             if (fhirJson == null || fhirJson.isBlank()) {
-                throw new IllegalArgumentException("FHIR input cannot be null or empty");
+                throw new InvalidMessageException("FHIR input cannot be null or empty");
             }
 
             // Check if the input looks like a Bundle before parsing
             if (!fhirJson.contains("\"resourceType\"") || !fhirJson.contains("\"Bundle\"")) {
-                throw new IllegalArgumentException(
+                throw new InvalidMessageException(
                         "Input must be a FHIR Bundle resource. Expected resourceType: Bundle");
             }
 
@@ -88,24 +90,42 @@ public class FhirToHl7Service {
             Bundle bundle = fhirContext.newJsonParser().parseResource(Bundle.class, fhirJson);
 
             // Validate FHIR input (optional - collect warnings but don't fail)
-            try {
-                ValidationResult validationResult = validationService.validate(bundle);
-                if (!validationResult.isSuccessful()) {
-                    String summary = validationService.getValidationErrorSummary(validationResult);
-                    warnings.add(ConversionError.builder()
-                            .message("FHIR validation warnings: " + summary)
-                            .severity(ConversionError.Severity.WARNING)
-                            .errorCode("FHIR_VALIDATION_WARNING")
-                            .build());
-                    log.warn("FHIR validation warnings detected: {}", summary);
-                }
-            } catch (Exception e) {
+            if (validationService.isFailed()) {
                 warnings.add(ConversionError.builder()
-                        .message("FHIR validation could not be completed: " + e.getMessage())
+                        .message("FHIR validation unavailable: validator initialization failed")
+                        .severity(ConversionError.Severity.WARNING)
+                        .errorCode("VALIDATION_UNAVAILABLE")
+                        .build());
+                meterRegistry.counter("fhir.validation.skipped", "type", "fhir-to-v2", "reason", "failed")
+                        .increment();
+            } else if (!validationService.isReady()) {
+                warnings.add(ConversionError.builder()
+                        .message("FHIR validation deferred: validator is still initializing")
                         .severity(ConversionError.Severity.WARNING)
                         .errorCode("VALIDATION_SKIPPED")
                         .build());
-                log.warn("FHIR validation skipped due to error: {}", e.getMessage());
+                meterRegistry.counter("fhir.validation.skipped", "type", "fhir-to-v2", "reason", "initializing")
+                        .increment();
+            } else {
+                try {
+                    ValidationResult validationResult = validationService.validate(bundle);
+                    if (!validationResult.isSuccessful()) {
+                        String summary = validationService.getValidationErrorSummary(validationResult);
+                        warnings.add(ConversionError.builder()
+                                .message("FHIR validation warnings: " + summary)
+                                .severity(ConversionError.Severity.WARNING)
+                                .errorCode("FHIR_VALIDATION_WARNING")
+                                .build());
+                        log.warn("FHIR validation warnings detected: {}", summary);
+                    }
+                } catch (Exception e) {
+                    warnings.add(ConversionError.builder()
+                            .message("FHIR validation could not be completed: " + e.getMessage())
+                            .severity(ConversionError.Severity.WARNING)
+                            .errorCode("VALIDATION_SKIPPED")
+                            .build());
+                    log.warn("FHIR validation skipped due to error: {}", e.getMessage());
+                }
             }
 
             // Detect message type from bundle content
@@ -217,12 +237,12 @@ public class FhirToHl7Service {
     public String convertFhirToHl7(String fhirJson) throws Exception {
         // Pre-validate input before calling the result method
         if (fhirJson == null || fhirJson.isBlank()) {
-            throw new IllegalArgumentException("FHIR input cannot be null or empty");
+            throw new InvalidMessageException("FHIR input cannot be null or empty");
         }
 
         // Check if the input is a Bundle resource type
         if (!fhirJson.contains("\"resourceType\"")) {
-            throw new IllegalArgumentException("Input must be valid FHIR JSON with resourceType");
+            throw new InvalidMessageException("Input must be valid FHIR JSON with resourceType");
         }
 
         // More specific check - look for Bundle at the root level
@@ -238,7 +258,7 @@ public class FhirToHl7Service {
                     if (valueStart != -1 && valueEnd != -1) {
                         String resourceType = trimmed.substring(valueStart + 1, valueEnd);
                         if (!"Bundle".equals(resourceType)) {
-                            throw new IllegalArgumentException(
+                            throw new InvalidMessageException(
                                     "Input must be a FHIR Bundle. Received resourceType: " + resourceType);
                         }
                     }
@@ -250,7 +270,7 @@ public class FhirToHl7Service {
 
         if (result.getHl7Message() == null) {
             String errorMsg = result.getErrors().isEmpty() ? "Unknown error" : result.getErrors().get(0).getMessage();
-            throw new Exception("FHIR to HL7 conversion failed: " + errorMsg);
+            throw new ConversionFailedException("FHIR to HL7 conversion failed: " + errorMsg);
         }
 
         return result.getHl7Message();
@@ -4,29 +4,111 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.validation.FhirValidator;
 import ca.uhn.fhir.validation.ValidationResult;
 import com.al.fhirhl7transformer.exception.FhirValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain;
 import org.hl7.fhir.common.hapi.validation.validator.FhirInstanceValidator;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * FHIR validation backed by the HAPI instance validator.
+ *
+ * <p>
+ * Building the validator and loading the R4 structure definitions takes
+ * several seconds, so when running inside the Spring context the validator is
+ * built on a background thread. Until it is warm, {@link #isReady()} returns
+ * false and callers record validation as skipped instead of blocking. If
+ * initialization fails, {@link #isFailed()} tells callers that validation
+ * will stay unavailable.
+ */
 @Service
+@Slf4j
 public class FhirValidationService {
 
-    private final FhirValidator validator;
+    private final CompletableFuture<FhirValidator> validatorFuture;
+    private volatile FhirValidator validator;
 
+    /**
+     * Eager constructor: the validator is built and ready on return.
+     */
+    public FhirValidationService(FhirContext fhirContext, ValidationSupportChain validationSupportChain) {
+        this.validator = buildValidator(fhirContext, validationSupportChain);
+        this.validatorFuture = CompletableFuture.completedFuture(validator);
+    }
+
+    @Autowired
     public FhirValidationService(FhirContext fhirContext,
-            org.hl7.fhir.common.hapi.validation.support.ValidationSupportChain validationSupportChain) {
-        this.validator = fhirContext.newValidator();
+            ObjectProvider<ValidationSupportChain> validationSupportChain,
+            @Value("${app.validation.background-init:true}") boolean backgroundInit) {
+        Supplier<FhirValidator> init = () -> {
+            long start = System.currentTimeMillis();
+            FhirValidator built = buildValidator(fhirContext, validationSupportChain.getObject());
+            // First validation loads the structure definitions and snapshots
+            built.validateWithResult(new Patient());
+            log.info("FHIR validator initialized in {}ms", System.currentTimeMillis() - start);
+            return built;
+        };
+
+        if (backgroundInit) {
+            this.validatorFuture = CompletableFuture.supplyAsync(init, runnable -> {
+                Thread thread = new Thread(runnable, "fhir-validator-init");
+                thread.setDaemon(true);
+                thread.start();
+            });
+        } else {
+            this.validatorFuture = CompletableFuture.completedFuture(init.get());
+        }
+        this.validatorFuture.whenComplete((built, ex) -> {
+            if (ex != null) {
+                log.error("FHIR validator initialization failed: {}", ex.getMessage(), ex);
+            } else {
+                this.validator = built;
+            }
+        });
+    }
+
+    private static FhirValidator buildValidator(FhirContext fhirContext,
+            ValidationSupportChain validationSupportChain) {
+        FhirValidator fhirValidator = fhirContext.newValidator();
 
         // Use the injected singleton ValidationSupportChain for better performance
         FhirInstanceValidator instanceValidator = new FhirInstanceValidator(validationSupportChain);
-        this.validator.registerValidatorModule(instanceValidator);
+        fhirValidator.registerValidatorModule(instanceValidator);
+        return fhirValidator;
+    }
+
+    /**
+     * Whether the validator has finished initializing.
+     */
+    public boolean isReady() {
+        return validator != null;
+    }
+
+    /**
+     * Whether background initialization failed and validation will never become
+     * available.
+     */
+    public boolean isFailed() {
+        return validatorFuture.isCompletedExceptionally();
     }
 
     public ValidationResult validate(IBaseResource resource) {
-        return validator.validateWithResult(resource);
+        FhirValidator current = validator;
+        if (current == null) {
+            throw new IllegalStateException(isFailed()
+                    ? "FHIR validator initialization failed"
+                    : "FHIR validator is still initializing");
+        }
+        return current.validateWithResult(resource);
     }
 
     public void validateAndThrow(IBaseResource resource) {
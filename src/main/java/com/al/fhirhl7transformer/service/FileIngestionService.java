@@ -0,0 +1,325 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.FileIngestionConfiguration;
+import com.al.fhirhl7transformer.dto.BatchConversionResponse.ConversionError;
+import com.al.fhirhl7transformer.dto.BatchConversionResponse.ConversionResult;
+import com.al.fhirhl7transformer.service.ConversionScheduler.Lane;
+import com.al.fhirhl7transformer.util.Hl7BatchReader;
+import com.al.fhirhl7transformer.util.MappedHl7Reader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Directory ingestion connector for flat HL7 archive files.
+ *
+ * <p>
+ * Polls {@code app.ingest.input-dir} for files matching
+ * {@code app.ingest.file-pattern}. Each file is memory-mapped and split on MSH
+ * boundaries by {@link MappedHl7Reader}; messages are converted through the
+ * BATCH lane of the {@link ConversionScheduler}, so file ingestion shares CPU
+ * fairly with REST traffic. For an input {@code name} the connector writes:
+ * <ul>
+ * <li>{@code name.results.ndjson} - one outcome line per message, in file
+ * order</li>
+ * <li>{@code name.checkpoint} - byte offset of the next message and the
+ * matching results size, updated every
+ * {@code app.ingest.checkpoint-interval} messages</li>
+ * <li>{@code name.manifest.json} - summary with {@code status}
+ * {@code COMPLETED}, written when the file is done, or {@code FAILED} with
+ * the error when the file cannot be ingested (e.g. a message larger than the
+ * map window or an unreadable checkpoint); files with a manifest are not
+ * picked up again, so a failing file is not re-read on every poll. Delete
+ * the manifest to retry it.</li>
+ * </ul>
+ * After a restart the results file is truncated to the checkpointed size and
+ * reading resumes at the checkpointed offset, so no message is converted
+ * twice into the results.
+ *
+ * <p>
+ * Metrics: {@code fhir.ingest.messages} and {@code fhir.ingest.files}, both
+ * tagged with the outcome.
+ */
+@Service
+@Slf4j
+@Profile("!worker")
+public class FileIngestionService {
+
+    static final String RESULTS_SUFFIX = ".results.ndjson";
+    static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    static final String MANIFEST_SUFFIX = ".manifest.json";
+
+    private final Hl7ToFhirService hl7ToFhirService;
+    private final ConversionScheduler conversionScheduler;
+    private final ObjectMapper objectMapper;
+    private final FileIngestionConfiguration config;
+    private final Counter successCounter;
+    private final Counter failureCounter;
+    private final Counter completedFilesCounter;
+    private final Counter failedFilesCounter;
+    private ScheduledExecutorService poller;
+
+    public FileIngestionService(Hl7ToFhirService hl7ToFhirService, ConversionScheduler conversionScheduler,
+            ObjectMapper objectMapper, FileIngestionConfiguration config, MeterRegistry meterRegistry) {
+        this.hl7ToFhirService = hl7ToFhirService;
+        this.conversionScheduler = conversionScheduler;
+        this.objectMapper = objectMapper;
+        this.config = config;
+        this.successCounter = meterRegistry.counter("fhir.ingest.messages", "outcome", "success");
+        this.failureCounter = meterRegistry.counter("fhir.ingest.messages", "outcome", "failure");
+        this.completedFilesCounter = meterRegistry.counter("fhir.ingest.files", "outcome", "completed");
+        this.failedFilesCounter = meterRegistry.counter("fhir.ingest.files", "outcome", "failed");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-ingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::scan, 0, config.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("File ingestion watching {} for {}", Paths.get(config.getInputDir()).toAbsolutePath(),
+                config.getFilePattern());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (poller != null) {
+            // An interrupted file resumes from its last checkpoint
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * Ingest every ready file in the input directory.
+     */
+    void scan() {
+        Path inputDir = Paths.get(config.getInputDir());
+        if (!Files.isDirectory(inputDir)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(inputDir, config.getFilePattern())) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.error("Failed to list {}: {}", inputDir, e.getMessage());
+            return;
+        }
+        files.sort(null);
+        long readyBefore = System.currentTimeMillis() - config.getMinFileAgeMs();
+        for (Path file : files) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                if (Files.isRegularFile(file) && !Files.exists(sibling(file, MANIFEST_SUFFIX))
+                        && Files.getLastModifiedTime(file).toMillis() <= readyBefore) {
+                    ingest(file);
+                }
+            } catch (InterruptedException e) {
+                // Shutting down: the file resumes from its last checkpoint
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                log.error("Failed to ingest {}, writing a FAILED manifest: {}", file, e.getMessage(), e);
+                markFailed(file, e);
+            }
+        }
+    }
+
+    /**
+     * Convert one file, resuming from its checkpoint if there is one.
+     */
+    void ingest(Path file) throws IOException, InterruptedException {
+        Path checkpointFile = sibling(file, CHECKPOINT_SUFFIX);
+        Checkpoint checkpoint = Files.exists(checkpointFile)
+                ? objectMapper.readValue(checkpointFile.toFile(), Checkpoint.class)
+                : new Checkpoint();
+        if (checkpoint.getStartedAt() == null) {
+            checkpoint.setStartedAt(LocalDateTime.now().toString());
+        } else {
+            log.info("Resuming {} at byte {} after {} messages", file.getFileName(), checkpoint.getOffset(),
+                    checkpoint.getMessages());
+        }
+
+        MDC.put("transformerId", file.getFileName().toString());
+        try (MappedHl7Reader reader = new MappedHl7Reader(file, checkpoint.getOffset(), config.getMapWindowBytes());
+                FileChannel results = FileChannel.open(sibling(file, RESULTS_SUFFIX), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE)) {
+            // Drop results written after the last checkpoint
+            results.truncate(checkpoint.getResultsSize());
+            results.position(checkpoint.getResultsSize());
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(results));
+
+            List<String> window = new ArrayList<>(config.getCheckpointInterval());
+            String message;
+            do {
+                message = reader.nextMessage();
+                if (message != null) {
+                    window.add(message);
+                }
+                if (window.size() == config.getCheckpointInterval() || (message == null && !window.isEmpty())) {
+                    convertWindow(window, checkpoint, out);
+                    out.flush();
+                    results.force(false);
+                    checkpoint.setOffset(reader.getPosition());
+                    checkpoint.setResultsSize(results.position());
+                    writeAtomically(checkpointFile, checkpoint);
+                    window.clear();
+                }
+            } while (message != null);
+
+            Map<String, Object> manifest = new LinkedHashMap<>();
+            manifest.put("file", file.getFileName().toString());
+            manifest.put("status", "COMPLETED");
+            manifest.put("sizeBytes", reader.getSize());
+            manifest.put("messages", checkpoint.getMessages());
+            manifest.put("successCount", checkpoint.getSuccessCount());
+            manifest.put("failureCount", checkpoint.getFailureCount());
+            manifest.put("results", sibling(file, RESULTS_SUFFIX).getFileName().toString());
+            manifest.put("startedAt", checkpoint.getStartedAt());
+            manifest.put("completedAt", LocalDateTime.now().toString());
+            writeAtomically(sibling(file, MANIFEST_SUFFIX), manifest);
+            Files.deleteIfExists(checkpointFile);
+            completedFilesCounter.increment();
+
+            log.info("Ingested {}: {} messages, {} failures", file.getFileName(), checkpoint.getMessages(),
+                    checkpoint.getFailureCount());
+        } finally {
+            MDC.remove("transformerId");
+        }
+    }
+
+    /**
+     * Record a file that could not be ingested, so it is skipped until an
+     * operator deletes the manifest. The checkpoint and partial results are
+     * kept for the retry.
+     */
+    private void markFailed(Path file, Exception error) {
+        failedFilesCounter.increment();
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("file", file.getFileName().toString());
+        manifest.put("status", "FAILED");
+        manifest.put("error", error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName());
+        manifest.put("failedAt", LocalDateTime.now().toString());
+        try {
+            writeAtomically(sibling(file, MANIFEST_SUFFIX), manifest);
+        } catch (IOException e) {
+            log.error("Failed to write FAILED manifest for {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void convertWindow(List<String> messages, Checkpoint checkpoint, OutputStream out)
+            throws IOException, InterruptedException {
+        long firstIndex = checkpoint.getMessages();
+        List<CompletableFuture<Object>> outcomes = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            int index = (int) (firstIndex + i);
+            String hl7Message = messages.get(i);
+            try {
+                outcomes.add(conversionScheduler.submit(Lane.BATCH, () -> convert(index, hl7Message)));
+            } catch (RejectedExecutionException e) {
+                outcomes.add(CompletableFuture.completedFuture(
+                        new ConversionError(index, e.getMessage(), truncate(hl7Message))));
+            }
+        }
+        for (int i = 0; i < outcomes.size(); i++) {
+            Object outcome;
+            try {
+                outcome = outcomes.get(i).get();
+            } catch (ExecutionException e) {
+                outcome = new ConversionError((int) (firstIndex + i), e.getCause().getMessage(),
+                        truncate(messages.get(i)));
+            }
+            if (outcome instanceof ConversionResult) {
+                checkpoint.setSuccessCount(checkpoint.getSuccessCount() + 1);
+                successCounter.increment();
+            } else {
+                checkpoint.setFailureCount(checkpoint.getFailureCount() + 1);
+                failureCounter.increment();
+            }
+            out.write(objectMapper.writeValueAsBytes(outcome));
+            out.write('\n');
+        }
+        checkpoint.setMessages(firstIndex + messages.size());
+    }
+
+    private Object convert(int index, String hl7Message) {
+        long startTime = System.currentTimeMillis();
+        try {
+            String fhirJson = hl7ToFhirService.convertHl7ToFhir(hl7Message);
+            int segmentEnd = hl7Message.indexOf('\r');
+            String messageId = Hl7BatchReader.field(segmentEnd < 0 ? hl7Message : hl7Message.substring(0, segmentEnd),
+                    9);
+            return new ConversionResult(index, fhirJson, System.currentTimeMillis() - startTime, messageId);
+        } catch (Exception e) {
+            log.debug("Failed to convert ingested message {}: {}", index, e.getMessage());
+            return new ConversionError(index, e.getMessage(), truncate(hl7Message));
+        }
+    }
+
+    private void writeAtomically(Path target, Object value) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        objectMapper.writeValue(temp.toFile(), value);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    private static String truncate(String str) {
+        return str.length() <= 200 ? str : str.substring(0, 200) + "...";
+    }
+
+    /**
+     * Progress of one input file.
+     */
+    @Data
+    static class Checkpoint {
+        private long offset;
+        private long resultsSize;
+        private long messages;
+        private long successCount;
+        private long failureCount;
+        private String startedAt;
+    }
+}
@@ -9,6 +9,7 @@ import com.al.fhirhl7transformer.config.TenantContext;
 import com.al.fhirhl7transformer.service.converter.*;
 import com.al.fhirhl7transformer.config.ParsingConfiguration;
 import com.al.fhirhl7transformer.dto.ConversionError;
+import com.al.fhirhl7transformer.exception.InvalidMessageException;
 import com.al.fhirhl7transformer.util.OperationOutcomeBuilder;
 import com.al.fhirhl7transformer.util.DateTimeUtil;
 
@@ -17,6 +18,7 @@ import org.hl7.fhir.r4.model.MedicationAdministration;
 import org.hl7.fhir.r4.model.DiagnosticReport;
 
 import org.hl7.fhir.r4.model.*;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.*;
@@ -38,7 +40,23 @@ public class Hl7ToFhirService {
     private final ParsingConfiguration parsingConfiguration;
     private final SubscriptionService subscriptionService;
 
+    /**
+     * Subscriptions are optional so the converter can run in contexts without
+     * a database, such as the offline bulk converter.
+     */
     @Autowired
+    public Hl7ToFhirService(
+            FhirValidationService fhirValidationService,
+            FhirContext fhirContext,
+            HapiContext hapiContext,
+            MeterRegistry meterRegistry,
+            Hl7ConverterRegistry converterRegistry,
+            ParsingConfiguration parsingConfiguration,
+            ObjectProvider<SubscriptionService> subscriptionService) {
+        this(fhirValidationService, fhirContext, hapiContext, meterRegistry, converterRegistry, parsingConfiguration,
+                subscriptionService.getIfAvailable());
+    }
+
     public Hl7ToFhirService(
             FhirValidationService fhirValidationService,
             FhirContext fhirContext,
@@ -57,6 +75,32 @@ public class Hl7ToFhirService {
     }
 
     public String convertHl7ToFhir(String hl7Message) throws Exception {
+        return convertHl7ToFhir(hl7Message, true);
+    }
+
+    /**
+     * Convert an HL7 message to a FHIR Bundle.
+     *
+     * @param hl7Message        HL7 v2.x message in pipe-delimited format
+     * @param notifySubscribers whether matching FHIR subscriptions should be
+     *                          notified (disabled for synthetic traffic such as
+     *                          warm-up)
+     */
+    public String convertHl7ToFhir(String hl7Message, boolean notifySubscribers) throws Exception {
+        return convertHl7ToFhir(hl7Message, notifySubscribers, true);
+    }
+
+    /**
+     * Convert an HL7 message to a FHIR Bundle.
+     *
+     * @param hl7Message        HL7 v2.x message in pipe-delimited format
+     * @param notifySubscribers whether matching FHIR subscriptions should be
+     *                          notified
+     * @param prettyPrint       whether to indent the JSON; queue consumers get
+     *                          the compact form
+     */
+    public String convertHl7ToFhir(String hl7Message, boolean notifySubscribers, boolean prettyPrint)
+            throws Exception {
         Timer.Sample sample = Timer.start(meterRegistry);
         List<ConversionError> errors = new ArrayList<>();
 
@@ -108,7 +152,7 @@ public class Hl7ToFhirService {
                         + parsingConfiguration.getSupportedVersions();
                 if (parsingConfiguration.getStrictness() == ParsingConfiguration.StrictnessLevel.STRICT) {
                     log.error("Strict mode: {}", errorMsg);
-                    throw new IllegalArgumentException(errorMsg);
+                    throw new InvalidMessageException(errorMsg);
                 } else {
                     log.warn(errorMsg);
                     errors.add(ConversionError.warning("MSH", errorMsg));
@@ -409,8 +453,14 @@ public class Hl7ToFhirService {
 
             log.info("Conversion complete. Bundle contains {} entries.", bundle.getEntry().size());
 
-            // Validate the Bundle
-            if (parsingConfiguration.isValidationEnabled()) {
+            // Validate the Bundle (deferred while the validator is still warming up)
+            if (parsingConfiguration.isValidationEnabled() && !fhirValidationService.isReady()) {
+                boolean failed = fhirValidationService.isFailed();
+                log.debug("FHIR validator {}, validation skipped for transaction: {}",
+                        failed ? "initialization failed" : "not ready", msh10);
+                meterRegistry.counter("fhir.validation.skipped", "type", "v2-to-fhir", "reason",
+                        failed ? "failed" : "initializing").increment();
+            } else if (parsingConfiguration.isValidationEnabled()) {
                 try {
                     fhirValidationService.validateAndThrow(bundle);
                 } catch (Exception e) {
@@ -426,10 +476,12 @@ public class Hl7ToFhirService {
 
             // Check for Subscriptions and Notify
             // Using logic internal to checkAndNotify to handle null tenantId if needed
-            subscriptionService.checkAndNotify(bundle, TenantContext.getTenantId());
+            if (notifySubscribers && subscriptionService != null) {
+                subscriptionService.checkAndNotify(bundle, TenantContext.getTenantId());
+            }
 
             // Serialize to JSON
-            String result = fhirContext.newJsonParser().setPrettyPrint(true).encodeResourceToString(bundle);
+            String result = fhirContext.newJsonParser().setPrettyPrint(prettyPrint).encodeResourceToString(bundle);
 
             // Record Success Metrics
             meterRegistry.counter("fhir.conversion.count", "type", "v2-to-fhir", "status", "success").increment();
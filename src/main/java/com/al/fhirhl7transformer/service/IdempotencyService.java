@@ -4,12 +4,14 @@ import com.al.fhirhl7transformer.model.TransactionRecord;
 import com.al.fhirhl7transformer.repository.TransactionRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
 
 @Service
 @Slf4j
+@Profile("!worker")
 public class IdempotencyService {
 
     private final TransactionRepository transactionRepository;
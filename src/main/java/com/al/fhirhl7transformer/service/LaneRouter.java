@@ -0,0 +1,79 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.LaneConfiguration;
+import com.al.fhirhl7transformer.config.LaneConfiguration.Lane;
+import com.al.fhirhl7transformer.util.Hl7FieldScanner;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the ingress lane for an async HL7 message from its MSH-9 type and the
+ * tenant's tier.
+ *
+ * <p>
+ * The message type is read with {@link Hl7FieldScanner}, without parsing the
+ * message. Counts routed messages in {@code fhir.lane.routed}, tagged by
+ * lane.
+ */
+@Component
+@Profile("!worker")
+public class LaneRouter {
+
+    private final LaneConfiguration config;
+    private final MeterRegistry meterRegistry;
+
+    public LaneRouter(LaneConfiguration config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the first matching lane, or {@code null} for the default lane
+     */
+    public Lane select(String hl7Message, String tenantId) {
+        return selectByType(messageType(hl7Message), tenantId);
+    }
+
+    /**
+     * Like {@link #select} for a message type already read with
+     * {@link #messageType}.
+     */
+    public Lane selectByType(String messageType, String tenantId) {
+        if (!config.isEnabled() || config.getLanes().isEmpty()) {
+            return null;
+        }
+        String tier = config.tierOf(tenantId);
+        for (Lane lane : config.getLanes()) {
+            if (lane.matches(messageType, tier)) {
+                meterRegistry.counter("fhir.lane.routed", "lane", lane.getName()).increment();
+                return lane;
+            }
+        }
+        meterRegistry.counter("fhir.lane.routed", "lane", LaneConfiguration.DEFAULT_LANE).increment();
+        return null;
+    }
+
+    /**
+     * MSH-9 message type and trigger event as {@code TYPE^TRIGGER} (or just
+     * {@code TYPE}), or {@code null} if the message has no readable MSH-9.
+     */
+    public static String messageType(String hl7Message) {
+        String field = Hl7FieldScanner.field(hl7Message, "MSH", 9);
+        if (field == null) {
+            return null;
+        }
+        char componentSeparator = Hl7FieldScanner.componentSeparator(hl7Message);
+        int typeEnd = Hl7FieldScanner.indexOf(field, componentSeparator, 0, field.length());
+        String type = field.substring(0, typeEnd).trim();
+        if (type.isEmpty()) {
+            return null;
+        }
+        if (typeEnd == field.length()) {
+            return type;
+        }
+        int triggerEnd = Hl7FieldScanner.indexOf(field, componentSeparator, typeEnd + 1, field.length());
+        String trigger = field.substring(typeEnd + 1, triggerEnd).trim();
+        return trigger.isEmpty() ? type : type + "^" + trigger;
+    }
+}
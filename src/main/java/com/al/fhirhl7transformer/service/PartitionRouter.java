@@ -0,0 +1,207 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.PartitionConfiguration;
+import com.al.fhirhl7transformer.util.Hl7FieldScanner;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the partition queue for an async HL7 message from its tenant and
+ * patient identifier.
+ *
+ * <p>
+ * The patient key is the first PID-3 repetition's ID number and assigning
+ * authority (CX.1 and CX.4), read with {@link Hl7FieldScanner}. Tenant and key
+ * are hashed with FNV-1a and mapped to a partition with jump consistent
+ * hashing, so a resize from N to M partitions only moves the patients whose
+ * partition is added or removed.
+ *
+ * <p>
+ * During a resize ({@code previous-count} set) a moved patient stays on its
+ * old partition until that partition has drained, so the patient's new
+ * messages cannot overtake queued or in-flight ones. A partition counts as
+ * drained when it has no ready messages (passive declare), no ready or
+ * unacknowledged messages according to the management API, and this node
+ * has not routed a held message to it for {@code stats-interval-ms}, which
+ * covers the lag of the management statistics. A drained partition is not
+ * checked again for {@code stats-interval-ms}, so moved patients do not cost
+ * two broker calls per message once their old partition is empty.
+ *
+ * <p>
+ * The hold window and the cached result are per node. A message another API
+ * node held on the old partition is only seen through the broker's counts;
+ * if it is already being processed while the management statistics lag,
+ * this node may route the patient's next message to the new partition. Keep
+ * a patient's messages on one API node during a resize when that matters.
+ *
+ * <p>
+ * Metrics: counter {@code fhir.partition.routed}, tagged by
+ * {@code partition} ({@code none} for messages without a patient key), and
+ * counter {@code fhir.partition.held} for messages kept on their old
+ * partition during a resize.
+ */
+@Component
+@Slf4j
+@Profile("!worker")
+public class PartitionRouter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Partition count, the count before a resize in progress, and the
+     * number of ready and unacknowledged messages per partition queue (-1
+     * while the broker has no statistics for it).
+     */
+    public record Status(int count, int previousCount, Map<String, Long> depths) {
+    }
+
+    private final PartitionConfiguration config;
+    private final RabbitTemplate rabbitTemplate;
+    private final RabbitManagementClient managementClient;
+    private final MeterRegistry meterRegistry;
+    private final Map<Integer, Long> lastHeldAt = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> drainedAt = new ConcurrentHashMap<>();
+
+    public PartitionRouter(PartitionConfiguration config, RabbitTemplate rabbitTemplate,
+            RabbitManagementClient managementClient, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.rabbitTemplate = rabbitTemplate;
+        this.managementClient = managementClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the partition for the message, or empty if partitioning is
+     *         disabled or the message has no patient key
+     */
+    public OptionalInt select(String hl7Message, String tenantId) {
+        if (!config.isEnabled()) {
+            return OptionalInt.empty();
+        }
+        String patientKey = patientKey(hl7Message);
+        if (patientKey == null) {
+            meterRegistry.counter("fhir.partition.routed", "partition", "none").increment();
+            return OptionalInt.empty();
+        }
+        long hash = hash(tenantId + '|' + patientKey);
+        int partition = jumpHash(hash, config.getCount());
+        if (config.isResizing()) {
+            int previous = jumpHash(hash, config.getPreviousCount());
+            if (previous != partition && !drained(previous)) {
+                lastHeldAt.put(previous, System.currentTimeMillis());
+                meterRegistry.counter("fhir.partition.held").increment();
+                partition = previous;
+            }
+        }
+        meterRegistry.counter("fhir.partition.routed", "partition", String.valueOf(partition)).increment();
+        return OptionalInt.of(partition);
+    }
+
+    /**
+     * Current partition settings and queue depths, for the resize procedure.
+     */
+    public Status status() {
+        Map<String, Long> queueDepths = new LinkedHashMap<>();
+        if (config.isEnabled()) {
+            for (int partition = 0; partition < config.consumedCount(); partition++) {
+                String queue = PartitionConfiguration.queueName(partition);
+                queueDepths.put(queue, managementClient.messages(queue));
+            }
+        }
+        return new Status(config.getCount(), config.getPreviousCount(), queueDepths);
+    }
+
+    private boolean drained(int partition) {
+        long now = System.currentTimeMillis();
+        Long heldAt = lastHeldAt.get(partition);
+        if (heldAt != null && now - heldAt < config.getStatsIntervalMs()) {
+            return false;
+        }
+        Long checkedAt = drainedAt.get(partition);
+        if (checkedAt != null && now - checkedAt < config.getStatsIntervalMs()) {
+            return true;
+        }
+        String queue = PartitionConfiguration.queueName(partition);
+        try {
+            int ready = rabbitTemplate.execute(channel -> channel.queueDeclarePassive(queue).getMessageCount());
+            if (ready == 0 && managementClient.messages(queue) == 0) {
+                drainedAt.put(partition, now);
+                return true;
+            }
+            return false;
+        } catch (Exception e) {
+            // Without a reliable answer keep the patient where its earlier messages are
+            log.warn("Could not check whether partition {} has drained: {}", queue, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * First PID-3 repetition as {@code ID} or {@code ID^AUTHORITY}, or
+     * {@code null} if the message has no PID-3 ID number.
+     */
+    static String patientKey(String hl7Message) {
+        String field = Hl7FieldScanner.field(hl7Message, "PID", 3);
+        if (field == null) {
+            return null;
+        }
+        char componentSeparator = Hl7FieldScanner.componentSeparator(hl7Message);
+        int repetitionEnd = Hl7FieldScanner.indexOf(field, Hl7FieldScanner.repetitionSeparator(hl7Message), 0,
+                field.length());
+        int idEnd = Hl7FieldScanner.indexOf(field, componentSeparator, 0, repetitionEnd);
+        String id = field.substring(0, idEnd).trim();
+        if (id.isEmpty()) {
+            return null;
+        }
+
+        // CX.4 assigning authority follows the third component separator
+        int position = idEnd;
+        for (int i = 1; i < 3 && position < repetitionEnd; i++) {
+            position = Hl7FieldScanner.indexOf(field, componentSeparator, position + 1, repetitionEnd);
+        }
+        if (position >= repetitionEnd) {
+            return id;
+        }
+        int authorityEnd = Hl7FieldScanner.indexOf(field, componentSeparator, position + 1, repetitionEnd);
+        String authority = field.substring(position + 1, authorityEnd).trim();
+        return authority.isEmpty() ? id : id + "^" + authority;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the UTF-8 bytes.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Jump consistent hash (Lamping and Veach): maps a key to one of
+     * {@code buckets} buckets, moving only 1/n of the keys when the n-th
+     * bucket is added.
+     */
+    static int jumpHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
@@ -0,0 +1,48 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.PartitionConfiguration;
+import org.springframework.boot.amqp.autoconfigure.RabbitProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.util.Map;
+
+/**
+ * Reads queue statistics from the RabbitMQ management API.
+ *
+ * <p>
+ * Unlike a passive queue declare, which only reports ready messages, the
+ * management API also counts messages delivered to a consumer and not yet
+ * acknowledged. Its figures are refreshed by the broker's statistics
+ * collection, by default every 5 seconds.
+ */
+@Component
+@Profile("!worker")
+public class RabbitManagementClient {
+
+    private final RestClient restClient;
+    private final String virtualHost;
+
+    public RabbitManagementClient(PartitionConfiguration partitionConfig, RabbitProperties rabbitProperties) {
+        this.restClient = RestClient.builder()
+                .baseUrl(partitionConfig.getManagementUrl())
+                .defaultHeaders(headers -> headers.setBasicAuth(rabbitProperties.determineUsername(),
+                        rabbitProperties.determinePassword()))
+                .build();
+        String vhost = rabbitProperties.determineVirtualHost();
+        this.virtualHost = vhost != null ? vhost : "/";
+    }
+
+    /**
+     * Ready plus unacknowledged messages of the queue, or -1 if the broker
+     * has not collected statistics for it yet.
+     */
+    public long messages(String queue) {
+        Map<?, ?> stats = restClient.get()
+                .uri("/api/queues/{vhost}/{queue}?columns=messages", virtualHost, queue)
+                .retrieve()
+                .body(Map.class);
+        return stats != null && stats.get("messages") instanceof Number messages ? messages.longValue() : -1;
+    }
+}
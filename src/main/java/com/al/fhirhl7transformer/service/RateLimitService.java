@@ -4,6 +4,7 @@ import com.al.fhirhl7transformer.exception.RateLimitExceededException;
 import com.al.fhirhl7transformer.model.Tenant;
 import com.al.fhirhl7transformer.repository.TenantRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -15,6 +16,7 @@ import java.util.concurrent.TimeUnit;
  */
 @Service
 @Slf4j
+@Profile("!worker")
 public class RateLimitService {
 
     private final RedisTemplate<String, Object> redisTemplate;
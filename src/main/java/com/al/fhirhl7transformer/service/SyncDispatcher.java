@@ -0,0 +1,150 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.EnvelopeConfiguration;
+import com.al.fhirhl7transformer.config.SyncDispatchConfiguration;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import com.al.fhirhl7transformer.util.SyncReply;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpReplyTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs sync conversions on the workers through RabbitMQ request-reply.
+ *
+ * <p>
+ * The request goes through the default exchange to the flow's request queue
+ * and the reply comes back on direct reply-to
+ * ({@code amq.rabbitmq.reply-to}), so no reply queue is declared. Requests
+ * expire in the queue after {@code timeout-ms}; a reply that does not arrive
+ * in that time fails the request with {@link AmqpReplyTimeoutException}.
+ * When dispatching is disabled, no worker consumes the request queue or the
+ * broker cannot be reached, the conversion runs locally instead.
+ *
+ * <p>
+ * Metrics: counter {@code fhir.sync.dispatch}, tagged by {@code flow} and
+ * {@code target} ({@code worker}, {@code local}), and counter
+ * {@code fhir.sync.dispatch.timeouts} by {@code flow}.
+ */
+@Component
+@Slf4j
+@Profile("!worker")
+public class SyncDispatcher {
+
+    public enum Flow {
+        V2_TO_FHIR("v2-to-fhir", MessageProperties.CONTENT_TYPE_TEXT_PLAIN),
+        FHIR_TO_V2("fhir-to-v2", MessageProperties.CONTENT_TYPE_JSON);
+
+        private final String tag;
+        private final String contentType;
+
+        Flow(String tag, String contentType) {
+            this.tag = tag;
+            this.contentType = contentType;
+        }
+    }
+
+    private record Workers(long consumers, long checkedAt) {
+    }
+
+    private final SyncDispatchConfiguration config;
+    private final RabbitTemplate replyTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Workers> workers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SyncDispatcher(SyncDispatchConfiguration config, EnvelopeConfiguration envelopeConfig,
+            ConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
+        this(config, replyTemplate(config, envelopeConfig, connectionFactory), meterRegistry);
+    }
+
+    SyncDispatcher(SyncDispatchConfiguration config, RabbitTemplate replyTemplate, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.replyTemplate = replyTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Converts {@code body} on a worker, or with {@code localConversion} if no
+     * worker is available.
+     *
+     * @throws AmqpReplyTimeoutException if the worker did not reply in time
+     * @throws Exception                 the conversion failure, as thrown by
+     *                                   the local conversion
+     */
+    public String convert(Flow flow, String body, String tenantId, String transactionId,
+            Callable<String> localConversion) throws Exception {
+        String queue = flow == Flow.V2_TO_FHIR ? config.getHl7Queue() : config.getFhirQueue();
+        if (!config.isEnabled() || !workersAvailable(queue)) {
+            return convertLocally(flow, localConversion);
+        }
+
+        Message request = MessageBuilder.withBody(body.getBytes(StandardCharsets.UTF_8))
+                .setContentType(flow.contentType)
+                .setContentEncoding(StandardCharsets.UTF_8.name())
+                .setExpiration(String.valueOf(config.getTimeoutMs()))
+                .build();
+        request = MessageEnvelope.headers(tenantId, transactionId, null).postProcessMessage(request);
+
+        Message reply;
+        try {
+            reply = replyTemplate.sendAndReceive("", queue, request);
+        } catch (AmqpException e) {
+            log.warn("Sync dispatch to {} failed, converting locally: {}", queue, e.getMessage());
+            workers.remove(queue);
+            return convertLocally(flow, localConversion);
+        }
+        if (reply == null) {
+            meterRegistry.counter("fhir.sync.dispatch.timeouts", "flow", flow.tag).increment();
+            throw new AmqpReplyTimeoutException(
+                    "No reply from a worker within " + config.getTimeoutMs() + " ms", request);
+        }
+        meterRegistry.counter("fhir.sync.dispatch", "flow", flow.tag, "target", "worker").increment();
+        return SyncReply.unwrap(reply);
+    }
+
+    private String convertLocally(Flow flow, Callable<String> localConversion) throws Exception {
+        meterRegistry.counter("fhir.sync.dispatch", "flow", flow.tag, "target", "local").increment();
+        return localConversion.call();
+    }
+
+    private boolean workersAvailable(String queue) {
+        long now = System.currentTimeMillis();
+        Workers cached = workers.get(queue);
+        if (cached == null || now - cached.checkedAt() >= config.getWorkerCheckMs()) {
+            long consumers;
+            try {
+                consumers = replyTemplate.execute(channel -> channel.queueDeclarePassive(queue).getConsumerCount());
+            } catch (AmqpException e) {
+                log.debug("Could not check consumers of {}: {}", queue, e.getMessage());
+                consumers = 0;
+            }
+            cached = new Workers(consumers, now);
+            workers.put(queue, cached);
+        }
+        return cached.consumers() > 0;
+    }
+
+    private static RabbitTemplate replyTemplate(SyncDispatchConfiguration config,
+            EnvelopeConfiguration envelopeConfig, ConnectionFactory connectionFactory) {
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setReplyTimeout(config.getTimeoutMs());
+        template.addBeforePublishPostProcessors(
+                MessageEnvelope.compressor(envelopeConfig.getCompressionThresholdBytes(), Set.of()));
+        return template;
+    }
+}
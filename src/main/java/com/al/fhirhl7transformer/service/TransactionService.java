@@ -4,6 +4,7 @@ import com.al.fhirhl7transformer.dto.StatusCount;
 import com.al.fhirhl7transformer.model.TransactionRecord;
 import com.al.fhirhl7transformer.repository.TransactionRepository;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -36,6 +37,7 @@ import java.util.Optional;
  * @since 1.2.0
  */
 @Service
+@Profile("!worker")
 public class TransactionService {
 
     private final TransactionRepository transactionRepository;
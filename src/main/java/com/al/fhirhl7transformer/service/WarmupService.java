@@ -0,0 +1,174 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.WarmupConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup JIT warm-up.
+ *
+ * <p>
+ * Runs a bundled corpus of ADT/ORU/ORM/SIU/MDM messages through
+ * {@link Hl7ToFhirService} and feeds each resulting Bundle back through
+ * {@link FhirToHl7Service}, round after round, until the mean per-message
+ * latency stops changing. This loads the HAPI structure classes and gets the
+ * converters and parsers compiled before real traffic arrives. The
+ * {@code warmup} health indicator keeps readiness DOWN until it finishes.
+ *
+ * <p>
+ * Metrics:
+ * <ul>
+ * <li>{@code fhir.warmup.duration} - timer tagged with the outcome</li>
+ * <li>{@code fhir.warmup.rounds} - number of corpus passes executed</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class WarmupService {
+
+    public enum State {
+        PENDING,
+        RUNNING,
+        STABILIZED,
+        TIMED_OUT,
+        FAILED,
+        DISABLED
+    }
+
+    private final Hl7ToFhirService hl7ToFhirService;
+    private final FhirToHl7Service fhirToHl7Service;
+    private final WarmupConfiguration config;
+    private final MeterRegistry meterRegistry;
+
+    private volatile State state = State.PENDING;
+    private volatile int roundsCompleted;
+    private volatile long durationMs;
+
+    public WarmupService(Hl7ToFhirService hl7ToFhirService, FhirToHl7Service fhirToHl7Service,
+            WarmupConfiguration config, MeterRegistry meterRegistry) {
+        this.hl7ToFhirService = hl7ToFhirService;
+        this.fhirToHl7Service = fhirToHl7Service;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("fhir.warmup.rounds", this, w -> w.roundsCompleted);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!config.isEnabled()) {
+            state = State.DISABLED;
+            log.info("JIT warm-up disabled");
+            return;
+        }
+        Thread thread = new Thread(this::runWarmup, "jit-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Run the warm-up loop on the calling thread.
+     */
+    public void runWarmup() {
+        state = State.RUNNING;
+        long start = System.nanoTime();
+        State outcome;
+        try {
+            List<String> corpus = loadCorpus();
+            if (corpus.isEmpty()) {
+                throw new IllegalStateException("No warm-up messages found at " + config.getCorpus());
+            }
+            log.info("Starting JIT warm-up with {} corpus messages", corpus.size());
+            outcome = runRounds(corpus, start);
+        } catch (Exception e) {
+            log.error("JIT warm-up failed: {}", e.getMessage(), e);
+            outcome = State.FAILED;
+        }
+
+        durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        meterRegistry.timer("fhir.warmup.duration", "outcome", outcome.name().toLowerCase())
+                .record(durationMs, TimeUnit.MILLISECONDS);
+        state = outcome;
+        log.info("JIT warm-up finished: {} after {} rounds in {}ms", outcome, roundsCompleted, durationMs);
+    }
+
+    private State runRounds(List<String> corpus, long start) {
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(config.getMaxDurationMs());
+        double previousMean = -1;
+        int stableCount = 0;
+
+        for (int round = 1; round <= config.getMaxRounds(); round++) {
+            long roundStart = System.nanoTime();
+            int succeeded = 0;
+            for (String hl7Message : corpus) {
+                try {
+                    String fhirJson = hl7ToFhirService.convertHl7ToFhir(hl7Message, false);
+                    fhirToHl7Service.convertFhirToHl7(fhirJson);
+                    succeeded++;
+                } catch (Exception e) {
+                    log.debug("Warm-up message failed: {}", e.getMessage());
+                }
+            }
+            if (succeeded == 0) {
+                throw new IllegalStateException("Every warm-up message failed to convert");
+            }
+            double mean = (double) (System.nanoTime() - roundStart) / corpus.size();
+            roundsCompleted = round;
+
+            if (previousMean > 0 && Math.abs(mean - previousMean) / previousMean < config.getStabilityThreshold()) {
+                stableCount++;
+            } else {
+                stableCount = 0;
+            }
+            log.debug("Warm-up round {}: mean {}us per message", round, (long) (mean / 1000));
+            previousMean = mean;
+
+            if (round >= config.getMinRounds() && stableCount >= config.getStableRounds()) {
+                return State.STABILIZED;
+            }
+            if (System.nanoTime() > deadline) {
+                return State.TIMED_OUT;
+            }
+        }
+        return State.TIMED_OUT;
+    }
+
+    private List<String> loadCorpus() throws Exception {
+        List<String> corpus = new ArrayList<>();
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(config.getCorpus());
+        for (Resource resource : resources) {
+            String content = resource.getContentAsString(StandardCharsets.UTF_8).trim();
+            // Corpus files use line breaks for readability; HL7 requires CR
+            corpus.add(content.replace("\r\n", "\r").replace('\n', '\r'));
+        }
+        return corpus;
+    }
+
+    /**
+     * Whether warm-up has finished (whatever the outcome) or is disabled.
+     */
+    public boolean isFinished() {
+        return state != State.PENDING && state != State.RUNNING;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getRoundsCompleted() {
+        return roundsCompleted;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+}
@@ -0,0 +1,16 @@
+package com.al.fhirhl7transformer.util;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+
+/**
+ * {@link SimpleMessageConverter} that inflates payloads compressed by
+ * {@link MessageEnvelope#compressor} before converting them.
+ */
+public class DecompressingMessageConverter extends SimpleMessageConverter {
+
+    @Override
+    public Object fromMessage(Message message) {
+        return super.fromMessage(MessageEnvelope.decompress(message));
+    }
+}
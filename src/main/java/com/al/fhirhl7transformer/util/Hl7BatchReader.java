@@ -0,0 +1,256 @@
+package com.al.fhirhl7transformer.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streaming splitter for HL7 v2 batch files.
+ *
+ * <p>
+ * Reads an FHS/BHS ... BTS/FTS envelope segment by segment and returns one
+ * message (MSH up to the next MSH or envelope segment) per call to
+ * {@link #nextMessage()}. Only the current message is held in memory, so
+ * files of any size can be split in a single pass. Segments may be terminated
+ * by CR, LF or CRLF; returned messages always use CR.
+ *
+ * <p>
+ * The raw bytes are cut at message and envelope boundaries with
+ * {@link Hl7BoundaryScanner}, so the SIMD search used for mapped archives
+ * also applies to uploaded batch files. Each unit is decoded once and only
+ * then split into segments.
+ *
+ * <p>
+ * Message counts declared in BTS-1 and the batch count declared in FTS-1 are
+ * checked against what was actually read; mismatches are reported by
+ * {@link #getCountErrors()} once the reader is exhausted. Files without an
+ * envelope (plain concatenated messages) are accepted as well.
+ *
+ * <p>
+ * Not thread-safe.
+ */
+public class Hl7BatchReader implements Closeable {
+
+    private static final Set<String> ENVELOPE_SEGMENTS = Set.of("FHS", "BHS", "BTS", "FTS");
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private byte[] buffer;
+    private ByteBuffer view;
+    private int start;
+    private int end;
+    private boolean eof;
+    private final Deque<String> segments = new ArrayDeque<>();
+
+    private String fileHeader;
+    private String batchHeader;
+    private String pendingSegment;
+    private int batchCount;
+    private int batchMessageCount;
+    private int totalMessageCount;
+    private final List<String> countErrors = new ArrayList<>();
+
+    public Hl7BatchReader(InputStream input) {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+
+    Hl7BatchReader(InputStream input, int bufferSize) {
+        this.input = input;
+        this.buffer = new byte[bufferSize];
+        this.view = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Read the next message from the file.
+     *
+     * @return the message with CR-separated segments, or {@code null} at end of
+     *         file
+     */
+    public String nextMessage() throws IOException {
+        StringBuilder message = null;
+        String segment;
+        while ((segment = nextSegment()) != null) {
+            String segmentId = segment.length() >= 3 ? segment.substring(0, 3) : segment;
+            boolean boundary = "MSH".equals(segmentId) || ENVELOPE_SEGMENTS.contains(segmentId);
+            if (boundary && message != null) {
+                // Segment starts the next unit; hand it to the next call
+                pendingSegment = segment;
+                return completeMessage(message);
+            }
+            if ("MSH".equals(segmentId)) {
+                message = new StringBuilder(segment);
+            } else if (boundary) {
+                handleEnvelopeSegment(segmentId, segment);
+            } else if (message != null) {
+                message.append('\r').append(segment);
+            } else {
+                countErrors.add("Segment " + segmentId + " outside of a message was ignored");
+            }
+        }
+        return message != null ? completeMessage(message) : null;
+    }
+
+    private String nextSegment() throws IOException {
+        if (pendingSegment != null) {
+            String segment = pendingSegment;
+            pendingSegment = null;
+            return segment;
+        }
+        while (segments.isEmpty()) {
+            String unit = nextUnit();
+            if (unit == null) {
+                return null;
+            }
+            for (String line : unit.split("[\r\n]+")) {
+                if (!line.isBlank()) {
+                    segments.add(line);
+                }
+            }
+        }
+        return segments.poll();
+    }
+
+    /**
+     * Bytes from the current position up to the next boundary (or end of
+     * input), decoded as UTF-8. Boundaries are ASCII, so a multi-byte
+     * character is never cut in half.
+     */
+    private String nextUnit() throws IOException {
+        int scanFrom = start;
+        while (true) {
+            int boundary = Hl7BoundaryScanner.nextBoundary(view, scanFrom, end, false);
+            if (boundary >= 0) {
+                return takeUnit(boundary);
+            }
+            if (eof) {
+                return start < end ? takeUnit(end) : null;
+            }
+            // A line break in the last three bytes may still start a boundary
+            scanFrom = Math.max(start, end - 3) - start;
+            fill();
+            scanFrom += start;
+        }
+    }
+
+    private String takeUnit(int unitEnd) {
+        String unit = new String(buffer, start, unitEnd - start, StandardCharsets.UTF_8);
+        start = unitEnd;
+        return unit;
+    }
+
+    /**
+     * Move unread bytes to the front (growing the buffer when a single unit
+     * fills it) and read more input behind them.
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        } else if (end == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            view = ByteBuffer.wrap(buffer);
+        }
+        int read = input.read(buffer, end, buffer.length - end);
+        if (read < 0) {
+            eof = true;
+        } else {
+            end += read;
+        }
+    }
+
+    private void handleEnvelopeSegment(String segmentId, String segment) {
+        switch (segmentId) {
+            case "FHS" -> fileHeader = segment;
+            case "BHS" -> {
+                batchHeader = segment;
+                batchCount++;
+                batchMessageCount = 0;
+            }
+            case "BTS" -> checkBatchCount(segment);
+            case "FTS" -> checkFileCount(segment);
+            default -> throw new IllegalStateException("Not an envelope segment: " + segmentId);
+        }
+    }
+
+    private String completeMessage(StringBuilder message) {
+        batchMessageCount++;
+        totalMessageCount++;
+        return message.toString();
+    }
+
+    private void checkBatchCount(String btsSegment) {
+        String declared = field(btsSegment, 1);
+        if (declared != null && !declared.isEmpty() && !declared.equals(String.valueOf(batchMessageCount))) {
+            countErrors.add("BTS-1 declared " + declared + " messages but batch " + Math.max(batchCount, 1)
+                    + " contained " + batchMessageCount);
+        }
+        batchMessageCount = 0;
+    }
+
+    private void checkFileCount(String ftsSegment) {
+        String declared = field(ftsSegment, 1);
+        if (declared != null && !declared.isEmpty() && !declared.equals(String.valueOf(batchCount))) {
+            countErrors.add("FTS-1 declared " + declared + " batches but file contained " + batchCount);
+        }
+    }
+
+    /**
+     * Extract a field from an envelope segment by split index. The field
+     * separator is the character following the segment ID, so for BTS/FTS the
+     * index equals the HL7 field number, while for FHS/BHS (where field 1 is
+     * the separator itself) it is the field number minus one.
+     *
+     * @return the trimmed field, or {@code null} if the segment is too short
+     */
+    public static String field(String segment, int index) {
+        if (segment == null || segment.length() < 4) {
+            return null;
+        }
+        String[] fields = segment.split(java.util.regex.Pattern.quote(String.valueOf(segment.charAt(3))), -1);
+        return index < fields.length ? fields[index].trim() : null;
+    }
+
+    /**
+     * FHS segment of the file, or {@code null} if the file had none.
+     */
+    public String getFileHeader() {
+        return fileHeader;
+    }
+
+    /**
+     * Most recently read BHS segment, or {@code null} if the file had none.
+     */
+    public String getBatchHeader() {
+        return batchHeader;
+    }
+
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    public int getTotalMessageCount() {
+        return totalMessageCount;
+    }
+
+    /**
+     * BTS/FTS count mismatches and stray segments found so far.
+     */
+    public List<String> getCountErrors() {
+        return countErrors;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
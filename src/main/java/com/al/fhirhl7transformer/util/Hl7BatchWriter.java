@@ -0,0 +1,91 @@
+package com.al.fhirhl7transformer.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Streaming writer for HL7 v2 batch files, the counterpart of
+ * {@link Hl7BatchReader}.
+ *
+ * <p>
+ * Writes a single-batch envelope: FHS and BHS, the messages as they are
+ * handed in, then BTS (BTS-1 = number of messages) and FTS (FTS-1 = 1).
+ * Segments are terminated by CR. Nothing is buffered beyond the current
+ * message, so batches of any size can be written to a response stream.
+ *
+ * <p>
+ * Not thread-safe.
+ */
+public class Hl7BatchWriter {
+
+    private final OutputStream output;
+    private final String sendingApplication;
+    private final String sendingFacility;
+    private final String controlId;
+    private int messageCount;
+
+    public Hl7BatchWriter(OutputStream output, String sendingApplication, String sendingFacility,
+            String controlId) {
+        this.output = output;
+        this.sendingApplication = sendingApplication;
+        this.sendingFacility = sendingFacility;
+        this.controlId = controlId;
+    }
+
+    /**
+     * Write the FHS and BHS segments.
+     */
+    public void writeHeader() throws IOException {
+        String timestamp = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        write(header("FHS", timestamp) + '\r' + header("BHS", timestamp) + '\r');
+    }
+
+    /**
+     * Append one message; line endings are normalized to CR.
+     */
+    public void writeMessage(String message) throws IOException {
+        String normalized = message.replace("\r\n", "\r").replace('\n', '\r');
+        write(normalized.endsWith("\r") ? normalized : normalized + '\r');
+        messageCount++;
+    }
+
+    /**
+     * Write the BTS and FTS segments.
+     *
+     * @param comment free text for BTS-2 and FTS-2, or {@code null}; escaped
+     *                and truncated to 200 characters
+     */
+    public void writeTrailer(String comment) throws IOException {
+        String text = comment == null ? ""
+                : escapeText(comment.length() <= 200 ? comment : comment.substring(0, 197) + "...");
+        write("BTS|" + messageCount + "|" + text + "\rFTS|1|" + text + "\r");
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Escape HL7 delimiters in free text placed into a single field.
+     */
+    public static String escapeText(String value) {
+        return value.replace("\\", "\\E\\")
+                .replace("|", "\\F\\")
+                .replace("^", "\\S\\")
+                .replace("&", "\\T\\")
+                .replace("~", "\\R\\");
+    }
+
+    private String header(String segmentId, String timestamp) {
+        // FHS-3/4 sending side, FHS-7 timestamp, FHS-11 control ID
+        return String.join("|", segmentId, "^~\\&", sendingApplication, sendingFacility, "", "", timestamp, "", "",
+                "", controlId);
+    }
+
+    private void write(String text) throws IOException {
+        output.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,103 @@
+package com.al.fhirhl7transformer.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds HL7 message and envelope boundaries in raw bytes.
+ *
+ * <p>
+ * A boundary is a line start (start of input, or the byte after a CR or LF)
+ * followed by one of the segment IDs {@code MSH}, {@code FHS}, {@code BHS},
+ * {@code BTS} or {@code FTS}. Scanning works on absolute positions of the
+ * buffer, so memory-mapped files are searched in place without copying.
+ *
+ * <p>
+ * When the JVM runs with {@code --add-modules jdk.incubator.vector}, the
+ * search for line breaks uses {@link VectorBoundaryScanner}; otherwise, or
+ * with {@code -Dhl7.scanner.vector=false}, a scalar byte loop is used. Both
+ * return the same positions.
+ */
+public final class Hl7BoundaryScanner {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    static final boolean VECTOR_ENABLED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && Boolean.parseBoolean(System.getProperty("hl7.scanner.vector", "true"));
+
+    private Hl7BoundaryScanner() {
+    }
+
+    /**
+     * Find the next boundary in {@code [from, limit)}.
+     *
+     * @param buffer          bytes to scan (absolute positions)
+     * @param from            first position to check
+     * @param limit           end of the scanned range (exclusive)
+     * @param fromIsLineStart whether {@code from} itself is at a line start
+     * @return position of the boundary's segment ID, or {@code -1}
+     */
+    public static int nextBoundary(ByteBuffer buffer, int from, int limit, boolean fromIsLineStart) {
+        return VECTOR_ENABLED
+                ? vectorNextBoundary(buffer, from, limit, fromIsLineStart)
+                : scalarNextBoundary(buffer, from, limit, fromIsLineStart);
+    }
+
+    static int scalarNextBoundary(ByteBuffer buffer, int from, int limit, boolean fromIsLineStart) {
+        if (fromIsLineStart && isBoundarySegment(buffer, from, limit)) {
+            return from;
+        }
+        for (int i = from; i < limit - 3; i++) {
+            byte b = buffer.get(i);
+            if ((b == CR || b == LF) && isBoundarySegment(buffer, i + 1, limit)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    static int vectorNextBoundary(ByteBuffer buffer, int from, int limit, boolean fromIsLineStart) {
+        if (fromIsLineStart && isBoundarySegment(buffer, from, limit)) {
+            return from;
+        }
+        // Line breaks before the last 3 bytes, as in the scalar loop
+        int end = limit - 2;
+        int i = from;
+        while (i < end - 1) {
+            int candidate = VectorBoundaryScanner.nextCandidate(buffer, i, end);
+            if (candidate < 0) {
+                return -1;
+            }
+            if (isBoundarySegment(buffer, candidate + 1, limit)) {
+                return candidate + 1;
+            }
+            i = candidate + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the segment at {@code position} is an MSH segment (as opposed to
+     * an envelope segment).
+     */
+    public static boolean isMessageStart(ByteBuffer buffer, int position) {
+        return buffer.get(position) == 'M' && buffer.get(position + 1) == 'S' && buffer.get(position + 2) == 'H';
+    }
+
+    private static boolean isBoundarySegment(ByteBuffer buffer, int position, int limit) {
+        if (position + 3 > limit) {
+            return false;
+        }
+        byte b0 = buffer.get(position);
+        byte b1 = buffer.get(position + 1);
+        byte b2 = buffer.get(position + 2);
+        if (b0 == 'M') {
+            return b1 == 'S' && b2 == 'H';
+        }
+        if (b0 == 'F' || b0 == 'B') {
+            // FHS, BHS, FTS, BTS
+            return (b1 == 'H' || b1 == 'T') && b2 == 'S';
+        }
+        return false;
+    }
+}
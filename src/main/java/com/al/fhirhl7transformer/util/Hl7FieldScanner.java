@@ -0,0 +1,116 @@
+package com.al.fhirhl7transformer.util;
+
+/**
+ * Reads single fields of an ER7 (pipe-delimited) message by scanning for its
+ * separators, without parsing the message.
+ *
+ * <p>
+ * Used on the publish path, where only a routing key such as MSH-9 or PID-3
+ * is needed and a full HAPI parse would cost more than the publish itself.
+ * The separators are taken from the message's MSH segment; escape sequences
+ * are not decoded.
+ */
+public final class Hl7FieldScanner {
+
+    private Hl7FieldScanner() {
+    }
+
+    /**
+     * Raw value of a field of the first segment with the given id, or
+     * {@code null} if the message has no MSH header, no such segment or the
+     * segment is shorter.
+     *
+     * @param segmentId   e.g. {@code MSH} or {@code PID}
+     * @param fieldNumber field number as in the HL7 standard, e.g. 9 for
+     *                    MSH-9
+     */
+    public static String field(String message, String segmentId, int fieldNumber) {
+        int msh = mshStart(message);
+        if (msh < 0 || fieldNumber < 1) {
+            return null;
+        }
+        char fieldSeparator = message.charAt(msh + 3);
+        boolean isMsh = "MSH".equals(segmentId);
+        int start = isMsh ? msh : segmentStart(message, segmentId, fieldSeparator, msh);
+        if (start < 0) {
+            return null;
+        }
+        if (isMsh && fieldNumber == 1) {
+            return String.valueOf(fieldSeparator);
+        }
+        int segmentEnd = segmentEnd(message, start);
+
+        // MSH-1 is the separator itself, so MSH-n follows the (n-1)th one
+        int separators = isMsh ? fieldNumber - 1 : fieldNumber;
+        int position = start + 3;
+        for (int i = 1; i < separators; i++) {
+            position = message.indexOf(fieldSeparator, position + 1);
+            if (position < 0 || position >= segmentEnd) {
+                return null;
+            }
+        }
+        int fieldStart = position + 1;
+        if (fieldStart > segmentEnd) {
+            return null;
+        }
+        return message.substring(fieldStart, indexOf(message, fieldSeparator, fieldStart, segmentEnd));
+    }
+
+    /**
+     * The message's component separator (MSH-2, first character), or
+     * {@code '^'} if it has no MSH header.
+     */
+    public static char componentSeparator(String message) {
+        int msh = mshStart(message);
+        return msh < 0 ? '^' : message.charAt(msh + 4);
+    }
+
+    /**
+     * The message's repetition separator (MSH-2, second character), or
+     * {@code '~'} if it has no MSH header.
+     */
+    public static char repetitionSeparator(String message) {
+        int msh = mshStart(message);
+        return msh < 0 ? '~' : message.charAt(msh + 5);
+    }
+
+    /**
+     * Index of {@code c} in {@code text} between {@code from} and {@code to},
+     * or {@code to} if it does not occur there.
+     */
+    public static int indexOf(String text, char c, int from, int to) {
+        int index = text.indexOf(c, from);
+        return index < 0 || index > to ? to : index;
+    }
+
+    private static int mshStart(String message) {
+        if (message == null) {
+            return -1;
+        }
+        int msh = message.indexOf("MSH");
+        return msh < 0 || message.length() < msh + 6 ? -1 : msh;
+    }
+
+    private static int segmentStart(String message, String segmentId, char fieldSeparator, int from) {
+        String prefix = segmentId + fieldSeparator;
+        int index = message.indexOf(prefix, from);
+        while (index > 0) {
+            char previous = message.charAt(index - 1);
+            if (previous == '\r' || previous == '\n') {
+                return index;
+            }
+            index = message.indexOf(prefix, index + 1);
+        }
+        return -1;
+    }
+
+    private static int segmentEnd(String message, int from) {
+        for (int i = from; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '\r' || c == '\n') {
+                return i;
+            }
+        }
+        return message.length();
+    }
+}
@@ -0,0 +1,131 @@
+package com.al.fhirhl7transformer.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits a flat HL7 file into messages using memory-mapped windows.
+ *
+ * <p>
+ * The file is mapped read-only, a window at a time, and message boundaries
+ * are found in the mapping by {@link Hl7BoundaryScanner}, so splitting reads
+ * the page cache directly without copying through a stream buffer. Only the
+ * returned message is decoded into a String. Envelope segments
+ * (FHS/BHS/BTS/FTS) are skipped.
+ *
+ * <p>
+ * {@link #getPosition()} is the file offset where the next message starts;
+ * passing it back as {@code startOffset} resumes reading there. A single
+ * message must fit in one window.
+ *
+ * <p>
+ * Not thread-safe.
+ */
+public class MappedHl7Reader implements Closeable {
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private boolean atLineStart = true;
+
+    public MappedHl7Reader(Path file, long startOffset, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        this.position = startOffset;
+    }
+
+    /**
+     * Read the next message.
+     *
+     * @return the message with CR-separated segments, or {@code null} at end of
+     *         file
+     */
+    public String nextMessage() throws IOException {
+        while (position < size) {
+            if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+                map(position);
+            }
+            int from = (int) (position - windowStart);
+            int limit = window.limit();
+            boolean windowReachesEnd = windowStart + limit == size;
+
+            int start = Hl7BoundaryScanner.nextBoundary(window, from, limit, atLineStart);
+            if (start < 0) {
+                if (windowReachesEnd) {
+                    // Trailing bytes without a segment we care about
+                    position = size;
+                    return null;
+                }
+                // Keep the last bytes so a boundary split across windows is not missed
+                position = windowStart + Math.max(from + 1, limit - 4);
+                atLineStart = false;
+                map(position);
+                continue;
+            }
+
+            int end = Hl7BoundaryScanner.nextBoundary(window, start + 1, limit, false);
+            if (end < 0) {
+                if (!windowReachesEnd) {
+                    if (start == 0) {
+                        throw new IOException("HL7 message at offset " + windowStart + " exceeds the "
+                                + windowSize + " byte mapping window");
+                    }
+                    // Message continues past the window; remap starting at it
+                    position = windowStart + start;
+                    atLineStart = true;
+                    map(position);
+                    continue;
+                }
+                end = limit;
+            }
+
+            position = windowStart + end;
+            atLineStart = true;
+            if (Hl7BoundaryScanner.isMessageStart(window, start)) {
+                return decode(start, end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * File offset where the next message starts.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, size - offset));
+    }
+
+    private String decode(int start, int end) {
+        String message = StandardCharsets.UTF_8.decode(window.slice(start, end - start)).toString();
+        message = message.replace("\r\n", "\r").replace('\n', '\r');
+        int length = message.length();
+        while (length > 0 && message.charAt(length - 1) == '\r') {
+            length--;
+        }
+        return message.substring(0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
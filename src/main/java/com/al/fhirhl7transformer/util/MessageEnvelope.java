@@ -0,0 +1,134 @@
+package com.al.fhirhl7transformer.util;
+
+import org.springframework.amqp.core.Correlation;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.postprocessor.DeflaterPostProcessor;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Metadata headers and payload compression for queue messages.
+ *
+ * <p>
+ * Messages carry the tenant, the MSH-10 control id (transaction id), the
+ * MSH-9 message type and the time they were enqueued as AMQP headers, so
+ * listeners, the DLQ tooling and downstream consumers can read them without
+ * parsing the payload. Large payloads are deflate-compressed on publish and
+ * flagged through the standard content-encoding property; {@link #decompress}
+ * restores them on the consuming side.
+ */
+public final class MessageEnvelope {
+
+    public static final String TENANT_HEADER = "tenantId";
+    public static final String TRANSACTION_ID_HEADER = "x-transaction-id";
+    public static final String MESSAGE_TYPE_HEADER = "x-message-type";
+    public static final String ENQUEUED_AT_HEADER = "x-enqueued-at";
+
+    private static final DelegatingDecompressingPostProcessor DECOMPRESSOR = new DelegatingDecompressingPostProcessor();
+    private static final Set<String> COMPRESSED_ENCODINGS = Set.of("deflate", "gzip", "zip");
+
+    private MessageEnvelope() {
+    }
+
+    /**
+     * Post-processor that stamps the metadata headers and the current time as
+     * enqueue time. {@code null} values are left out.
+     */
+    public static MessagePostProcessor headers(String tenantId, String transactionId, String messageType) {
+        return message -> {
+            MessageProperties properties = message.getMessageProperties();
+            setIfPresent(properties, TENANT_HEADER, tenantId);
+            setIfPresent(properties, TRANSACTION_ID_HEADER, transactionId);
+            setIfPresent(properties, MESSAGE_TYPE_HEADER, messageType);
+            properties.setHeader(ENQUEUED_AT_HEADER, System.currentTimeMillis());
+            return message;
+        };
+    }
+
+    /**
+     * A header value as string, or {@code null} if absent.
+     */
+    public static String header(Message message, String name) {
+        Object value = message.getMessageProperties().getHeader(name);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Post-processor for {@code RabbitTemplate} before-publish processing that
+     * deflates bodies of at least {@code thresholdBytes}. Messages sent
+     * through the default exchange to one of {@code uncompressedQueues} are
+     * left as they are.
+     */
+    public static MessagePostProcessor compressor(int thresholdBytes, Set<String> uncompressedQueues) {
+        return new ThresholdCompressor(thresholdBytes, uncompressedQueues);
+    }
+
+    /**
+     * The message with its body inflated if it was compressed, otherwise the
+     * message itself. Decompressing resets the content-encoding of the shared
+     * message properties, so each delivery must be decompressed only once.
+     */
+    public static Message decompress(Message message) {
+        return isCompressed(message) ? DECOMPRESSOR.postProcessMessage(message) : message;
+    }
+
+    /**
+     * The (decompressed) body decoded as UTF-8.
+     */
+    public static String bodyAsString(Message message) {
+        return new String(decompress(message).getBody(), StandardCharsets.UTF_8);
+    }
+
+    static boolean isCompressed(Message message) {
+        String encoding = message.getMessageProperties().getContentEncoding();
+        if (encoding == null) {
+            return false;
+        }
+        // e.g. "deflate, UTF-8"; older producers use ':' as delimiter
+        int delimiter = encoding.indexOf(':');
+        if (delimiter < 0) {
+            delimiter = encoding.indexOf(',');
+        }
+        return COMPRESSED_ENCODINGS.contains(delimiter < 0 ? encoding : encoding.substring(0, delimiter));
+    }
+
+    private static void setIfPresent(MessageProperties properties, String name, String value) {
+        if (value != null) {
+            properties.setHeader(name, value);
+        }
+    }
+
+    private static final class ThresholdCompressor implements MessagePostProcessor {
+
+        private final DeflaterPostProcessor deflater = new DeflaterPostProcessor();
+        private final int thresholdBytes;
+        private final Set<String> uncompressedQueues;
+
+        ThresholdCompressor(int thresholdBytes, Set<String> uncompressedQueues) {
+            this.thresholdBytes = thresholdBytes;
+            this.uncompressedQueues = uncompressedQueues;
+        }
+
+        @Override
+        public Message postProcessMessage(Message message) {
+            return postProcessMessage(message, null, null, null);
+        }
+
+        @Override
+        public Message postProcessMessage(Message message, Correlation correlation, String exchange,
+                String routingKey) {
+            if (thresholdBytes <= 0 || message.getBody().length < thresholdBytes || isCompressed(message)) {
+                return message;
+            }
+            if ((exchange == null || exchange.isEmpty()) && routingKey != null
+                    && uncompressedQueues.contains(routingKey)) {
+                return message;
+            }
+            return deflater.postProcessMessage(message);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.al.fhirhl7transformer.util;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.hl7v2.HL7Exception;
+import com.al.fhirhl7transformer.exception.ConversionFailedException;
+import com.al.fhirhl7transformer.exception.FhirValidationException;
+import com.al.fhirhl7transformer.exception.InvalidMessageException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replies to sync conversion requests dispatched to the workers.
+ *
+ * <p>
+ * A successful reply carries the converted message as body. A failed reply
+ * carries the error message as body and the kind of failure in the
+ * {@link #ERROR_HEADER} header; {@link #unwrap} turns it back into the
+ * exception type the sync endpoints already map to a status code and, for
+ * HL7, to an AR or AE acknowledgement.
+ */
+public final class SyncReply {
+
+    public static final String ERROR_HEADER = "x-conversion-error";
+
+    private static final String HL7 = "hl7";
+    private static final String FORMAT = "format";
+    private static final String INPUT = "input";
+    private static final String MAPPING = "mapping";
+    private static final String ERROR = "error";
+
+    private SyncReply() {
+    }
+
+    public static Message success(String body, String contentType) {
+        return MessageBuilder.withBody(body.getBytes(StandardCharsets.UTF_8))
+                .setContentType(contentType)
+                .setContentEncoding(StandardCharsets.UTF_8.name())
+                .build();
+    }
+
+    public static Message failure(Exception e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        return MessageBuilder.withBody(message.getBytes(StandardCharsets.UTF_8))
+                .setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN)
+                .setContentEncoding(StandardCharsets.UTF_8.name())
+                .setHeader(ERROR_HEADER, kind(e))
+                .build();
+    }
+
+    /**
+     * The converted message of a successful reply.
+     *
+     * @throws Exception the failure of a failed reply: {@link HL7Exception},
+     *                   {@link DataFormatException},
+     *                   {@link InvalidMessageException} for other input
+     *                   errors, {@link ConversionFailedException}, or
+     *                   {@link IllegalStateException} for anything else
+     */
+    public static String unwrap(Message reply) throws Exception {
+        String body = MessageEnvelope.bodyAsString(reply);
+        String kind = MessageEnvelope.header(reply, ERROR_HEADER);
+        if (kind == null) {
+            return body;
+        }
+        throw switch (kind) {
+            case HL7 -> new HL7Exception(body);
+            case FORMAT -> new DataFormatException(body);
+            case INPUT -> new InvalidMessageException(body);
+            case MAPPING -> new ConversionFailedException(body);
+            default -> new IllegalStateException("Conversion failed on worker: " + body);
+        };
+    }
+
+    private static String kind(Exception e) {
+        if (e instanceof HL7Exception) {
+            return HL7;
+        }
+        if (e instanceof DataFormatException) {
+            return FORMAT;
+        }
+        if (e instanceof IllegalArgumentException || e instanceof JsonProcessingException
+                || e instanceof FhirValidationException) {
+            return INPUT;
+        }
+        if (e instanceof ConversionFailedException) {
+            return MAPPING;
+        }
+        return ERROR;
+    }
+}
@@ -0,0 +1,60 @@
+package com.al.fhirhl7transformer.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Blocking token bucket: refills at a fixed rate up to a burst capacity.
+ *
+ * <p>
+ * {@link #acquire} takes the tokens immediately and, if that leaves the
+ * bucket in debt, sleeps until the debt has been refilled. Callers are
+ * therefore never starved and the long-run rate never exceeds the refill
+ * rate.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double tokensPerSecond, double capacity) {
+        this(tokensPerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double tokensPerSecond, double capacity, LongSupplier nanoClock) {
+        if (tokensPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Rate and capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Take {@code permits} tokens, sleeping as long as needed to stay within
+     * the rate.
+     */
+    public void acquire(int permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Take {@code permits} tokens and return how long the caller has to wait
+     * before using them, in nanoseconds.
+     */
+    synchronized long reserve(int permits) {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        tokens -= permits;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+}
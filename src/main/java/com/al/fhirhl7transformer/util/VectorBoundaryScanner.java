@@ -0,0 +1,116 @@
+package com.al.fhirhl7transformer.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SIMD candidate search for {@link Hl7BoundaryScanner}, built on the
+ * incubating Vector API.
+ *
+ * <p>
+ * Compares a full vector of bytes per step and flags every position where a
+ * CR or LF is followed by {@code M}, {@code F} or {@code B} - the first letter
+ * of every boundary segment ID. Such pairs occur about once per message, so
+ * almost all bytes are rejected without a branch; the few candidates are
+ * verified by the caller.
+ *
+ * <p>
+ * The Vector API only loads from arrays in Java 21, so direct and mapped
+ * buffers are copied into a per-thread block first. For read-only buffers
+ * (memory mappings) the block is reused across calls, so scanning a window
+ * message by message copies each byte once.
+ *
+ * <p>
+ * Only loaded when {@code jdk.incubator.vector} is in the boot layer
+ * ({@code --add-modules jdk.incubator.vector}).
+ */
+final class VectorBoundaryScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final ThreadLocal<Block> BLOCKS = ThreadLocal.withInitial(Block::new);
+
+    private VectorBoundaryScanner() {
+    }
+
+    /**
+     * Find the first candidate position {@code p} in {@code [from, limit - 1)}
+     * where {@code buffer[p]} is CR or LF and {@code buffer[p + 1]} is
+     * {@code M}, {@code F} or {@code B}.
+     *
+     * @return the position of the CR/LF, or {@code -1}
+     */
+    static int nextCandidate(ByteBuffer buffer, int from, int limit) {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset();
+            int found = scan(buffer.array(), from + offset, limit + offset);
+            return found < 0 ? -1 : found - offset;
+        }
+        Block block = BLOCKS.get();
+        int position = from;
+        while (position < limit - 1) {
+            block.load(buffer, position);
+            int end = Math.min(block.base + block.length, limit);
+            int found = scan(block.bytes, position - block.base, end - block.base);
+            if (found >= 0) {
+                return block.base + found;
+            }
+            // Overlap one byte so a pair split across blocks is still seen
+            position = end - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Scan {@code bytes[from, limit)} for a candidate pair.
+     */
+    private static int scan(byte[] bytes, int from, int limit) {
+        int i = from;
+        // Loads read bytes[i .. i + length] (the second vector is shifted by one)
+        int upper = limit - SPECIES.length();
+        for (; i < upper; i += SPECIES.length()) {
+            ByteVector current = ByteVector.fromArray(SPECIES, bytes, i);
+            ByteVector next = ByteVector.fromArray(SPECIES, bytes, i + 1);
+            VectorMask<Byte> lineBreak = current.eq((byte) '\r').or(current.eq((byte) '\n'));
+            VectorMask<Byte> segmentStart = next.eq((byte) 'M').or(next.eq((byte) 'F')).or(next.eq((byte) 'B'));
+            VectorMask<Byte> candidates = lineBreak.and(segmentStart);
+            if (candidates.anyTrue()) {
+                return i + candidates.firstTrue();
+            }
+        }
+        for (; i < limit - 1; i++) {
+            byte b = bytes[i];
+            if (b == '\r' || b == '\n') {
+                byte n = bytes[i + 1];
+                if (n == 'M' || n == 'F' || n == 'B') {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Per-thread copy of a range of a direct buffer.
+     */
+    private static final class Block {
+        private final byte[] bytes = new byte[BLOCK_SIZE];
+        private ByteBuffer source;
+        private int base;
+        private int length;
+
+        void load(ByteBuffer buffer, int position) {
+            // Reuse the copy only for read-only buffers, whose content cannot change
+            if (buffer.isReadOnly() && buffer == source && position >= base && position < base + length - 1) {
+                return;
+            }
+            source = buffer;
+            base = position;
+            length = Math.min(BLOCK_SIZE, buffer.limit() - position);
+            buffer.get(position, bytes, 0, length);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.al.fhirhl7transformer.cli;
+
+import com.al.fhirhl7transformer.cli.BulkFileConverter.Summary;
+import com.al.fhirhl7transformer.config.ConversionSchedulerConfiguration;
+import com.al.fhirhl7transformer.service.ConversionScheduler;
+import com.al.fhirhl7transformer.service.FhirToHl7Service;
+import com.al.fhirhl7transformer.service.Hl7ToFhirService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+public class BulkFileConverterTest {
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private Hl7ToFhirService hl7ToFhirService;
+
+    @Mock
+    private FhirToHl7Service fhirToHl7Service;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ConversionScheduler scheduler;
+    private BulkFileConverter converter;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(hl7ToFhirService.convertHl7ToFhir(anyString(), eq(false)))
+                .thenAnswer(invocation -> "{\n  \"resourceType\": \"Bundle\",\n  \"id\": \""
+                        + invocation.getArgument(0, String.class).split("\\|")[9] + "\"\n}");
+        doThrow(new IllegalArgumentException("bad")).when(hl7ToFhirService)
+                .convertHl7ToFhir(contains("|BAD|"), eq(false));
+        when(fhirToHl7Service.convertFhirToHl7(anyString())).thenReturn("MSH|^~\\&|X\rPID|1");
+
+        ConversionSchedulerConfiguration config = new ConversionSchedulerConfiguration();
+        config.setParallelism(2);
+        scheduler = new ConversionScheduler(config, new SimpleMeterRegistry());
+        // Small in-flight limit so the pipeline drains while reading
+        converter = new BulkFileConverter(hl7ToFhirService, fhirToHl7Service, scheduler, objectMapper, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testConvertsDirectoryInInputOrder() throws Exception {
+        Path input = Files.createDirectories(dir.resolve("in/sub"));
+        Files.writeString(input.resolve("a.hl7"), message("M1") + message("BAD") + message("M3") + message("M4"));
+        Files.writeString(input.resolve("b.ndjson"), "{\"resourceType\":\"Bundle\"}\n\n{\"resourceType\":\"Bundle\"}\n");
+        Files.writeString(input.resolve("ignored.csv"), "x");
+        Path output = dir.resolve("out");
+
+        Summary summary = converter.convert(List.of(dir.resolve("in")), output);
+
+        List<String> bundles = Files.readAllLines(output.resolve("sub/a.hl7.ndjson"));
+        assertEquals(List.of("{\"resourceType\":\"Bundle\",\"id\":\"M1\"}", "{\"resourceType\":\"Bundle\",\"id\":\"M3\"}",
+                "{\"resourceType\":\"Bundle\",\"id\":\"M4\"}"), bundles);
+        List<String> errors = Files.readAllLines(output.resolve("sub/a.hl7.errors.ndjson"));
+        assertEquals(1, errors.size());
+        assertEquals(1, objectMapper.readTree(errors.get(0)).get("index").asInt());
+        assertEquals("bad", objectMapper.readTree(errors.get(0)).get("error").asText());
+
+        assertEquals("MSH|^~\\&|X\rPID|1\r\nMSH|^~\\&|X\rPID|1\r\n",
+                Files.readString(output.resolve("sub/b.ndjson.hl7")));
+        assertFalse(Files.exists(output.resolve("sub/b.ndjson.errors.ndjson")));
+        assertFalse(Files.exists(output.resolve("sub/a.hl7.ndjson" + BulkFileConverter.PART_SUFFIX)));
+
+        assertEquals(2, summary.getFiles());
+        assertEquals(6, summary.getMessages());
+        assertEquals(5, summary.getSuccessCount());
+        assertEquals(1, summary.getFailureCount());
+    }
+
+    @Test
+    public void testRejectsOutputInsideInputAndUnknownFiles() throws Exception {
+        Path input = Files.createDirectories(dir.resolve("in"));
+        Path csv = Files.writeString(input.resolve("data.csv"), "x");
+
+        assertThrows(IllegalArgumentException.class, () -> converter.convert(List.of(input), input.resolve("out")));
+        assertThrows(IllegalArgumentException.class, () -> converter.convert(List.of(csv), dir.resolve("out")));
+    }
+
+    private static String message(String id) {
+        return "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|" + id + "|P|2.5\rPID|1||123\r";
+    }
+}
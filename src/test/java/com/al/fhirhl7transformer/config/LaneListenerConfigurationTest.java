@@ -0,0 +1,105 @@
+package com.al.fhirhl7transformer.config;
+
+import com.al.fhirhl7transformer.config.LaneConfiguration.Lane;
+import com.al.fhirhl7transformer.listener.Hl7MessageListener;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+import org.springframework.boot.amqp.autoconfigure.RabbitProperties;
+import org.springframework.boot.amqp.autoconfigure.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class LaneListenerConfigurationTest {
+
+    private final Hl7MessageListener hl7MessageListener = mock(Hl7MessageListener.class);
+
+    @Test
+    public void testRegistersLaneAndPartitionEndpoints() {
+        LaneConfiguration laneConfig = new LaneConfiguration();
+        laneConfig.setEnabled(true);
+        Lane stat = new Lane();
+        stat.setName("stat");
+        stat.setConcurrency("4");
+        stat.setPrefetch(5);
+        laneConfig.setLanes(List.of(stat));
+        PartitionConfiguration partitionConfig = new PartitionConfiguration();
+        partitionConfig.setEnabled(true);
+        partitionConfig.setCount(2);
+
+        RabbitListenerEndpointRegistrar registrar = mock(RabbitListenerEndpointRegistrar.class);
+        configuration(laneConfig, partitionConfig, new ListenerBatchConfiguration())
+                .configureRabbitListeners(registrar);
+
+        ArgumentCaptor<RabbitListenerEndpoint> endpoints = ArgumentCaptor.forClass(RabbitListenerEndpoint.class);
+        ArgumentCaptor<SimpleRabbitListenerContainerFactory> factories = ArgumentCaptor
+                .forClass(SimpleRabbitListenerContainerFactory.class);
+        verify(registrar, times(4)).registerEndpoint(endpoints.capture(), factories.capture());
+
+        List<SimpleRabbitListenerEndpoint> registered = endpoints.getAllValues().stream()
+                .map(endpoint -> assertInstanceOf(SimpleRabbitListenerEndpoint.class, endpoint)).toList();
+        assertEquals(List.of("hl7-lane-default", "hl7-lane-stat", "hl7-lane-" + PartitionConfiguration.laneName(0),
+                "hl7-lane-" + PartitionConfiguration.laneName(1)),
+                registered.stream().map(SimpleRabbitListenerEndpoint::getId).toList());
+        assertEquals(List.of("hl7-messages-queue"), registered.get(0).getQueueNames());
+        assertEquals(List.of(LaneConfiguration.queueName(stat)), registered.get(1).getQueueNames());
+        assertEquals(List.of(PartitionConfiguration.queueName(1)), registered.get(3).getQueueNames());
+        assertEquals("4", registered.get(1).getConcurrency());
+        assertEquals("1", registered.get(3).getConcurrency());
+
+        Message delivery = new Message("MSH|^~\\&|".getBytes(), new MessageProperties());
+        registered.forEach(endpoint -> endpoint.getMessageListener().onMessage(delivery));
+        verify(hl7MessageListener, times(4)).onDelivery(delivery);
+    }
+
+    @Test
+    public void testBatchLanesDelegateToReceiveBatch() throws Exception {
+        LaneConfiguration laneConfig = new LaneConfiguration();
+        laneConfig.setEnabled(true);
+        ListenerBatchConfiguration batchConfig = new ListenerBatchConfiguration();
+        batchConfig.setEnabled(true);
+
+        RabbitListenerEndpointRegistrar registrar = mock(RabbitListenerEndpointRegistrar.class);
+        configuration(laneConfig, new PartitionConfiguration(), batchConfig).configureRabbitListeners(registrar);
+
+        ArgumentCaptor<RabbitListenerEndpoint> endpoint = ArgumentCaptor.forClass(RabbitListenerEndpoint.class);
+        verify(registrar).registerEndpoint(endpoint.capture(), any(SimpleRabbitListenerContainerFactory.class));
+        SimpleRabbitListenerEndpoint registered = assertInstanceOf(SimpleRabbitListenerEndpoint.class,
+                endpoint.getValue());
+        assertEquals(Boolean.TRUE, registered.getBatchListener());
+
+        MessageListener listener = registered.getMessageListener();
+        List<Message> deliveries = List.of(new Message("MSH|^~\\&|".getBytes(), new MessageProperties()));
+        Channel channel = mock(Channel.class);
+        assertInstanceOf(ChannelAwareBatchMessageListener.class, listener).onMessageBatch(deliveries, channel);
+        verify(hl7MessageListener).receiveBatch(deliveries, channel);
+    }
+
+    private LaneListenerConfiguration configuration(LaneConfiguration laneConfig,
+            PartitionConfiguration partitionConfig, ListenerBatchConfiguration batchConfig) {
+        LaneListenerConfiguration configuration = new LaneListenerConfiguration(laneConfig, partitionConfig,
+                batchConfig, hl7MessageListener, new SimpleRabbitListenerContainerFactoryConfigurer(
+                        new RabbitProperties()),
+                mock(ConnectionFactory.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(configuration, "defaultQueue", "hl7-messages-queue");
+        return configuration;
+    }
+}
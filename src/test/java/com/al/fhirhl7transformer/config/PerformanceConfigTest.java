@@ -0,0 +1,71 @@
+package com.al.fhirhl7transformer.config;
+
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Message;
+import com.al.fhirhl7transformer.model.hl7.v25.message.ADT_A01;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PerformanceConfigTest {
+
+    private static final String ADT_V23 = "MSH|^~\\&|SENDER|FAC|RECEIVER|FAC|20240101120000||ADT^A01|MSG001|P|2.3\r"
+            + "PID|1||12345^^^MRN||DOE^JOHN||19800101|M\r"
+            + "ZPI|1|Rex|GOLD|ACTIVE";
+
+    private static final String ORU_V24 = "MSH|^~\\&|LAB|FAC|EHR|FAC|20240101120000||ORU^R01|MSG002|P|2.4\r"
+            + "PID|1||12345^^^MRN||DOE^JOHN||19800101|M\r"
+            + "OBR|1||ORD1|GLU^Glucose\r"
+            + "OBX|1|NM|GLU^Glucose||95|mg/dL|||||F";
+
+    @Test
+    public void testCanonicalModelParsesOlderVersionsIntoV25() throws Exception {
+        HapiContext context = hapiContext(true);
+
+        Message adt = context.getPipeParser().parse(ADT_V23);
+        ADT_A01 customAdt = assertInstanceOf(ADT_A01.class, adt);
+        assertEquals("Rex", customAdt.getZPI().getPetName().getValue());
+        assertEquals("2.3", customAdt.getMSH().getVersionID().getVersionID().getValue());
+
+        Message oru = context.getPipeParser().parse(ORU_V24);
+        ca.uhn.hl7v2.model.v25.message.ORU_R01 canonicalOru = assertInstanceOf(
+                ca.uhn.hl7v2.model.v25.message.ORU_R01.class, oru);
+        assertInstanceOf(ca.uhn.hl7v2.model.v25.group.ORU_R01_PATIENT_RESULT.class,
+                canonicalOru.getPATIENT_RESULT());
+        assertInstanceOf(ca.uhn.hl7v2.model.v25.group.ORU_R01_ORDER_OBSERVATION.class,
+                canonicalOru.getPATIENT_RESULT().getORDER_OBSERVATION());
+        assertEquals("95", canonicalOru.getPATIENT_RESULT().getORDER_OBSERVATION().getOBSERVATION().getOBX()
+                .getObservationValue(0).getData().toString());
+    }
+
+    @Test
+    public void testDefaultModelKeepsMessageVersion() throws Exception {
+        HapiContext context = hapiContext(false);
+
+        assertInstanceOf(ca.uhn.hl7v2.model.v23.message.ADT_A01.class, context.getPipeParser().parse(ADT_V23));
+        assertInstanceOf(ca.uhn.hl7v2.model.v24.message.ORU_R01.class, context.getPipeParser().parse(ORU_V24));
+    }
+
+    @Test
+    public void testCanonicalModelCoversVersionsWithoutStructures() throws Exception {
+        HapiContext context = hapiContext(true);
+
+        Message oru = context.getPipeParser().parse(ORU_V24.replace("|P|2.4", "|P|2.6"));
+        assertInstanceOf(ca.uhn.hl7v2.model.v25.message.ORU_R01.class, oru);
+        assertEquals("2.6", ((ca.uhn.hl7v2.model.v25.message.ORU_R01) oru).getMSH().getVersionID()
+                .getVersionID().getValue());
+
+        assertTrue(PerformanceConfig.parsesAsCanonical("2.3"));
+        assertTrue(PerformanceConfig.parsesAsCanonical("2.5.1"));
+        assertTrue(PerformanceConfig.parsesAsCanonical("2.6"));
+    }
+
+    private HapiContext hapiContext(boolean canonical) {
+        // Default supported versions, which include 2.5.1 and 2.6
+        ParsingConfiguration parsingConfiguration = new ParsingConfiguration();
+        parsingConfiguration.setCanonicalModelEnabled(canonical);
+        return new PerformanceConfig().hapiContext(parsingConfiguration);
+    }
+}
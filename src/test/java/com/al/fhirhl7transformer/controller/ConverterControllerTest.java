@@ -1,6 +1,7 @@
 package com.al.fhirhl7transformer.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.al.fhirhl7transformer.dto.BatchConversionResponse;
 import com.al.fhirhl7transformer.dto.EnrichedMessage;
 import com.al.fhirhl7transformer.model.enums.MessageType;
 import com.al.fhirhl7transformer.model.enums.TransactionStatus;
@@ -10,23 +11,59 @@ import com.al.fhirhl7transformer.service.Hl7ToFhirService;
 import com.al.fhirhl7transformer.service.MessageEnrichmentService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.AmqpReplyTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import com.al.fhirhl7transformer.config.ConversionSchedulerConfiguration;
+import com.al.fhirhl7transformer.config.LaneConfiguration;
+import com.al.fhirhl7transformer.listener.LaneMetricsAdvice;
 import com.al.fhirhl7transformer.service.BatchConversionService;
+import com.al.fhirhl7transformer.service.ConfirmedPublisher;
+import com.al.fhirhl7transformer.service.ConversionScheduler;
+import com.al.fhirhl7transformer.service.LaneRouter;
+import com.al.fhirhl7transformer.service.PartitionRouter;
+import com.al.fhirhl7transformer.service.SyncDispatcher;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 public class ConverterControllerTest {
 
@@ -42,7 +79,7 @@ public class ConverterControllerTest {
         private BatchConversionService batchConversionService;
 
         @Mock
-        private RabbitTemplate rabbitTemplate;
+        private ConfirmedPublisher confirmedPublisher;
 
         @Mock
         private MessageEnrichmentService messageEnrichmentService;
@@ -56,7 +93,17 @@ public class ConverterControllerTest {
         @Mock
         private com.al.fhirhl7transformer.service.AckMessageService ackMessageService;
 
+        @Mock
+        private LaneRouter laneRouter;
+
+        @Mock
+        private PartitionRouter partitionRouter;
+
+        @Mock
+        private SyncDispatcher syncDispatcher;
+
         private ObjectMapper objectMapper = new ObjectMapper();
+        private ConverterController controller;
 
         @BeforeEach
         public void setup() throws Exception {
@@ -66,10 +113,17 @@ public class ConverterControllerTest {
                 when(ackMessageService.generateAckAccept(anyString()))
                                 .thenReturn("MSH|^~\\&|ACK|FACILITY||20240101||ACK|123|P|2.5\rMSA|AA|123");
 
-                ConverterController controller = new ConverterController(
-                                hl7ToFhirService, fhirToHl7Service, batchConversionService, rabbitTemplate,
+                // No workers: sync conversions run locally
+                when(syncDispatcher.convert(any(), anyString(), any(), any(), any()))
+                                .thenAnswer(invocation -> invocation.getArgument(4, Callable.class).call());
+
+                controller = new ConverterController(
+                                hl7ToFhirService, fhirToHl7Service, batchConversionService, confirmedPublisher,
                                 messageEnrichmentService, auditService, idempotencyService, objectMapper,
-                                ackMessageService);
+                                ackMessageService,
+                                new ConversionScheduler(new ConversionSchedulerConfiguration(),
+                                                new SimpleMeterRegistry()),
+                                laneRouter, partitionRouter, syncDispatcher);
 
                 ReflectionTestUtils.setField(controller, "exchange", "test-exchange");
                 ReflectionTestUtils.setField(controller, "routingKey", "test-routing-key");
@@ -86,11 +140,17 @@ public class ConverterControllerTest {
                 EnrichedMessage enriched = new EnrichedMessage(hl7Message, transactionId);
 
                 when(messageEnrichmentService.ensureHl7TransactionId(anyString())).thenReturn(enriched);
+                when(confirmedPublisher.publish(anyString(), anyString(), any(), any(MessagePostProcessor.class)))
+                                .thenReturn(CompletableFuture.completedFuture(null));
 
-                mockMvc.perform(post("/api/convert/v2-to-fhir")
+                MvcResult result = mockMvc.perform(post("/api/convert/v2-to-fhir")
                                 .contentType(MediaType.TEXT_PLAIN)
                                 .content(hl7Message)
                                 .principal(() -> "tenant1"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                mockMvc.perform(asyncDispatch(result))
                                 .andExpect(status().isAccepted())
                                 .andExpect(jsonPath("$.status").value("Accepted"))
                                 .andExpect(jsonPath("$.transactionId").value(transactionId))
@@ -98,9 +158,111 @@ public class ConverterControllerTest {
 
                 verify(auditService).logTransaction(eq("tenant1"), eq(transactionId), eq(MessageType.V2_TO_FHIR_ASYNC),
                                 eq(TransactionStatus.ACCEPTED), isNull());
-                verify(rabbitTemplate).convertAndSend(eq("test-exchange"), eq("test-routing-key"), eq(hl7Message),
-                                org.mockito.ArgumentMatchers
-                                                .any(org.springframework.amqp.core.MessagePostProcessor.class));
+                verify(confirmedPublisher).publish(eq("test-exchange"), eq("test-routing-key"), eq(hl7Message),
+                                any(MessagePostProcessor.class));
+        }
+
+        @Test
+        public void testConvertToFhir_Async_RoutesToLane() throws Exception {
+                String hl7Message = "MSH|^~\\&|A|B|C|D|20240101||ADT^A01|tx-456|P|2.5";
+                LaneConfiguration.Lane lane = new LaneConfiguration.Lane();
+                lane.setName("realtime");
+
+                when(messageEnrichmentService.ensureHl7TransactionId(anyString()))
+                                .thenReturn(new EnrichedMessage(hl7Message, "tx-456"));
+                when(laneRouter.selectByType("ADT^A01", "tenant1")).thenReturn(lane);
+                when(confirmedPublisher.publish(anyString(), anyString(), any(), any(MessagePostProcessor.class)))
+                                .thenReturn(CompletableFuture.completedFuture(null));
+
+                MvcResult result = mockMvc.perform(post("/api/convert/v2-to-fhir")
+                                .contentType(MediaType.TEXT_PLAIN)
+                                .content(hl7Message)
+                                .principal(() -> "tenant1"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                mockMvc.perform(asyncDispatch(result)).andExpect(status().isAccepted());
+
+                ArgumentCaptor<MessagePostProcessor> postProcessor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+                verify(confirmedPublisher).publish(eq("test-exchange"), eq("hl7.lane.realtime"), eq(hl7Message),
+                                postProcessor.capture());
+                Message message = postProcessor.getValue().postProcessMessage(new Message(new byte[0]));
+                assertEquals("realtime", message.getMessageProperties().getHeader(LaneMetricsAdvice.LANE_HEADER));
+                assertEquals("tenant1", message.getMessageProperties().getHeader(MessageEnvelope.TENANT_HEADER));
+                assertEquals("tx-456", message.getMessageProperties().getHeader(MessageEnvelope.TRANSACTION_ID_HEADER));
+                assertEquals("ADT^A01", message.getMessageProperties().getHeader(MessageEnvelope.MESSAGE_TYPE_HEADER));
+        }
+
+        @Test
+        public void testConvertToFhir_Async_RoutesToPatientPartition() throws Exception {
+                String hl7Message = "MSH|^~\\&|A|B|C|D|20240101||ADT^A08|tx-457|P|2.5\rPID|1||MRN1";
+
+                when(messageEnrichmentService.ensureHl7TransactionId(anyString()))
+                                .thenReturn(new EnrichedMessage(hl7Message, "tx-457"));
+                when(partitionRouter.select(hl7Message, "tenant1")).thenReturn(OptionalInt.of(3));
+                when(confirmedPublisher.publish(anyString(), anyString(), any(), any(MessagePostProcessor.class)))
+                                .thenReturn(CompletableFuture.completedFuture(null));
+
+                MvcResult result = mockMvc.perform(post("/api/convert/v2-to-fhir")
+                                .contentType(MediaType.TEXT_PLAIN)
+                                .content(hl7Message)
+                                .principal(() -> "tenant1"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                mockMvc.perform(asyncDispatch(result)).andExpect(status().isAccepted());
+
+                ArgumentCaptor<MessagePostProcessor> postProcessor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+                verify(confirmedPublisher).publish(eq("test-exchange"), eq("hl7.partition.3"), eq(hl7Message),
+                                postProcessor.capture());
+                Message message = postProcessor.getValue().postProcessMessage(new Message(new byte[0]));
+                assertEquals("partition-3", message.getMessageProperties().getHeader(LaneMetricsAdvice.LANE_HEADER));
+                verify(laneRouter, never()).selectByType(any(), any());
+        }
+
+        @Test
+        public void testConvertToFhir_Async_Unconfirmed() throws Exception {
+                String hl7Message = "MSH|^~\\&|...";
+                EnrichedMessage enriched = new EnrichedMessage(hl7Message, "tx-789");
+
+                when(messageEnrichmentService.ensureHl7TransactionId(anyString())).thenReturn(enriched);
+                when(confirmedPublisher.publish(anyString(), anyString(), any(), any(MessagePostProcessor.class)))
+                                .thenReturn(CompletableFuture.failedFuture(new AmqpTimeoutException("no confirm")));
+
+                MvcResult result = mockMvc.perform(post("/api/convert/v2-to-fhir")
+                                .contentType(MediaType.TEXT_PLAIN)
+                                .content(hl7Message)
+                                .principal(() -> "tenant1"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isServiceUnavailable())
+                                .andExpect(jsonPath("$.type").value("AmqpTimeoutException"));
+
+                verify(auditService, never()).updateTransactionFailure(anyString(), anyString(), any(), anyInt());
+        }
+
+        @Test
+        public void testConvertToFhir_Async_Nacked() throws Exception {
+                String hl7Message = "MSH|^~\\&|...";
+                EnrichedMessage enriched = new EnrichedMessage(hl7Message, "tx-790");
+
+                when(messageEnrichmentService.ensureHl7TransactionId(anyString())).thenReturn(enriched);
+                when(confirmedPublisher.publish(anyString(), anyString(), any(), any(MessagePostProcessor.class)))
+                                .thenReturn(CompletableFuture.failedFuture(
+                                                new AmqpException("Broker rejected message: queue full")));
+
+                MvcResult result = mockMvc.perform(post("/api/convert/v2-to-fhir")
+                                .contentType(MediaType.TEXT_PLAIN)
+                                .content(hl7Message)
+                                .principal(() -> "tenant1"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isServiceUnavailable());
+
+                verify(auditService).updateTransactionFailure("tx-790", "FAILED",
+                                "Broker rejected message: queue full", 0);
         }
 
         @Test
@@ -125,6 +287,27 @@ public class ConverterControllerTest {
                                 eq(TransactionStatus.COMPLETED));
         }
 
+        @Test
+        public void testConvertToFhir_Sync_WorkerTimeout() throws Exception {
+                String hl7Message = "MSH|^~\\&|...";
+                EnrichedMessage enriched = new EnrichedMessage(hl7Message, "tx-321");
+
+                when(messageEnrichmentService.ensureHl7TransactionId(anyString())).thenReturn(enriched);
+                when(ackMessageService.generateAckError(anyString(), anyString())).thenReturn("MSH|^~\\&|ACK");
+                when(syncDispatcher.convert(eq(SyncDispatcher.Flow.V2_TO_FHIR), eq(hl7Message), eq("tenant1"),
+                                eq("tx-321"), any()))
+                                .thenThrow(new AmqpReplyTimeoutException("No reply from a worker", null));
+
+                mockMvc.perform(post("/api/convert/v2-to-fhir-sync")
+                                .contentType(MediaType.TEXT_PLAIN)
+                                .content(hl7Message)
+                                .principal(() -> "tenant1"))
+                                .andExpect(status().isServiceUnavailable())
+                                .andExpect(header().exists("X-HL7-ACK"));
+
+                verify(hl7ToFhirService, never()).convertHl7ToFhir(anyString());
+        }
+
         @Test
         public void testConvertToHl7_Async_Success() throws Exception {
                 String fhirJson = "{\"resourceType\":\"Bundle\"}";
@@ -132,11 +315,17 @@ public class ConverterControllerTest {
                 EnrichedMessage enriched = new EnrichedMessage(fhirJson, transactionId);
 
                 when(messageEnrichmentService.ensureFhirTransactionId(anyString())).thenReturn(enriched);
+                when(confirmedPublisher.publish(anyString(), anyString(), any(), any(MessagePostProcessor.class)))
+                                .thenReturn(CompletableFuture.completedFuture(null));
 
-                mockMvc.perform(post("/api/convert/fhir-to-v2")
+                MvcResult result = mockMvc.perform(post("/api/convert/fhir-to-v2")
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .content(fhirJson)
                                 .principal(() -> "tenant1"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                mockMvc.perform(asyncDispatch(result))
                                 .andExpect(status().isAccepted())
                                 .andExpect(jsonPath("$.status").value("Accepted"))
                                 .andExpect(jsonPath("$.transactionId").value(transactionId))
@@ -144,8 +333,8 @@ public class ConverterControllerTest {
 
                 verify(auditService).logTransaction(eq("tenant1"), eq(transactionId), eq(MessageType.FHIR_TO_V2_ASYNC),
                                 eq(TransactionStatus.QUEUED), isNull());
-                verify(rabbitTemplate).convertAndSend(eq("test-fhir-exchange"), eq("test-fhir-routing-key"),
-                                eq(fhirJson));
+                verify(confirmedPublisher).publish(eq("test-fhir-exchange"), eq("test-fhir-routing-key"),
+                                eq(fhirJson), any(MessagePostProcessor.class));
         }
 
         @Test
@@ -169,4 +358,63 @@ public class ConverterControllerTest {
                 verify(auditService).logTransaction(eq("tenant1"), eq(transactionId), eq(MessageType.FHIR_TO_V2_SYNC),
                                 eq(TransactionStatus.COMPLETED));
         }
+
+        @Test
+        public void testBatchEvents_StreamsOutcomesAndSummary() throws Exception {
+                when(batchConversionService.streamHl7ToFhirBatch(anyList(), any())).thenAnswer(invocation -> {
+                        BatchConversionService.OutcomeSink sink = invocation.getArgument(1);
+                        sink.accept(new BatchConversionResponse.ConversionResult(1, "{}", 5, "M2"));
+                        sink.accept(new BatchConversionResponse.ConversionError(0, "Invalid MSH", "BAD"));
+                        sink.accept(Map.of("totalMessages", 2));
+                        BatchConversionResponse summary = new BatchConversionResponse();
+                        summary.setFailureCount(1);
+                        return CompletableFuture.completedFuture(summary);
+                });
+
+                MvcResult result = mockMvc.perform(post("/api/convert/v2-to-fhir-batch-events")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"messages\":[\"BAD\",\"MSH|^~\\\\&|...\"]}")
+                                .principal(() -> "tenant1"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                String events = mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+
+                assertTrue(events.indexOf("event:result\nid:1\n") < events.indexOf("event:error\nid:0\n"), events);
+                assertTrue(events.indexOf("event:error\nid:0\n") < events.indexOf("event:summary\n"), events);
+                verify(auditService).logTransaction(eq("tenant1"), anyString(), eq(MessageType.V2_TO_FHIR_SYNC),
+                                eq(TransactionStatus.FAILED));
+        }
+
+        @Test
+        public void testBatchEvents_CompletesCleanlyOnTimeout() throws Exception {
+                ReflectionTestUtils.setField(controller, "batchTimeoutMs", 2000L);
+                AtomicReference<BatchConversionService.OutcomeSink> sink = new AtomicReference<>();
+                CompletableFuture<BatchConversionResponse> batch = new CompletableFuture<>();
+                when(batchConversionService.streamHl7ToFhirBatch(anyList(), any())).thenAnswer(invocation -> {
+                        sink.set(invocation.getArgument(1));
+                        return batch;
+                });
+
+                MvcResult result = mockMvc.perform(post("/api/convert/v2-to-fhir-batch-events")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"messages\":[\"MSH|^~\\\\&|...\"]}")
+                                .principal(() -> "tenant1"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                assertEquals(2000L, result.getRequest().getAsyncContext().getTimeout());
+
+                MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+                for (AsyncListener listener : asyncContext.getListeners()) {
+                        listener.onTimeout(new AsyncEvent(asyncContext));
+                }
+
+                assertThrows(IOException.class, () -> sink.get().accept(Map.of("totalMessages", 1)));
+                batch.completeExceptionally(new UncheckedIOException(new IOException("Batch event stream timed out")));
+                mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+                verify(auditService, never()).logTransaction(anyString(), anyString(), eq(MessageType.V2_TO_FHIR_SYNC),
+                                eq(TransactionStatus.FAILED));
+        }
 }
@@ -0,0 +1,103 @@
+package com.al.fhirhl7transformer.listener;
+
+import com.al.fhirhl7transformer.config.AdaptiveConcurrencyConfiguration;
+import com.al.fhirhl7transformer.config.LaneConfiguration;
+import com.al.fhirhl7transformer.listener.AdaptiveConcurrencyController.Decision;
+import com.al.fhirhl7transformer.listener.AdaptiveConcurrencyController.Sample;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class AdaptiveConcurrencyControllerTest {
+
+    private final AdaptiveConcurrencyConfiguration config = new AdaptiveConcurrencyConfiguration();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AdaptiveConcurrencyController controller;
+
+    @BeforeEach
+    public void setup() {
+        config.setMinConsumers(2);
+        config.setMaxConsumers(10);
+        config.setMaxStep(2);
+        config.setTargetDrainSeconds(30);
+        config.setMinPrefetch(10);
+        config.setMaxPrefetch(250);
+        config.setPrefetchBufferMs(1000);
+        controller = new AdaptiveConcurrencyController(config, mock(RabbitListenerEndpointRegistry.class),
+                mock(RabbitTemplate.class), meterRegistry, new LaneConfiguration(),
+                "hl7-messages-queue", "fhir-to-v2-queue");
+    }
+
+    @Test
+    public void testScalesUpBusyConsumersWithBacklog() {
+        // 10,000 messages at 20ms with 4 consumers drain in 50s > 30s
+        Decision decision = controller.decide(4, 50, 10, new Sample(10_000, 0.95, 20, 40));
+
+        assertEquals(6, decision.consumers(), "limited to max-step");
+        assertEquals(50, decision.prefetch(), "1000ms buffer at 20ms per message");
+    }
+
+    @Test
+    public void testHoldsWhenConsumersAreNotTheBottleneck() {
+        Decision decision = controller.decide(4, 50, 10, new Sample(10_000, 0.4, 20, 40));
+
+        assertEquals(4, decision.consumers());
+    }
+
+    @Test
+    public void testScalesDownWhenIdleAndStaysWithinBounds() {
+        assertEquals(3, controller.decide(4, 50, 10, new Sample(0, 0.1, 20, 40)).consumers());
+        assertEquals(2, controller.decide(2, 50, 10, new Sample(0, 0.0, 0, 0)).consumers());
+        assertEquals(10, controller.decide(10, 50, 10, new Sample(1_000_000, 1.0, 20, 40)).consumers());
+    }
+
+    @Test
+    public void testRemovesConsumersWhenP99ExceedsLimit() {
+        config.setMaxP99Ms(500);
+
+        Decision decision = controller.decide(8, 50, 10, new Sample(10_000, 1.0, 200, 900));
+
+        assertEquals(7, decision.consumers());
+    }
+
+    @Test
+    public void testPrefetchFollowsConversionTimeWithHysteresis() {
+        // Slow conversions: small prefetch, but never below the minimum
+        assertEquals(10, controller.decide(4, 50, 10, new Sample(0, 0.5, 500, 600)).prefetch());
+        // Within 25% of the current value: unchanged
+        assertEquals(50, controller.decide(4, 50, 10, new Sample(0, 0.5, 22, 30)).prefetch());
+        // Fast conversions: capped at the maximum
+        assertEquals(250, controller.decide(4, 50, 10, new Sample(0, 0.5, 1, 2)).prefetch());
+        // Batch containers keep at least a full batch
+        assertEquals(100, controller.decide(4, -1, 100, new Sample(0, 0.5, 500, 600)).prefetch());
+    }
+
+    @Test
+    public void testSamplesOnlyTheContainersOwnQueue() {
+        AdaptiveConcurrencyController.State state = new AdaptiveConcurrencyController.State();
+        state.consumers = 2;
+        state.lastSampleNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        meterRegistry.timer("fhir.queue.processing", "queue", "hl7-messages-queue", "tier", "standard")
+                .record(300, TimeUnit.MILLISECONDS);
+        meterRegistry.timer("fhir.queue.processing", "queue", "hl7-messages-queue", "tier", "premium")
+                .record(100, TimeUnit.MILLISECONDS);
+        // Busy elsewhere: another queue and the API's conversions
+        meterRegistry.timer("fhir.queue.processing", "queue", "fhir-to-v2-queue", "tier", "standard")
+                .record(5, TimeUnit.SECONDS);
+        meterRegistry.timer("fhir.conversion.time", "type", "v2-to-fhir").record(5, TimeUnit.SECONDS);
+
+        Sample sample = controller.sample(state, "hl7-messages-queue", 7);
+
+        assertEquals(7, sample.depth());
+        assertEquals(200, sample.meanMs(), 0.001);
+        assertEquals(0.2, sample.utilization(), 0.05, "400ms over 2 consumers in about 1s");
+        assertEquals(0, controller.sample(new AdaptiveConcurrencyController.State(), "other-queue", 0).meanMs());
+    }
+}
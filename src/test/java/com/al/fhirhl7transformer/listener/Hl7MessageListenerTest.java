@@ -0,0 +1,296 @@
+package com.al.fhirhl7transformer.listener;
+
+import com.al.fhirhl7transformer.config.LaneConfiguration;
+import com.al.fhirhl7transformer.config.ListenerBatchConfiguration;
+import com.al.fhirhl7transformer.config.PartitionConfiguration;
+import com.al.fhirhl7transformer.exception.InvalidMessageException;
+import com.al.fhirhl7transformer.listener.FailureClassifier.FailureClass;
+import com.al.fhirhl7transformer.service.AuditService;
+import com.al.fhirhl7transformer.service.AuditService.TransactionUpdate;
+import com.al.fhirhl7transformer.service.Hl7ToFhirService;
+import com.al.fhirhl7transformer.service.WebhookService;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import ca.uhn.hl7v2.HL7Exception;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class Hl7MessageListenerTest {
+
+    @Mock
+    private Hl7ToFhirService hl7ToFhirService;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private AuditService auditService;
+
+    @Mock
+    private WebhookService webhookService;
+
+    @Mock
+    private Channel channel;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BatchDeliveryHandler batchDeliveryHandler;
+    private Hl7MessageListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(hl7ToFhirService.convertHl7ToFhir(anyString(), eq(true), eq(false)))
+                .thenReturn("{\"resourceType\":\"Bundle\"}");
+        doThrow(new RejectedExecutionException("busy")).when(hl7ToFhirService)
+                .convertHl7ToFhir(contains("|BUSY"), eq(true), eq(false));
+        doThrow(new HL7Exception("bad")).when(hl7ToFhirService)
+                .convertHl7ToFhir(contains("|BAD"), eq(true), eq(false));
+        when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, RabbitOperations.OperationsCallback.class)
+                        .doInRabbit(rabbitTemplate));
+
+        ListenerBatchConfiguration config = new ListenerBatchConfiguration();
+        config.setEnabled(true);
+        config.setParallelism(2);
+        batchDeliveryHandler = new BatchDeliveryHandler(rabbitTemplate, config);
+        listener = new Hl7MessageListener(hl7ToFhirService, rabbitTemplate, auditService, webhookService,
+                batchDeliveryHandler, new FailureClassifier(meterRegistry, List.of()),
+                new QueueLatencyMetrics(meterRegistry, new LaneConfiguration()));
+        ReflectionTestUtils.setField(listener, "outputQueue", "fhir-out");
+        ReflectionTestUtils.setField(listener, "compactJson", true);
+        ReflectionTestUtils.setField(listener, "partitionRetryDelayMs", 0L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        batchDeliveryHandler.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchPublishesConfirmsAuditsThenAcks() throws Exception {
+        List<Message> deliveries = List.of(delivery(1, "M1", 0), delivery(2, "BUSY1", 0), delivery(3, "BAD2", 0),
+                delivery(4, "M4", 0));
+
+        listener.receiveBatch(deliveries, channel);
+
+        InOrder order = inOrder(rabbitTemplate, auditService, channel);
+        order.verify(rabbitTemplate).convertAndSend(eq(""), eq("fhir-out"), eq("{\"resourceType\":\"Bundle\"}"),
+                any(MessagePostProcessor.class));
+        order.verify(rabbitTemplate).convertAndSend(eq("hl7-messages-exchange"), eq("hl7.retry.1"),
+                contains("|BUSY1|"), any(MessagePostProcessor.class));
+        order.verify(rabbitTemplate).convertAndSend(eq(""), eq("fhir-out"), anyString(),
+                any(MessagePostProcessor.class));
+        order.verify(rabbitTemplate).waitForConfirmsOrDie(anyLong());
+        ArgumentCaptor<List<TransactionUpdate>> updates = ArgumentCaptor.forClass(List.class);
+        order.verify(auditService).applyUpdates(updates.capture());
+        order.verify(channel).basicReject(3, false);
+        order.verify(channel).basicAck(4, true);
+
+        assertEquals(List.of("M1", "BUSY1", "BAD2", "M4"),
+                updates.getValue().stream().map(TransactionUpdate::transactionId).toList());
+        assertEquals("FAILED", updates.getValue().get(2).update().getUpdateObject().get("$set", Document.class)
+                .get("status"));
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void testPermanentFailureIsDeadLetteredWithoutRetry() throws Exception {
+        String hl7 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|BAD9|P|2.5\r";
+
+        assertThrows(AmqpRejectAndDontRequeueException.class, () -> listener.receiveMessage(hl7, "t1", 0, null, null, null, null, null));
+        assertThrows(AmqpRejectAndDontRequeueException.class,
+                () -> listener.receiveMessage(hl7.replace("BAD9", "BUSY9"), "t1", 3, "TRANSIENT", null, null, null, null));
+        listener.receiveMessage(hl7.replace("BAD9", "BUSY8"), "t1", 1, "TRANSIENT", null, null, null, null);
+
+        verify(rabbitTemplate).convertAndSend(eq("hl7-messages-exchange"), eq("hl7.retry.2"), contains("|BUSY8|"),
+                any(MessagePostProcessor.class));
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), contains("|BAD9|"),
+                any(MessagePostProcessor.class));
+        verify(auditService).updateTransactionFailure("BAD9", "FAILED", "bad", 0);
+        assertEquals(1, meterRegistry.get("fhir.listener.attempts").tag("class", "permanent").summary().max());
+        assertEquals(4, meterRegistry.get("fhir.listener.attempts").tag("class", "transient").summary().max());
+        assertEquals(1, meterRegistry.get("fhir.listener.failures").tag("action", "retry").counter().count());
+    }
+
+    @Test
+    public void testLaneDeliveryReadsHeadersLikeAnnotatedListener() {
+        Message delivery = delivery(7, "L7", 1);
+        delivery.getMessageProperties().setHeader(MessageEnvelope.TENANT_HEADER, "t1");
+        delivery.getMessageProperties().setHeader(MessageEnvelope.TRANSACTION_ID_HEADER, "tx-7");
+        delivery.getMessageProperties().setHeader(LaneMetricsAdvice.LANE_HEADER, "stat");
+        delivery.getMessageProperties().setHeader(MessageEnvelope.ENQUEUED_AT_HEADER, System.currentTimeMillis());
+        delivery.getMessageProperties().setConsumerQueue("hl7-lane-stat-queue");
+
+        listener.onDelivery(delivery);
+
+        verify(rabbitTemplate).convertAndSend(eq(""), eq("fhir-out"), eq("{\"resourceType\":\"Bundle\"}"),
+                any(MessagePostProcessor.class));
+        verify(auditService).updateTransactionSuccess(eq("tx-7"), eq("COMPLETED"), any(LocalDateTime.class),
+                anyLong());
+        assertEquals(1, meterRegistry.get("fhir.queue.wait").tag("lane", "stat").timer().count());
+        // x-retry-count 1: second attempt
+        assertEquals(2, meterRegistry.get("fhir.listener.attempts").summary().max());
+    }
+
+    @Test
+    public void testOnlyMessageErrorsArePermanent() {
+        FailureClassifier classifier = new FailureClassifier(meterRegistry, List.of());
+
+        assertEquals(FailureClass.PERMANENT, classifier.classify(new InvalidMessageException("not a Bundle")));
+        assertEquals(FailureClass.PERMANENT,
+                classifier.classify(new IllegalStateException(new HL7Exception("Missing MSH-9"))));
+        assertEquals(FailureClass.TRANSIENT, classifier.classify(new IllegalArgumentException("bug")));
+        assertEquals(FailureClass.TRANSIENT, classifier.classify(new UnsupportedOperationException()));
+    }
+
+    @Test
+    public void testPartitionRetriesInPlaceSoPatientOrderHolds() throws Exception {
+        String a01 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|P1|P|2.5\rPID|1||MRN1\r";
+        String a08 = a01.replace("ADT^A01|P1", "ADT^A08|P2");
+        String partition = PartitionConfiguration.queueName(3);
+        when(hl7ToFhirService.convertHl7ToFhir(contains("|P1|"), eq(true), eq(false)))
+                .thenThrow(new RejectedExecutionException("busy"))
+                .thenReturn("{\"id\":\"a01\"}");
+        when(hl7ToFhirService.convertHl7ToFhir(contains("|P2|"), eq(true), eq(false)))
+                .thenReturn("{\"id\":\"a08\"}");
+
+        // The partition's single consumer handles its deliveries one after the other
+        listener.receiveMessage(a01, "t1", 0, null, null, partition, null, null);
+        listener.receiveMessage(a08, "t1", 0, null, null, partition, null, null);
+
+        InOrder order = inOrder(rabbitTemplate);
+        order.verify(rabbitTemplate).convertAndSend(eq(""), eq("fhir-out"), eq("{\"id\":\"a01\"}"),
+                any(MessagePostProcessor.class));
+        order.verify(rabbitTemplate).convertAndSend(eq(""), eq("fhir-out"), eq("{\"id\":\"a08\"}"),
+                any(MessagePostProcessor.class));
+        verify(rabbitTemplate, never()).convertAndSend(eq("hl7-messages-exchange"), anyString(), anyString(),
+                any(MessagePostProcessor.class));
+        verify(auditService).updateTransactionFailure("P1", "RETRYING", "busy", 1);
+
+        // Still failing after the last in-place retry: dead-lettered, no retry queue
+        String stuck = a01.replace("|P1|", "|BUSY3|");
+        assertThrows(AmqpRejectAndDontRequeueException.class,
+                () -> listener.receiveMessage(stuck, "t1", 0, null, null, partition, null, null));
+        verify(hl7ToFhirService, times(4)).convertHl7ToFhir(contains("|BUSY3|"), eq(true), eq(false));
+        verify(rabbitTemplate, never()).convertAndSend(eq("hl7-messages-exchange"), anyString(), anyString(),
+                any(MessagePostProcessor.class));
+    }
+
+    @Test
+    public void testBatchIsRequeuedWhenConfirmsFail() throws Exception {
+        doThrow(new AmqpException("nack")).when(rabbitTemplate).waitForConfirmsOrDie(anyLong());
+
+        listener.receiveBatch(List.of(delivery(7, "M1", 0), delivery(8, "M2", 0)), channel);
+
+        verify(channel).basicNack(8, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+        verify(auditService, never()).applyUpdates(any());
+    }
+
+    @Test
+    public void testBatchIsAckedWhenAuditFailsAfterConfirm() throws Exception {
+        doThrow(new IllegalStateException("mongo down")).when(auditService).applyUpdates(any());
+
+        listener.receiveBatch(List.of(delivery(7, "M1", 0), delivery(8, "M2", 0)), channel);
+
+        verify(rabbitTemplate).waitForConfirmsOrDie(anyLong());
+        verify(channel).basicAck(8, true);
+        verify(channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCompressedDeliveryUsesTransactionIdHeader() throws Exception {
+        Message delivery = delivery(5, "M5", 0);
+        delivery.getMessageProperties().setContentEncoding("UTF-8");
+        delivery.getMessageProperties().setHeader(MessageEnvelope.TRANSACTION_ID_HEADER, "TX-5");
+        Message compressed = MessageEnvelope.compressor(1, Set.of()).postProcessMessage(delivery);
+
+        listener.receiveBatch(List.of(compressed), channel);
+
+        verify(hl7ToFhirService).convertHl7ToFhir(contains("|M5|"), eq(true), eq(false));
+        ArgumentCaptor<MessagePostProcessor> headers = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq("fhir-out"), anyString(), headers.capture());
+        Message output = headers.getValue().postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        assertEquals("TX-5", output.getMessageProperties().getHeader(MessageEnvelope.TRANSACTION_ID_HEADER));
+        ArgumentCaptor<List<TransactionUpdate>> updates = ArgumentCaptor.forClass(List.class);
+        verify(auditService).applyUpdates(updates.capture());
+        assertEquals("TX-5", updates.getValue().get(0).transactionId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRecordsQueueWaitProcessingAndPublishTimes() throws Exception {
+        Message delivery = delivery(6, "M6", 0);
+        delivery.getMessageProperties().setConsumerQueue("hl7-messages-queue");
+        delivery.getMessageProperties().setHeader(MessageEnvelope.ENQUEUED_AT_HEADER,
+                System.currentTimeMillis() - 50);
+        delivery.getMessageProperties().setHeader(LaneMetricsAdvice.LANE_HEADER, "default");
+
+        listener.receiveBatch(List.of(delivery), channel);
+        listener.receiveMessage(MessageEnvelope.bodyAsString(delivery(7, "M7", 0)), "t1", 0, null, null,
+                "hl7-messages-queue", System.currentTimeMillis() - 50, "default");
+
+        for (String timer : List.of("fhir.queue.wait", "fhir.queue.processing", "fhir.queue.publish")) {
+            assertEquals(2, meterRegistry.get(timer).tag("queue", "hl7-messages-queue").tag("tier", "standard")
+                    .timer().count(), timer);
+        }
+        assertTrue(meterRegistry.get("fhir.queue.wait").timer().max(TimeUnit.MILLISECONDS) >= 50);
+        assertEquals(2, meterRegistry.get("fhir.queue.wait").tag("lane", "default").timer().count());
+
+        ArgumentCaptor<List<TransactionUpdate>> updates = ArgumentCaptor.forClass(List.class);
+        verify(auditService).applyUpdates(updates.capture());
+        Document set = updates.getValue().get(0).update().getUpdateObject().get("$set", Document.class);
+        assertTrue(set.get("processingStartedAt") != null && set.get("processingDurationMs") != null);
+        verify(auditService).updateTransactionSuccess(eq("M7"), eq("COMPLETED"), any(LocalDateTime.class),
+                anyLong());
+    }
+
+    private static Message delivery(long tag, String controlId, int retryCount) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(tag);
+        properties.setHeader("x-retry-count", retryCount);
+        String hl7 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|" + controlId + "|P|2.5\rPID|1||123\r";
+        return new Message(hl7.getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
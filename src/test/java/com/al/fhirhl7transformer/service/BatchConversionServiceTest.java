@@ -0,0 +1,351 @@
+package com.al.fhirhl7transformer.service;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import com.al.fhirhl7transformer.config.ConversionSchedulerConfiguration;
+import com.al.fhirhl7transformer.config.TenantContext;
+import com.al.fhirhl7transformer.dto.BatchConversionResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.when;
+
+public class BatchConversionServiceTest {
+
+    private static final int CONCURRENCY = 2;
+
+    @Mock
+    private Hl7ToFhirService hl7ToFhirService;
+
+    @Mock
+    private FhirToHl7Service fhirToHl7Service;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BatchConversionService batchConversionService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        batchConversionService = new BatchConversionService(hl7ToFhirService, fhirToHl7Service, objectMapper,
+                new AckMessageService(new DefaultHapiContext()),
+                new ConversionScheduler(new ConversionSchedulerConfiguration(), new SimpleMeterRegistry()),
+                CONCURRENCY, 0);
+    }
+
+    @Test
+    public void testStreamWritesOneLinePerMessageAndSummary() throws Exception {
+        when(hl7ToFhirService.convertHl7ToFhir(startsWith("MSH")))
+                .thenReturn("{\"resourceType\": \"Bundle\", \"id\": \"b1\"}");
+        when(hl7ToFhirService.convertHl7ToFhir(startsWith("BAD")))
+                .thenThrow(new IllegalArgumentException("Not an HL7 message"));
+
+        String input = "\"MSH|^~\\\\&|A|B|C|D|20240101||ADT^A01|1|P|2.5\\rPID|1\"\n"
+                + "\n"
+                + "\"BAD\"\n"
+                + "not json\n"
+                + "\"MSH|^~\\\\&|A|B|C|D|20240101||ADT^A01|2|P|2.5\\rPID|1\"\n";
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchConversionResponse summary = batchConversionService.streamHl7ToFhir(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+
+        assertEquals(4, summary.getTotalMessages());
+        assertEquals(2, summary.getSuccessCount());
+        assertEquals(2, summary.getFailureCount());
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, lines.length);
+
+        Set<Integer> indexes = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            JsonNode line = objectMapper.readTree(lines[i]);
+            indexes.add(line.get("index").asInt());
+            boolean success = line.has("output");
+            assertEquals(success, line.get("index").asInt() % 3 == 0, lines[i]);
+        }
+        assertEquals(Set.of(0, 1, 2, 3), indexes);
+
+        JsonNode summaryLine = objectMapper.readTree(lines[4]);
+        assertEquals(4, summaryLine.get("totalMessages").asInt());
+        assertEquals(2, summaryLine.get("failureCount").asInt());
+    }
+
+    @Test
+    public void testStreamBoundsInFlightConversions() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(hl7ToFhirService.convertHl7ToFhir(anyString())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            inFlight.decrementAndGet();
+            return "{}";
+        });
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add("\"MSH|" + i + "\"");
+        }
+        String input = String.join("\n", lines);
+
+        BatchConversionResponse summary = batchConversionService.streamHl7ToFhir(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream());
+
+        assertEquals(50, summary.getSuccessCount());
+        assertTrue(maxInFlight.get() <= CONCURRENCY, "In-flight conversions exceeded " + CONCURRENCY);
+    }
+
+    @Test
+    public void testStreamAwaitsInFlightConversionsWhenSourceFails() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        when(hl7ToFhirService.convertHl7ToFhir(anyString())).thenAnswer(invocation -> {
+            running.incrementAndGet();
+            Thread.sleep(100);
+            running.decrementAndGet();
+            return "{}";
+        });
+
+        byte[] head = "\"MSH|0\"\n\"MSH|1\"\n".getBytes(StandardCharsets.UTF_8);
+        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(head), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        });
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IOException e = assertThrows(IOException.class,
+                () -> batchConversionService.streamHl7ToFhir(failing, output));
+
+        assertEquals("Connection reset", e.getMessage());
+        assertEquals(0, running.get(), "Conversions still running after the stream failed");
+        assertEquals(0, output.size());
+    }
+
+    @Test
+    public void testOrderedBatchStreamAwaitsInFlightConversionsWhenSourceFails() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        when(fhirToHl7Service.convertFhirToHl7(anyString())).thenAnswer(invocation -> {
+            running.incrementAndGet();
+            Thread.sleep(100);
+            running.decrementAndGet();
+            return "MSH|^~\\&|A|B|C|D|20240101||ADT^A01|1|P|2.5";
+        });
+
+        byte[] head = "{\"resourceType\":\"Bundle\"}\n{\"resourceType\":\"Bundle\"}\n"
+                .getBytes(StandardCharsets.UTF_8);
+        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(head), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        });
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IOException e = assertThrows(IOException.class,
+                () -> batchConversionService.streamFhirToHl7Batch(failing, output));
+
+        assertEquals("Connection reset", e.getMessage());
+        assertEquals(0, running.get(), "Conversions still running after the stream failed");
+        assertTrue(output.toString(StandardCharsets.UTF_8).startsWith("FHS"));
+        assertTrue(!output.toString(StandardCharsets.UTF_8).contains("\rMSH"), "No message written after failure");
+    }
+
+    @Test
+    public void testBatchFileReturnsOutcomesAndBatchAck() throws Exception {
+        when(hl7ToFhirService.convertHl7ToFhir(anyString())).thenAnswer(invocation -> {
+            String hl7 = invocation.getArgument(0);
+            if (hl7.contains("|M2|")) {
+                throw new HL7Exception("Invalid PID segment");
+            }
+            return "{\"resourceType\": \"Bundle\"}";
+        });
+
+        String file = "FHS|^~\\&|LEGACY|HOSP|TRANSFORMER|HUB|20240101||||FILE1\r"
+                + "BHS|^~\\&|LEGACY|HOSP|TRANSFORMER|HUB|20240101||||BATCH1\r"
+                + "MSH|^~\\&|LEGACY|HOSP|TRANSFORMER|HUB|20240101||ADT^A01|M1|P|2.5\rPID|1||111\r"
+                + "MSH|^~\\&|LEGACY|HOSP|TRANSFORMER|HUB|20240101||ADT^A01|M2|P|2.5\rPID|1||222\r"
+                + "MSH|^~\\&|LEGACY|HOSP|TRANSFORMER|HUB|20240101||ADT^A01|M3|P|2.5\rPID|1||333\r"
+                + "BTS|4\r"
+                + "FTS|1\r";
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchConversionResponse summary = batchConversionService.streamHl7BatchToFhir(
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)), output);
+
+        assertEquals(3, summary.getTotalMessages());
+        assertEquals(2, summary.getSuccessCount());
+        assertEquals(1, summary.getFailureCount());
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        Set<String> messageIds = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            JsonNode line = objectMapper.readTree(lines[i]);
+            if (line.has("output")) {
+                messageIds.add(line.get("messageId").asText());
+            } else {
+                assertEquals(1, line.get("index").asInt());
+            }
+        }
+        assertEquals(Set.of("M1", "M3"), messageIds);
+
+        JsonNode summaryLine = objectMapper.readTree(lines[3]);
+        assertEquals(1, summaryLine.get("batchCount").asInt());
+        assertEquals("BTS-1 declared 4 messages but batch 1 contained 3", summaryLine.get("countErrors").get(0).asText());
+
+        String[] ackSegments = summaryLine.get("batchAck").asText().split("\r");
+        assertTrue(ackSegments[0].startsWith("FHS|^~\\&|TRANSFORMER|HUB|LEGACY|HOSP|"), ackSegments[0]);
+        assertTrue(ackSegments[0].endsWith("|FILE1"), ackSegments[0]);
+        assertTrue(ackSegments[1].endsWith("|BATCH1"), ackSegments[1]);
+        assertTrue(ackSegments[3].startsWith("MSA|AR|M2"), ackSegments[3]);
+        assertTrue(ackSegments[ackSegments.length - 2].startsWith("BTS|1|BTS-1 declared 4"),
+                ackSegments[ackSegments.length - 2]);
+        assertTrue(ackSegments[ackSegments.length - 1].startsWith("FTS|1|"));
+    }
+
+    @Test
+    public void testFhirStreamWritesBatchInInputOrder() throws Exception {
+        when(fhirToHl7Service.convertFhirToHl7(anyString())).thenAnswer(invocation -> {
+            String bundle = invocation.getArgument(0);
+            if (bundle.contains("Patient")) {
+                throw new IllegalArgumentException("Input must be a FHIR Bundle");
+            }
+            String id = objectMapper.readTree(bundle).get("id").asText();
+            // Earlier lines finish last, so completion order differs from input order
+            Thread.sleep(id.equals("b1") ? 30 : 0);
+            return "MSH|^~\\&|FHIR|HUB|LEGACY|HOSP|20240101||ADT^A01|" + id + "|P|2.5\nPID|1";
+        });
+
+        String input = "{\"resourceType\":\"Bundle\",\"id\":\"b1\"}\n"
+                + "{\"resourceType\":\"Patient\"}\n"
+                + "\n"
+                + "{\"resourceType\":\"Bundle\",\"id\":\"b2\"}\n"
+                + "{\"resourceType\":\"Bundle\",\"id\":\"b3\"}\n";
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchConversionResponse summary = batchConversionService.streamFhirToHl7Batch(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+
+        assertEquals(4, summary.getTotalMessages());
+        assertEquals(3, summary.getSuccessCount());
+        assertEquals(1, summary.getFailureCount());
+
+        String[] segments = output.toString(StandardCharsets.UTF_8).split("\r");
+        assertEquals(10, segments.length);
+        assertTrue(segments[0].startsWith("FHS|^~\\&|FHIR-TRANSFORMER|"), segments[0]);
+        assertTrue(segments[1].startsWith("BHS|"), segments[1]);
+        assertTrue(segments[2].endsWith("|b1|P|2.5"), segments[2]);
+        assertEquals("PID|1", segments[3]);
+        assertTrue(segments[4].endsWith("|b2|P|2.5"), segments[4]);
+        assertTrue(segments[6].endsWith("|b3|P|2.5"), segments[6]);
+        assertEquals("BTS|3|1 of 4 bundles failed: 1", segments[8]);
+        assertEquals("FTS|1|1 of 4 bundles failed: 1", segments[9]);
+    }
+
+    @Test
+    public void testFailFastCancelsRemainingConversions() throws Exception {
+        AtomicInteger converted = new AtomicInteger();
+        when(hl7ToFhirService.convertHl7ToFhir(anyString())).thenAnswer(invocation -> {
+            converted.incrementAndGet();
+            if ("MSH|0".equals(invocation.getArgument(0))) {
+                throw new HL7Exception("Invalid MSH segment");
+            }
+            Thread.sleep(20);
+            return "{}";
+        });
+
+        BatchConversionResponse response = singleWorkerService(0).convertHl7ToFhirBatch(messages(20), true);
+
+        assertEquals(20, response.getTotalMessages());
+        assertEquals(20, response.getSuccessCount() + response.getFailureCount());
+        assertEquals("Invalid MSH segment", response.getErrors().get(0).getError());
+        assertTrue(converted.get() < 20, "Conversions kept running after the first failure");
+        assertEquals("Cancelled after message 0 failed", response.getErrors().get(1).getError());
+    }
+
+    @Test
+    public void testBatchDeadlineCancelsQueuedConversions() throws Exception {
+        when(hl7ToFhirService.convertHl7ToFhir(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return "{}";
+        });
+
+        BatchConversionResponse response = singleWorkerService(50).convertHl7ToFhirBatch(messages(20));
+
+        assertTrue(response.getSuccessCount() > 0 && response.getSuccessCount() < 20,
+                "Unexpected success count " + response.getSuccessCount());
+        assertEquals(20, response.getSuccessCount() + response.getFailureCount());
+        assertTrue(response.getErrors().stream()
+                .allMatch(error -> error.getError().startsWith("Batch deadline exceeded")));
+    }
+
+    @Test
+    public void testBatchEventsDeliverOutcomesThenSummaryWithTenant() throws Exception {
+        List<String> tenants = Collections.synchronizedList(new ArrayList<>());
+        when(hl7ToFhirService.convertHl7ToFhir(anyString())).thenAnswer(invocation -> {
+            tenants.add(TenantContext.getTenantId());
+            if ("MSH|1".equals(invocation.getArgument(0))) {
+                throw new HL7Exception("Invalid PID segment");
+            }
+            return "{}";
+        });
+
+        List<Object> outcomes = new ArrayList<>();
+        TenantContext.setTenantId("tenant-a");
+        try {
+            BatchConversionResponse summary = batchConversionService
+                    .streamHl7ToFhirBatch(messages(3), outcomes::add).get(5, TimeUnit.SECONDS);
+            assertEquals(2, summary.getSuccessCount());
+            assertEquals(1, summary.getFailureCount());
+        } finally {
+            TenantContext.clear();
+        }
+
+        assertEquals(4, outcomes.size());
+        assertTrue(outcomes.get(3) instanceof Map, "Summary must come last");
+        assertEquals(3, ((Map<?, ?>) outcomes.get(3)).get("totalMessages"));
+        assertEquals(List.of("tenant-a", "tenant-a", "tenant-a"), tenants);
+    }
+
+    private BatchConversionService singleWorkerService(long batchTimeoutMs) {
+        ConversionSchedulerConfiguration config = new ConversionSchedulerConfiguration();
+        config.setParallelism(1);
+        return new BatchConversionService(hl7ToFhirService, fhirToHl7Service, objectMapper,
+                new AckMessageService(new DefaultHapiContext()),
+                new ConversionScheduler(config, new SimpleMeterRegistry()), CONCURRENCY, batchTimeoutMs);
+    }
+
+    private List<String> messages(int count) {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add("MSH|" + i);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,204 @@
+package com.al.fhirhl7transformer.service;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import com.al.fhirhl7transformer.config.BulkJobConfiguration;
+import com.al.fhirhl7transformer.config.ConversionSchedulerConfiguration;
+import com.al.fhirhl7transformer.model.BulkJob;
+import com.al.fhirhl7transformer.model.enums.BulkJobStatus;
+import com.al.fhirhl7transformer.model.enums.MessageType;
+import com.al.fhirhl7transformer.model.enums.TransactionStatus;
+import com.al.fhirhl7transformer.repository.BulkJobRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkJobServiceTest {
+
+    @TempDir
+    Path storageDir;
+
+    @Mock
+    private Hl7ToFhirService hl7ToFhirService;
+
+    @Mock
+    private FhirToHl7Service fhirToHl7Service;
+
+    @Mock
+    private BulkJobRepository bulkJobRepository;
+
+    @Mock
+    private AuditService auditService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+    private BulkJobService bulkJobService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(hl7ToFhirService.convertHl7ToFhir(anyString())).thenReturn("{\"resourceType\": \"Bundle\"}");
+        when(bulkJobRepository.save(any(BulkJob.class))).thenAnswer(invocation -> {
+            BulkJob job = invocation.getArgument(0);
+            jobs.put(job.getJobId(), job);
+            return job;
+        });
+        when(bulkJobRepository.findByJobId(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.<String>getArgument(0))));
+        when(bulkJobRepository.findByNodeIdAndStatusIn(eq("node-1"), anyCollection()))
+                .thenAnswer(invocation -> jobs.values().stream()
+                        .filter(job -> invocation.<Collection<String>>getArgument(1)
+                                .contains(job.getStatus()))
+                        .toList());
+
+        BulkJobConfiguration config = new BulkJobConfiguration();
+        config.setStorageDir(storageDir.toString());
+        config.setChunkSize(2);
+        config.setNodeId("node-1");
+        BatchConversionService batchConversionService = new BatchConversionService(hl7ToFhirService,
+                fhirToHl7Service, objectMapper,
+                new AckMessageService(new DefaultHapiContext()),
+                new ConversionScheduler(new ConversionSchedulerConfiguration(), new SimpleMeterRegistry()), 2, 0);
+        bulkJobService = new BulkJobService(bulkJobRepository, batchConversionService, auditService, config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bulkJobService.shutdown();
+    }
+
+    @Test
+    public void testSubmitChunksInputAndConvertsEveryChunk() throws Exception {
+        String input = "\"MSH|0\"\n\"MSH|1\"\n\n\"MSH|2\"\n\"MSH|3\"\n\"MSH|4\"\n";
+
+        BulkJob job = bulkJobService.submit("tenant-a",
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(5, job.getTotalMessages());
+        assertEquals(3, job.getChunkCount());
+
+        BulkJob finished = awaitStatus(job.getJobId(), BulkJobStatus.COMPLETED);
+        assertEquals(5, finished.getSuccessCount());
+        assertEquals(3, finished.getCompletedChunks());
+
+        List<String> lastChunk = Files.readAllLines(bulkJobService.getOutputChunk(finished, 2));
+        assertEquals(1, lastChunk.size());
+        assertEquals(4, objectMapper.readTree(lastChunk.get(0)).get("index").asInt());
+        assertFalse(Files.exists(storageDir.resolve(job.getJobId()).resolve("input-00000.ndjson")));
+
+        verify(auditService).logTransaction("tenant-a", job.getJobId(), MessageType.V2_TO_FHIR_BULK,
+                TransactionStatus.ACCEPTED);
+        assertEquals(Optional.empty(), bulkJobService.getJob(job.getJobId(), "tenant-b"));
+    }
+
+    @Test
+    public void testResumeContinuesAtFirstUnfinishedChunk() throws Exception {
+        Path jobDir = Files.createDirectories(storageDir.resolve("job-1"));
+        Files.writeString(jobDir.resolve("output-00000.ndjson"), "{\"index\":0}\n{\"index\":1}\n");
+        Files.writeString(jobDir.resolve("input-00001.ndjson"), "\"MSH|2\"\n");
+
+        BulkJob job = new BulkJob();
+        job.setJobId("job-1");
+        job.setTenantId("tenant-a");
+        job.setNodeId("node-1");
+        job.setStatus(BulkJobStatus.PROCESSING.name());
+        job.setChunkSize(2);
+        job.setChunkCount(2);
+        job.setCompletedChunks(1);
+        job.setTotalMessages(3);
+        job.setProcessedMessages(2);
+        job.setSuccessCount(2);
+        jobs.put("job-1", job);
+
+        bulkJobService.resumeJobs();
+
+        BulkJob finished = awaitStatus("job-1", BulkJobStatus.COMPLETED);
+        assertEquals(3, finished.getProcessedMessages());
+        assertEquals(3, finished.getSuccessCount());
+        String resumed = Files.readString(bulkJobService.getOutputChunk(finished, 1));
+        assertEquals(2, objectMapper.readTree(resumed).get("index").asInt());
+        assertThrows(IllegalArgumentException.class, () -> bulkJobService.getOutputChunk(finished, 2));
+    }
+
+    @Test
+    public void testKeepsChunkInputUntilProgressIsSaved() throws Exception {
+        Map<Integer, Boolean> inputAtSave = new ConcurrentHashMap<>();
+        when(bulkJobRepository.save(any(BulkJob.class))).thenAnswer(invocation -> {
+            BulkJob job = invocation.getArgument(0);
+            if (job.getCompletedChunks() > 0) {
+                Path input = storageDir.resolve(job.getJobId()).resolve("input-00000.ndjson");
+                inputAtSave.putIfAbsent(job.getCompletedChunks(), Files.exists(input));
+            }
+            jobs.put(job.getJobId(), job);
+            return job;
+        });
+
+        BulkJob job = bulkJobService.submit("tenant-a",
+                new ByteArrayInputStream("\"MSH|0\"\n\"MSH|1\"\n\"MSH|2\"\n".getBytes(StandardCharsets.UTF_8)));
+
+        awaitStatus(job.getJobId(), BulkJobStatus.COMPLETED);
+        assertTrue(inputAtSave.get(1), "a crash before the save must leave the chunk to convert again");
+        assertFalse(Files.exists(storageDir.resolve(job.getJobId()).resolve("input-00000.ndjson")));
+    }
+
+    @Test
+    public void testInterruptedJobStaysProcessing() throws Exception {
+        Path jobDir = Files.createDirectories(storageDir.resolve("job-1"));
+        Files.writeString(jobDir.resolve("input-00000.ndjson"), "\"MSH|0\"\n");
+
+        BulkJob job = new BulkJob();
+        job.setJobId("job-1");
+        job.setTenantId("tenant-a");
+        job.setNodeId("node-1");
+        job.setStatus(BulkJobStatus.PROCESSING.name());
+        job.setChunkSize(2);
+        job.setChunkCount(1);
+        jobs.put("job-1", job);
+
+        // Reading the chunk file on an interrupted thread fails with ClosedByInterruptException
+        Thread worker = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            bulkJobService.process("job-1");
+        });
+        worker.start();
+        worker.join(5000);
+
+        assertEquals(BulkJobStatus.PROCESSING.name(), jobs.get("job-1").getStatus());
+        assertEquals(0, jobs.get("job-1").getCompletedChunks());
+        verify(auditService, never()).updateTransactionFailure(anyString(), anyString(), any(), anyInt());
+    }
+
+    private BulkJob awaitStatus(String jobId, BulkJobStatus status) throws InterruptedException {
+        for (int i = 0; i < 500 && !status.name().equals(jobs.get(jobId).getStatus()); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(status.name(), jobs.get(jobId).getStatus(), jobs.get(jobId).getErrorMessage());
+        return jobs.get(jobId);
+    }
+}
@@ -0,0 +1,86 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.PublisherConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ConfirmedPublisherTest {
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ConfirmedPublisher publisher;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        PublisherConfiguration config = new PublisherConfiguration();
+        config.setMaxUnconfirmed(2);
+        config.setWaitTimeoutMs(10);
+        config.setConfirmTimeoutMs(200);
+        publisher = new ConfirmedPublisher(rabbitTemplate, config, meterRegistry);
+    }
+
+    @Test
+    public void testCompletesOnConfirmAndBoundsUnconfirmed() throws Exception {
+        CompletableFuture<Void> first = publisher.publish("ex", "key", "one", message -> message);
+        CompletableFuture<Void> second = publisher.publish("ex", "key", "two", message -> message);
+        assertEquals(2, publisher.getUnconfirmed());
+        assertThrows(RejectedExecutionException.class, () -> publisher.publish("ex", "key", "three", m -> m));
+
+        List<CorrelationData> correlations = sentCorrelations(2);
+        correlations.get(0).getFuture().complete(new CorrelationData.Confirm(true, null));
+        correlations.get(1).getFuture().complete(new CorrelationData.Confirm(false, "queue full"));
+
+        first.get();
+        ExecutionException nacked = assertThrows(ExecutionException.class, second::get);
+        assertInstanceOf(AmqpException.class, nacked.getCause());
+        assertEquals(0, publisher.getUnconfirmed());
+        assertEquals(1, meterRegistry.get("fhir.publisher.confirm").tag("outcome", "ack").timer().count());
+        assertEquals(1, meterRegistry.get("fhir.publisher.rejected").counter().count());
+    }
+
+    @Test
+    public void testTimeoutFailsCallerButKeepsSlotUntilConfirm() {
+        CompletableFuture<Void> future = publisher.publish("ex", "key", "one", message -> message);
+
+        ExecutionException timedOut = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(AmqpTimeoutException.class, timedOut.getCause());
+        assertEquals(1, meterRegistry.get("fhir.publisher.confirm").tag("outcome", "timeout").timer().count());
+
+        // The broker has not answered yet, so the message still holds its slot
+        assertEquals(1, publisher.getUnconfirmed());
+        sentCorrelations(1).get(0).getFuture().complete(new CorrelationData.Confirm(true, null));
+        assertEquals(0, publisher.getUnconfirmed());
+    }
+
+    private List<CorrelationData> sentCorrelations(int count) {
+        ArgumentCaptor<CorrelationData> captor = ArgumentCaptor.forClass(CorrelationData.class);
+        verify(rabbitTemplate, times(count)).convertAndSend(eq("ex"), eq("key"), any(Object.class),
+                any(MessagePostProcessor.class), captor.capture());
+        return captor.getAllValues();
+    }
+}
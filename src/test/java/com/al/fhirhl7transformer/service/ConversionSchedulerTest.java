@@ -0,0 +1,160 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.ConversionSchedulerConfiguration;
+import com.al.fhirhl7transformer.config.TenantContext;
+import com.al.fhirhl7transformer.service.ConversionScheduler.Lane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConversionSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ConversionScheduler scheduler;
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+        MDC.clear();
+        TenantContext.clear();
+    }
+
+    @Test
+    public void testSyncLaneIsServedWhileBatchLaneIsBacklogged() throws Exception {
+        scheduler = scheduler(1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Occupy the only worker, then queue a batch backlog ahead of one sync task
+        scheduler.submit(Lane.BATCH, () -> release.await(5, TimeUnit.SECONDS));
+        awaitWorkerBusy(Lane.BATCH);
+        List<CompletableFuture<Boolean>> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int n = i;
+            batch.add(scheduler.submit(Lane.BATCH, () -> order.add("batch-" + n)));
+        }
+        CompletableFuture<Boolean> sync = scheduler.submit(Lane.SYNC, () -> order.add("sync"));
+        assertEquals(10, scheduler.getQueueDepth(Lane.BATCH));
+
+        release.countDown();
+        sync.get();
+        CompletableFuture.allOf(batch.toArray(new CompletableFuture[0])).get();
+
+        assertTrue(order.indexOf("sync") <= 1, "Sync task waited behind the batch backlog: " + order);
+    }
+
+    @Test
+    public void testRejectsWhenLaneStaysFull() throws Exception {
+        scheduler = scheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(Lane.BATCH, () -> release.await(5, TimeUnit.SECONDS));
+        awaitWorkerBusy(Lane.BATCH);
+        scheduler.submit(Lane.BATCH, () -> "queued");
+
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(Lane.BATCH, () -> "rejected"));
+        assertEquals(1.0, meterRegistry.get("fhir.scheduler.rejected").tag("lane", "batch").counter().count());
+
+        release.countDown();
+    }
+
+    @Test
+    public void testCallPropagatesContextAndExceptions() throws Exception {
+        scheduler = scheduler(2, 10);
+        MDC.put("transformerId", "tx-1");
+        TenantContext.setTenantId("tenant-a");
+
+        String context = scheduler.call(Lane.SYNC,
+                () -> MDC.get("transformerId") + "/" + TenantContext.getTenantId());
+        assertEquals("tx-1/tenant-a", context);
+
+        assertThrows(IllegalArgumentException.class, () -> scheduler.call(Lane.SYNC, () -> {
+            throw new IllegalArgumentException("bad message");
+        }));
+    }
+
+    @Test
+    public void testBatchScopeForkWaitsOnlyUntilDeadline() throws Exception {
+        ConversionSchedulerConfiguration config = new ConversionSchedulerConfiguration();
+        config.setParallelism(1);
+        config.setQueueCapacity(1);
+        config.setQueueTimeoutMs(30_000);
+        scheduler = new ConversionScheduler(config, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(Lane.BATCH, () -> release.await(5, TimeUnit.SECONDS));
+        awaitWorkerBusy(Lane.BATCH);
+
+        long start = System.nanoTime();
+        try (BatchScope<String> scope = new BatchScope<>(scheduler, false, 200)) {
+            int queued = scope.fork(() -> "queued");
+            // The lane is full now; this fork must give up at the deadline, not after 30s
+            int late = scope.fork(() -> "late");
+            scope.join();
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsedMs < 5_000, "fork and join overran the 200ms deadline: " + elapsedMs + "ms");
+            assertTrue(scope.isDeadlineExceeded());
+            CancellationException e = assertThrows(CancellationException.class, () -> scope.result(late));
+            assertEquals("Batch deadline exceeded before this message was converted", e.getMessage());
+            assertThrows(CancellationException.class, () -> scope.result(queued));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testBatchScopeCloseWaitsForRunningSubtasks() throws Exception {
+        scheduler = scheduler(1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> finished = Collections.synchronizedList(new ArrayList<>());
+
+        try (BatchScope<String> scope = new BatchScope<>(scheduler, false, 50)) {
+            int slow = scope.fork(() -> {
+                started.countDown();
+                Thread.sleep(300);
+                finished.add("slow");
+                return "slow";
+            });
+            int queued = scope.fork(() -> {
+                finished.add("queued");
+                return "queued";
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            scope.join();
+
+            assertEquals(List.of("slow"), finished, "join returned before the running subtask finished");
+            assertThrows(CancellationException.class, () -> scope.result(slow));
+            assertThrows(CancellationException.class, () -> scope.result(queued));
+        }
+        Thread.sleep(50);
+        assertEquals(List.of("slow"), finished);
+        assertEquals(0, scheduler.getActiveTasks());
+    }
+
+    private ConversionScheduler scheduler(int parallelism, int queueCapacity) {
+        ConversionSchedulerConfiguration config = new ConversionSchedulerConfiguration();
+        config.setParallelism(parallelism);
+        config.setQueueCapacity(queueCapacity);
+        config.setQueueTimeoutMs(50);
+        return new ConversionScheduler(config, meterRegistry);
+    }
+
+    private void awaitWorkerBusy(Lane lane) throws InterruptedException {
+        for (int i = 0; i < 100 && (scheduler.getQueueDepth(lane) > 0 || scheduler.getActiveTasks() == 0); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
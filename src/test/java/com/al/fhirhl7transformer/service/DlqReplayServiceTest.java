@@ -0,0 +1,171 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.DlqReplayConfiguration;
+import com.al.fhirhl7transformer.dto.DlqReplayJob;
+import com.al.fhirhl7transformer.dto.DlqReplayRequest;
+import com.al.fhirhl7transformer.service.DlqReplayService.Source;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.impl.AMQImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DlqReplayServiceTest {
+
+    private static final String DLQ = "hl7-messages-dlq";
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private Channel channel;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DlqReplayService service;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(rabbitTemplate.execute(any())).thenAnswer(
+                invocation -> invocation.<ChannelCallback<?>>getArgument(0).doInRabbit(channel));
+        when(channel.isOpen()).thenReturn(true);
+
+        DlqReplayConfiguration config = new DlqReplayConfiguration();
+        config.setDefaultRatePerSecond(10000);
+        config.setBatchSize(2);
+        service = new DlqReplayService(rabbitTemplate, config, meterRegistry,
+                DLQ, "hl7-messages-exchange", "hl7.message.routing",
+                "fhir-to-v2-dlq", "fhir-messages-exchange", "fhir.message.routing");
+    }
+
+    @Test
+    public void testReplaysMatchingMessagesAndRequeuesTheRest() throws Exception {
+        givenDlq(
+                message(1, "tenant-a", "MongoTimeoutException"),
+                message(2, "tenant-b", "MongoTimeoutException"),
+                message(3, "tenant-a", "MongoTimeoutException"),
+                message(4, "tenant-a", "AmqpException"));
+
+        DlqReplayRequest request = new DlqReplayRequest();
+        request.setTenantId("tenant-a");
+        request.setFailureReason("mongotimeoutexception");
+        DlqReplayJob job = awaitCompletion(service.start(Source.HL7, request, "admin"));
+
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(4, job.getScanned());
+        assertEquals(2, job.getMatched());
+        assertEquals(2, job.getReplayed());
+        assertEquals(2, job.getSkipped());
+
+        ArgumentCaptor<AMQP.BasicProperties> props = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        verify(channel, times(2)).basicPublish(eq("hl7-messages-exchange"), eq("hl7.message.routing"),
+                props.capture(), any(byte[].class));
+        Map<String, Object> headers = props.getValue().getHeaders();
+        assertEquals(0, headers.get("x-retry-count"));
+        assertEquals(job.getReplayId(), headers.get(DlqReplayService.REPLAY_ID_HEADER));
+        assertFalse(headers.containsKey("x-death"));
+        assertFalse(headers.containsKey("x-failure-class"));
+
+        verify(channel).waitForConfirmsOrDie(anyLong());
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(3, false);
+        verify(channel).basicNack(4, true, true);
+        assertEquals(2.0, meterRegistry.counter("fhir.dlq.replayed", "source", "HL7").count());
+    }
+
+    @Test
+    public void testDryRunOnlyCounts() throws Exception {
+        givenDlq(message(1, "tenant-a", "HL7Exception"), message(2, "tenant-a", "HL7Exception"));
+
+        DlqReplayRequest request = new DlqReplayRequest();
+        request.setDryRun(true);
+        DlqReplayJob job = awaitCompletion(service.start(Source.HL7, request, "admin"));
+
+        assertEquals(2, job.getMatched());
+        assertEquals(0, job.getReplayed());
+        verify(channel, never()).basicPublish(anyString(), anyString(), any(AMQP.BasicProperties.class),
+                any(byte[].class));
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+        verify(channel).basicNack(2, true, true);
+    }
+
+    @Test
+    public void testTimeWindowUsesLastDeadLettering() {
+        DlqReplayRequest request = new DlqReplayRequest();
+        request.setDeadLetteredFrom(Instant.parse("2024-01-19T00:00:00Z"));
+        request.setDeadLetteredTo(Instant.parse("2024-01-19T06:00:00Z"));
+
+        assertEquals(true, service.matches(props("t", "x", Instant.parse("2024-01-19T03:00:00Z")), request));
+        assertEquals(false, service.matches(props("t", "x", Instant.parse("2024-01-19T07:00:00Z")), request));
+        assertEquals(false, service.matches(new AMQP.BasicProperties(), request));
+    }
+
+    @Test
+    public void testRejectsInvalidWindow() {
+        DlqReplayRequest request = new DlqReplayRequest();
+        request.setDeadLetteredFrom(Instant.parse("2024-01-19T06:00:00Z"));
+        request.setDeadLetteredTo(Instant.parse("2024-01-19T00:00:00Z"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.start(Source.HL7, request, "admin"));
+    }
+
+    private void givenDlq(GetResponse... responses) throws Exception {
+        when(channel.queueDeclarePassive(DLQ)).thenReturn(new AMQImpl.Queue.DeclareOk(DLQ, responses.length, 0));
+        var stub = when(channel.basicGet(DLQ, false));
+        for (GetResponse response : responses) {
+            stub = stub.thenReturn(response);
+        }
+        stub.thenReturn(null);
+    }
+
+    private static GetResponse message(long tag, String tenantId, String failureReason) {
+        byte[] body = ("MSH|^~\\&|" + tag).getBytes(StandardCharsets.UTF_8);
+        return new GetResponse(new Envelope(tag, false, "hl7-messages-dlx", "hl7.message.dl"),
+                props(tenantId, failureReason, Instant.now()), body, 0);
+    }
+
+    private static AMQP.BasicProperties props(String tenantId, String failureReason, Instant deadLetteredAt) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("tenantId", tenantId);
+        headers.put("x-first-failure-reason", failureReason);
+        headers.put("x-failure-class", "TRANSIENT");
+        headers.put("x-retry-count", 3);
+        headers.put("x-death", List.of(Map.of("reason", "expired", "time", Date.from(deadLetteredAt))));
+        return new AMQP.BasicProperties.Builder().headers(headers).build();
+    }
+
+    private DlqReplayJob awaitCompletion(DlqReplayJob job) throws InterruptedException {
+        for (int i = 0; i < 500 && "RUNNING".equals(job.getStatus()); i++) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+}
@@ -1,11 +1,21 @@
 package com.al.fhirhl7transformer.service;
 
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.hl7v2.DefaultHapiContext;
+import com.al.fhirhl7transformer.config.MappingConfiguration;
+import com.al.fhirhl7transformer.dto.ConversionError;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 public class FhirToHl7ServiceTest {
@@ -57,4 +67,20 @@ public class FhirToHl7ServiceTest {
         assertTrue(hl7.contains("PV1|"), "HL7 Message: " + hl7);
         assertTrue(hl7.contains("|VISIT-001"), "HL7 Message: " + hl7); // PV1
     }
+
+    @Test
+    public void testFailedValidatorIsReportedAsUnavailable() {
+        FhirValidationService validationService = mock(FhirValidationService.class);
+        when(validationService.isFailed()).thenReturn(true);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FhirToHl7Service service = new FhirToHl7Service(FhirContext.forR4(), new DefaultHapiContext(),
+                meterRegistry, validationService, List.of(), new MappingConfiguration());
+
+        FhirToHl7Service.FhirToHl7Result result = service.convertFhirToHl7WithResult(
+                "{\"resourceType\":\"Bundle\",\"type\":\"message\"}");
+
+        assertEquals(List.of("VALIDATION_UNAVAILABLE"),
+                result.getWarnings().stream().map(ConversionError::getErrorCode).toList());
+        assertEquals(1, meterRegistry.get("fhir.validation.skipped").tag("reason", "failed").counter().count());
+    }
 }
@@ -0,0 +1,134 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.ConversionSchedulerConfiguration;
+import com.al.fhirhl7transformer.config.FileIngestionConfiguration;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FileIngestionServiceTest {
+
+    @TempDir
+    Path inputDir;
+
+    @Mock
+    private Hl7ToFhirService hl7ToFhirService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ConversionScheduler scheduler;
+    private FileIngestionService fileIngestionService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(hl7ToFhirService.convertHl7ToFhir(anyString())).thenReturn("{\"resourceType\": \"Bundle\"}");
+        when(hl7ToFhirService.convertHl7ToFhir(contains("|BAD|"))).thenThrow(new IllegalArgumentException("bad"));
+
+        FileIngestionConfiguration config = new FileIngestionConfiguration();
+        config.setInputDir(inputDir.toString());
+        config.setCheckpointInterval(2);
+        config.setMinFileAgeMs(0);
+        scheduler = new ConversionScheduler(new ConversionSchedulerConfiguration(), new SimpleMeterRegistry());
+        fileIngestionService = new FileIngestionService(hl7ToFhirService, scheduler, objectMapper, config,
+                meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testScanWritesResultsAndManifest() throws Exception {
+        Path file = inputDir.resolve("archive.hl7");
+        Files.writeString(file, message("M1") + message("BAD") + message("M3"));
+
+        fileIngestionService.scan();
+
+        List<String> results = Files.readAllLines(FileIngestionService.sibling(file, ".results.ndjson"));
+        assertEquals(3, results.size());
+        assertEquals("M1", objectMapper.readTree(results.get(0)).get("messageId").asText());
+        assertEquals("bad", objectMapper.readTree(results.get(1)).get("error").asText());
+        assertEquals(2, objectMapper.readTree(results.get(2)).get("index").asInt());
+
+        JsonNode manifest = objectMapper.readTree(FileIngestionService.sibling(file, ".manifest.json").toFile());
+        assertEquals(3, manifest.get("messages").asInt());
+        assertEquals(1, manifest.get("failureCount").asInt());
+        assertFalse(Files.exists(FileIngestionService.sibling(file, ".checkpoint")));
+
+        // Files with a manifest are not ingested again
+        fileIngestionService.scan();
+        assertEquals(3, Files.readAllLines(FileIngestionService.sibling(file, ".results.ndjson")).size());
+    }
+
+    @Test
+    public void testFailedFileIsMarkedAndNotRetried() throws Exception {
+        Path file = inputDir.resolve("archive.hl7");
+        Files.writeString(file, message("M1"));
+        Files.writeString(FileIngestionService.sibling(file, ".checkpoint"), "not a checkpoint");
+
+        fileIngestionService.scan();
+
+        JsonNode manifest = objectMapper.readTree(FileIngestionService.sibling(file, ".manifest.json").toFile());
+        assertEquals("FAILED", manifest.get("status").asText());
+        assertTrue(manifest.hasNonNull("error"));
+        assertEquals(1, meterRegistry.get("fhir.ingest.files").tag("outcome", "failed").counter().count());
+
+        // Even once the cause is gone, the file waits until the manifest is deleted
+        Files.delete(FileIngestionService.sibling(file, ".checkpoint"));
+        fileIngestionService.scan();
+        verify(hl7ToFhirService, never()).convertHl7ToFhir(anyString());
+        assertEquals(1, meterRegistry.get("fhir.ingest.files").tag("outcome", "failed").counter().count());
+
+        Files.delete(FileIngestionService.sibling(file, ".manifest.json"));
+        fileIngestionService.scan();
+        manifest = objectMapper.readTree(FileIngestionService.sibling(file, ".manifest.json").toFile());
+        assertEquals("COMPLETED", manifest.get("status").asText());
+    }
+
+    @Test
+    public void testResumesFromCheckpointAndDropsUncheckpointedResults() throws Exception {
+        String first = message("M1") + message("M2");
+        Path file = inputDir.resolve("archive.hl7");
+        Files.writeString(file, first + message("M3"));
+
+        String committed = "{\"index\":0}\n{\"index\":1}\n";
+        Files.writeString(FileIngestionService.sibling(file, ".results.ndjson"),
+                committed + "{\"index\":2,\"partial\":true}\n");
+        Files.writeString(FileIngestionService.sibling(file, ".checkpoint"), "{\"offset\":" + first.length()
+                + ",\"resultsSize\":" + committed.length() + ",\"messages\":2,\"successCount\":2}");
+
+        fileIngestionService.ingest(file);
+
+        List<String> results = Files.readAllLines(FileIngestionService.sibling(file, ".results.ndjson"));
+        assertEquals(3, results.size());
+        JsonNode resumed = objectMapper.readTree(results.get(2));
+        assertEquals(2, resumed.get("index").asInt());
+        assertEquals("M3", resumed.get("messageId").asText());
+        verify(hl7ToFhirService, never()).convertHl7ToFhir(contains("|M1|"));
+    }
+
+    private String message(String controlId) {
+        return "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|" + controlId + "|P|2.5\rPID|1||123\r";
+    }
+}
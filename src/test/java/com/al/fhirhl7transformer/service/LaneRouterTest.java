@@ -0,0 +1,70 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.LaneConfiguration;
+import com.al.fhirhl7transformer.config.LaneConfiguration.Lane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LaneRouterTest {
+
+    private static final String ADT = "MSH|^~\\&|SEND|FAC|RECV|FAC|20240101120000||ADT^A01^ADT_A01|MSG1|P|2.5\rPID|1";
+    private static final String ORU = "MSH|^~\\&|LAB|FAC|RECV|FAC|20240101120000||ORU^R01|MSG2|P|2.5\rOBR|1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LaneConfiguration config = new LaneConfiguration();
+    private LaneRouter router;
+
+    @BeforeEach
+    public void setup() {
+        config.setEnabled(true);
+        config.setTenantTiers(Map.of("backfill", "bulk"));
+        config.setLanes(List.of(
+                lane("bulk", List.of(), List.of("bulk")),
+                lane("realtime", List.of("ADT", "ORM^O01"), List.of())));
+        router = new LaneRouter(config, meterRegistry);
+    }
+
+    @Test
+    public void testReadsMessageTypeFromMsh() {
+        assertEquals("ADT^A01", LaneRouter.messageType(ADT));
+        assertEquals("ORU^R01", LaneRouter.messageType(ORU));
+        assertEquals("ACK", LaneRouter.messageType("MSH#^~\\&#A#B#C#D#20240101##ACK#1#P#2.5"));
+        assertNull(LaneRouter.messageType("MSH|^~\\&|A|B|C|D\rPID|1|||||||ADT^A01"));
+        assertNull(LaneRouter.messageType("not hl7"));
+    }
+
+    @Test
+    public void testFirstMatchingLaneWins() {
+        assertEquals("realtime", router.select(ADT, "hospital-a").getName());
+        assertEquals("bulk", router.select(ADT, "backfill").getName());
+        assertNull(router.select(ORU, "hospital-a"));
+        assertNull(router.select(ADT.replace("ADT^A01", "ORM^O02"), "hospital-a"));
+        assertEquals("realtime", router.select(ADT.replace("ADT^A01", "orm^O01"), "hospital-a").getName());
+
+        assertEquals(2.0, meterRegistry.counter("fhir.lane.routed", "lane", "realtime").count());
+        assertEquals(2.0, meterRegistry.counter("fhir.lane.routed", "lane", "default").count());
+    }
+
+    @Test
+    public void testDisabledUsesDefaultLane() {
+        config.setEnabled(false);
+
+        assertNull(router.select(ADT, "hospital-a"));
+        assertEquals(0, meterRegistry.getMeters().size());
+    }
+
+    private static Lane lane(String name, List<String> messageTypes, List<String> tiers) {
+        Lane lane = new Lane();
+        lane.setName(name);
+        lane.setMessageTypes(messageTypes);
+        lane.setTiers(tiers);
+        return lane;
+    }
+}
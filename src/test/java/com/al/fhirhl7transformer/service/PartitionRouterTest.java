@@ -0,0 +1,175 @@
+package com.al.fhirhl7transformer.service;
+
+import com.al.fhirhl7transformer.config.PartitionConfiguration;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PartitionRouterTest {
+
+    private static final String ADT = "MSH|^~\\&|SEND|FAC|RECV|FAC|20240101||ADT^A01|MSG1|P|2.5\r"
+            + "EVN|A01\rPID|1||MRN123^^^HOSP^MR~SSN9^^^SSA||DOE^JOHN\r";
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private RabbitManagementClient managementClient;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PartitionConfiguration config = new PartitionConfiguration();
+    private final Map<String, Integer> queueDepths = new HashMap<>();
+    private final Map<String, Long> unacked = new HashMap<>();
+    private PartitionRouter router;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        Channel channel = mock(Channel.class);
+        when(channel.queueDeclarePassive(anyString())).thenAnswer(invocation -> {
+            String queue = invocation.getArgument(0);
+            return new AMQP.Queue.DeclareOk.Builder().queue(queue)
+                    .messageCount(queueDepths.getOrDefault(queue, 0)).build();
+        });
+        when(rabbitTemplate.execute(any(ChannelCallback.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, ChannelCallback.class).doInRabbit(channel));
+
+        config.setEnabled(true);
+        config.setCount(8);
+        when(managementClient.messages(anyString())).thenAnswer(invocation -> {
+            String queue = invocation.getArgument(0);
+            return queueDepths.getOrDefault(queue, 0) + unacked.getOrDefault(queue, 0L);
+        });
+        config.setStatsIntervalMs(0);
+        router = new PartitionRouter(config, rabbitTemplate, managementClient, meterRegistry);
+    }
+
+    @Test
+    public void testReadsPatientKeyFromPid3() {
+        assertEquals("MRN123^HOSP", PartitionRouter.patientKey(ADT));
+        assertEquals("MRN123", PartitionRouter.patientKey(ADT.replace("MRN123^^^HOSP^MR", "MRN123")));
+        assertEquals("MRN123", PartitionRouter.patientKey(ADT.replace("^^^HOSP^MR~", "~")));
+        assertNull(PartitionRouter.patientKey(ADT.replace("MRN123^^^HOSP^MR~SSN9^^^SSA", "")));
+        assertNull(PartitionRouter.patientKey("MSH|^~\\&|A|B|C|D|20240101||ACK|1|P|2.5\rMSA|AA|1"));
+        assertNull(PartitionRouter.patientKey("not hl7"));
+    }
+
+    @Test
+    public void testSamePatientAlwaysSharesAPartition() {
+        OptionalInt partition = router.select(ADT, "t1");
+
+        assertTrue(partition.isPresent());
+        assertEquals(partition, router.select(ADT.replace("ADT^A01|MSG1", "ADT^A08|MSG2"), "t1"));
+        assertTrue(router.select("MSH|^~\\&|A|B|C|D|20240101||ACK|1|P|2.5", "t1").isEmpty());
+        assertEquals(1, meterRegistry.get("fhir.partition.routed").tag("partition", "none").counter().count());
+
+        config.setEnabled(false);
+        assertTrue(router.select(ADT, "t1").isEmpty());
+    }
+
+    @Test
+    public void testJumpHashSpreadsKeysAndMovesFewOnResize() {
+        int[] counts = new int[8];
+        int moved = 0;
+        for (int i = 0; i < 8000; i++) {
+            long hash = PartitionRouter.hash("t1|MRN" + i);
+            int partition = PartitionRouter.jumpHash(hash, 8);
+            counts[partition]++;
+            int grown = PartitionRouter.jumpHash(hash, 10);
+            if (grown != partition) {
+                moved++;
+                assertTrue(grown >= 8, "keys only move to the added partitions");
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 800 && count < 1200, "roughly even spread: " + count);
+        }
+        assertTrue(moved > 1200 && moved < 2000, "about 2/10 of the keys move: " + moved);
+    }
+
+    @Test
+    public void testResizeHoldsMovedPatientUntilOldPartitionDrains() {
+        String patient = null;
+        int oldPartition = -1;
+        int newPartition = -1;
+        for (int i = 0; patient == null; i++) {
+            String candidate = ADT.replace("MRN123", "MRN" + i);
+            long hash = PartitionRouter.hash("t1|" + PartitionRouter.patientKey(candidate));
+            if (PartitionRouter.jumpHash(hash, 4) != PartitionRouter.jumpHash(hash, 8)) {
+                patient = candidate;
+                oldPartition = PartitionRouter.jumpHash(hash, 4);
+                newPartition = PartitionRouter.jumpHash(hash, 8);
+            }
+        }
+        config.setPreviousCount(4);
+        queueDepths.put(PartitionConfiguration.queueName(oldPartition), 3);
+
+        assertEquals(oldPartition, router.select(patient, "t1").getAsInt());
+        assertEquals(1, meterRegistry.get("fhir.partition.held").counter().count());
+
+        // Nothing ready, but a delivery is still unacked on the old partition
+        queueDepths.put(PartitionConfiguration.queueName(oldPartition), 0);
+        unacked.put(PartitionConfiguration.queueName(oldPartition), 1L);
+        assertEquals(oldPartition, router.select(patient, "t1").getAsInt());
+
+        when(managementClient.messages(anyString())).thenThrow(new IllegalStateException("unreachable"));
+        unacked.clear();
+        assertEquals(oldPartition, router.select(patient, "t1").getAsInt());
+
+        // Statistics may not show a message routed within the last interval yet
+        reset(managementClient);
+        config.setStatsIntervalMs(60_000);
+        assertEquals(oldPartition, router.select(patient, "t1").getAsInt());
+        config.setStatsIntervalMs(0);
+
+        assertEquals(newPartition, router.select(patient, "t1").getAsInt());
+        assertNotEquals(oldPartition, newPartition);
+        assertEquals(8, router.status().depths().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDrainedPartitionIsNotCheckedOnEveryMessage() {
+        String patient = null;
+        int newPartition = -1;
+        for (int i = 0; patient == null; i++) {
+            String candidate = ADT.replace("MRN123", "MRN" + i);
+            long hash = PartitionRouter.hash("t1|" + PartitionRouter.patientKey(candidate));
+            if (PartitionRouter.jumpHash(hash, 4) != PartitionRouter.jumpHash(hash, 8)) {
+                patient = candidate;
+                newPartition = PartitionRouter.jumpHash(hash, 8);
+            }
+        }
+        config.setPreviousCount(4);
+        config.setStatsIntervalMs(60_000);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(newPartition, router.select(patient, "t1").getAsInt());
+        }
+        verify(rabbitTemplate, times(1)).execute(any(ChannelCallback.class));
+        verify(managementClient, times(1)).messages(anyString());
+    }
+}
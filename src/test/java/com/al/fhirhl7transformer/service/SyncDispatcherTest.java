@@ -0,0 +1,116 @@
+package com.al.fhirhl7transformer.service;
+
+import ca.uhn.hl7v2.HL7Exception;
+import com.al.fhirhl7transformer.config.SyncDispatchConfiguration;
+import com.al.fhirhl7transformer.service.SyncDispatcher.Flow;
+import com.al.fhirhl7transformer.util.MessageEnvelope;
+import com.al.fhirhl7transformer.util.SyncReply;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.AmqpReplyTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SyncDispatcherTest {
+
+    private static final String HL7 = "MSH|^~\\&|SEND|FAC|RECV|FAC|20240101||ADT^A01|MSG1|P|2.5";
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SyncDispatchConfiguration config = new SyncDispatchConfiguration();
+    private SyncDispatcher dispatcher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(rabbitTemplate.execute(any(ChannelCallback.class))).thenReturn(2);
+        config.setEnabled(true);
+        config.setWorkerCheckMs(0);
+        dispatcher = new SyncDispatcher(config, rabbitTemplate, meterRegistry);
+    }
+
+    @Test
+    public void testConvertsOnWorker() throws Exception {
+        when(rabbitTemplate.sendAndReceive(eq(""), eq("hl7-sync-requests-queue"), any(Message.class)))
+                .thenReturn(SyncReply.success("{\"resourceType\":\"Bundle\"}", MessageProperties.CONTENT_TYPE_JSON));
+
+        String result = dispatcher.convert(Flow.V2_TO_FHIR, HL7, "t1", "MSG1", () -> "local");
+
+        assertEquals("{\"resourceType\":\"Bundle\"}", result);
+        ArgumentCaptor<Message> request = ArgumentCaptor.forClass(Message.class);
+        verify(rabbitTemplate).sendAndReceive(eq(""), eq("hl7-sync-requests-queue"), request.capture());
+        assertEquals(HL7, MessageEnvelope.bodyAsString(request.getValue()));
+        assertEquals("t1", MessageEnvelope.header(request.getValue(), MessageEnvelope.TENANT_HEADER));
+        assertEquals("MSG1", MessageEnvelope.header(request.getValue(), MessageEnvelope.TRANSACTION_ID_HEADER));
+        assertEquals("10000", request.getValue().getMessageProperties().getExpiration());
+        assertEquals(1, meterRegistry.get("fhir.sync.dispatch").tag("target", "worker").counter().count());
+    }
+
+    @Test
+    public void testRethrowsWorkerFailure() {
+        when(rabbitTemplate.sendAndReceive(anyString(), anyString(), any(Message.class)))
+                .thenReturn(SyncReply.failure(new HL7Exception("Missing MSH-9")));
+
+        HL7Exception e = assertThrows(HL7Exception.class,
+                () -> dispatcher.convert(Flow.V2_TO_FHIR, HL7, "t1", "MSG1", () -> "local"));
+        assertEquals("Missing MSH-9", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> SyncReply.unwrap(
+                SyncReply.failure(new IllegalArgumentException("Not a Bundle"))));
+        assertThrows(IllegalStateException.class, () -> SyncReply.unwrap(
+                SyncReply.failure(new NullPointerException())));
+    }
+
+    @Test
+    public void testTimesOutWithoutConvertingLocally() {
+        when(rabbitTemplate.sendAndReceive(anyString(), anyString(), any(Message.class))).thenReturn(null);
+
+        assertThrows(AmqpReplyTimeoutException.class, () -> dispatcher.convert(Flow.FHIR_TO_V2, "{}", "t1", "tx",
+                () -> {
+                    throw new AssertionError("must not convert locally");
+                }));
+        assertEquals(1, meterRegistry.get("fhir.sync.dispatch.timeouts").counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConvertsLocallyWithoutWorkers() throws Exception {
+        when(rabbitTemplate.execute(any(ChannelCallback.class))).thenReturn(0);
+
+        assertEquals("local", dispatcher.convert(Flow.FHIR_TO_V2, "{}", "t1", "tx", () -> "local"));
+
+        config.setEnabled(false);
+        assertEquals("local", dispatcher.convert(Flow.FHIR_TO_V2, "{}", "t1", "tx", () -> "local"));
+
+        verify(rabbitTemplate, never()).sendAndReceive(anyString(), anyString(), any(Message.class));
+        assertEquals(2, meterRegistry.get("fhir.sync.dispatch").tag("target", "local").counter().count());
+    }
+
+    @Test
+    public void testConvertsLocallyWhenBrokerIsUnreachable() throws Exception {
+        when(rabbitTemplate.sendAndReceive(anyString(), anyString(), any(Message.class)))
+                .thenThrow(new AmqpConnectException(new ConnectException("refused")));
+
+        assertEquals("local", dispatcher.convert(Flow.V2_TO_FHIR, HL7, "t1", "MSG1", () -> "local"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.al.fhirhl7transformer.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = { "app.warmup.enabled=false", "app.warmup.min-rounds=1", "app.warmup.max-rounds=3" })
+public class WarmupServiceTest {
+
+    @Autowired
+    private WarmupService warmupService;
+
+    @Autowired
+    private Hl7ToFhirService hl7ToFhirService;
+
+    @Autowired
+    private FhirToHl7Service fhirToHl7Service;
+
+    @Test
+    public void testCorpusMessagesConvertBothWays() throws Exception {
+        Resource[] corpus = new PathMatchingResourcePatternResolver().getResources("classpath:warmup/*.hl7");
+        assertEquals(5, corpus.length, "Corpus should contain ADT, ORU, ORM, SIU and MDM samples");
+
+        for (Resource resource : corpus) {
+            String hl7 = resource.getContentAsString(StandardCharsets.UTF_8).trim().replace('\n', '\r');
+            String fhir = hl7ToFhirService.convertHl7ToFhir(hl7, false);
+            assertTrue(fhir.contains("\"resourceType\": \"Bundle\""), resource.getFilename());
+            assertNotNull(fhirToHl7Service.convertFhirToHl7(fhir), resource.getFilename());
+        }
+    }
+
+    @Test
+    public void testWarmupFinishes() {
+        assertEquals(WarmupService.State.DISABLED, warmupService.getState());
+
+        warmupService.runWarmup();
+
+        assertTrue(warmupService.isFinished());
+        assertNotEquals(WarmupService.State.FAILED, warmupService.getState());
+        assertTrue(warmupService.getRoundsCompleted() > 0);
+    }
+}
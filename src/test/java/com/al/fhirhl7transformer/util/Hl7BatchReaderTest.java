@@ -0,0 +1,97 @@
+package com.al.fhirhl7transformer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Hl7BatchReaderTest {
+
+    private static final String MSG1 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|M1|P|2.5\rPID|1||111";
+    private static final String MSG2 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|M2|P|2.5\rPID|1||222\rPV1|1|I";
+
+    @Test
+    public void testSplitsEnvelopeAndValidatesCounts() throws Exception {
+        String file = "FHS|^~\\&|SND|FAC|RCV|FAC|20240101||||F1\r"
+                + "BHS|^~\\&|SND|FAC|RCV|FAC|20240101||||B1\r"
+                + MSG1 + "\r" + MSG2 + "\r"
+                + "BTS|2\r"
+                + "FTS|1\r";
+
+        Hl7BatchReader reader = reader(file);
+        List<String> messages = readAll(reader);
+
+        assertEquals(List.of(MSG1, MSG2), messages);
+        assertEquals(1, reader.getBatchCount());
+        assertTrue(reader.getCountErrors().isEmpty(), reader.getCountErrors().toString());
+        assertEquals("F1", Hl7BatchReader.field(reader.getFileHeader(), 10));
+    }
+
+    @Test
+    public void testReportsCountMismatches() throws Exception {
+        String file = "FHS|^~\\&|SND\n"
+                + "BHS|^~\\&|SND\n"
+                + MSG1.replace('\r', '\n') + "\n"
+                + "BTS|3\n"
+                + "BHS|^~\\&|SND\r\n"
+                + MSG2.replace("\r", "\r\n") + "\r\n"
+                + "BTS|1\r\n"
+                + "FTS|1\r\n";
+
+        Hl7BatchReader reader = reader(file);
+        List<String> messages = readAll(reader);
+
+        assertEquals(List.of(MSG1, MSG2), messages);
+        assertEquals(2, reader.getBatchCount());
+        assertEquals(List.of("BTS-1 declared 3 messages but batch 1 contained 1",
+                "FTS-1 declared 1 batches but file contained 2"), reader.getCountErrors());
+    }
+
+    @Test
+    public void testAcceptsMessagesWithoutEnvelope() throws Exception {
+        Hl7BatchReader reader = reader(MSG1 + "\r" + MSG2);
+
+        assertEquals(List.of(MSG1, MSG2), readAll(reader));
+        assertNull(reader.getFileHeader());
+        assertEquals(0, reader.getBatchCount());
+        assertTrue(reader.getCountErrors().isEmpty());
+    }
+
+    @Test
+    public void testSplitsAcrossBufferRefills() throws Exception {
+        String msg3 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|M3|P|2.5\rPID|1||333||Müller^Jürgen";
+        String file = "ZZZ|stray\r\n"
+                + "BHS|^~\\&|SND\r\n"
+                + MSG1.replace("\r", "\r\n") + "\r\n"
+                + MSG2 + "\r"
+                + msg3.replace('\r', '\n') + "\n"
+                + "BTS|3\n";
+
+        // A 16-byte buffer forces boundaries and line breaks to straddle refills
+        Hl7BatchReader reader = new Hl7BatchReader(
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)), 16);
+
+        assertEquals(List.of(MSG1, MSG2, msg3), readAll(reader));
+        assertEquals(1, reader.getBatchCount());
+        assertEquals(List.of("Segment ZZZ outside of a message was ignored"), reader.getCountErrors());
+    }
+
+    private Hl7BatchReader reader(String content) {
+        return new Hl7BatchReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private List<String> readAll(Hl7BatchReader reader) throws Exception {
+        List<String> messages = new ArrayList<>();
+        String message;
+        while ((message = reader.nextMessage()) != null) {
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,80 @@
+package com.al.fhirhl7transformer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Hl7BoundaryScannerTest {
+
+    // Mostly bytes that take part in boundaries, so near-misses are frequent
+    private static final byte[] ALPHABET = "MSHFBT\r\n|^A1".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testVectorMatchesScalarOnRandomInput() {
+        Random random = new Random(42);
+        byte[] bytes = new byte[200_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        // Boundaries straddling the 64 KB copy blocks of the vector scanner
+        plant(bytes, 65_534, "\rMSH");
+        plant(bytes, 131_070, "\nBHS");
+        plant(bytes, 131_072 + 65_533, "\rFTS");
+
+        for (ByteBuffer buffer : buffers(bytes)) {
+            assertSameBoundaries(buffer, 0, bytes.length);
+            // Limits that cut off a segment ID
+            assertSameBoundaries(buffer, 60_000, 65_537);
+            assertSameBoundaries(buffer, 130_000, 131_073);
+        }
+    }
+
+    @Test
+    public void testFindsBoundaryAtLineStartAndAtEnd() {
+        byte[] bytes = "xx\rMSH|1\rPID\rBTS".getBytes(StandardCharsets.US_ASCII);
+
+        for (ByteBuffer buffer : buffers(bytes)) {
+            assertEquals(3, Hl7BoundaryScanner.vectorNextBoundary(buffer, 0, bytes.length, false));
+            assertEquals(3, Hl7BoundaryScanner.vectorNextBoundary(buffer, 3, bytes.length, true));
+            assertEquals(13, Hl7BoundaryScanner.vectorNextBoundary(buffer, 4, bytes.length, false));
+            assertEquals(-1, Hl7BoundaryScanner.vectorNextBoundary(buffer, 4, bytes.length - 1, false));
+        }
+    }
+
+    private static void assertSameBoundaries(ByteBuffer buffer, int from, int limit) {
+        int position = from;
+        boolean lineStart = true;
+        int found = 0;
+        while (true) {
+            int expected = Hl7BoundaryScanner.scalarNextBoundary(buffer, position, limit, lineStart);
+            assertEquals(expected, Hl7BoundaryScanner.vectorNextBoundary(buffer, position, limit, lineStart),
+                    "boundary after " + position);
+            if (expected < 0) {
+                break;
+            }
+            found++;
+            position = expected + 1;
+            lineStart = false;
+        }
+        assertTrue(found > 0, "input should contain boundaries");
+    }
+
+    private static ByteBuffer[] buffers(byte[] bytes) {
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        // Heap buffer with a non-zero array offset
+        byte[] padded = new byte[bytes.length + 7];
+        System.arraycopy(bytes, 0, padded, 7, bytes.length);
+        ByteBuffer heap = ByteBuffer.wrap(padded, 7, bytes.length).slice();
+        return new ByteBuffer[] { heap, direct, direct.asReadOnlyBuffer() };
+    }
+
+    private static void plant(byte[] bytes, int position, String text) {
+        byte[] plant = text.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(plant, 0, bytes, position, plant.length);
+    }
+}
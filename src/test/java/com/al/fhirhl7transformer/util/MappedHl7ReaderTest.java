@@ -0,0 +1,71 @@
+package com.al.fhirhl7transformer.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedHl7ReaderTest {
+
+    private static final String MSG1 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|M1|P|2.5\rPID|1||111";
+    private static final String MSG2 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ADT^A01|M2|P|2.5\rPID|1||222\rPV1|1|I";
+    private static final String MSG3 = "MSH|^~\\&|SND|FAC|RCV|FAC|20240101||ORU^R01|M3|P|2.5\rOBX|1|NM|MSH^x";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testSplitsAcrossWindowsAndSkipsEnvelope() throws Exception {
+        Path file = write("FHS|^~\\&|SND\r\nBHS|^~\\&|SND\r\n"
+                + MSG1.replace("\r", "\r\n") + "\r\n"
+                + MSG2.replace('\r', '\n') + "\n"
+                + MSG3 + "\r"
+                + "BTS|3\rFTS|1\r");
+
+        // Window smaller than two messages forces remapping mid-file
+        assertEquals(List.of(MSG1, MSG2, MSG3), readAll(file, 0, 90));
+        assertEquals(List.of(MSG1, MSG2, MSG3), readAll(file, 0, 1 << 20));
+    }
+
+    @Test
+    public void testResumesFromReportedPosition() throws Exception {
+        Path file = write(MSG1 + "\r" + MSG2 + "\r" + MSG3);
+
+        long position;
+        try (MappedHl7Reader reader = new MappedHl7Reader(file, 0, 1 << 20)) {
+            assertEquals(MSG1, reader.nextMessage());
+            position = reader.getPosition();
+        }
+        assertEquals(List.of(MSG2, MSG3), readAll(file, position, 1 << 20));
+    }
+
+    @Test
+    public void testRejectsMessageLargerThanWindow() throws Exception {
+        Path file = write(MSG2 + "\r" + MSG1);
+
+        assertThrows(IOException.class, () -> readAll(file, 0, 40));
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.write(dir.resolve("archive.hl7"), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> readAll(Path file, long offset, int window) throws IOException {
+        List<String> messages = new ArrayList<>();
+        try (MappedHl7Reader reader = new MappedHl7Reader(file, offset, window)) {
+            String message;
+            while ((message = reader.nextMessage()) != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+}
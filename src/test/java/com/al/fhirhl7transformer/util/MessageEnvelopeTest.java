@@ -0,0 +1,68 @@
+package com.al.fhirhl7transformer.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageEnvelopeTest {
+
+    private static final String BUNDLE = "{\"resourceType\":\"Bundle\",\"entry\":[" +
+            "{\"resource\":{\"resourceType\":\"Patient\"}},".repeat(200) + "]}";
+
+    private final DecompressingMessageConverter converter = new DecompressingMessageConverter();
+
+    @Test
+    public void testLargePayloadIsCompressedAndRestored() {
+        MessagePostProcessor compressor = MessageEnvelope.compressor(1024, Set.of("fhir-out"));
+
+        Message compressed = compressor.postProcessMessage(text(BUNDLE), null, "hl7-messages-exchange", "hl7.retry.1");
+
+        assertTrue(MessageEnvelope.isCompressed(compressed));
+        assertTrue(compressed.getBody().length < BUNDLE.length() / 5);
+        assertEquals(BUNDLE, converter.fromMessage(compressed));
+        assertEquals(BUNDLE, MessageEnvelope.bodyAsString(
+                compressor.postProcessMessage(text(BUNDLE), null, "", "hl7-messages-queue")));
+    }
+
+    @Test
+    public void testSmallAndOutputPayloadsAreLeftAsIs() {
+        MessagePostProcessor compressor = MessageEnvelope.compressor(1024, Set.of("fhir-out"));
+
+        Message small = text("MSH|^~\\&|A");
+        assertSame(small, compressor.postProcessMessage(small, null, "", "hl7-messages-queue"));
+        Message output = text(BUNDLE);
+        assertSame(output, compressor.postProcessMessage(output, null, "", "fhir-out"));
+        assertFalse(MessageEnvelope.isCompressed(output));
+        assertEquals(BUNDLE, converter.fromMessage(output));
+
+        Message disabled = text(BUNDLE);
+        assertSame(disabled, MessageEnvelope.compressor(0, Set.of()).postProcessMessage(disabled, null, "", "q"));
+    }
+
+    @Test
+    public void testHeaders() {
+        Message message = MessageEnvelope.headers("t1", "MSG001", "ADT^A01").postProcessMessage(text("x"));
+
+        assertEquals("t1", MessageEnvelope.header(message, MessageEnvelope.TENANT_HEADER));
+        assertEquals("MSG001", MessageEnvelope.header(message, MessageEnvelope.TRANSACTION_ID_HEADER));
+        assertEquals("ADT^A01", MessageEnvelope.header(message, MessageEnvelope.MESSAGE_TYPE_HEADER));
+        assertTrue(message.getMessageProperties().getHeader(MessageEnvelope.ENQUEUED_AT_HEADER) instanceof Long);
+
+        Message partial = MessageEnvelope.headers(null, "MSG002", null).postProcessMessage(text("x"));
+        assertNull(MessageEnvelope.header(partial, MessageEnvelope.TENANT_HEADER));
+        assertNull(MessageEnvelope.header(partial, MessageEnvelope.MESSAGE_TYPE_HEADER));
+    }
+
+    private Message text(String body) {
+        return converter.toMessage(body, new MessageProperties());
+    }
+}
@@ -0,0 +1,44 @@
+package com.al.fhirhl7transformer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void testBurstThenRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, now::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.reserve(1), "burst capacity is available immediately");
+        }
+        // Sixth token is 1/10 s in debt
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.reserve(1));
+
+        // After a second the debt is paid and the bucket is full again
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, bucket.reserve(5));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), bucket.reserve(2));
+    }
+
+    @Test
+    public void testRefillIsCappedAtCapacity() {
+        TokenBucket bucket = new TokenBucket(100, 2, now::get);
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        assertEquals(0, bucket.reserve(2));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), bucket.reserve(1));
+    }
+
+    @Test
+    public void testRejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+    }
+}